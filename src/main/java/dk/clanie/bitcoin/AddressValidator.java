@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin;
+
+import dk.clanie.bitcoin.util.Base58;
+
+/**
+ * Validates bitcoin addresses locally.
+ * <p>
+ * An address is valid if it is base58check encoded, has a correct checksum,
+ * holds a 20 byte hash, and has the pay-to-pubkey-hash or pay-to-script-hash
+ * version byte of the network.
+ * 
+ * @author Claus Nielsen
+ */
+public class AddressValidator {
+
+	/**
+	 * Max length of an address. A version byte, a 20 byte hash and a 4 byte
+	 * checksum encodes to at most 35 characters.
+	 */
+	private static final int MAX_LENGTH = 35;
+
+	private final BitcoinNetwork network;
+
+
+	/**
+	 * Creates validator accepting addresses on the given network.
+	 * 
+	 * @param network
+	 */
+	public AddressValidator(BitcoinNetwork network) {
+		this.network = network;
+	}
+
+
+	/**
+	 * Checks if the given string is a valid address on the network.
+	 * 
+	 * @param address
+	 * @return true if valid.
+	 */
+	public boolean isValid(String address) {
+		if (address == null || address.isEmpty() || address.length() > MAX_LENGTH) return false;
+		byte[] decoded = Base58.decodeChecked(address);
+		if (decoded == null || decoded.length != 21) return false;
+		int version = decoded[0] & 0xff;
+		return version == network.getPubKeyHashVersion() || version == network.getScriptHashVersion();
+	}
+
+
+	public BitcoinNetwork getNetwork() {
+		return network;
+	}
+
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin;
+
+/**
+ * Identifies a bitcoin network.
+ * <p>
+ * Holds the address version bytes, which differ between the real bitcoin
+ * network and test net.
+ * 
+ * @author Claus Nielsen
+ */
+public enum BitcoinNetwork {
+
+	/**
+	 * The real bitcoin network.
+	 */
+	MAIN(0x00, 0x05),
+
+	/**
+	 * Bitcoin test net.
+	 */
+	TEST(0x6f, 0xc4);
+
+	private int pubKeyHashVersion;
+	private int scriptHashVersion;
+
+	private BitcoinNetwork(int pubKeyHashVersion, int scriptHashVersion) {
+		this.pubKeyHashVersion = pubKeyHashVersion;
+		this.scriptHashVersion = scriptHashVersion;
+	}
+
+	/**
+	 * Gets the version byte of pay-to-pubkey-hash addresses.
+	 * 
+	 * @return version byte.
+	 */
+	public int getPubKeyHashVersion() {
+		return pubKeyHashVersion;
+	}
+
+	/**
+	 * Gets the version byte of pay-to-script-hash addresses.
+	 * 
+	 * @return version byte.
+	 */
+	public int getScriptHashVersion() {
+		return scriptHashVersion;
+	}
+
+}
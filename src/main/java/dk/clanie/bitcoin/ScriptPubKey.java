@@ -21,6 +21,9 @@ import java.util.List;
 
 import org.springframework.roo.addon.javabean.RooJavaBean;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
 import dk.clanie.core.BaseClass;
 
 @SuppressWarnings("serial")
@@ -29,8 +32,36 @@ public class ScriptPubKey extends BaseClass {
 
 	private String asm;
 	private String hex;
+
+	@JsonInclude(Include.NON_NULL)
 	private Integer reqSigs;
+
 	private String type;
+
+	@JsonInclude(Include.NON_NULL)
 	private List<String> addresses;
 
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param asm - script in assembler notation.
+	 * @param hex - hex encoded script.
+	 * @param reqSigs - number of signatures required, null for nonstandard scripts.
+	 * @param type - script type, eg. "pubkeyhash".
+	 * @param addresses - addresses paid to, null for nonstandard scripts.
+	 */
+	public ScriptPubKey(String asm, String hex, Integer reqSigs, String type, List<String> addresses) {
+		this.asm = asm;
+		this.hex = hex;
+		this.reqSigs = reqSigs;
+		this.type = type;
+		this.addresses = addresses;
+	}
+
+
+	@SuppressWarnings("unused") // Used by Jackson
+	private ScriptPubKey() {
+	}
+
 }
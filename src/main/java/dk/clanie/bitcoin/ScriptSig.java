@@ -28,4 +28,21 @@ public class ScriptSig extends BaseClass {
 	private String asm;
 	private String hex;
 
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param asm - script in assembler notation.
+	 * @param hex - hex encoded script.
+	 */
+	public ScriptSig(String asm, String hex) {
+		this.asm = asm;
+		this.hex = hex;
+	}
+
+
+	@SuppressWarnings("unused") // Used by Jackson
+	private ScriptSig() {
+	}
+
 }
@@ -19,6 +19,8 @@ package dk.clanie.bitcoin;
 
 import org.springframework.roo.addon.javabean.RooJavaBean;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonUnwrapped;
 
 import dk.clanie.core.BaseClass;
@@ -27,10 +29,50 @@ import dk.clanie.core.BaseClass;
 @RooJavaBean(settersByDefault = false)
 public class TransactionInput extends BaseClass {
 
+	/**
+	 * Hex encoded coinbase data. Only present in a block's coinbase
+	 * transaction, which has no txRef or scriptSig.
+	 */
+	@JsonInclude(Include.NON_NULL)
+	private String coinbase;
+
 	@JsonUnwrapped
 	private TransactionOutputRef txRef;
 	
+	@JsonInclude(Include.NON_NULL)
 	private ScriptSig scriptSig;
+
 	private Long sequence;
 
+
+	/**
+	 * Creates an input spending the given transaction output.
+	 * 
+	 * @param txRef - the transaction output spent.
+	 * @param scriptSig
+	 * @param sequence
+	 */
+	public TransactionInput(TransactionOutputRef txRef, ScriptSig scriptSig, Long sequence) {
+		this.txRef = txRef;
+		this.scriptSig = scriptSig;
+		this.sequence = sequence;
+	}
+
+
+	/**
+	 * Creates a coinbase input.
+	 * 
+	 * @param coinbase - hex encoded coinbase data.
+	 * @param sequence
+	 */
+	public TransactionInput(String coinbase, Long sequence) {
+		this.coinbase = coinbase;
+		this.sequence = sequence;
+	}
+
+
+	@SuppressWarnings("unused") // Used by Jackson
+	private TransactionInput() {
+	}
+
 }
@@ -31,4 +31,23 @@ public class TransactionOutput extends BaseClass {
 	private Integer n;
 	private ScriptPubKey scriptPubKey; 
 
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param value - amount in bitcoins.
+	 * @param n - output number.
+	 * @param scriptPubKey
+	 */
+	public TransactionOutput(BigDecimal value, Integer n, ScriptPubKey scriptPubKey) {
+		this.value = value;
+		this.n = n;
+		this.scriptPubKey = scriptPubKey;
+	}
+
+
+	@SuppressWarnings("unused") // Used by Jackson
+	private TransactionOutput() {
+	}
+
 }
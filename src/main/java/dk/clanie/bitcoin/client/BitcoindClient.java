@@ -1,6 +1,7 @@
 package dk.clanie.bitcoin.client;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Required;
@@ -12,6 +13,7 @@ import dk.clanie.bitcoin.client.request.AddNodeAction;
 import dk.clanie.bitcoin.client.request.TemplateRequest;
 import dk.clanie.bitcoin.client.response.BigDecimalResponse;
 import dk.clanie.bitcoin.client.response.BooleanResponse;
+import dk.clanie.bitcoin.client.response.ByteArrayResponse;
 import dk.clanie.bitcoin.client.response.CreateMultiSigResponse;
 import dk.clanie.bitcoin.client.response.DecodeRawTransactionResponse;
 import dk.clanie.bitcoin.client.response.GetAddedNodeInfoResponse;
@@ -31,9 +33,11 @@ import dk.clanie.bitcoin.client.response.ListAddressGroupingsResponse;
 import dk.clanie.bitcoin.client.response.ListLockUnspentResponse;
 import dk.clanie.bitcoin.client.response.ListReceivedByAccountResponse;
 import dk.clanie.bitcoin.client.response.ListReceivedByAddressResponse;
+import dk.clanie.bitcoin.client.response.ListSinceBlockResponse;
 import dk.clanie.bitcoin.client.response.ListTransactionsResponse;
 import dk.clanie.bitcoin.client.response.ListUnspentResponse;
 import dk.clanie.bitcoin.client.response.LongResponse;
+import dk.clanie.bitcoin.client.response.SignRawTransactionBytesResponse;
 import dk.clanie.bitcoin.client.response.SignRawTransactionResponse;
 import dk.clanie.bitcoin.client.response.StringArrayResponse;
 import dk.clanie.bitcoin.client.response.StringResponse;
@@ -317,6 +321,20 @@ public interface BitcoindClient {
 	 */
 	StringResponse getRawTransaction(String txId);
 
+	/**
+	 * Returns raw transaction for given transaction id as bytes.
+	 * <p>
+	 * The hex encoded transaction is decoded while the response is parsed,
+	 * without creating an intermediate String.
+	 * 
+	 * @param txId
+	 *            - transaction id
+	 * @return {@link ByteArrayResponse} with raw transaction.
+	 * 
+	 * @since bitcoind 0.7
+	 */
+	ByteArrayResponse getRawTransactionBytes(String txId);
+
 	/**
 	 * Returns raw transaction representation for given transaction id.
 	 * 
@@ -487,6 +505,16 @@ public interface BitcoindClient {
 	ListReceivedByAddressResponse listReceivedByAddress(Integer minConf,
 			Boolean includeEmpty);
 
+	/**
+	 * Gets all transactions in blocks since block <code>blockhash</code>, or
+	 * all transactions if omitted.
+	 * 
+	 * @param blockHash - optional (may be null)
+	 * @param targetConfirmations - optional (may be null)
+	 * @return {@link ListSinceBlockResponse}
+	 */
+	ListSinceBlockResponse listSinceBlock(String blockHash, Integer targetConfirmations);
+
 	/**
 	 * Returns up to <code>count</code> most recent transactions skipping the
 	 * first <code>from</code> transactions for account <code>account</code>.
@@ -602,6 +630,20 @@ public interface BitcoindClient {
 	 */
 	StringResponse sendRawTransaction(String hex);
 
+	/**
+	 * Submits raw transaction to local node and network.
+	 * <p>
+	 * The remaining bytes of <code>rawTransaction</code> are hex encoded
+	 * directly into the request body.
+	 * 
+	 * @param rawTransaction
+	 *            - transaction data (serialized)
+	 * @return {@link StringResponse} with transaction id, if successful.
+	 * 
+	 * @since bitcoind 0.7
+	 */
+	StringResponse sendRawTransaction(ByteBuffer rawTransaction);
+
 	/**
 	 * Sends bitcoins to the given address.
 	 * 
@@ -698,6 +740,33 @@ public interface BitcoindClient {
 			Object[] requiredTxOuts, String[] privKeys,
 			SignatureHashAlgorithm sigHash);
 
+	/**
+	 * Signs inputs for raw transaction.
+	 * <p>
+	 * Same as {@link #signRawTransaction(String, Object[], String[], SignatureHashAlgorithm)},
+	 * except that the transaction is passed and returned as bytes. The
+	 * remaining bytes of <code>rawTransaction</code> are hex encoded directly
+	 * into the request body, and the signed transaction is decoded while the
+	 * response is parsed.
+	 * <p>
+	 * Requires unlocked wallet.
+	 * 
+	 * @param rawTransaction
+	 *            - raw unsigned transaction.
+	 * @param requiredTxOuts
+	 *            - optional (may be null).
+	 * @param privKeys
+	 *            - optional (may be null).
+	 * @param sigHash
+	 *            - optional (may be null).
+	 * @return {@link SignRawTransactionBytesResponse}
+	 * 
+	 * @since bitcoind 0.7
+	 */
+	SignRawTransactionBytesResponse signRawTransaction(ByteBuffer rawTransaction,
+			Object[] requiredTxOuts, String[] privKeys,
+			SignatureHashAlgorithm sigHash);
+
 	/**
 	 * Stop bitcoin server.
 	 *
@@ -0,0 +1,299 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+
+import java.net.URI;
+import java.util.List;
+
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import dk.clanie.bitcoin.AddressValidator;
+import dk.clanie.bitcoin.client.monitoring.PhaseTimingConnectionManager;
+import dk.clanie.bitcoin.client.monitoring.PhaseTimingHttpClient;
+import dk.clanie.bitcoin.client.monitoring.RpcCallInterceptor;
+import dk.clanie.bitcoin.client.monitoring.RpcCallListener;
+import dk.clanie.bitcoin.transaction.RawTransactionBuilder;
+import dk.clanie.bitcoin.transaction.RawTransactionDecoder;
+
+/**
+ * Builds a BitcoindClient without a Spring application context.
+ * <p>
+ * For command line tools and batch jobs, where starting a context costs
+ * more than the work done. Example:
+ * 
+ * <pre>
+ * BitcoindClient client = new BitcoindClientBuilder()
+ * 		.url("http://localhost:18332")
+ * 		.credentials("bitcoinrpc", "letmepass")
+ * 		.build();
+ * </pre>
+ * 
+ * By default calls are sent over the same pooled HttpClient transport as
+ * {@link BitcoindClientDefaultConfig} sets up, and prioritized by an
+ * {@link RpcScheduler} when all connections are busy. Unlike the default
+ * configuration no call listeners are registered, so calls aren't measured
+ * and no MBeans are registered unless listeners are added.
+ * 
+ * @author Claus Nielsen
+ */
+public class BitcoindClientBuilder {
+
+	private static final int DEFAULT_MAX_CONNECTIONS = 4;
+
+	private String url;
+	private String user;
+	private String password;
+	private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+	private ClientHttpRequestFactory transport;
+	private List<ClientHttpRequestInterceptor> interceptors = newArrayList();
+	private List<RpcCallListener> callListeners = newArrayList();
+	private RawTransactionBuilder rawTransactionBuilder;
+	private RawTransactionDecoder rawTransactionDecoder;
+	private AddressValidator addressValidator;
+	private ValidateAddressCache validateAddressCache;
+
+
+	/**
+	 * Sets url for calling bitcoind, eg. http://localhost:18332.
+	 * <p>
+	 * Required.
+	 * 
+	 * @param url
+	 * @return this builder.
+	 */
+	public BitcoindClientBuilder url(String url) {
+		this.url = url;
+		return this;
+	}
+
+
+	/**
+	 * Sets the rpcuser and rpcpassword bitcoind is configured with.
+	 * <p>
+	 * Only used by the default transport. A transport set with
+	 * {@link #transport(ClientHttpRequestFactory)} must authenticate itself.
+	 * 
+	 * @param user
+	 * @param password
+	 * @return this builder.
+	 */
+	public BitcoindClientBuilder credentials(String user, String password) {
+		this.user = user;
+		this.password = password;
+		return this;
+	}
+
+
+	/**
+	 * Sets max number of concurrent calls to bitcoind.
+	 * <p>
+	 * Optional, default 4. Should not exceed bitcoind's rpcthreads setting.
+	 * 
+	 * @param maxConnections
+	 * @return this builder.
+	 */
+	public BitcoindClientBuilder maxConnections(int maxConnections) {
+		if (maxConnections < 1) throw new IllegalArgumentException("maxConnections must be at least 1.");
+		this.maxConnections = maxConnections;
+		return this;
+	}
+
+
+	/**
+	 * Sets the transport calls are sent with, instead of the default pooled
+	 * HttpClient.
+	 * 
+	 * @param transport
+	 * @return this builder.
+	 */
+	public BitcoindClientBuilder transport(ClientHttpRequestFactory transport) {
+		this.transport = transport;
+		return this;
+	}
+
+
+	/**
+	 * Adds an interceptor to the calls sent to bitcoind.
+	 * <p>
+	 * Interceptors are applied in the order added, before the client's own
+	 * interceptor measuring request and response sizes.
+	 * 
+	 * @param interceptor
+	 * @return this builder.
+	 */
+	public BitcoindClientBuilder interceptor(ClientHttpRequestInterceptor interceptor) {
+		interceptors.add(interceptor);
+		return this;
+	}
+
+
+	/**
+	 * Adds a listener notified when a call to bitcoind completes.
+	 * 
+	 * @param callListener
+	 * @return this builder.
+	 */
+	public BitcoindClientBuilder callListener(RpcCallListener callListener) {
+		callListeners.add(callListener);
+		return this;
+	}
+
+
+	/**
+	 * Sets builder used for creating raw transactions locally.
+	 * 
+	 * @param rawTransactionBuilder
+	 * @return this builder.
+	 * @see BitcoindClientImpl#setRawTransactionBuilder(RawTransactionBuilder)
+	 */
+	public BitcoindClientBuilder rawTransactionBuilder(RawTransactionBuilder rawTransactionBuilder) {
+		this.rawTransactionBuilder = rawTransactionBuilder;
+		return this;
+	}
+
+
+	/**
+	 * Sets decoder used for decoding raw transactions locally.
+	 * 
+	 * @param rawTransactionDecoder
+	 * @return this builder.
+	 * @see BitcoindClientImpl#setRawTransactionDecoder(RawTransactionDecoder)
+	 */
+	public BitcoindClientBuilder rawTransactionDecoder(RawTransactionDecoder rawTransactionDecoder) {
+		this.rawTransactionDecoder = rawTransactionDecoder;
+		return this;
+	}
+
+
+	/**
+	 * Sets validator used for rejecting invalid addresses without calling
+	 * bitcoind.
+	 * 
+	 * @param addressValidator
+	 * @return this builder.
+	 * @see BitcoindClientImpl#setAddressValidator(AddressValidator)
+	 */
+	public BitcoindClientBuilder addressValidator(AddressValidator addressValidator) {
+		this.addressValidator = addressValidator;
+		return this;
+	}
+
+
+	/**
+	 * Sets cache used for validateaddress results.
+	 * 
+	 * @param validateAddressCache
+	 * @return this builder.
+	 * @see BitcoindClientImpl#setValidateAddressCache(ValidateAddressCache)
+	 */
+	public BitcoindClientBuilder validateAddressCache(ValidateAddressCache validateAddressCache) {
+		this.validateAddressCache = validateAddressCache;
+		return this;
+	}
+
+
+	/**
+	 * Builds the client.
+	 * 
+	 * @return BitcoindClient.
+	 * @throws IllegalStateException if no url is set, or if credentials are
+	 *             set together with a transport.
+	 */
+	public BitcoindClient build() {
+		if (url == null) throw new IllegalStateException("url must be set.");
+		ClientHttpRequestFactory requestFactory = transport;
+		if (requestFactory == null) {
+			URI uri = URI.create(url);
+			requestFactory = defaultTransport(uri.getHost(), uri.getPort(), user, password, maxConnections);
+		} else if (user != null) {
+			throw new IllegalStateException("Credentials are only used by the default transport.");
+		}
+		List<ClientHttpRequestInterceptor> allInterceptors = newArrayList();
+		allInterceptors.addAll(interceptors);
+		List<RpcCallListener> listeners = newArrayList();
+		listeners.addAll(callListeners);
+		BitcoindClientImpl client = new BitcoindClientImpl();
+		client.setUrl(url);
+		client.setRestTemplate(restTemplate(requestFactory, allInterceptors));
+		client.setScheduler(new RpcScheduler(maxConnections));
+		if (!listeners.isEmpty()) client.setCallListeners(listeners);
+		client.setRawTransactionBuilder(rawTransactionBuilder);
+		client.setRawTransactionDecoder(rawTransactionDecoder);
+		client.setAddressValidator(addressValidator);
+		client.setValidateAddressCache(validateAddressCache);
+		return client;
+	}
+
+
+	/**
+	 * Creates RestTemplate sending calls with the given transport and
+	 * interceptors, followed by the {@link RpcCallInterceptor}.
+	 * 
+	 * @param transport
+	 * @param interceptors - modified.
+	 * @return RestTemplate.
+	 */
+	static RestTemplate restTemplate(ClientHttpRequestFactory transport, List<ClientHttpRequestInterceptor> interceptors) {
+		interceptors.add(new RpcCallInterceptor());
+		RestTemplate restTemplate = new RestTemplate();
+		restTemplate.setRequestFactory(transport);
+		restTemplate.setErrorHandler(new BitcoindJsonRpcErrorHandler());
+		restTemplate.setInterceptors(interceptors);
+		return restTemplate;
+	}
+
+
+	/**
+	 * Creates the default transport, a pooled HttpClient timing the phases
+	 * of each call.
+	 * 
+	 * @param host
+	 * @param port
+	 * @param user - optional (may be null).
+	 * @param password
+	 * @param maxConnections
+	 * @return ClientHttpRequestFactory.
+	 */
+	static ClientHttpRequestFactory defaultTransport(String host, int port, String user, String password, int maxConnections) {
+		PoolingClientConnectionManager connectionManager = new PhaseTimingConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnections);
+		DefaultHttpClient httpClient = new PhaseTimingHttpClient(connectionManager);
+		if (user != null) {
+			CredentialsProvider credsProvider = new BasicCredentialsProvider();
+			credsProvider.setCredentials(
+					new AuthScope(host, port),
+					new UsernamePasswordCredentials(user, password));
+			httpClient.setCredentialsProvider(credsProvider);
+		}
+		return new HttpComponentsClientHttpRequestFactory(httpClient);
+	}
+
+
+}
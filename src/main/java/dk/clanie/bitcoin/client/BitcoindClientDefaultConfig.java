@@ -17,22 +17,23 @@
  */
 package dk.clanie.bitcoin.client;
 
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.HttpClient;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.DefaultHttpClient;
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
-import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.web.client.RestTemplate;
 
+import dk.clanie.bitcoin.client.monitoring.JfrCallListener;
+import dk.clanie.bitcoin.client.monitoring.RpcMetricsRegistry;
+import dk.clanie.bitcoin.client.monitoring.SlowCallLog;
+
 /**
  * Default BitcoindClient configuration.
  * <p>
@@ -42,6 +43,7 @@ import org.springframework.web.client.RestTemplate;
  * <li>bitcoind.client.port</li>
  * <li>bitcoind.client.user</li>
  * <li>bitcoind.client.passwor</li>
+ * <li>bitcoind.client.maxConnections</li>
  * </bl>
  * 
  * @author Claus Nielsen
@@ -62,47 +64,56 @@ public class BitcoindClientDefaultConfig {
 	@Value("${bitcoind.client.password}")
 	private String password;
 
+	@Value("${bitcoind.client.maxConnections}")
+	private int maxConnections;
+
 
 	@Bean
 	public BitcoindClient bitcoindClient() {
 		BitcoindClient bitcoindClient = new BitcoindClientImpl();
-		bitcoindClient.setUrl("http://" + host + ":" + port);
+		bitcoindClient.setUrl(url());
 		return bitcoindClient;
 	}
 
 
+	@Bean
+	public RpcScheduler rpcScheduler() {
+		return new RpcScheduler(maxConnections);
+	}
+
+
 	@Bean
 	public RestTemplate restTemplate() {
-		RestTemplate restTemplate = new RestTemplate();
-		restTemplate.setRequestFactory(requestFactory());
-		restTemplate.setErrorHandler(errorHandler());
-		return restTemplate;
+		ClientHttpRequestFactory transport = BitcoindClientBuilder.defaultTransport(host, Integer.valueOf(port), user, password, maxConnections);
+		List<ClientHttpRequestInterceptor> interceptors = newArrayList();
+		return BitcoindClientBuilder.restTemplate(transport, interceptors);
 	}
 
 
-	private ResponseErrorHandler errorHandler() {
-		return new BitcoindJsonRpcErrorHandler();
+	@Bean(initMethod = "registerMBean", destroyMethod = "unregisterMBean")
+	public RpcMetricsRegistry rpcMetricsRegistry() {
+		RpcMetricsRegistry rpcMetricsRegistry = new RpcMetricsRegistry();
+		rpcMetricsRegistry.setMBeanName(url());
+		return rpcMetricsRegistry;
 	}
 
 
-	private ClientHttpRequestFactory requestFactory() {
-		return new HttpComponentsClientHttpRequestFactory(httpClient());
+	@Bean
+	public JfrCallListener jfrCallListener() {
+		return new JfrCallListener();
 	}
 
 
-	private HttpClient httpClient() {
-		DefaultHttpClient httpClient = new DefaultHttpClient();
-		httpClient.setCredentialsProvider(credentialsProvicer());
-		return httpClient;
+	@Bean(initMethod = "registerMBean", destroyMethod = "unregisterMBean")
+	public SlowCallLog slowCallLog() {
+		SlowCallLog slowCallLog = new SlowCallLog(20, 100);
+		slowCallLog.setMBeanName(url());
+		return slowCallLog;
 	}
 
 
-	private CredentialsProvider credentialsProvicer() {
-		CredentialsProvider credsProvider = new BasicCredentialsProvider();
-		credsProvider.setCredentials(
-				new AuthScope(host, Integer.valueOf(port)),
-				new UsernamePasswordCredentials(user, password));
-		return credsProvider;
+	private String url() {
+		return "http://" + host + ":" + port;
 	}
 
 
@@ -17,13 +17,15 @@
  */
 package dk.clanie.bitcoin.client;
 
+import static dk.clanie.bitcoin.client.response.BitcoindJsonRpcResponse.withResult;
 import static dk.clanie.collections.CollectionFactory.newArrayList;
-import static dk.clanie.collections.CollectionFactory.newHashMap;
 import static dk.clanie.util.Util.firstNotNull;
 import static java.lang.Boolean.FALSE;
 import static java.util.Collections.EMPTY_LIST;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -33,13 +35,19 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import dk.clanie.bitcoin.AddressAndAmount;
+import dk.clanie.bitcoin.AddressValidator;
 import dk.clanie.bitcoin.SignatureHashAlgorithm;
 import dk.clanie.bitcoin.TransactionOutputRef;
+import dk.clanie.bitcoin.client.monitoring.RpcCall;
+import dk.clanie.bitcoin.client.monitoring.RpcCallListener;
+import dk.clanie.bitcoin.client.monitoring.RpcPhase;
 import dk.clanie.bitcoin.client.request.AddNodeAction;
 import dk.clanie.bitcoin.client.request.BitcoindJsonRpcRequest;
+import dk.clanie.bitcoin.client.request.HexData;
 import dk.clanie.bitcoin.client.request.TemplateRequest;
 import dk.clanie.bitcoin.client.response.BigDecimalResponse;
 import dk.clanie.bitcoin.client.response.BooleanResponse;
+import dk.clanie.bitcoin.client.response.ByteArrayResponse;
 import dk.clanie.bitcoin.client.response.CreateMultiSigResponse;
 import dk.clanie.bitcoin.client.response.DecodeRawTransactionResponse;
 import dk.clanie.bitcoin.client.response.GetAddedNodeInfoResponse;
@@ -63,11 +71,15 @@ import dk.clanie.bitcoin.client.response.ListSinceBlockResponse;
 import dk.clanie.bitcoin.client.response.ListTransactionsResponse;
 import dk.clanie.bitcoin.client.response.ListUnspentResponse;
 import dk.clanie.bitcoin.client.response.LongResponse;
+import dk.clanie.bitcoin.client.response.SignRawTransactionBytesResponse;
 import dk.clanie.bitcoin.client.response.SignRawTransactionResponse;
 import dk.clanie.bitcoin.client.response.StringArrayResponse;
 import dk.clanie.bitcoin.client.response.StringResponse;
 import dk.clanie.bitcoin.client.response.ValidateAddressResponse;
+import dk.clanie.bitcoin.client.response.ValidateAddressResult;
 import dk.clanie.bitcoin.client.response.VoidResponse;
+import dk.clanie.bitcoin.transaction.RawTransactionBuilder;
+import dk.clanie.bitcoin.transaction.RawTransactionDecoder;
 
 /**
  * Implements bitcoind client providing java style functions for calling bitcoind rest-rpc methods.
@@ -77,6 +89,12 @@ import dk.clanie.bitcoin.client.response.VoidResponse;
 @Service
 public class BitcoindClientImpl implements BitcoindClient {
 
+	/**
+	 * What bitcoind returns from validateaddress for an invalid address.
+	 */
+	private static final ValidateAddressResult INVALID_ADDRESS =
+			new ValidateAddressResult(false, null, null, null, null, null, null);
+
 
 	// [Configuration]
 	private String url;
@@ -86,6 +104,24 @@ public class BitcoindClientImpl implements BitcoindClient {
 	@Autowired
 	private RestTemplate restTemplate;
 
+	@Autowired(required = false)
+	private RpcScheduler scheduler;
+
+	@Autowired(required = false)
+	private RawTransactionBuilder rawTransactionBuilder;
+
+	@Autowired(required = false)
+	private RawTransactionDecoder rawTransactionDecoder;
+
+	@Autowired(required = false)
+	private AddressValidator addressValidator;
+
+	@Autowired(required = false)
+	private ValidateAddressCache validateAddressCache;
+
+	@Autowired(required = false)
+	private List<RpcCallListener> callListeners;
+
 
 	/**
 	 * Default constructor.
@@ -106,6 +142,98 @@ public class BitcoindClientImpl implements BitcoindClient {
 	}
 
 
+	/**
+	 * Sets RestTemplate used for calling bitcoind.
+	 * <p>
+	 * Autowired when the client is created in a Spring context.
+	 * 
+	 * @param restTemplate
+	 */
+	public void setRestTemplate(RestTemplate restTemplate) {
+		this.restTemplate = restTemplate;
+	}
+
+
+	/**
+	 * Sets scheduler used for prioritizing calls when all connections to
+	 * bitcoind are busy.
+	 * <p>
+	 * Optional. If no scheduler is set calls are sent as soon as they are made.
+	 * 
+	 * @param scheduler
+	 */
+	public void setScheduler(RpcScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+
+	/**
+	 * Sets listeners notified when a call to bitcoind completes, successfully
+	 * or not.
+	 * <p>
+	 * Optional. If no listeners are set calls aren't measured.
+	 * 
+	 * @param callListeners
+	 */
+	public void setCallListeners(List<RpcCallListener> callListeners) {
+		this.callListeners = callListeners;
+	}
+
+
+	/**
+	 * Sets builder used for creating raw transactions locally.
+	 * <p>
+	 * Optional. If no builder is set
+	 * {@link #createRawTransaction(List, AddressAndAmount...)} calls
+	 * bitcoind.
+	 * 
+	 * @param rawTransactionBuilder
+	 */
+	public void setRawTransactionBuilder(RawTransactionBuilder rawTransactionBuilder) {
+		this.rawTransactionBuilder = rawTransactionBuilder;
+	}
+
+
+	/**
+	 * Sets decoder used for decoding raw transactions locally.
+	 * <p>
+	 * Optional. If no decoder is set {@link #decodeRawTransaction(String)}
+	 * calls bitcoind.
+	 * 
+	 * @param rawTransactionDecoder
+	 */
+	public void setRawTransactionDecoder(RawTransactionDecoder rawTransactionDecoder) {
+		this.rawTransactionDecoder = rawTransactionDecoder;
+	}
+
+
+	/**
+	 * Sets validator used by {@link #validateAddress(String)} for rejecting
+	 * invalid addresses without calling bitcoind.
+	 * <p>
+	 * Optional.
+	 * 
+	 * @param addressValidator
+	 */
+	public void setAddressValidator(AddressValidator addressValidator) {
+		this.addressValidator = addressValidator;
+	}
+
+
+	/**
+	 * Sets cache used by {@link #validateAddress(String)}.
+	 * <p>
+	 * Optional. If no cache is set every call to
+	 * {@link #validateAddress(String)} not rejected by the address validator
+	 * calls bitcoind.
+	 * 
+	 * @param validateAddressCache
+	 */
+	public void setValidateAddressCache(ValidateAddressCache validateAddressCache) {
+		this.validateAddressCache = validateAddressCache;
+	}
+
+
 
 	/**
 	 * Add a nrequired-to-sign multisignature address to the wallet.
@@ -124,7 +252,9 @@ public class BitcoindClientImpl implements BitcoindClient {
 		params.add(nrequired);
 		params.add(keys);
 		if (account != null) params.add(account);
-		return jsonRpc("addmultisigaddress", params, StringResponse.class);
+		StringResponse response = jsonRpc("addmultisigaddress", params, StringResponse.class);
+		if (validateAddressCache != null) validateAddressCache.invalidate(response.getResult());
+		return response;
 	}
 
 
@@ -196,6 +326,12 @@ public class BitcoindClientImpl implements BitcoindClient {
 	 * sending to given address(es).<br>
 	 * Note that the transaction's inputs are not signed, and it is not stored
 	 * in the wallet or transmitted to the network.<br>
+	 * <p>
+	 * Amounts for the same address are added up. Outputs are in the order each
+	 * address first appears.
+	 * <p>
+	 * If a {@link RawTransactionBuilder} is set the transaction is built
+	 * locally, without calling bitcoind.
 	 * 
 	 * @param txOutputs
 	 *            - transaction outputs to spend
@@ -206,7 +342,11 @@ public class BitcoindClientImpl implements BitcoindClient {
 	 */
 	@Override
 	public StringResponse createRawTransaction(List<TransactionOutputRef> txOutputs, AddressAndAmount ... addressAndAmount) {
-		Map<String, BigDecimal> recipients = newHashMap();
+		if (rawTransactionBuilder != null) {
+			return withResult(StringResponse.class, rawTransactionBuilder.buildHex(txOutputs, addressAndAmount));
+		}
+		// Linked, so bitcoind gets the outputs in the same order as the builder produces.
+		Map<String, BigDecimal> recipients = new LinkedHashMap<String, BigDecimal>();
 		for (AddressAndAmount aaa : addressAndAmount) {
 			String address = aaa.getAddress();
 			BigDecimal amount = aaa.getAmount();
@@ -224,12 +364,18 @@ public class BitcoindClientImpl implements BitcoindClient {
 
 	/**
 	 * Produces a human-readable JSON object for a raw transaction
+	 * <p>
+	 * If a {@link RawTransactionDecoder} is set the transaction is decoded
+	 * locally, without calling bitcoind.
 	 * 
 	 * @param rawTransaction
 	 * @return {@link DecodeRawTransactionResponse}
 	 */
 	@Override
 	public DecodeRawTransactionResponse decodeRawTransaction(String rawTransaction) {
+		if (rawTransactionDecoder != null) {
+			return withResult(DecodeRawTransactionResponse.class, rawTransactionDecoder.decode(rawTransaction));
+		}
 		List<Object> params = newArrayList();
 		params.add(rawTransaction);
 		return jsonRpc("decoderawtransaction", params, DecodeRawTransactionResponse.class);
@@ -535,6 +681,26 @@ public class BitcoindClientImpl implements BitcoindClient {
 	}
 
 
+	/**
+	 * Returns raw transaction for given transaction id as bytes.
+	 * <p>
+	 * The hex encoded transaction is decoded while the response is parsed,
+	 * without creating an intermediate String.
+	 * 
+	 * @param txId
+	 *            - transaction id
+	 * @return {@link ByteArrayResponse} with raw transaction.
+	 * 
+	 * @since bitcoind 0.7
+	 */
+	@Override
+	public ByteArrayResponse getRawTransactionBytes(String txId) {
+		List<Object> params = newArrayList();
+		params.add(txId);
+		return jsonRpc("getrawtransaction", params, ByteArrayResponse.class);
+	}
+
+
 	/**
 	 * Returns raw transaction representation for given transaction id.
 	 * 
@@ -703,7 +869,9 @@ public class BitcoindClientImpl implements BitcoindClient {
 		params.add(key);
 		params.add(firstNotNull(label, ""));
 		params.add(firstNotNull(rescan, true));
-		return jsonRpc("importprivkey", params, VoidResponse.class);
+		VoidResponse response = jsonRpc("importprivkey", params, VoidResponse.class);
+		if (validateAddressCache != null) validateAddressCache.clear();
+		return response;
 	}
 
 
@@ -806,7 +974,8 @@ public class BitcoindClientImpl implements BitcoindClient {
 	 * @param targetConfirmations - optional (may be null)
 	 * @return {@link ListSinceBlockResponse}
 	 */
-	ListSinceBlockResponse listSinceBlock(String blockHash, Integer targetConfirmations) {
+	@Override
+	public ListSinceBlockResponse listSinceBlock(String blockHash, Integer targetConfirmations) {
 		List<Object> params = newArrayList();
 		if (blockHash != null || targetConfirmations != null) params.add(blockHash);
 		if (targetConfirmations != null) params.add(targetConfirmations);
@@ -943,7 +1112,10 @@ public class BitcoindClientImpl implements BitcoindClient {
 
 	/**
 	 * Sends to many recipients.
-	 * 
+	 * <p>
+	 * Recipients are passed to bitcoind in the order given, and amounts for an
+	 * address given more than once are added up.
+	 *
 	 * @param fromAccount
 	 * @param addressesAndAmounts
 	 *            - recipients and amounts
@@ -958,7 +1130,7 @@ public class BitcoindClientImpl implements BitcoindClient {
 	public StringResponse sendMany(String fromAccount, AddressAndAmount[] addressesAndAmounts, Integer minConf, String commment) {
 		List<Object> params = newArrayList();
 		params.add(fromAccount);
-		Map<String, BigDecimal> recipients = newHashMap();
+		Map<String, BigDecimal> recipients = new LinkedHashMap<String, BigDecimal>();
 		for (AddressAndAmount aaa : addressesAndAmounts) {
 			String address = aaa.getAddress();
 			BigDecimal amount = aaa.getAmount();
@@ -991,6 +1163,26 @@ public class BitcoindClientImpl implements BitcoindClient {
 	}
 
 
+	/**
+	 * Submits raw transaction to local node and network.
+	 * <p>
+	 * The remaining bytes of <code>rawTransaction</code> are hex encoded
+	 * directly into the request body.
+	 * 
+	 * @param rawTransaction
+	 *            - transaction data (serialized)
+	 * @return {@link StringResponse} with transaction id, if successful.
+	 * 
+	 * @since bitcoind 0.7
+	 */
+	@Override
+	public StringResponse sendRawTransaction(ByteBuffer rawTransaction) {
+		List<Object> params = newArrayList();
+		params.add(new HexData(rawTransaction));
+		return jsonRpc("sendrawtransaction", params, StringResponse.class);
+	}
+
+
 	/**
 	 * Sends bitcoins to the given address.
 	 * 
@@ -1031,7 +1223,9 @@ public class BitcoindClientImpl implements BitcoindClient {
 		List<Object> params = newArrayList();
 		params.add(address);
 		params.add(account);
-		return jsonRpc("setaccount", params, VoidResponse.class);
+		VoidResponse response = jsonRpc("setaccount", params, VoidResponse.class);
+		if (validateAddressCache != null) validateAddressCache.invalidate(address);
+		return response;
 	}
 
 
@@ -1132,6 +1326,40 @@ public class BitcoindClientImpl implements BitcoindClient {
 	}
 
 
+	/**
+	 * Signs inputs for raw transaction.
+	 * <p>
+	 * Same as {@link #signRawTransaction(String, Object[], String[], SignatureHashAlgorithm)},
+	 * except that the transaction is passed and returned as bytes. The
+	 * remaining bytes of <code>rawTransaction</code> are hex encoded directly
+	 * into the request body, and the signed transaction is decoded while the
+	 * response is parsed.
+	 * <p>
+	 * Requires unlocked wallet.
+	 * 
+	 * @param rawTransaction
+	 *            - raw unsigned transaction.
+	 * @param requiredTxOuts
+	 *            - optional (may be null).
+	 * @param privKeys
+	 *            - optional (may be null).
+	 * @param sigHash
+	 *            - optional (may be null).
+	 * @return {@link SignRawTransactionBytesResponse}
+	 * 
+	 * @since bitcoind 0.7
+	 */
+	@Override
+	public SignRawTransactionBytesResponse signRawTransaction(ByteBuffer rawTransaction, Object[] requiredTxOuts, String[] privKeys, SignatureHashAlgorithm sigHash) {
+		List<Object> params = newArrayList();
+		params.add(new HexData(rawTransaction));
+		params.add(requiredTxOuts);
+		params.add(privKeys);
+		params.add(sigHash == null ? null : sigHash.toString());
+		return jsonRpc("signrawtransaction", params, SignRawTransactionBytesResponse.class);
+	}
+
+
 	/**
 	 * Stop bitcoin server.
 	 *
@@ -1154,9 +1382,20 @@ public class BitcoindClientImpl implements BitcoindClient {
 	 */
 	@Override
 	public ValidateAddressResponse validateAddress(String address) {
+		if (addressValidator != null && !addressValidator.isValid(address)) {
+			return withResult(ValidateAddressResponse.class, INVALID_ADDRESS);
+		}
+		long generation = 0;
+		if (validateAddressCache != null) {
+			ValidateAddressResult cached = validateAddressCache.get(address);
+			if (cached != null) return withResult(ValidateAddressResponse.class, cached);
+			generation = validateAddressCache.generation();
+		}
 		List<Object> params = newArrayList();
 		params.add(address);
-		return jsonRpc("validateaddress", params, ValidateAddressResponse.class);
+		ValidateAddressResponse response = jsonRpc("validateaddress", params, ValidateAddressResponse.class);
+		if (validateAddressCache != null) validateAddressCache.put(address, response.getResult(), generation);
+		return response;
 	}
 
 
@@ -1243,7 +1482,38 @@ public class BitcoindClientImpl implements BitcoindClient {
 	 */
 	private <T> T jsonRpc(String method, List<?> params, Class<T> responseType) {
 		BitcoindJsonRpcRequest request = new BitcoindJsonRpcRequest(method, params);
-		return restTemplate.postForObject(url, request, responseType);
+		List<RpcCallListener> listeners = callListeners;
+		if (listeners == null || listeners.isEmpty()) return send(method, request, responseType);
+		RpcCall call = RpcCall.begin(method, params);
+		RuntimeException failure = null;
+		try {
+			for (RpcCallListener listener : listeners) {
+				listener.callStarted(call);
+			}
+			return send(method, request, responseType);
+		} catch (RuntimeException e) {
+			failure = e;
+			throw e;
+		} finally {
+			call.end(failure);
+			for (RpcCallListener listener : listeners) {
+				listener.callCompleted(call);
+			}
+		}
+	}
+
+
+	private <T> T send(String method, BitcoindJsonRpcRequest request, Class<T> responseType) {
+		if (scheduler == null) return restTemplate.postForObject(url, request, responseType);
+		RpcCall call = RpcCall.current();
+		long start = System.nanoTime();
+		scheduler.acquire(method);
+		if (call != null) call.addPhaseNanos(RpcPhase.SCHEDULER_WAIT, System.nanoTime() - start);
+		try {
+			return restTemplate.postForObject(url, request, responseType);
+		} finally {
+			scheduler.release();
+		}
 	}
 
 
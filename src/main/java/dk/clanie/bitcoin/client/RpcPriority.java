@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client;
+
+/**
+ * Priority class of a call to bitcoind.
+ * <p>
+ * When all connections to bitcoind are busy the {@link RpcScheduler}
+ * dispatches waiting calls in order of priority, highest first.
+ *
+ * @author Claus Nielsen
+ */
+public enum RpcPriority {
+
+	/**
+	 * Time critical calls, such as submitting transactions or unlocking the
+	 * wallet.
+	 */
+	HIGH,
+
+	/**
+	 * Ordinary calls.
+	 */
+	NORMAL,
+
+	/**
+	 * Bulk work, such as listing or scanning wallet contents and the block
+	 * chain.
+	 */
+	BULK;
+
+
+	/**
+	 * Gets the default priority of the given bitcoind method.
+	 *
+	 * @param method - bitcoind method name, eg. "sendrawtransaction".
+	 * @return {@link RpcPriority}
+	 */
+	public static RpcPriority defaultFor(String method) {
+		switch (method) {
+		case "sendrawtransaction":
+		case "sendtoaddress":
+		case "sendfrom":
+		case "sendmany":
+		case "signrawtransaction":
+		case "walletpassphrase":
+		case "walletlock":
+			return HIGH;
+		case "getblock":
+		case "getblocktemplate":
+		case "getrawtransaction":
+		case "gettxoutsetinfo":
+		case "importprivkey":
+		case "keypoolrefill":
+		case "listaccounts":
+		case "listaddressgroupings":
+		case "listreceivedbyaccount":
+		case "listreceivedbyaddress":
+		case "listsinceblock":
+		case "listtransactions":
+		case "listunspent":
+			return BULK;
+		default:
+			return NORMAL;
+		}
+	}
+
+
+}
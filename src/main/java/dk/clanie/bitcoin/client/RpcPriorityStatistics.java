@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client;
+
+import org.springframework.roo.addon.javabean.RooJavaBean;
+
+import dk.clanie.core.BaseClass;
+
+/**
+ * Snapshot of {@link RpcScheduler} queue and wait-time figures for one
+ * {@link RpcPriority}.
+ *
+ * @author Claus Nielsen
+ */
+@SuppressWarnings("serial")
+@RooJavaBean(settersByDefault = false)
+public class RpcPriorityStatistics extends BaseClass {
+
+	private RpcPriority priority;
+
+	/**
+	 * Number of calls currently waiting for a connection.
+	 */
+	private int queueDepth;
+
+	/**
+	 * Number of calls dispatched since the scheduler was created.
+	 */
+	private long dispatched;
+
+	/**
+	 * Number of calls dispatched ahead of higher priority calls because they
+	 * had waited longer than the aging threshold.
+	 */
+	private long promoted;
+
+	private long totalWaitNanos;
+	private long maxWaitNanos;
+
+
+	/**
+	 * Full constructor.
+	 */
+	public RpcPriorityStatistics(RpcPriority priority, int queueDepth, long dispatched,
+			long promoted, long totalWaitNanos, long maxWaitNanos) {
+		this.priority = priority;
+		this.queueDepth = queueDepth;
+		this.dispatched = dispatched;
+		this.promoted = promoted;
+		this.totalWaitNanos = totalWaitNanos;
+		this.maxWaitNanos = maxWaitNanos;
+	}
+
+
+	/**
+	 * Gets the average time dispatched calls have waited for a connection.
+	 *
+	 * @return average wait in nanoseconds, 0 if nothing has been dispatched.
+	 */
+	public long getAverageWaitNanos() {
+		return dispatched == 0 ? 0 : totalWaitNanos / dispatched;
+	}
+
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import dk.clanie.bitcoin.exception.BitcoinException;
+
+/**
+ * Limits the number of concurrent calls to bitcoind and dispatches waiting
+ * calls in order of {@link RpcPriority}.
+ * <p>
+ * Each call must obtain one of <code>maxConcurrentCalls</code> permits before
+ * it is sent, and return it when the response has been received. When no
+ * permit is available the call is queued with the priority of its method (see
+ * {@link RpcPriority#defaultFor(String)} and
+ * {@link #setMethodPriority(String, RpcPriority)}), or with the priority given
+ * with {@link #callWithPriority(RpcPriority, Callable)}.
+ * <p>
+ * To prevent starvation a waiting call which has been queued for longer than
+ * the aging threshold is dispatched ahead of higher priority calls.
+ * <p>
+ * <code>maxConcurrentCalls</code> should match the size of the connection pool
+ * used by the RestTemplate, so that calls wait here rather than for a
+ * connection.
+ *
+ * @author Claus Nielsen
+ */
+public class RpcScheduler {
+
+	public static final long DEFAULT_AGING_THRESHOLD_MILLIS = 2000;
+
+	private static final RpcPriority[] PRIORITIES = RpcPriority.values();
+
+	private final int maxConcurrentCalls;
+	private volatile long agingThresholdNanos = MILLISECONDS.toNanos(DEFAULT_AGING_THRESHOLD_MILLIS);
+	private final Map<String, RpcPriority> methodPriorities = new ConcurrentHashMap<String, RpcPriority>();
+	private final ThreadLocal<RpcPriority> priorityOverride = new ThreadLocal<RpcPriority>();
+
+	// Guarded by lock
+	private final ReentrantLock lock = new ReentrantLock();
+	private final ArrayDeque<Waiter>[] queues;
+	private final long[] dispatched = new long[PRIORITIES.length];
+	private final long[] promoted = new long[PRIORITIES.length];
+	private final long[] totalWaitNanos = new long[PRIORITIES.length];
+	private final long[] maxWaitNanos = new long[PRIORITIES.length];
+	private int activeCalls = 0;
+
+
+	/**
+	 * Creates a scheduler allowing the given number of concurrent calls.
+	 *
+	 * @param maxConcurrentCalls
+	 */
+	@SuppressWarnings("unchecked")
+	public RpcScheduler(int maxConcurrentCalls) {
+		if (maxConcurrentCalls < 1) throw new IllegalArgumentException("maxConcurrentCalls must be at least 1.");
+		this.maxConcurrentCalls = maxConcurrentCalls;
+		queues = new ArrayDeque[PRIORITIES.length];
+		for (int i = 0; i < queues.length; i++) {
+			queues[i] = new ArrayDeque<Waiter>();
+		}
+	}
+
+
+	/**
+	 * Sets how long a call may wait before it is dispatched ahead of higher
+	 * priority calls.
+	 *
+	 * @param agingThresholdMillis
+	 */
+	public void setAgingThresholdMillis(long agingThresholdMillis) {
+		this.agingThresholdNanos = MILLISECONDS.toNanos(agingThresholdMillis);
+	}
+
+
+	/**
+	 * Overrides the default priority of the given bitcoind method.
+	 *
+	 * @param method - bitcoind method name, eg. "listunspent".
+	 * @param priority
+	 */
+	public void setMethodPriority(String method, RpcPriority priority) {
+		methodPriorities.put(method, priority);
+	}
+
+
+	/**
+	 * Gets the priority calls to the given bitcoind method are scheduled with
+	 * on the current thread.
+	 *
+	 * @param method - bitcoind method name.
+	 * @return {@link RpcPriority}
+	 */
+	public RpcPriority priorityOf(String method) {
+		RpcPriority priority = priorityOverride.get();
+		if (priority == null) priority = methodPriorities.get(method);
+		if (priority == null) priority = RpcPriority.defaultFor(method);
+		return priority;
+	}
+
+
+	/**
+	 * Runs the given task scheduling all bitcoind calls it makes on the
+	 * current thread with the given priority.
+	 *
+	 * @param priority
+	 * @param task - typically one or more calls to a {@link BitcoindClient}.
+	 * @return the task's result.
+	 */
+	public <T> T callWithPriority(RpcPriority priority, Callable<T> task) {
+		RpcPriority previous = priorityOverride.get();
+		priorityOverride.set(priority);
+		try {
+			return task.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new BitcoinException(e);
+		} finally {
+			if (previous == null) priorityOverride.remove();
+			else priorityOverride.set(previous);
+		}
+	}
+
+
+	/**
+	 * Waits for a permit to call the given bitcoind method.
+	 * <p>
+	 * Every successful call to this method must be followed by a call to
+	 * {@link #release()}.
+	 *
+	 * @param method - bitcoind method name.
+	 */
+	public void acquire(String method) {
+		int priority = priorityOf(method).ordinal();
+		lock.lock();
+		try {
+			if (activeCalls < maxConcurrentCalls) {
+				// Nothing is queued when a permit is free.
+				activeCalls++;
+				dispatched[priority]++;
+				return;
+			}
+			Waiter waiter = new Waiter(priority, lock.newCondition());
+			queues[priority].addLast(waiter);
+			while (!waiter.granted) {
+				waiter.condition.awaitUninterruptibly();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Returns a permit obtained with {@link #acquire(String)}, dispatching the
+	 * next waiting call, if any.
+	 */
+	public void release() {
+		lock.lock();
+		try {
+			activeCalls--;
+			long now = System.nanoTime();
+			while (activeCalls < maxConcurrentCalls) {
+				Waiter next = pollNext(now);
+				if (next == null) break;
+				long waited = now - next.enqueuedNanos;
+				dispatched[next.priority]++;
+				totalWaitNanos[next.priority] += waited;
+				if (waited > maxWaitNanos[next.priority]) maxWaitNanos[next.priority] = waited;
+				activeCalls++;
+				next.granted = true;
+				next.condition.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Gets queue and wait-time figures for the given priority.
+	 *
+	 * @param priority
+	 * @return {@link RpcPriorityStatistics}
+	 */
+	public RpcPriorityStatistics getStatistics(RpcPriority priority) {
+		int p = priority.ordinal();
+		lock.lock();
+		try {
+			return new RpcPriorityStatistics(priority, queues[p].size(), dispatched[p],
+					promoted[p], totalWaitNanos[p], maxWaitNanos[p]);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Gets the number of calls currently holding a permit.
+	 *
+	 * @return number of calls in progress.
+	 */
+	public int getActiveCalls() {
+		lock.lock();
+		try {
+			return activeCalls;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Removes the next call to dispatch from the queues.
+	 * <p>
+	 * That is the call which has waited longest among those that have waited
+	 * longer than the aging threshold, or else the first call of the highest
+	 * priority.
+	 *
+	 * @param now - current System.nanoTime().
+	 * @return next Waiter, or null if no calls are waiting.
+	 */
+	private Waiter pollNext(long now) {
+		int oldestOverdue = -1;
+		for (int p = 1; p < queues.length; p++) {
+			Waiter head = queues[p].peekFirst();
+			if (head != null && now - head.enqueuedNanos >= agingThresholdNanos
+					&& (oldestOverdue == -1 || head.enqueuedNanos < queues[oldestOverdue].peekFirst().enqueuedNanos)) {
+				oldestOverdue = p;
+			}
+		}
+		if (oldestOverdue != -1) {
+			for (int p = 0; p < oldestOverdue; p++) {
+				if (!queues[p].isEmpty()) {
+					promoted[oldestOverdue]++;
+					break;
+				}
+			}
+			return queues[oldestOverdue].pollFirst();
+		}
+		for (ArrayDeque<Waiter> queue : queues) {
+			if (!queue.isEmpty()) return queue.pollFirst();
+		}
+		return null;
+	}
+
+
+	/**
+	 * A call waiting for a permit.
+	 */
+	private static class Waiter {
+
+		private final int priority;
+		private final Condition condition;
+		private final long enqueuedNanos = System.nanoTime();
+		private boolean granted = false;
+
+		private Waiter(int priority, Condition condition) {
+			this.priority = priority;
+			this.condition = condition;
+		}
+
+	}
+
+
+}
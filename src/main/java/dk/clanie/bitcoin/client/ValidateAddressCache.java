@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import dk.clanie.bitcoin.client.response.ValidateAddressResult;
+
+/**
+ * Bounded cache of validateAddress results.
+ * <p>
+ * Results hold wallet fields (ismine, account etc.), which change when the
+ * wallet is modified. {@link BitcoindClientImpl} invalidates entries when
+ * it modifies the wallet itself; the time to live limits how long changes
+ * made by other clients of the same bitcoind go unnoticed.
+ * <p>
+ * When the cache is full the least recently used entry is evicted.
+ * <p>
+ * A lookup running while the address is invalidated may return a result from
+ * before the change. To keep such a result out of the cache, callers take a
+ * {@link #generation()} before the lookup and cache the result with
+ * {@link #put(String, ValidateAddressResult, long)}, which skips it if the
+ * address has been invalidated since.
+ * 
+ * @author Claus Nielsen
+ */
+public class ValidateAddressCache {
+
+	public static final int DEFAULT_MAX_SIZE = 10000;
+	public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 60000;
+
+	private final long timeToLiveNanos;
+
+	// Guarded by this
+	private final Map<String, Entry> entries;
+
+	// Generation of the latest invalidation of each address. Guarded by this.
+	private final Map<String, Long> invalidations;
+
+	// Incremented on each invalidation. Guarded by this.
+	private long generation;
+
+	// Generation of the latest clear, or of the latest invalidation dropped
+	// from invalidations. Guarded by this.
+	private long clearedGeneration;
+
+
+	/**
+	 * Creates cache with default size and time to live.
+	 */
+	public ValidateAddressCache() {
+		this(DEFAULT_MAX_SIZE, DEFAULT_TIME_TO_LIVE_MILLIS);
+	}
+
+
+	/**
+	 * Creates cache holding at most <code>maxSize</code> results, each for at
+	 * most <code>timeToLiveMillis</code>.
+	 * 
+	 * @param maxSize
+	 * @param timeToLiveMillis
+	 */
+	@SuppressWarnings("serial")
+	public ValidateAddressCache(final int maxSize, long timeToLiveMillis) {
+		if (maxSize < 1) throw new IllegalArgumentException("maxSize must be at least 1.");
+		this.timeToLiveNanos = MILLISECONDS.toNanos(timeToLiveMillis);
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+		this.invalidations = new LinkedHashMap<String, Long>() {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+				if (size() <= maxSize) return false;
+				// Forgetting the address is safe when it's treated as cleared.
+				clearedGeneration = eldest.getValue();
+				return true;
+			}
+		};
+	}
+
+
+	/**
+	 * Gets cached result for the given address.
+	 * 
+	 * @param address
+	 * @return cached result, or null if the address isn't cached or the result
+	 *         has expired.
+	 */
+	public synchronized ValidateAddressResult get(String address) {
+		Entry entry = entries.get(address);
+		if (entry == null) return null;
+		if (System.nanoTime() - entry.createdNanos >= timeToLiveNanos) {
+			entries.remove(address);
+			return null;
+		}
+		return entry.result;
+	}
+
+
+	/**
+	 * Caches the result for the given address.
+	 * 
+	 * @param address
+	 * @param result
+	 */
+	public synchronized void put(String address, ValidateAddressResult result) {
+		entries.put(address, new Entry(result));
+	}
+
+
+	/**
+	 * Gets the current invalidation generation, to be passed to
+	 * {@link #put(String, ValidateAddressResult, long)} with the result of a
+	 * lookup started after this call.
+	 * 
+	 * @return current generation.
+	 */
+	public synchronized long generation() {
+		return generation;
+	}
+
+
+	/**
+	 * Caches the result for the given address, unless the address has been
+	 * invalidated (or the cache cleared) after the given generation was taken.
+	 * 
+	 * @param address
+	 * @param result
+	 * @param generation
+	 *            - {@link #generation()} taken before looking up the result
+	 * @return true if the result was cached.
+	 */
+	public synchronized boolean put(String address, ValidateAddressResult result, long generation) {
+		if (clearedGeneration > generation) return false;
+		Long invalidated = invalidations.get(address);
+		if (invalidated != null && invalidated > generation) return false;
+		entries.put(address, new Entry(result));
+		return true;
+	}
+
+
+	/**
+	 * Removes the result for the given address.
+	 * 
+	 * @param address
+	 */
+	public synchronized void invalidate(String address) {
+		entries.remove(address);
+		// Removed first, so the address moves to the end of the eviction order.
+		invalidations.remove(address);
+		invalidations.put(address, ++generation);
+	}
+
+
+	/**
+	 * Removes all results.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		invalidations.clear();
+		clearedGeneration = ++generation;
+	}
+
+
+	/**
+	 * Gets the number of cached results, including expired results not yet
+	 * removed.
+	 * 
+	 * @return number of entries.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+
+	/**
+	 * A cached result.
+	 */
+	private static class Entry {
+
+		private final ValidateAddressResult result;
+		private final long createdNanos = System.nanoTime();
+
+		private Entry(ValidateAddressResult result) {
+			this.result = result;
+		}
+
+	}
+
+
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.capture;
+
+/**
+ * Layout of capture files.
+ * <p>
+ * A capture file is a sequence of records, each starting with a type byte.
+ * Each {@link TrafficRecorder} appending to the file starts with a session
+ * record:
+ * <ul>
+ * <li>{@link #MAGIC}, an int</li>
+ * <li>{@link #VERSION}, a byte</li>
+ * <li>start of the session in milliseconds since the epoch, a long</li>
+ * </ul>
+ * followed by an exchange record for each request:
+ * <ul>
+ * <li>nanoseconds since the session started, a long</li>
+ * <li>duration in nanoseconds, a long</li>
+ * <li>HTTP status, a short</li>
+ * <li>method, in modified UTF-8 as written by DataOutput.writeUTF</li>
+ * <li>length of the request body, an int, followed by the body</li>
+ * <li>length of the response body, an int, followed by the body</li>
+ * </ul>
+ * Numbers are big-endian.
+ * 
+ * @author Claus Nielsen
+ */
+final class CaptureFormat {
+
+	static final int SESSION = 'S';
+	static final int EXCHANGE = 'X';
+
+	/**
+	 * "BTCC".
+	 */
+	static final int MAGIC = 0x42544343;
+
+	static final int VERSION = 1;
+
+
+	private CaptureFormat() {
+	}
+
+
+}
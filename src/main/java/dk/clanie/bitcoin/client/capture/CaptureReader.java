@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.capture;
+
+import static dk.clanie.bitcoin.client.capture.CaptureFormat.EXCHANGE;
+import static dk.clanie.bitcoin.client.capture.CaptureFormat.MAGIC;
+import static dk.clanie.bitcoin.client.capture.CaptureFormat.SESSION;
+import static dk.clanie.bitcoin.client.capture.CaptureFormat.VERSION;
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the exchanges recorded in a capture file by {@link TrafficRecorder}.
+ * <p>
+ * Offsets of exchanges are relative to the start of the first session in
+ * the file, so the exchanges of sessions appended later keep their
+ * position in time. Session starts are only recorded to the millisecond, so
+ * a session is never placed before the last exchange read from the
+ * previous one. A record cut short, eg. because the recording process
+ * died, ends the capture.
+ * 
+ * @author Claus Nielsen
+ */
+public class CaptureReader implements Closeable {
+
+	private final DataInputStream in;
+	private long firstSessionStartMillis = -1;
+	private long sessionOffsetNanos;
+	private long lastOffsetNanos;
+
+
+	/**
+	 * Creates reader reading the given file.
+	 * 
+	 * @param file
+	 * @throws FileNotFoundException
+	 */
+	public CaptureReader(File file) throws FileNotFoundException {
+		this(new FileInputStream(file));
+	}
+
+
+	/**
+	 * Creates reader reading the given stream.
+	 * 
+	 * @param in
+	 */
+	public CaptureReader(InputStream in) {
+		this.in = new DataInputStream(new BufferedInputStream(in));
+	}
+
+
+	/**
+	 * Reads all exchanges in a capture file.
+	 * 
+	 * @param file
+	 * @return exchanges in recorded order.
+	 * @throws IOException if the file can't be read or isn't a capture file.
+	 */
+	public static List<CapturedExchange> readAll(File file) throws IOException {
+		List<CapturedExchange> exchanges = newArrayList();
+		CaptureReader reader = new CaptureReader(file);
+		try {
+			CapturedExchange exchange;
+			while ((exchange = reader.next()) != null) {
+				exchanges.add(exchange);
+			}
+		} finally {
+			reader.close();
+		}
+		return exchanges;
+	}
+
+
+	/**
+	 * Reads the next exchange.
+	 * 
+	 * @return the next exchange, or null at the end of the capture.
+	 * @throws IOException if reading fails or the data isn't a capture.
+	 */
+	public CapturedExchange next() throws IOException {
+		int type;
+		while ((type = in.read()) != -1) {
+			try {
+				switch (type) {
+				case SESSION:
+					readSession();
+					break;
+				case EXCHANGE:
+					return readExchange();
+				default:
+					throw new IOException("Not a capture file, unknown record type " + type + ".");
+				}
+			} catch (EOFException e) {
+				// Truncated record.
+				return null;
+			}
+		}
+		return null;
+	}
+
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+
+	private void readSession() throws IOException {
+		if (in.readInt() != MAGIC) throw new IOException("Not a capture file.");
+		int version = in.readUnsignedByte();
+		if (version != VERSION) throw new IOException("Unsupported capture file version " + version + ".");
+		long startMillis = in.readLong();
+		if (firstSessionStartMillis < 0) firstSessionStartMillis = startMillis;
+		sessionOffsetNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(startMillis - firstSessionStartMillis), lastOffsetNanos);
+	}
+
+
+	private CapturedExchange readExchange() throws IOException {
+		if (firstSessionStartMillis < 0) throw new IOException("Not a capture file, no session record.");
+		long offsetNanos = in.readLong();
+		long durationNanos = in.readLong();
+		int status = in.readUnsignedShort();
+		String method = in.readUTF();
+		byte[] request = readBytes();
+		byte[] response = readBytes();
+		lastOffsetNanos = sessionOffsetNanos + offsetNanos;
+		return new CapturedExchange(lastOffsetNanos, durationNanos, status, method, request, response);
+	}
+
+
+	private byte[] readBytes() throws IOException {
+		int length = in.readInt();
+		if (length < 0) throw new IOException("Corrupt capture file, negative length.");
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.capture;
+
+import org.springframework.roo.addon.javabean.RooJavaBean;
+
+import dk.clanie.core.BaseClass;
+
+/**
+ * A request to bitcoind and its response, as recorded by
+ * {@link TrafficRecorder}.
+ * <p>
+ * Secrets in the request and response bodies have been redacted.
+ * 
+ * @author Claus Nielsen
+ */
+@SuppressWarnings("serial")
+@RooJavaBean(settersByDefault = false)
+public class CapturedExchange extends BaseClass {
+
+	/**
+	 * When the request was sent, in nanoseconds since the recording started.
+	 */
+	private long offsetNanos;
+
+	/**
+	 * Time from sending the request until the whole response was read.
+	 */
+	private long durationNanos;
+
+	/**
+	 * HTTP status code of the response.
+	 */
+	private int status;
+
+	/**
+	 * Method called, or {@value TrafficRecorder#BATCH} for a batch of calls.
+	 */
+	private String method;
+
+	/**
+	 * Request body.
+	 */
+	private byte[] request;
+
+	/**
+	 * Response body.
+	 */
+	private byte[] response;
+
+
+	/**
+	 * Full constructor.
+	 */
+	public CapturedExchange(long offsetNanos, long durationNanos, int status, String method, byte[] request, byte[] response) {
+		this.offsetNanos = offsetNanos;
+		this.durationNanos = durationNanos;
+		this.status = status;
+		this.method = method;
+		this.request = request;
+		this.response = response;
+	}
+
+
+}
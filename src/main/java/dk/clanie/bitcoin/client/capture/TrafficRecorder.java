@@ -0,0 +1,333 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.capture;
+
+import static dk.clanie.bitcoin.client.capture.CaptureFormat.EXCHANGE;
+import static dk.clanie.bitcoin.client.capture.CaptureFormat.MAGIC;
+import static dk.clanie.bitcoin.client.capture.CaptureFormat.SESSION;
+import static dk.clanie.bitcoin.client.capture.CaptureFormat.VERSION;
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.FileCopyUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import dk.clanie.bitcoin.client.monitoring.RpcCallInterceptor;
+import dk.clanie.bitcoin.client.monitoring.Secrets;
+
+/**
+ * RestTemplate interceptor recording requests to bitcoind and their
+ * responses, with timing, in an append-only capture file.
+ * <p>
+ * Captures are meant for reproducing production workloads offline: they
+ * can be read with {@link CaptureReader} and served back by a stub server.
+ * Secret parameters and results, such as passphrases and the keys returned
+ * by dumpprivkey, are replaced by {@value Secrets#REDACTED} before anything
+ * is written; requests which can't be parsed, and so can't be redacted,
+ * are not recorded.
+ * <p>
+ * The response body is read completely before it is handed on, so the
+ * recorded duration covers the whole exchange. Put the recorder first
+ * among the RestTemplate's interceptors, so {@link RpcCallInterceptor}
+ * still sees the body being read.
+ * <p>
+ * Records are written through a buffer; {@link #flush()} or
+ * {@link #close()} to get them on disk. The file layout is described in
+ * {@link CaptureFormat}.
+ * 
+ * @author Claus Nielsen
+ */
+public class TrafficRecorder implements ClientHttpRequestInterceptor, Closeable {
+
+	/**
+	 * Method recorded for a batch of calls.
+	 */
+	public static final String BATCH = "batch";
+
+	private static final Logger log = LoggerFactory.getLogger(TrafficRecorder.class);
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final long sessionStartNanos;
+
+	// Guarded by out
+	private final DataOutputStream out;
+	private boolean closed = false;
+
+
+	/**
+	 * Creates recorder appending to the given file, creating it if it doesn't
+	 * exist.
+	 * 
+	 * @param file
+	 * @throws IOException if the file can't be opened.
+	 */
+	public TrafficRecorder(File file) throws IOException {
+		FileOutputStream fileOut = new FileOutputStream(file, true);
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(fileOut));
+			sessionStartNanos = System.nanoTime();
+			out.writeByte(SESSION);
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeLong(System.currentTimeMillis());
+		} catch (IOException e) {
+			fileOut.close();
+			throw e;
+		}
+	}
+
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		long start = System.nanoTime();
+		ClientHttpResponse response = execution.execute(request, body);
+		byte[] responseBody;
+		try {
+			responseBody = FileCopyUtils.copyToByteArray(response.getBody());
+		} catch (IOException e) {
+			response.close();
+			throw e;
+		}
+		long end = System.nanoTime();
+		record(start - sessionStartNanos, end - start, response.getRawStatusCode(), body, responseBody);
+		return new BufferedResponse(response, responseBody);
+	}
+
+
+	/**
+	 * Writes buffered records to the file.
+	 * 
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		synchronized (out) {
+			if (!closed) out.flush();
+		}
+	}
+
+
+	/**
+	 * Writes buffered records to the file and closes it.
+	 * <p>
+	 * Requests made after closing are not recorded.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (out) {
+			if (closed) return;
+			closed = true;
+			out.close();
+		}
+	}
+
+
+	private void record(long offsetNanos, long durationNanos, int status, byte[] request, byte[] response) {
+		String method;
+		try {
+			JsonNode requestTree = objectMapper.readTree(request);
+			if (requestTree == null) throw new IOException("Empty request.");
+			method = requestTree.isArray() ? BATCH : requestTree.path("method").asText();
+			List<Integer> secretResults = newArrayList();
+			if (redactParams(requestTree, secretResults)) request = objectMapper.writeValueAsBytes(requestTree);
+			if (!secretResults.isEmpty()) response = redactResults(response, secretResults);
+		} catch (IOException e) {
+			log.debug("Request not recorded, as it isn't JSON.", e);
+			return;
+		}
+		byte[] exchange;
+		try {
+			exchange = exchange(offsetNanos, durationNanos, status, method, request, response);
+		} catch (IOException e) {
+			log.warn("Exchange not recorded.", e);
+			return;
+		}
+		synchronized (out) {
+			if (closed) return;
+			try {
+				out.write(exchange);
+			} catch (IOException e) {
+				log.warn("Writing to capture file failed.", e);
+			}
+		}
+	}
+
+
+	/**
+	 * Serializes an exchange record, so it can be written in one piece and
+	 * a failure, such as a method too long for writeUTF, doesn't leave half
+	 * a record in the file.
+	 */
+	private static byte[] exchange(long offsetNanos, long durationNanos, int status, String method, byte[] request, byte[] response) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + method.length() + request.length + response.length);
+		DataOutputStream data = new DataOutputStream(bytes);
+		data.writeByte(EXCHANGE);
+		data.writeLong(offsetNanos);
+		data.writeLong(durationNanos);
+		data.writeShort(status);
+		data.writeUTF(method);
+		data.writeInt(request.length);
+		data.write(request);
+		data.writeInt(response.length);
+		data.write(response);
+		return bytes.toByteArray();
+	}
+
+
+	/**
+	 * Replaces secret parameters of the calls in a request.
+	 * 
+	 * @param request - a call or a batch of calls.
+	 * @param secretResults - positions in the batch of calls with secret
+	 *            results are added to this.
+	 * @return true if anything was replaced.
+	 */
+	private static boolean redactParams(JsonNode request, List<Integer> secretResults) {
+		boolean redacted = false;
+		List<JsonNode> calls = calls(request);
+		for (int c = 0; c < calls.size(); c++) {
+			JsonNode call = calls.get(c);
+			String method = call.path("method").asText();
+			JsonNode params = call.path("params");
+			for (int i = 0; i < params.size(); i++) {
+				if (Secrets.isSecretParam(method, i) && params instanceof ArrayNode) {
+					((ArrayNode) params).set(i, TextNode.valueOf(Secrets.REDACTED));
+					redacted = true;
+				}
+			}
+			if (Secrets.isSecretResult(method)) secretResults.add(c);
+		}
+		return redacted;
+	}
+
+
+	/**
+	 * Replaces the results of the given calls in a response. Responses to a
+	 * batch are in the order of the calls, as bitcoind answers them.
+	 * <p>
+	 * A response which can't be parsed is dropped.
+	 */
+	private byte[] redactResults(byte[] response, List<Integer> secretResults) {
+		try {
+			JsonNode tree = objectMapper.readTree(response);
+			if (tree == null) return response;
+			List<JsonNode> calls = calls(tree);
+			for (int c : secretResults) {
+				JsonNode call = c < calls.size() ? calls.get(c) : null;
+				if (call instanceof ObjectNode && !call.path("result").isNull()) {
+					((ObjectNode) call).put("result", Secrets.REDACTED);
+				}
+			}
+			return objectMapper.writeValueAsBytes(tree);
+		} catch (IOException e) {
+			return new byte[0];
+		}
+	}
+
+
+	/**
+	 * Gets the calls in a request or the responses in a response.
+	 */
+	private static List<JsonNode> calls(JsonNode node) {
+		if (!node.isArray()) return Collections.singletonList(node);
+		List<JsonNode> calls = newArrayList();
+		for (JsonNode call : node) {
+			calls.add(call);
+		}
+		return calls;
+	}
+
+
+	/**
+	 * Response with the body already read.
+	 */
+	private static class BufferedResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse response;
+		private final byte[] body;
+
+
+		BufferedResponse(ClientHttpResponse response, byte[] body) {
+			this.response = response;
+			this.body = body;
+		}
+
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(body);
+		}
+
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return response.getHeaders();
+		}
+
+
+		@Override
+		public HttpStatus getStatusCode() throws IOException {
+			return response.getStatusCode();
+		}
+
+
+		@Override
+		public int getRawStatusCode() throws IOException {
+			return response.getRawStatusCode();
+		}
+
+
+		@Override
+		public String getStatusText() throws IOException {
+			return response.getStatusText();
+		}
+
+
+		@Override
+		public void close() {
+			response.close();
+		}
+
+
+	}
+
+
+}
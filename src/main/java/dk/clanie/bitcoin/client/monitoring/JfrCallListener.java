@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Emits a Java Flight Recorder event for every call to bitcoind, so calls
+ * show up in recordings next to GC pauses and lock contention.
+ * <p>
+ * The event, <code>dk.clanie.bitcoin.RpcCall</code>, spans the call and
+ * carries the method name, parameter count, request and response sizes and
+ * the outcome: "OK", the error code bitcoind answered with, or the type of
+ * the exception the call failed with.
+ * <p>
+ * The library is built for Java 7, so the event is defined at runtime with
+ * <code>jdk.jfr.EventFactory</code> and used through method handles. On a
+ * JVM without JFR (before Java 11) the listener does nothing. When the event
+ * isn't enabled in a running recording the cost is one check per call.
+ * 
+ * @author Claus Nielsen
+ */
+public class JfrCallListener implements RpcCallListener {
+
+	public static final String EVENT_NAME = "dk.clanie.bitcoin.RpcCall";
+
+	private static final int METHOD = 0;
+	private static final int PARAM_COUNT = 1;
+	private static final int REQUEST_BYTES = 2;
+	private static final int RESPONSE_BYTES = 3;
+	private static final int OUTCOME = 4;
+	private static final int ERROR_CODE = 5;
+
+	private final ThreadLocal<Object> startedEvent = new ThreadLocal<Object>();
+
+	// Null when JFR isn't available.
+	private final Object eventType;
+	private final MethodHandle isEnabled;
+	private final MethodHandle newEvent;
+	private final MethodHandle begin;
+	private final MethodHandle end;
+	private final MethodHandle set;
+	private final MethodHandle commit;
+
+
+	/**
+	 * Creates listener, registering the event with Flight Recorder if it is
+	 * available.
+	 */
+	public JfrCallListener() {
+		Object type = null;
+		MethodHandle[] handles = new MethodHandle[6];
+		try {
+			Object factory = createEventFactory();
+			type = factory.getClass().getMethod("getEventType").invoke(factory);
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			Class<?> eventClass = Class.forName("jdk.jfr.Event");
+			handles[0] = lookup.unreflect(type.getClass().getMethod("isEnabled"));
+			handles[1] = lookup.unreflect(factory.getClass().getMethod("newEvent")).bindTo(factory);
+			handles[2] = lookup.unreflect(eventClass.getMethod("begin"));
+			handles[3] = lookup.unreflect(eventClass.getMethod("end"));
+			handles[4] = lookup.unreflect(eventClass.getMethod("set", int.class, Object.class));
+			handles[5] = lookup.unreflect(eventClass.getMethod("commit"));
+		} catch (ReflectiveOperationException e) {
+			type = null;
+		}
+		this.eventType = type;
+		this.isEnabled = handles[0];
+		this.newEvent = handles[1];
+		this.begin = handles[2];
+		this.end = handles[3];
+		this.set = handles[4];
+		this.commit = handles[5];
+	}
+
+
+	/**
+	 * Checks if Flight Recorder is available, so events can be emitted.
+	 * 
+	 * @return true if events are emitted when enabled in a recording.
+	 */
+	public boolean isAvailable() {
+		return eventType != null;
+	}
+
+
+	/**
+	 * Checks if the event is enabled in a running recording.
+	 * 
+	 * @return true if calls are recorded.
+	 */
+	public boolean isEnabled() {
+		if (eventType == null) return false;
+		try {
+			return (boolean) isEnabled.invoke(eventType);
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+
+
+	@Override
+	public void callStarted(RpcCall call) {
+		if (!isEnabled()) return;
+		try {
+			Object event = newEvent.invoke();
+			begin.invoke(event);
+			startedEvent.set(event);
+		} catch (Throwable e) {
+			// Leave the call unrecorded.
+		}
+	}
+
+
+	@Override
+	public void callCompleted(RpcCall call) {
+		Object event = startedEvent.get();
+		if (event == null) return;
+		startedEvent.remove();
+		try {
+			end.invoke(event);
+			set.invoke(event, METHOD, call.getMethod());
+			set.invoke(event, PARAM_COUNT, call.getParamCount());
+			set.invoke(event, REQUEST_BYTES, call.getRequestBytes());
+			set.invoke(event, RESPONSE_BYTES, call.getResponseBytes());
+			set.invoke(event, OUTCOME, call.getOutcome());
+			set.invoke(event, ERROR_CODE, call.getErrorCode() == null ? 0 : call.getErrorCode());
+			commit.invoke(event);
+		} catch (Throwable e) {
+			// Leave the call unrecorded.
+		}
+	}
+
+
+	/**
+	 * Defines the event with <code>EventFactory.create(annotations, fields)</code>.
+	 */
+	private static Object createEventFactory() throws ReflectiveOperationException {
+		List<Object> annotations = newArrayList();
+		annotations.add(annotation("jdk.jfr.Name", EVENT_NAME));
+		annotations.add(annotation("jdk.jfr.Label", "Bitcoind RPC"));
+		annotations.add(annotation("jdk.jfr.Description", "JSON-RPC call to bitcoind."));
+		annotations.add(annotation("jdk.jfr.Category", new String[] {"Bitcoin"}));
+		List<Object> fields = newArrayList();
+		fields.add(field(String.class, "method", "Method"));
+		fields.add(field(int.class, "paramCount", "Parameters"));
+		fields.add(field(long.class, "requestBytes", "Request Size"));
+		fields.add(field(long.class, "responseBytes", "Response Size"));
+		fields.add(field(String.class, "outcome", "Outcome"));
+		fields.add(field(int.class, "errorCode", "Error Code"));
+		return Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class)
+				.invoke(null, annotations, fields);
+	}
+
+
+	private static Object annotation(String annotationType, Object value) throws ReflectiveOperationException {
+		Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+		Constructor<?> constructor = annotationElement.getConstructor(Class.class, Object.class);
+		return constructor.newInstance(Class.forName(annotationType).asSubclass(Annotation.class), value);
+	}
+
+
+	private static Object field(Class<?> type, String name, String label) throws ReflectiveOperationException {
+		Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+		Constructor<?> constructor = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+		return constructor.newInstance(type, name, Arrays.asList(annotation("jdk.jfr.Label", label)));
+	}
+
+
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, with buckets growing
+ * exponentially in the manner of HdrHistogram.
+ * <p>
+ * Each power of two is split into 32 linear buckets, so recorded values are
+ * kept with a relative error below 1/32. Values above 2^41 ns (about 36
+ * minutes) are recorded as that. Recording is a few atomic operations and
+ * doesn't allocate.
+ * 
+ * @author Claus Nielsen
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40;
+	private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+	private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+
+	/**
+	 * Records a duration.
+	 * 
+	 * @param nanos
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) nanos = 0;
+		counts.incrementAndGet(bucketOf(Math.min(nanos, MAX_VALUE)));
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		long max;
+		while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+			// Retry.
+		}
+	}
+
+
+	/**
+	 * Gets the number of recorded durations.
+	 * 
+	 * @return count.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+
+	/**
+	 * Gets the mean of the recorded durations.
+	 * 
+	 * @return nanoseconds, 0 if nothing has been recorded.
+	 */
+	public long getMeanNanos() {
+		long n = count.get();
+		return n == 0 ? 0 : totalNanos.get() / n;
+	}
+
+
+	/**
+	 * Gets the longest recorded duration.
+	 * 
+	 * @return nanoseconds.
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+
+	/**
+	 * Gets the duration the given percentage of the recorded durations are
+	 * at or below, rounded up to the end of its bucket.
+	 * 
+	 * @param percentile - eg. 99.9.
+	 * @return nanoseconds, 0 if nothing has been recorded.
+	 */
+	public long getPercentileNanos(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) return Math.min(highestValueIn(i), maxNanos.get());
+		}
+		return maxNanos.get();
+	}
+
+
+	/**
+	 * Clears the histogram. Durations recorded concurrently may be partly
+	 * lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		// Sub bucket from the bits following the leading one.
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+	}
+
+
+	static long highestValueIn(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.clanie.bitcoin.exception.BitcoinException;
+
+/**
+ * Registers monitoring MBeans with the platform MBean server.
+ * <p>
+ * Several clients may run in one JVM, eg. in webapps sharing a container,
+ * so an optional name key tells their MBeans apart, and an MBean already
+ * registered under the same name is left in place with a warning rather
+ * than failing the client's startup.
+ * 
+ * @author Claus Nielsen
+ */
+final class MBeans {
+
+	private static final Logger log = LoggerFactory.getLogger(MBeans.class);
+
+
+	private MBeans() {
+	}
+
+
+	/**
+	 * Registers an MBean.
+	 * 
+	 * @param mbean
+	 * @param type - domain and type, eg. dk.clanie.bitcoin:type=RpcMetrics.
+	 * @param name - value of the name key; optional (may be null).
+	 * @return true if registered, false if the name was taken.
+	 */
+	static boolean register(Object mbean, String type, String name) {
+		ObjectName objectName = objectName(type, name);
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName);
+			return true;
+		} catch (InstanceAlreadyExistsException e) {
+			log.warn("Not registering " + objectName + ", the name is already registered.");
+			return false;
+		} catch (JMException e) {
+			throw new BitcoinException("Could not register " + objectName + ".", e);
+		}
+	}
+
+
+	/**
+	 * Unregisters an MBean registered with {@link #register(Object, String, String)}.
+	 * 
+	 * @param type
+	 * @param name - optional (may be null).
+	 */
+	static void unregister(String type, String name) {
+		ObjectName objectName = objectName(type, name);
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			throw new BitcoinException("Could not unregister " + objectName + ".", e);
+		}
+	}
+
+
+	private static ObjectName objectName(String type, String name) {
+		try {
+			return new ObjectName(name == null ? type : type + ",name=" + ObjectName.quote(name));
+		} catch (JMException e) {
+			throw new BitcoinException("Invalid MBean name " + name + ".", e);
+		}
+	}
+
+
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import static dk.clanie.collections.CollectionFactory.newHashMap;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Call statistics for one bitcoind method, kept by {@link RpcMetricsRegistry}.
+ * <p>
+ * Besides the latency histogram of whole calls, the mean and max time spent
+ * in each {@link RpcPhase} is kept, for telling where slow calls spend
+ * their time.
+ * 
+ * @author Claus Nielsen
+ */
+public class MethodMetrics {
+
+	/**
+	 * Key in the error counts of failures without an error code from bitcoind.
+	 */
+	public static final int NO_ERROR_CODE = 0;
+
+	private static final RpcPhase[] PHASES = RpcPhase.values();
+
+	private final String method;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final AtomicLong errors = new AtomicLong();
+	private final ConcurrentMap<Integer, AtomicLong> errorsByCode = new ConcurrentHashMap<Integer, AtomicLong>();
+	private final AtomicLong requestBytes = new AtomicLong();
+	private final AtomicLong responseBytes = new AtomicLong();
+	private final AtomicLongArray phaseTotalNanos = new AtomicLongArray(PHASES.length);
+	private final AtomicLongArray phaseMaxNanos = new AtomicLongArray(PHASES.length);
+
+
+	MethodMetrics(String method) {
+		this.method = method;
+	}
+
+
+	void record(RpcCall call) {
+		latency.record(call.getDurationNanos());
+		if (call.getRequestBytes() > 0) requestBytes.addAndGet(call.getRequestBytes());
+		if (call.getResponseBytes() > 0) responseBytes.addAndGet(call.getResponseBytes());
+		for (RpcPhase phase : PHASES) {
+			long nanos = call.getPhaseNanos(phase);
+			if (nanos == 0) continue;
+			int i = phase.ordinal();
+			phaseTotalNanos.addAndGet(i, nanos);
+			long max;
+			while (nanos > (max = phaseMaxNanos.get(i)) && !phaseMaxNanos.compareAndSet(i, max, nanos)) {
+				// Retry.
+			}
+		}
+		if (call.getFailure() != null) {
+			errors.incrementAndGet();
+			Integer errorCode = call.getErrorCode();
+			if (errorCode == null) errorCode = NO_ERROR_CODE;
+			AtomicLong counter = errorsByCode.get(errorCode);
+			if (counter == null) {
+				AtomicLong newCounter = new AtomicLong();
+				counter = errorsByCode.putIfAbsent(errorCode, newCounter);
+				if (counter == null) counter = newCounter;
+			}
+			counter.incrementAndGet();
+		}
+	}
+
+
+	public String getMethod() {
+		return method;
+	}
+
+
+	/**
+	 * Gets the histogram of call durations.
+	 * 
+	 * @return {@link LatencyHistogram}
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+
+	/**
+	 * Gets the number of calls, successful or not.
+	 * 
+	 * @return number of calls.
+	 */
+	public long getCalls() {
+		return latency.getCount();
+	}
+
+
+	/**
+	 * Gets the number of failed calls.
+	 * 
+	 * @return number of calls.
+	 */
+	public long getErrors() {
+		return errors.get();
+	}
+
+
+	/**
+	 * Gets the number of failed calls by bitcoind error code.
+	 * 
+	 * @return map from error code, or {@link #NO_ERROR_CODE}, to number of
+	 *         calls.
+	 */
+	public Map<Integer, Long> getErrorsByCode() {
+		Map<Integer, Long> counts = newHashMap();
+		for (Map.Entry<Integer, AtomicLong> entry : errorsByCode.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().get());
+		}
+		return counts;
+	}
+
+
+	/**
+	 * Gets the total size of request bodies sent.
+	 * 
+	 * @return bytes.
+	 */
+	public long getRequestBytes() {
+		return requestBytes.get();
+	}
+
+
+	/**
+	 * Gets the total size of response bodies received.
+	 * 
+	 * @return bytes.
+	 */
+	public long getResponseBytes() {
+		return responseBytes.get();
+	}
+
+
+	/**
+	 * Gets the mean time calls have spent in a phase.
+	 * 
+	 * @param phase
+	 * @return nanoseconds, averaged over all calls.
+	 */
+	public long getPhaseMeanNanos(RpcPhase phase) {
+		long calls = getCalls();
+		return calls == 0 ? 0 : phaseTotalNanos.get(phase.ordinal()) / calls;
+	}
+
+
+	/**
+	 * Gets the longest time a call has spent in a phase.
+	 * 
+	 * @param phase
+	 * @return nanoseconds.
+	 */
+	public long getPhaseMaxNanos(RpcPhase phase) {
+		return phaseMaxNanos.get(phase.ordinal());
+	}
+
+
+	/**
+	 * Gets the mean time calls have spent in each phase.
+	 * 
+	 * @return map from phase to nanoseconds, in phase order.
+	 */
+	public Map<RpcPhase, Long> getPhaseMeanNanos() {
+		Map<RpcPhase, Long> means = new EnumMap<RpcPhase, Long>(RpcPhase.class);
+		for (RpcPhase phase : PHASES) {
+			means.put(phase, getPhaseMeanNanos(phase));
+		}
+		return means;
+	}
+
+
+	void reset() {
+		latency.reset();
+		errors.set(0);
+		errorsByCode.clear();
+		requestBytes.set(0);
+		responseBytes.set(0);
+		for (int i = 0; i < PHASES.length; i++) {
+			phaseTotalNanos.set(i, 0);
+			phaseMaxNanos.set(i, 0);
+		}
+	}
+
+
+}
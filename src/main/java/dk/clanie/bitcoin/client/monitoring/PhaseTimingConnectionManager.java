@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Connection pool timing the {@link RpcPhase#POOL_WAIT} and
+ * {@link RpcPhase#CONNECT} phases of the {@link RpcCall} in progress.
+ * 
+ * @author Claus Nielsen
+ */
+public class PhaseTimingConnectionManager extends PoolingClientConnectionManager {
+
+	@Override
+	protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schemeRegistry) {
+		return new ConnectTimingOperator(schemeRegistry);
+	}
+
+
+	@Override
+	public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+		final ClientConnectionRequest request = super.requestConnection(route, state);
+		final RpcCall call = RpcCall.current();
+		if (call == null) return request;
+		return new ClientConnectionRequest() {
+			@Override
+			public ManagedClientConnection getConnection(long timeout, TimeUnit tunit) throws InterruptedException, ConnectionPoolTimeoutException {
+				long start = System.nanoTime();
+				try {
+					return request.getConnection(timeout, tunit);
+				} finally {
+					call.addPhaseNanos(RpcPhase.POOL_WAIT, System.nanoTime() - start);
+				}
+			}
+			@Override
+			public void abortRequest() {
+				request.abortRequest();
+			}
+		};
+	}
+
+
+	private static class ConnectTimingOperator extends DefaultClientConnectionOperator {
+
+		ConnectTimingOperator(SchemeRegistry schemeRegistry) {
+			super(schemeRegistry);
+		}
+
+
+		@Override
+		public void openConnection(OperatedClientConnection conn, HttpHost target, InetAddress local, HttpContext context, HttpParams params) throws IOException {
+			RpcCall call = RpcCall.current();
+			if (call == null) {
+				super.openConnection(conn, target, local, context, params);
+				return;
+			}
+			long start = System.nanoTime();
+			try {
+				super.openConnection(conn, target, local, context, params);
+			} finally {
+				call.addPhaseNanos(RpcPhase.CONNECT, System.nanoTime() - start);
+			}
+		}
+
+
+	}
+
+
+}
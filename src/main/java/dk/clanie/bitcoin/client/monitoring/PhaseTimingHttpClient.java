@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import java.io.IOException;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+/**
+ * HttpClient timing the {@link RpcPhase#REQUEST_WRITE},
+ * {@link RpcPhase#FIRST_BYTE} and {@link RpcPhase#AUTH_CHALLENGE} phases of
+ * the {@link RpcCall} in progress.
+ * <p>
+ * Use with a {@link PhaseTimingConnectionManager} to time pool wait and
+ * connect as well.
+ * 
+ * @author Claus Nielsen
+ */
+public class PhaseTimingHttpClient extends DefaultHttpClient {
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param connectionManager
+	 */
+	public PhaseTimingHttpClient(ClientConnectionManager connectionManager) {
+		super(connectionManager);
+	}
+
+
+	@Override
+	protected HttpRequestExecutor createRequestExecutor() {
+		return new PhaseTimingRequestExecutor();
+	}
+
+
+	private static class PhaseTimingRequestExecutor extends HttpRequestExecutor {
+
+		/**
+		 * Executes a request. If it's answered with 401 Unauthorized, its
+		 * write and first byte times are moved to the auth challenge phase,
+		 * as HttpClient will resend the request with credentials.
+		 */
+		@Override
+		public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context) throws IOException, HttpException {
+			RpcCall call = RpcCall.current();
+			if (call == null) return super.execute(request, conn, context);
+			long start = System.nanoTime();
+			long writeNanos = call.getPhaseNanos(RpcPhase.REQUEST_WRITE);
+			long firstByteNanos = call.getPhaseNanos(RpcPhase.FIRST_BYTE);
+			HttpResponse response = super.execute(request, conn, context);
+			if (response.getStatusLine().getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+				call.addPhaseNanos(RpcPhase.REQUEST_WRITE, writeNanos - call.getPhaseNanos(RpcPhase.REQUEST_WRITE));
+				call.addPhaseNanos(RpcPhase.FIRST_BYTE, firstByteNanos - call.getPhaseNanos(RpcPhase.FIRST_BYTE));
+				call.addPhaseNanos(RpcPhase.AUTH_CHALLENGE, System.nanoTime() - start);
+			}
+			return response;
+		}
+
+
+		@Override
+		protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn, HttpContext context) throws IOException, HttpException {
+			RpcCall call = RpcCall.current();
+			if (call == null) return super.doSendRequest(request, conn, context);
+			long start = System.nanoTime();
+			try {
+				return super.doSendRequest(request, conn, context);
+			} finally {
+				call.addPhaseNanos(RpcPhase.REQUEST_WRITE, System.nanoTime() - start);
+			}
+		}
+
+
+		@Override
+		protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn, HttpContext context) throws HttpException, IOException {
+			RpcCall call = RpcCall.current();
+			if (call == null) return super.doReceiveResponse(request, conn, context);
+			long start = System.nanoTime();
+			try {
+				return super.doReceiveResponse(request, conn, context);
+			} finally {
+				call.addPhaseNanos(RpcPhase.FIRST_BYTE, System.nanoTime() - start);
+			}
+		}
+
+
+	}
+
+
+}
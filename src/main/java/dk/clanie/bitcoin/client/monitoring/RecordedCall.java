@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.roo.addon.javabean.RooJavaBean;
+
+import dk.clanie.core.BaseClass;
+
+/**
+ * A call kept by {@link SlowCallLog}.
+ * <p>
+ * Parameters are kept as a truncated string with secrets redacted.
+ * 
+ * @author Claus Nielsen
+ */
+@SuppressWarnings("serial")
+@RooJavaBean(settersByDefault = false)
+public class RecordedCall extends BaseClass {
+
+	/**
+	 * When the call started, in milliseconds since the epoch.
+	 */
+	private long startMillis;
+
+	private String method;
+
+	private String params;
+
+	/**
+	 * Size of the request body, -1 if unknown.
+	 */
+	private long requestBytes;
+
+	/**
+	 * Size of the response body, -1 if unknown.
+	 */
+	private long responseBytes;
+
+	private long durationNanos;
+
+	/**
+	 * See {@link RpcCall#getOutcome()}.
+	 */
+	private String outcome;
+
+
+	/**
+	 * Full constructor.
+	 */
+	public RecordedCall(long startMillis, String method, String params, long requestBytes, long responseBytes,
+			long durationNanos, String outcome) {
+		this.startMillis = startMillis;
+		this.method = method;
+		this.params = params;
+		this.requestBytes = requestBytes;
+		this.responseBytes = responseBytes;
+		this.durationNanos = durationNanos;
+		this.outcome = outcome;
+	}
+
+
+	/**
+	 * Formats the call as one line, for dumps and logging.
+	 */
+	@Override
+	public String toString() {
+		return String.format("%tF %<tT.%<tL %s %d.%03d ms %s, %d/%d bytes, params %s",
+				startMillis, method,
+				TimeUnit.NANOSECONDS.toMillis(durationNanos), TimeUnit.NANOSECONDS.toMicros(durationNanos) % 1000,
+				outcome, requestBytes, responseBytes, params);
+	}
+
+
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import java.util.Collections;
+import java.util.List;
+
+import dk.clanie.bitcoin.exception.BitcoinException;
+
+/**
+ * Measurements of one JSON-RPC call to bitcoind, handed to
+ * {@link RpcCallListener}s when the call has completed.
+ * <p>
+ * The call in progress on a thread is available from {@link #current()}, so
+ * the transport, eg. {@link RpcCallInterceptor}, can add to it.
+ * <p>
+ * Time spent in each {@link RpcPhase} is available from
+ * {@link #getPhaseNanos(RpcPhase)}. Phases are only timed when the
+ * transport is set up for it, see {@link PhaseTimingHttpClient}; others are
+ * zero.
+ * 
+ * @author Claus Nielsen
+ */
+public class RpcCall {
+
+	private static final ThreadLocal<RpcCall> CURRENT = new ThreadLocal<RpcCall>();
+	private static final RpcPhase[] PHASES = RpcPhase.values();
+
+	private final String method;
+	private final List<?> params;
+	private final long startNanos;
+	private long endNanos;
+	private long requestBytes = -1;
+	private long responseBytes = -1;
+	private Throwable failure;
+	private final long[] phaseNanos = new long[PHASES.length];
+	private boolean responseReceived = false;
+	private long responseReceivedNanos;
+
+
+	private RpcCall(String method, List<?> params) {
+		this.method = method;
+		this.params = params;
+		this.startNanos = System.nanoTime();
+	}
+
+
+	/**
+	 * Starts measuring a call on the current thread.
+	 * 
+	 * @param method - bitcoind method name.
+	 * @param params - parameters; may be null.
+	 * @return the new RpcCall.
+	 */
+	public static RpcCall begin(String method, List<?> params) {
+		RpcCall call = new RpcCall(method, params);
+		CURRENT.set(call);
+		return call;
+	}
+
+
+	/**
+	 * Gets the call in progress on the current thread.
+	 * 
+	 * @return RpcCall, or null if no call is being measured.
+	 */
+	public static RpcCall current() {
+		return CURRENT.get();
+	}
+
+
+	/**
+	 * Ends the call.
+	 * 
+	 * @param failure - exception the call failed with, null if it succeeded.
+	 */
+	public void end(Throwable failure) {
+		this.endNanos = System.nanoTime();
+		this.failure = failure;
+		if (responseReceived) {
+			long bindingNanos = endNanos - responseReceivedNanos - phaseNanos[RpcPhase.BODY_READ.ordinal()];
+			phaseNanos[RpcPhase.DESERIALIZATION.ordinal()] = Math.max(0, bindingNanos);
+		}
+		CURRENT.remove();
+	}
+
+
+	/**
+	 * Marks that the response headers have been received and the response is
+	 * handed on for binding. Time from here until {@link #end(Throwable)},
+	 * less {@link RpcPhase#BODY_READ}, is counted as
+	 * {@link RpcPhase#DESERIALIZATION}.
+	 */
+	public void responseReceived() {
+		responseReceivedNanos = System.nanoTime();
+		responseReceived = true;
+	}
+
+
+	/**
+	 * Adds time spent in a phase.
+	 * 
+	 * @param phase
+	 * @param nanos
+	 */
+	public void addPhaseNanos(RpcPhase phase, long nanos) {
+		phaseNanos[phase.ordinal()] += nanos;
+	}
+
+
+	public void setRequestBytes(long requestBytes) {
+		this.requestBytes = requestBytes;
+	}
+
+
+	public void setResponseBytes(long responseBytes) {
+		this.responseBytes = responseBytes;
+	}
+
+
+	public String getMethod() {
+		return method;
+	}
+
+
+	public int getParamCount() {
+		return params == null ? 0 : params.size();
+	}
+
+
+	/**
+	 * Gets the parameters of the call.
+	 * <p>
+	 * These may include secrets, eg. the passphrase of walletpassphrase, so
+	 * they must not be kept or logged as they are.
+	 * 
+	 * @return parameters, empty if none.
+	 */
+	public List<?> getParams() {
+		return params == null ? Collections.emptyList() : params;
+	}
+
+
+	/**
+	 * Gets the System.nanoTime() the call started at.
+	 */
+	public long getStartNanos() {
+		return startNanos;
+	}
+
+
+	public long getDurationNanos() {
+		return endNanos - startNanos;
+	}
+
+
+	/**
+	 * Gets the time spent in a phase.
+	 * 
+	 * @param phase
+	 * @return nanoseconds, 0 if the phase wasn't timed.
+	 */
+	public long getPhaseNanos(RpcPhase phase) {
+		return phaseNanos[phase.ordinal()];
+	}
+
+
+	/**
+	 * Gets the size of the request body.
+	 * 
+	 * @return bytes, -1 if unknown.
+	 */
+	public long getRequestBytes() {
+		return requestBytes;
+	}
+
+
+	/**
+	 * Gets the size of the response body, as given by its Content-Length.
+	 * 
+	 * @return bytes, -1 if unknown.
+	 */
+	public long getResponseBytes() {
+		return responseBytes;
+	}
+
+
+	/**
+	 * Gets the exception the call failed with.
+	 * 
+	 * @return exception, or null if the call succeeded.
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+
+	/**
+	 * Describes how the call ended.
+	 * 
+	 * @return "OK", "Error" and the error code bitcoind answered with, or the
+	 *         class name of the exception the call failed with.
+	 */
+	public String getOutcome() {
+		if (failure == null) return "OK";
+		Integer errorCode = getErrorCode();
+		if (errorCode != null) return "Error " + errorCode;
+		return failure.getClass().getName();
+	}
+
+
+	/**
+	 * Gets the error code bitcoind answered with.
+	 * 
+	 * @return error code, or null if the call succeeded or failed without an
+	 *         answer from bitcoind.
+	 */
+	public Integer getErrorCode() {
+		return failure instanceof BitcoinException ? ((BitcoinException) failure).getErrorCode() : null;
+	}
+
+
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * RestTemplate interceptor adding request and response sizes to the
+ * {@link RpcCall} in progress.
+ * <p>
+ * Also times {@link RpcPhase#BODY_READ} by timing reads from the response
+ * body, and marks where the response is handed on for binding, so
+ * {@link RpcPhase#DESERIALIZATION} can be told apart from reading.
+ * 
+ * @author Claus Nielsen
+ */
+public class RpcCallInterceptor implements ClientHttpRequestInterceptor {
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		RpcCall call = RpcCall.current();
+		if (call == null) return execution.execute(request, body);
+		call.setRequestBytes(body.length);
+		ClientHttpResponse response = execution.execute(request, body);
+		call.setResponseBytes(response.getHeaders().getContentLength());
+		call.responseReceived();
+		return new BodyReadTimingResponse(response, call);
+	}
+
+
+	/**
+	 * Response adding the time spent reading its body to
+	 * {@link RpcPhase#BODY_READ}.
+	 */
+	private static class BodyReadTimingResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse response;
+		private final RpcCall call;
+		private InputStream body;
+
+
+		BodyReadTimingResponse(ClientHttpResponse response, RpcCall call) {
+			this.response = response;
+			this.call = call;
+		}
+
+
+		@Override
+		public InputStream getBody() throws IOException {
+			if (body == null) body = new BodyReadTimingInputStream(response.getBody(), call);
+			return body;
+		}
+
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return response.getHeaders();
+		}
+
+
+		@Override
+		public HttpStatus getStatusCode() throws IOException {
+			return response.getStatusCode();
+		}
+
+
+		@Override
+		public int getRawStatusCode() throws IOException {
+			return response.getRawStatusCode();
+		}
+
+
+		@Override
+		public String getStatusText() throws IOException {
+			return response.getStatusText();
+		}
+
+
+		@Override
+		public void close() {
+			response.close();
+		}
+
+
+	}
+
+
+	private static class BodyReadTimingInputStream extends FilterInputStream {
+
+		private final RpcCall call;
+
+
+		BodyReadTimingInputStream(InputStream in, RpcCall call) {
+			super(in);
+			this.call = call;
+		}
+
+
+		@Override
+		public int read() throws IOException {
+			long start = System.nanoTime();
+			try {
+				return super.read();
+			} finally {
+				call.addPhaseNanos(RpcPhase.BODY_READ, System.nanoTime() - start);
+			}
+		}
+
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			long start = System.nanoTime();
+			try {
+				return super.read(b, off, len);
+			} finally {
+				call.addPhaseNanos(RpcPhase.BODY_READ, System.nanoTime() - start);
+			}
+		}
+
+
+		@Override
+		public long skip(long n) throws IOException {
+			long start = System.nanoTime();
+			try {
+				return super.skip(n);
+			} finally {
+				call.addPhaseNanos(RpcPhase.BODY_READ, System.nanoTime() - start);
+			}
+		}
+
+
+	}
+
+
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+/**
+ * Receives measurements of calls to bitcoind.
+ * <p>
+ * Listeners are called on the thread that made the call, before the result
+ * is returned, so they must be quick and must not throw. Set them with
+ * {@link dk.clanie.bitcoin.client.BitcoindClientImpl#setCallListeners(java.util.List)},
+ * or declare them as beans.
+ * 
+ * @author Claus Nielsen
+ */
+public interface RpcCallListener {
+
+	/**
+	 * Called when a call is started, before it is sent.
+	 * 
+	 * @param call - the call.
+	 */
+	void callStarted(RpcCall call);
+
+	/**
+	 * Called when a call has completed, successfully or not.
+	 * 
+	 * @param call - the call; not to be kept after returning.
+	 */
+	void callCompleted(RpcCall call);
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import java.util.Map;
+
+/**
+ * JMX view of the statistics kept by {@link RpcMetricsRegistry}.
+ * 
+ * @author Claus Nielsen
+ */
+public interface RpcMetricsMXBean {
+
+	/**
+	 * Gets the names of the methods called so far.
+	 */
+	String[] getMethods();
+
+	long getCalls(String method);
+
+	long getErrors(String method);
+
+	/**
+	 * Gets the number of failed calls by bitcoind error code, 0 for failures
+	 * without an error code.
+	 */
+	Map<Integer, Long> getErrorsByCode(String method);
+
+	long getRequestBytes(String method);
+
+	long getResponseBytes(String method);
+
+	long getMeanNanos(String method);
+
+	long getMaxNanos(String method);
+
+	/**
+	 * Gets the duration the given percentage of calls have completed within,
+	 * eg. 99.
+	 */
+	long getPercentileNanos(String method, double percentile);
+
+	/**
+	 * Gets the mean time calls have spent in each {@link RpcPhase}.
+	 */
+	Map<String, Long> getPhaseMeanNanos(String method);
+
+	/**
+	 * Gets the longest time a call has spent in each {@link RpcPhase}.
+	 */
+	Map<String, Long> getPhaseMaxNanos(String method);
+
+	/**
+	 * Clears all statistics.
+	 */
+	void reset();
+
+}
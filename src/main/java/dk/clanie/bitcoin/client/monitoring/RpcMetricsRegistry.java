@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps call counts, error counts, payload sizes, latency histograms and
+ * phase timings per bitcoind method.
+ * <p>
+ * Recording a call is a map lookup and a few atomic operations, without
+ * locks. The statistics are available from {@link #getMethodMetrics(String)}
+ * and, once {@link #registerMBean()} has been called, through JMX as
+ * {@value #OBJECT_NAME}, with a name key if set.
+ * 
+ * @author Claus Nielsen
+ */
+public class RpcMetricsRegistry implements RpcCallListener, RpcMetricsMXBean {
+
+	public static final String OBJECT_NAME = "dk.clanie.bitcoin:type=RpcMetrics";
+
+	private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<String, MethodMetrics>();
+	private volatile String mbeanName;
+
+	// Guarded by this
+	private boolean registered = false;
+
+
+	@Override
+	public void callStarted(RpcCall call) {
+	}
+
+
+	@Override
+	public void callCompleted(RpcCall call) {
+		MethodMetrics metrics = methods.get(call.getMethod());
+		if (metrics == null) {
+			MethodMetrics newMetrics = new MethodMetrics(call.getMethod());
+			metrics = methods.putIfAbsent(call.getMethod(), newMetrics);
+			if (metrics == null) metrics = newMetrics;
+		}
+		metrics.record(call);
+	}
+
+
+	/**
+	 * Gets the statistics of a method.
+	 * 
+	 * @param method - bitcoind method name.
+	 * @return {@link MethodMetrics}, or null if the method hasn't been called.
+	 */
+	public MethodMetrics getMethodMetrics(String method) {
+		return methods.get(method);
+	}
+
+
+	/**
+	 * Sets the value of the name key added to {@value #OBJECT_NAME} when
+	 * registering, telling the registries of clients in the same JVM apart.
+	 * 
+	 * @param mbeanName - optional (may be null).
+	 */
+	public void setMBeanName(String mbeanName) {
+		this.mbeanName = mbeanName;
+	}
+
+
+	/**
+	 * Registers the registry with the platform MBean server.
+	 * <p>
+	 * If the name is already registered, eg. by another client, the registry
+	 * isn't registered.
+	 */
+	public synchronized void registerMBean() {
+		registered = MBeans.register(this, OBJECT_NAME, mbeanName);
+	}
+
+
+	/**
+	 * Unregisters the registry from the platform MBean server.
+	 */
+	public synchronized void unregisterMBean() {
+		if (!registered) return;
+		registered = false;
+		MBeans.unregister(OBJECT_NAME, mbeanName);
+	}
+
+
+	@Override
+	public String[] getMethods() {
+		String[] names = methods.keySet().toArray(new String[0]);
+		Arrays.sort(names);
+		return names;
+	}
+
+
+	@Override
+	public long getCalls(String method) {
+		MethodMetrics metrics = methods.get(method);
+		return metrics == null ? 0 : metrics.getCalls();
+	}
+
+
+	@Override
+	public long getErrors(String method) {
+		MethodMetrics metrics = methods.get(method);
+		return metrics == null ? 0 : metrics.getErrors();
+	}
+
+
+	@Override
+	public Map<Integer, Long> getErrorsByCode(String method) {
+		MethodMetrics metrics = methods.get(method);
+		return metrics == null ? Collections.<Integer, Long>emptyMap() : metrics.getErrorsByCode();
+	}
+
+
+	@Override
+	public long getRequestBytes(String method) {
+		MethodMetrics metrics = methods.get(method);
+		return metrics == null ? 0 : metrics.getRequestBytes();
+	}
+
+
+	@Override
+	public long getResponseBytes(String method) {
+		MethodMetrics metrics = methods.get(method);
+		return metrics == null ? 0 : metrics.getResponseBytes();
+	}
+
+
+	@Override
+	public long getMeanNanos(String method) {
+		MethodMetrics metrics = methods.get(method);
+		return metrics == null ? 0 : metrics.getLatency().getMeanNanos();
+	}
+
+
+	@Override
+	public long getMaxNanos(String method) {
+		MethodMetrics metrics = methods.get(method);
+		return metrics == null ? 0 : metrics.getLatency().getMaxNanos();
+	}
+
+
+	@Override
+	public long getPercentileNanos(String method, double percentile) {
+		MethodMetrics metrics = methods.get(method);
+		return metrics == null ? 0 : metrics.getLatency().getPercentileNanos(percentile);
+	}
+
+
+	@Override
+	public Map<String, Long> getPhaseMeanNanos(String method) {
+		MethodMetrics metrics = methods.get(method);
+		Map<String, Long> nanos = new LinkedHashMap<String, Long>();
+		for (RpcPhase phase : RpcPhase.values()) {
+			nanos.put(phase.name(), metrics == null ? 0 : metrics.getPhaseMeanNanos(phase));
+		}
+		return nanos;
+	}
+
+
+	@Override
+	public Map<String, Long> getPhaseMaxNanos(String method) {
+		MethodMetrics metrics = methods.get(method);
+		Map<String, Long> nanos = new LinkedHashMap<String, Long>();
+		for (RpcPhase phase : RpcPhase.values()) {
+			nanos.put(phase.name(), metrics == null ? 0 : metrics.getPhaseMaxNanos(phase));
+		}
+		return nanos;
+	}
+
+
+	@Override
+	public void reset() {
+		for (MethodMetrics metrics : methods.values()) {
+			metrics.reset();
+		}
+	}
+
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+/**
+ * Phases of a call to bitcoind, timed separately in {@link RpcCall}.
+ * 
+ * @author Claus Nielsen
+ */
+public enum RpcPhase {
+
+	/**
+	 * Waiting for the {@link dk.clanie.bitcoin.client.RpcScheduler} to
+	 * dispatch the call.
+	 */
+	SCHEDULER_WAIT,
+
+	/**
+	 * Waiting for a connection from the HttpClient connection pool.
+	 */
+	POOL_WAIT,
+
+	/**
+	 * Opening a new connection. Zero when a pooled connection is reused.
+	 */
+	CONNECT,
+
+	/**
+	 * Round trips answered with 401 Unauthorized, before HttpClient retries
+	 * with credentials.
+	 */
+	AUTH_CHALLENGE,
+
+	/**
+	 * Writing the request to the connection.
+	 */
+	REQUEST_WRITE,
+
+	/**
+	 * From the request is written until the response headers are received;
+	 * mostly bitcoind executing the call.
+	 */
+	FIRST_BYTE,
+
+	/**
+	 * Reading the response body from the connection.
+	 */
+	BODY_READ,
+
+	/**
+	 * Binding the response to the response class, excluding time spent
+	 * reading the body.
+	 */
+	DESERIALIZATION
+
+}
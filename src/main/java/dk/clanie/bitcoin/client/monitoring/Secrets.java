@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import static dk.clanie.collections.CollectionFactory.newHashMap;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Knows which parameters and results of bitcoind's methods are secret, ie.
+ * passphrases and private keys, which mustn't end up in logs or
+ * recordings.
+ * 
+ * @author Claus Nielsen
+ */
+public final class Secrets {
+
+	/**
+	 * What secrets are replaced by.
+	 */
+	public static final String REDACTED = "<redacted>";
+
+	/**
+	 * Positions of secret parameters, by method.
+	 */
+	private static final Map<String, int[]> SECRET_PARAMS = newHashMap();
+	static {
+		SECRET_PARAMS.put("encryptwallet", new int[] {0});
+		SECRET_PARAMS.put("importprivkey", new int[] {0});
+		SECRET_PARAMS.put("signrawtransaction", new int[] {2});
+		SECRET_PARAMS.put("walletpassphrase", new int[] {0});
+		SECRET_PARAMS.put("walletpassphrasechange", new int[] {0, 1});
+	}
+
+	/**
+	 * Methods returning a secret.
+	 */
+	private static final Set<String> SECRET_RESULTS = Collections.singleton("dumpprivkey");
+
+
+	private Secrets() {
+	}
+
+
+	/**
+	 * Checks if a parameter of a method is secret.
+	 * 
+	 * @param method - bitcoind method name.
+	 * @param index - position of the parameter.
+	 * @return true if the parameter is secret.
+	 */
+	public static boolean isSecretParam(String method, int index) {
+		int[] secrets = SECRET_PARAMS.get(method);
+		return secrets != null && Arrays.binarySearch(secrets, index) >= 0;
+	}
+
+
+	/**
+	 * Checks if the result of a method is secret.
+	 * 
+	 * @param method - bitcoind method name.
+	 * @return true if the result is secret.
+	 */
+	public static boolean isSecretResult(String method) {
+		return SECRET_RESULTS.contains(method);
+	}
+
+
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the slowest and the most recent calls to bitcoind in memory, for
+ * looking at the actual calls behind a latency spike.
+ * <p>
+ * Each call is recorded with its method, parameters, sizes, duration and
+ * outcome. Parameters are truncated to {@link #setMaxParamsLength(int)}
+ * characters, and secret ones, such as the passphrase of walletpassphrase
+ * and the key of importprivkey, are replaced by {@value #REDACTED} before
+ * anything is kept.
+ * <p>
+ * The recent calls are kept in a lock-free ring buffer. A call only takes
+ * the lock of the slowest calls if it is slower than the fastest of them.
+ * Recorded calls can be dumped with {@link #getSlowest()} and
+ * {@link #getRecent()}, or through JMX as {@value #OBJECT_NAME}, with a
+ * name key if set.
+ * <p>
+ * Calls can also be logged, at info level, by setting a sample rate with
+ * {@link #setLogSampleRate(int)}. Logging is off by default.
+ * 
+ * @author Claus Nielsen
+ */
+public class SlowCallLog implements RpcCallListener, SlowCallLogMXBean {
+
+	public static final String OBJECT_NAME = "dk.clanie.bitcoin:type=SlowCallLog";
+
+	public static final String REDACTED = Secrets.REDACTED;
+
+	private static final Logger log = LoggerFactory.getLogger(SlowCallLog.class);
+
+	private static final Comparator<RecordedCall> BY_DURATION = new Comparator<RecordedCall>() {
+		@Override
+		public int compare(RecordedCall o1, RecordedCall o2) {
+			return Long.compare(o1.getDurationNanos(), o2.getDurationNanos());
+		}
+	};
+
+	private final int slowestCapacity;
+	private final AtomicReferenceArray<RecordedCall> recent;
+	private final AtomicLong recentCount = new AtomicLong();
+	private final AtomicLong sampleCount = new AtomicLong();
+	private volatile int maxParamsLength = 200;
+	private volatile int logSampleRate = 0;
+	private volatile String mbeanName;
+
+	// Guarded by this
+	private boolean registered = false;
+
+	// Guarded by slowest
+	private final PriorityQueue<RecordedCall> slowest;
+
+	/**
+	 * Duration a call must exceed to be among the slowest; -1 until the
+	 * slowest calls are filled up.
+	 */
+	private volatile long slowestThresholdNanos = -1;
+
+
+	/**
+	 * Creates log keeping the given number of calls.
+	 * 
+	 * @param slowestCapacity - number of slowest calls kept.
+	 * @param recentCapacity - number of recent calls kept.
+	 */
+	public SlowCallLog(int slowestCapacity, int recentCapacity) {
+		if (slowestCapacity < 1 || recentCapacity < 1) throw new IllegalArgumentException("Capacities must be at least 1.");
+		this.slowestCapacity = slowestCapacity;
+		this.recent = new AtomicReferenceArray<RecordedCall>(recentCapacity);
+		this.slowest = new PriorityQueue<RecordedCall>(slowestCapacity, BY_DURATION);
+	}
+
+
+	/**
+	 * Sets the max length of the parameters as recorded.
+	 * 
+	 * @param maxParamsLength - characters, default 200.
+	 */
+	public void setMaxParamsLength(int maxParamsLength) {
+		this.maxParamsLength = maxParamsLength;
+	}
+
+
+	@Override
+	public int getLogSampleRate() {
+		return logSampleRate;
+	}
+
+
+	@Override
+	public void setLogSampleRate(int logSampleRate) {
+		if (logSampleRate < 0) throw new IllegalArgumentException("logSampleRate must not be negative.");
+		this.logSampleRate = logSampleRate;
+	}
+
+
+	@Override
+	public void callStarted(RpcCall call) {
+	}
+
+
+	@Override
+	public void callCompleted(RpcCall call) {
+		RecordedCall recorded = record(call);
+		recent.set((int) (recentCount.getAndIncrement() % recent.length()), recorded);
+		if (recorded.getDurationNanos() > slowestThresholdNanos) addSlow(recorded);
+		int rate = logSampleRate;
+		if (rate > 0 && sampleCount.incrementAndGet() % rate == 0) log.info("bitcoind call: {}", recorded);
+	}
+
+
+	private void addSlow(RecordedCall recorded) {
+		synchronized (slowest) {
+			if (slowest.size() == slowestCapacity) {
+				if (recorded.getDurationNanos() <= slowest.peek().getDurationNanos()) return;
+				slowest.poll();
+			}
+			slowest.add(recorded);
+			if (slowest.size() == slowestCapacity) slowestThresholdNanos = slowest.peek().getDurationNanos();
+		}
+	}
+
+
+	/**
+	 * Gets the slowest calls.
+	 * 
+	 * @return calls, slowest first.
+	 */
+	public List<RecordedCall> getSlowest() {
+		List<RecordedCall> calls = newArrayList();
+		synchronized (slowest) {
+			calls.addAll(slowest);
+		}
+		Collections.sort(calls, Collections.reverseOrder(BY_DURATION));
+		return calls;
+	}
+
+
+	/**
+	 * Gets the most recent calls.
+	 * 
+	 * @return calls, newest first.
+	 */
+	public List<RecordedCall> getRecent() {
+		List<RecordedCall> calls = newArrayList();
+		long count = recentCount.get();
+		for (long i = count - 1; i >= 0 && i >= count - recent.length(); i--) {
+			RecordedCall recorded = recent.get((int) (i % recent.length()));
+			if (recorded != null) calls.add(recorded);
+		}
+		return calls;
+	}
+
+
+	@Override
+	public String[] getSlowestCalls() {
+		return toStrings(getSlowest());
+	}
+
+
+	@Override
+	public String[] getRecentCalls() {
+		return toStrings(getRecent());
+	}
+
+
+	@Override
+	public void clear() {
+		synchronized (slowest) {
+			slowest.clear();
+			slowestThresholdNanos = -1;
+		}
+		for (int i = 0; i < recent.length(); i++) {
+			recent.set(i, null);
+		}
+	}
+
+
+	/**
+	 * Sets the value of the name key added to {@value #OBJECT_NAME} when
+	 * registering, telling the logs of clients in the same JVM apart.
+	 * 
+	 * @param mbeanName - optional (may be null).
+	 */
+	public void setMBeanName(String mbeanName) {
+		this.mbeanName = mbeanName;
+	}
+
+
+	/**
+	 * Registers the log with the platform MBean server.
+	 * <p>
+	 * If the name is already registered, eg. by another client, the log
+	 * isn't registered.
+	 */
+	public synchronized void registerMBean() {
+		registered = MBeans.register(this, OBJECT_NAME, mbeanName);
+	}
+
+
+	/**
+	 * Unregisters the log from the platform MBean server.
+	 */
+	public synchronized void unregisterMBean() {
+		if (!registered) return;
+		registered = false;
+		MBeans.unregister(OBJECT_NAME, mbeanName);
+	}
+
+
+	private RecordedCall record(RpcCall call) {
+		long startMillis = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(call.getDurationNanos());
+		return new RecordedCall(startMillis, call.getMethod(), formatParams(call),
+				call.getRequestBytes(), call.getResponseBytes(), call.getDurationNanos(), call.getOutcome());
+	}
+
+
+	/**
+	 * Formats the parameters of a call, redacting secrets and truncating.
+	 * <p>
+	 * Parameters are appended piece by piece, so formatting stops at the
+	 * maximum length instead of stringifying large arrays and maps in full.
+	 */
+	private String formatParams(RpcCall call) {
+		int maxLength = maxParamsLength;
+		List<?> params = call.getParams();
+		StringBuilder sb = new StringBuilder("[");
+		boolean fits = true;
+		for (int i = 0; i < params.size() && fits; i++) {
+			Object param = Secrets.isSecretParam(call.getMethod(), i) ? REDACTED : params.get(i);
+			fits = (i == 0 || append(sb, ", ", maxLength)) && append(sb, param, maxLength);
+		}
+		if (fits) fits = append(sb, "]", maxLength);
+		if (!fits) {
+			sb.setLength(maxLength);
+			sb.append("...");
+		}
+		return sb.toString();
+	}
+
+
+	/**
+	 * Appends a value, looking into arrays, collections and maps, until the
+	 * builder exceeds the given length.
+	 * 
+	 * @return false if the value didn't fit.
+	 */
+	private static boolean append(StringBuilder sb, Object value, int maxLength) {
+		if (value instanceof Object[]) {
+			return appendElements(sb, Arrays.asList((Object[]) value), "[", "]", maxLength);
+		} else if (value instanceof Collection) {
+			return appendElements(sb, (Collection<?>) value, "[", "]", maxLength);
+		} else if (value instanceof Map) {
+			return appendElements(sb, ((Map<?, ?>) value).entrySet(), "{", "}", maxLength);
+		} else if (value instanceof Map.Entry) {
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) value;
+			return append(sb, entry.getKey(), maxLength)
+					&& append(sb, "=", maxLength)
+					&& append(sb, entry.getValue(), maxLength);
+		}
+		String text = String.valueOf(value);
+		int room = maxLength + 1 - sb.length();
+		if (text.length() < room) {
+			sb.append(text);
+			return true;
+		}
+		sb.append(text, 0, Math.max(room, 0));
+		return false;
+	}
+
+
+	private static boolean appendElements(StringBuilder sb, Iterable<?> elements, String open, String close, int maxLength) {
+		if (!append(sb, open, maxLength)) return false;
+		boolean first = true;
+		for (Object element : elements) {
+			if (!first && !append(sb, ", ", maxLength)) return false;
+			if (!append(sb, element, maxLength)) return false;
+			first = false;
+		}
+		return append(sb, close, maxLength);
+	}
+
+
+	private static String[] toStrings(List<RecordedCall> calls) {
+		String[] lines = new String[calls.size()];
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = calls.get(i).toString();
+		}
+		return lines;
+	}
+
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+/**
+ * JMX view of {@link SlowCallLog}.
+ * 
+ * @author Claus Nielsen
+ */
+public interface SlowCallLogMXBean {
+
+	/**
+	 * Gets the slowest calls, slowest first, one line each.
+	 */
+	String[] getSlowestCalls();
+
+	/**
+	 * Gets the most recent calls, newest first, one line each.
+	 */
+	String[] getRecentCalls();
+
+	int getLogSampleRate();
+
+	/**
+	 * Sets how often calls are logged; 1 logs every call, 100 every 100th
+	 * call, and 0 disables logging.
+	 */
+	void setLogSampleRate(int logSampleRate);
+
+	/**
+	 * Forgets all recorded calls.
+	 */
+	void clear();
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.request;
+
+import java.nio.ByteBuffer;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Binary request parameter, sent to bitcoind hex encoded.
+ * <p>
+ * The hex encoding is written directly into the request body when the
+ * request is serialized.
+ * 
+ * @author Claus Nielsen
+ */
+@JsonSerialize(using = HexDataSerializer.class)
+public class HexData {
+
+	private final ByteBuffer bytes;
+
+	/**
+	 * Creates parameter holding the remaining bytes of the given buffer.
+	 * <p>
+	 * The buffer is not copied, so it must not be changed until the request
+	 * has been sent.
+	 * 
+	 * @param bytes
+	 */
+	public HexData(ByteBuffer bytes) {
+		this.bytes = bytes;
+	}
+
+	public ByteBuffer getBytes() {
+		return bytes;
+	}
+
+}
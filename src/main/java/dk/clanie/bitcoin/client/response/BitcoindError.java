@@ -15,5 +15,22 @@ public class BitcoindError extends BaseClass {
 
 	private Integer code;
 	private String message;
-	
+
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param code - bitcoind error code.
+	 * @param message
+	 */
+	public BitcoindError(Integer code, String message) {
+		this.code = code;
+		this.message = message;
+	}
+
+
+	@SuppressWarnings("unused") // Used by Jackson
+	private BitcoindError() {
+	}
+
 }
@@ -28,4 +28,20 @@ import org.springframework.roo.addon.javabean.RooJavaBean;
 @RooJavaBean(settersByDefault = false)
 public class BitcoindErrorResponse extends BitcoindJsonRpcResponse<Object> {
 
+	/**
+	 * Creates an error response.
+	 * <p>
+	 * Used where an error is produced locally instead of being received
+	 * from bitcoind.
+	 * 
+	 * @param code - bitcoind error code.
+	 * @param message
+	 * @return error response.
+	 */
+	public static BitcoindErrorResponse withError(int code, String message) {
+		BitcoindErrorResponse response = new BitcoindErrorResponse();
+		response.setError(new BitcoindError(code, message));
+		return response;
+	}
+
 }
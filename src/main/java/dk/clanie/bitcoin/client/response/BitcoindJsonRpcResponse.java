@@ -19,6 +19,7 @@ package dk.clanie.bitcoin.client.response;
 
 import org.springframework.roo.addon.javabean.RooJavaBean;
 
+import dk.clanie.bitcoin.exception.BitcoinException;
 import dk.clanie.bitcoin.json.JsonExtra;
 
 /**
@@ -36,4 +37,48 @@ public abstract class BitcoindJsonRpcResponse<RT> extends JsonExtra {
 	private BitcoindError error;
 	private String id;
 
+
+	/**
+	 * Creates a response of the given type holding the given result.
+	 * <p>
+	 * Used where a result is produced locally instead of being received
+	 * from bitcoind.
+	 * 
+	 * @param responseType
+	 * @param result
+	 * @return response of the given type.
+	 */
+	public static <R extends BitcoindJsonRpcResponse<T>, T> R withResult(Class<R> responseType, T result) {
+		R response;
+		try {
+			response = responseType.newInstance();
+		} catch (InstantiationException | IllegalAccessException e) {
+			throw new BitcoinException(e);
+		}
+		((BitcoindJsonRpcResponse<T>) response).setResult(result);
+		return response;
+	}
+
+
+	/**
+	 * Sets the result.
+	 * <p>
+	 * Subclasses may override this to control how the result is deserialized.
+	 * 
+	 * @param result
+	 */
+	protected void setResult(RT result) {
+		this.result = result;
+	}
+
+
+	/**
+	 * Sets the error.
+	 * 
+	 * @param error
+	 */
+	protected void setError(BitcoindError error) {
+		this.error = error;
+	}
+
 }
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import dk.clanie.bitcoin.json.HexBytesDeserializer;
+import dk.clanie.bitcoin.json.HexBytesSerializer;
+
+/**
+ * Common response object used for methods returning hex encoded binary data,
+ * such as raw transactions.
+ * <p>
+ * The hex string is decoded into a byte array while the response is parsed.
+ * 
+ * @author Claus Nielsen
+ */
+@SuppressWarnings("serial")
+public class ByteArrayResponse extends BitcoindJsonRpcResponse<byte[]> {
+
+	@Override
+	@JsonSerialize(using = HexBytesSerializer.class)
+	public byte[] getResult() {
+		return super.getResult();
+	}
+
+
+	@Override
+	@JsonDeserialize(using = HexBytesDeserializer.class)
+	protected void setResult(byte[] result) {
+		super.setResult(result);
+	}
+
+}
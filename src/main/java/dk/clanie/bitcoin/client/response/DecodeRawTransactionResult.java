@@ -54,4 +54,28 @@ public class DecodeRawTransactionResult extends JsonExtra {
 	@JsonProperty("vout")
 	private TransactionOutput[] txOutputs;
 
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param txId - transaction id.
+	 * @param version
+	 * @param locktime
+	 * @param txInputs
+	 * @param txOutputs
+	 */
+	public DecodeRawTransactionResult(String txId, Integer version, Integer locktime,
+			TransactionInput[] txInputs, TransactionOutput[] txOutputs) {
+		this.txId = txId;
+		this.version = version;
+		this.locktime = locktime;
+		this.txInputs = txInputs;
+		this.txOutputs = txOutputs;
+	}
+
+
+	@SuppressWarnings("unused") // Used by Jackson
+	private DecodeRawTransactionResult() {
+	}
+
 }
@@ -19,11 +19,13 @@ package dk.clanie.bitcoin.client.response;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.Map;
 
 import org.springframework.roo.addon.javabean.RooJavaBean;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import dk.clanie.bitcoin.json.JsonExtra;
 
@@ -34,6 +36,7 @@ import dk.clanie.bitcoin.json.JsonExtra;
  */
 @SuppressWarnings("serial")
 @RooJavaBean(settersByDefault = false)
+@JsonDeserialize(using = GetBlockResultDeserializer.class)
 @JsonPropertyOrder({
 	"hash",
 	"confirmations",
@@ -74,4 +77,67 @@ public class GetBlockResult extends JsonExtra {
 	@JsonProperty("nextblockhash")
 	private String nextBlockHash;
 
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param hash
+	 * @param confirmations
+	 * @param size - bytes.
+	 * @param height
+	 * @param version
+	 * @param merkleRoot
+	 * @param transactions - ids of the block's transactions.
+	 * @param time
+	 * @param nonce
+	 * @param bits
+	 * @param difficulty
+	 * @param previousBlockHash - null for the genesis block.
+	 * @param nextBlockHash - null for the last block.
+	 */
+	public GetBlockResult(String hash, Integer confirmations, Integer size, Long height, Integer version,
+			String merkleRoot, String[] transactions, Date time, Long nonce, String bits, BigDecimal difficulty,
+			String previousBlockHash, String nextBlockHash) {
+		this(hash, confirmations, size, height, version, merkleRoot, transactions, time, nonce, bits,
+				difficulty, previousBlockHash, nextBlockHash, null);
+	}
+
+
+	/**
+	 * Constructor used by {@link GetBlockResultDeserializer}.
+	 * 
+	 * @param hash
+	 * @param confirmations
+	 * @param size
+	 * @param height
+	 * @param version
+	 * @param merkleRoot
+	 * @param transactions
+	 * @param time
+	 * @param nonce
+	 * @param bits
+	 * @param difficulty
+	 * @param previousBlockHash
+	 * @param nextBlockHash
+	 * @param otherFields - unknown fields; optional (may be null).
+	 */
+	GetBlockResult(String hash, Integer confirmations, Integer size, Long height, Integer version,
+			String merkleRoot, String[] transactions, Date time, Long nonce, String bits, BigDecimal difficulty,
+			String previousBlockHash, String nextBlockHash, Map<String, Object> otherFields) {
+		super(otherFields);
+		this.hash = hash;
+		this.confirmations = confirmations;
+		this.size = size;
+		this.height = height;
+		this.version = version;
+		this.merkleRoot = merkleRoot;
+		this.transactions = transactions;
+		this.time = time;
+		this.nonce = nonce;
+		this.bits = bits;
+		this.difficulty = difficulty;
+		this.previousBlockHash = previousBlockHash;
+		this.nextBlockHash = nextBlockHash;
+	}
+
 }
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.response;
+
+import static dk.clanie.bitcoin.client.response.ResponseFields.date;
+import static dk.clanie.bitcoin.client.response.ResponseFields.decimal;
+import static dk.clanie.bitcoin.client.response.ResponseFields.endObject;
+import static dk.clanie.bitcoin.client.response.ResponseFields.integer;
+import static dk.clanie.bitcoin.client.response.ResponseFields.longValue;
+import static dk.clanie.bitcoin.client.response.ResponseFields.other;
+import static dk.clanie.bitcoin.client.response.ResponseFields.startObject;
+import static dk.clanie.bitcoin.client.response.ResponseFields.text;
+import static dk.clanie.bitcoin.client.response.ResponseFields.texts;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+/**
+ * Deserializes {@link GetBlockResult} directly from the parser's tokens,
+ * without Jackson's reflection based bean deserializer. Unknown fields go
+ * to otherFields.
+ * 
+ * @author Claus Nielsen
+ */
+public class GetBlockResultDeserializer extends JsonDeserializer<GetBlockResult> {
+
+	@Override
+	public GetBlockResult deserialize(JsonParser jp, DeserializationContext ctxt)
+			throws IOException, JsonProcessingException {
+		String hash = null;
+		Integer confirmations = null;
+		Integer size = null;
+		Long height = null;
+		Integer version = null;
+		String merkleRoot = null;
+		String[] transactions = null;
+		Date time = null;
+		Long nonce = null;
+		String bits = null;
+		BigDecimal difficulty = null;
+		String previousBlockHash = null;
+		String nextBlockHash = null;
+		Map<String, Object> otherFields = null;
+		JsonToken token = startObject(jp);
+		for (; token == JsonToken.FIELD_NAME; token = jp.nextToken()) {
+			String field = jp.getCurrentName();
+			token = jp.nextToken();
+			if ("hash".equals(field)) hash = text(jp, token);
+			else if ("confirmations".equals(field)) confirmations = integer(jp, token);
+			else if ("size".equals(field)) size = integer(jp, token);
+			else if ("height".equals(field)) height = longValue(jp, token);
+			else if ("version".equals(field)) version = integer(jp, token);
+			else if ("merkleroot".equals(field)) merkleRoot = text(jp, token);
+			else if ("tx".equals(field)) transactions = texts(jp, token);
+			else if ("time".equals(field)) time = date(jp, token, ctxt);
+			else if ("nonce".equals(field)) nonce = longValue(jp, token);
+			else if ("bits".equals(field)) bits = text(jp, token);
+			else if ("difficulty".equals(field)) difficulty = decimal(jp, token);
+			else if ("previousblockhash".equals(field)) previousBlockHash = text(jp, token);
+			else if ("nextblockhash".equals(field)) nextBlockHash = text(jp, token);
+			else otherFields = other(otherFields, field, jp);
+		}
+		endObject(jp, token, "block");
+		return new GetBlockResult(hash, confirmations, size, height, version, merkleRoot, transactions, time,
+				nonce, bits, difficulty, previousBlockHash, nextBlockHash, otherFields);
+	}
+
+}
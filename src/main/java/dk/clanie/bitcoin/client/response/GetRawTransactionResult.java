@@ -18,11 +18,13 @@
 package dk.clanie.bitcoin.client.response;
 
 import java.util.Date;
+import java.util.Map;
 
 import org.springframework.roo.addon.javabean.RooJavaBean;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import dk.clanie.bitcoin.TransactionInput;
 import dk.clanie.bitcoin.TransactionOutput;
@@ -35,6 +37,7 @@ import dk.clanie.bitcoin.json.JsonExtra;
  */
 @SuppressWarnings("serial")
 @RooJavaBean(settersByDefault = false)
+@JsonDeserialize(using = GetRawTransactionResultDeserializer.class)
 @JsonPropertyOrder({
 	"hex", 
 	"txid",
@@ -74,4 +77,57 @@ public class GetRawTransactionResult extends JsonExtra {
 	@JsonProperty("blocktime")
 	private Date blockTime;
 
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param hex - the raw transaction.
+	 * @param txId
+	 * @param version
+	 * @param lockTime
+	 * @param txInputs
+	 * @param txOutputs
+	 * @param blockHash - null while in the memory pool.
+	 * @param confirmations
+	 * @param time
+	 * @param blockTime
+	 */
+	public GetRawTransactionResult(String hex, String txId, Integer version, Integer lockTime,
+			TransactionInput[] txInputs, TransactionOutput[] txOutputs, String blockHash, Integer confirmations,
+			Date time, Date blockTime) {
+		this(hex, txId, version, lockTime, txInputs, txOutputs, blockHash, confirmations, time, blockTime, null);
+	}
+
+
+	/**
+	 * Constructor used by {@link GetRawTransactionResultDeserializer}.
+	 * 
+	 * @param hex
+	 * @param txId
+	 * @param version
+	 * @param lockTime
+	 * @param txInputs
+	 * @param txOutputs
+	 * @param blockHash
+	 * @param confirmations
+	 * @param time
+	 * @param blockTime
+	 * @param otherFields - unknown fields; optional (may be null).
+	 */
+	GetRawTransactionResult(String hex, String txId, Integer version, Integer lockTime,
+			TransactionInput[] txInputs, TransactionOutput[] txOutputs, String blockHash, Integer confirmations,
+			Date time, Date blockTime, Map<String, Object> otherFields) {
+		super(otherFields);
+		this.hex = hex;
+		this.txId = txId;
+		this.version = version;
+		this.lockTime = lockTime;
+		this.txInputs = txInputs;
+		this.txOutputs = txOutputs;
+		this.blockHash = blockHash;
+		this.confirmations = confirmations;
+		this.time = time;
+		this.blockTime = blockTime;
+	}
+
 }
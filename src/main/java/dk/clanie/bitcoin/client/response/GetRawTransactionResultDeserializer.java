@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.response;
+
+import static dk.clanie.bitcoin.client.response.ResponseFields.date;
+import static dk.clanie.bitcoin.client.response.ResponseFields.endObject;
+import static dk.clanie.bitcoin.client.response.ResponseFields.integer;
+import static dk.clanie.bitcoin.client.response.ResponseFields.other;
+import static dk.clanie.bitcoin.client.response.ResponseFields.startObject;
+import static dk.clanie.bitcoin.client.response.ResponseFields.text;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+
+import dk.clanie.bitcoin.TransactionInput;
+import dk.clanie.bitcoin.TransactionOutput;
+
+/**
+ * Deserializes {@link GetRawTransactionResult} directly from the parser's
+ * tokens, without Jackson's reflection based bean deserializer. The inputs
+ * and outputs are bound by Jackson. Unknown fields go to otherFields.
+ * 
+ * @author Claus Nielsen
+ */
+public class GetRawTransactionResultDeserializer extends JsonDeserializer<GetRawTransactionResult> {
+
+	@Override
+	public GetRawTransactionResult deserialize(JsonParser jp, DeserializationContext ctxt)
+			throws IOException, JsonProcessingException {
+		String hex = null;
+		String txId = null;
+		Integer version = null;
+		Integer lockTime = null;
+		TransactionInput[] txInputs = null;
+		TransactionOutput[] txOutputs = null;
+		String blockHash = null;
+		Integer confirmations = null;
+		Date time = null;
+		Date blockTime = null;
+		Map<String, Object> otherFields = null;
+		JsonToken token = startObject(jp);
+		for (; token == JsonToken.FIELD_NAME; token = jp.nextToken()) {
+			String field = jp.getCurrentName();
+			token = jp.nextToken();
+			if ("hex".equals(field)) hex = text(jp, token);
+			else if ("txid".equals(field)) txId = text(jp, token);
+			else if ("version".equals(field)) version = integer(jp, token);
+			else if ("locktime".equals(field)) lockTime = integer(jp, token);
+			else if ("vin".equals(field)) txInputs = array(TransactionInput[].class, jp, token, ctxt);
+			else if ("vout".equals(field)) txOutputs = array(TransactionOutput[].class, jp, token, ctxt);
+			else if ("blockhash".equals(field)) blockHash = text(jp, token);
+			else if ("confirmations".equals(field)) confirmations = integer(jp, token);
+			else if ("time".equals(field)) time = date(jp, token, ctxt);
+			else if ("blocktime".equals(field)) blockTime = date(jp, token, ctxt);
+			else otherFields = other(otherFields, field, jp);
+		}
+		endObject(jp, token, "transaction");
+		return new GetRawTransactionResult(hex, txId, version, lockTime, txInputs, txOutputs, blockHash,
+				confirmations, time, blockTime, otherFields);
+	}
+
+
+	/**
+	 * Binds an array with the deserializer Jackson has for it, which is only
+	 * built once per ObjectMapper.
+	 */
+	private static <T> T[] array(Class<T[]> type, JsonParser jp, JsonToken token, DeserializationContext ctxt)
+			throws IOException, JsonMappingException {
+		if (token == JsonToken.VALUE_NULL) return null;
+		return type.cast(ctxt.findRootValueDeserializer(ctxt.constructType(type)).deserialize(jp, ctxt));
+	}
+
+}
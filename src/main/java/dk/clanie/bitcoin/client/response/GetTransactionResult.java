@@ -81,5 +81,37 @@ public class GetTransactionResult extends JsonExtra {
 	private Date timeReceived;
 
 	private TransactionDetail[] details;
-	
+
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param amount - net amount, excluding any fee.
+	 * @param confirmations
+	 * @param blockHash
+	 * @param blockIndex
+	 * @param blockTime
+	 * @param txId
+	 * @param time
+	 * @param timeReceived
+	 * @param details
+	 */
+	public GetTransactionResult(BigDecimal amount, Integer confirmations, String blockHash, Integer blockIndex,
+			Date blockTime, String txId, Date time, Date timeReceived, TransactionDetail[] details) {
+		this.amount = amount;
+		this.confirmations = confirmations;
+		this.blockHash = blockHash;
+		this.blockIndex = blockIndex;
+		this.blockTime = blockTime;
+		this.txId = txId;
+		this.time = time;
+		this.timeReceived = timeReceived;
+		this.details = details;
+	}
+
+
+	@SuppressWarnings("unused") // Used by Jackson
+	private GetTransactionResult() {
+	}
+
 }
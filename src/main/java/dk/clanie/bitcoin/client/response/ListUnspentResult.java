@@ -17,28 +17,64 @@
 package dk.clanie.bitcoin.client.response;
 
 import java.math.BigDecimal;
+import java.util.Map;
 
 import org.springframework.roo.addon.javabean.RooJavaBean;
 
-import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import dk.clanie.bitcoin.TransactionOutputRef;
 import dk.clanie.bitcoin.json.JsonExtra;
 
 /**
  * Data about one unspent transaction output.
+ * <p>
+ * The fields of txRef, txid and vout, are inlined in the JSON object.
  * 
  * @author Claus Nielsen
  */
 @SuppressWarnings("serial")
 @RooJavaBean(settersByDefault = false)
+@JsonDeserialize(using = ListUnspentResultDeserializer.class)
+@JsonSerialize(using = ListUnspentResultSerializer.class)
 public class ListUnspentResult extends JsonExtra {
 
-	@JsonUnwrapped
 	private TransactionOutputRef txRef;
 
 	private String scriptPubKey;
 	private BigDecimal amount;
 	private Integer confirmations;
 
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param txRef - the unspent output.
+	 * @param scriptPubKey - hex encoded script.
+	 * @param amount - bitcoins.
+	 * @param confirmations
+	 */
+	public ListUnspentResult(TransactionOutputRef txRef, String scriptPubKey, BigDecimal amount, Integer confirmations) {
+		this(txRef, scriptPubKey, amount, confirmations, null);
+	}
+
+
+	/**
+	 * Constructor used by {@link ListUnspentResultDeserializer}.
+	 * 
+	 * @param txRef
+	 * @param scriptPubKey
+	 * @param amount
+	 * @param confirmations
+	 * @param otherFields - unknown fields; optional (may be null).
+	 */
+	ListUnspentResult(TransactionOutputRef txRef, String scriptPubKey, BigDecimal amount, Integer confirmations, Map<String, Object> otherFields) {
+		super(otherFields);
+		this.txRef = txRef;
+		this.scriptPubKey = scriptPubKey;
+		this.amount = amount;
+		this.confirmations = confirmations;
+	}
+
 }
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.response;
+
+import static dk.clanie.bitcoin.client.response.ResponseFields.decimal;
+import static dk.clanie.bitcoin.client.response.ResponseFields.endObject;
+import static dk.clanie.bitcoin.client.response.ResponseFields.integer;
+import static dk.clanie.bitcoin.client.response.ResponseFields.other;
+import static dk.clanie.bitcoin.client.response.ResponseFields.startObject;
+import static dk.clanie.bitcoin.client.response.ResponseFields.text;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import dk.clanie.bitcoin.TransactionOutputRef;
+
+/**
+ * Deserializes {@link ListUnspentResult} directly from the parser's tokens.
+ * <p>
+ * Jackson's bean deserializer can't combine the unwrapped
+ * {@link TransactionOutputRef} with the any-setter inherited from
+ * {@link dk.clanie.bitcoin.json.JsonExtra} - the any-setter gets txid and
+ * vout (see https://github.com/FasterXML/jackson-annotations/issues/10).
+ * Unknown fields go to otherFields.
+ * 
+ * @author Claus Nielsen
+ */
+public class ListUnspentResultDeserializer extends JsonDeserializer<ListUnspentResult> {
+
+	@Override
+	public ListUnspentResult deserialize(JsonParser jp, DeserializationContext ctxt)
+			throws IOException, JsonProcessingException {
+		String txId = null;
+		Integer vout = null;
+		String scriptPubKey = null;
+		BigDecimal amount = null;
+		Integer confirmations = null;
+		Map<String, Object> otherFields = null;
+		JsonToken token = startObject(jp);
+		for (; token == JsonToken.FIELD_NAME; token = jp.nextToken()) {
+			String field = jp.getCurrentName();
+			token = jp.nextToken();
+			if ("txid".equals(field)) txId = text(jp, token);
+			else if ("vout".equals(field)) vout = integer(jp, token);
+			else if ("scriptPubKey".equals(field)) scriptPubKey = text(jp, token);
+			else if ("amount".equals(field)) amount = decimal(jp, token);
+			else if ("confirmations".equals(field)) confirmations = integer(jp, token);
+			else otherFields = other(otherFields, field, jp);
+		}
+		endObject(jp, token, "unspent output");
+		TransactionOutputRef txRef = txId == null && vout == null ? null : new TransactionOutputRef(txId, vout);
+		return new ListUnspentResult(txRef, scriptPubKey, amount, confirmations, otherFields);
+	}
+
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.response;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import dk.clanie.bitcoin.TransactionOutputRef;
+
+/**
+ * Serializes {@link ListUnspentResult} in bitcoind's format, with txid and
+ * vout inlined, followed by any other fields.
+ * 
+ * @author Claus Nielsen
+ * @see ListUnspentResultDeserializer
+ */
+public class ListUnspentResultSerializer extends JsonSerializer<ListUnspentResult> {
+
+	@Override
+	public void serialize(ListUnspentResult value, JsonGenerator jgen,
+			SerializerProvider provider) throws IOException,
+			JsonProcessingException {
+		jgen.writeStartObject();
+		TransactionOutputRef txRef = value.getTxRef();
+		if (txRef != null) {
+			jgen.writeStringField("txid", txRef.getTxId());
+			writeNumberField("vout", txRef.getVout(), jgen);
+		}
+		jgen.writeStringField("scriptPubKey", value.getScriptPubKey());
+		if (value.getAmount() == null) jgen.writeNullField("amount");
+		else jgen.writeNumberField("amount", value.getAmount());
+		writeNumberField("confirmations", value.getConfirmations(), jgen);
+		for (Map.Entry<String, Object> field : value.getOtherFields().entrySet()) {
+			provider.defaultSerializeField(field.getKey(), field.getValue(), jgen);
+		}
+		jgen.writeEndObject();
+	}
+
+
+	private static void writeNumberField(String name, Integer value, JsonGenerator jgen) throws IOException {
+		if (value == null) jgen.writeNullField(name);
+		else jgen.writeNumberField(name, value.intValue());
+	}
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.response;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static dk.clanie.collections.CollectionFactory.newHashMap;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+
+/**
+ * Reads field values for the hand-written response deserializers, binding
+ * them the way Jackson's bean deserializer would.
+ * <p>
+ * The hand-written deserializers are a partial fast path, covering only the
+ * results returned in bulk: {@link TransactionData}, {@link GetBlockResult},
+ * {@link GetRawTransactionResult} and {@link ListUnspentResult}. All other
+ * response classes, and the inputs and outputs of raw transactions, are
+ * bound by Jackson's bean deserializer. Each deserializer must be kept in
+ * step with the fields of its class by hand; ResponseSerializationTest
+ * round-trips every sample of these responses through them.
+ * <p>
+ * Each method takes the parser positioned at the value, with the value's
+ * token, and returns null for a JSON null.
+ * 
+ * @author Claus Nielsen
+ */
+final class ResponseFields {
+
+	private ResponseFields() {
+	}
+
+
+	/**
+	 * Moves past the start of an object.
+	 * 
+	 * @return the token of the first field, or the end of the object.
+	 */
+	static JsonToken startObject(JsonParser jp) throws IOException {
+		JsonToken token = jp.getCurrentToken();
+		return token == JsonToken.START_OBJECT ? jp.nextToken() : token;
+	}
+
+
+	/**
+	 * Checks that an object was read to its end.
+	 */
+	static void endObject(JsonParser jp, JsonToken token, String what) throws JsonParseException {
+		if (token != JsonToken.END_OBJECT) {
+			throw new JsonParseException("Expected " + what + " object, got " + token + ".", jp.getCurrentLocation());
+		}
+	}
+
+
+	static String text(JsonParser jp, JsonToken token) throws IOException {
+		return token == JsonToken.VALUE_NULL ? null : jp.getText();
+	}
+
+
+	static Integer integer(JsonParser jp, JsonToken token) throws IOException {
+		return token == JsonToken.VALUE_NULL ? null : jp.getIntValue();
+	}
+
+
+	static Long longValue(JsonParser jp, JsonToken token) throws IOException {
+		return token == JsonToken.VALUE_NULL ? null : jp.getLongValue();
+	}
+
+
+	static BigDecimal decimal(JsonParser jp, JsonToken token) throws IOException {
+		return token == JsonToken.VALUE_NULL ? null : jp.getDecimalValue();
+	}
+
+
+	static Boolean bool(JsonParser jp, JsonToken token) throws IOException {
+		return token == JsonToken.VALUE_NULL ? null : jp.getBooleanValue();
+	}
+
+
+	/**
+	 * Reads a date; numbers are milliseconds since the epoch and strings are
+	 * parsed with the context's date format, as Jackson does.
+	 */
+	static Date date(JsonParser jp, JsonToken token, DeserializationContext ctxt) throws IOException {
+		if (token == JsonToken.VALUE_NULL) return null;
+		if (token == JsonToken.VALUE_STRING) return ctxt.parseDate(jp.getText());
+		return new Date(jp.getLongValue());
+	}
+
+
+	static String[] texts(JsonParser jp, JsonToken token) throws IOException {
+		if (token == JsonToken.VALUE_NULL) return null;
+		if (token != JsonToken.START_ARRAY) {
+			throw new JsonParseException("Expected array, got " + token + ".", jp.getCurrentLocation());
+		}
+		List<String> texts = newArrayList();
+		for (token = jp.nextToken(); token != JsonToken.END_ARRAY; token = jp.nextToken()) {
+			texts.add(text(jp, token));
+		}
+		return texts.toArray(new String[texts.size()]);
+	}
+
+
+	/**
+	 * Reads the value of an unknown field into otherFields.
+	 * 
+	 * @param otherFields - optional (may be null).
+	 * @return otherFields, created if it was null.
+	 */
+	static Map<String, Object> other(Map<String, Object> otherFields, String field, JsonParser jp) throws IOException {
+		if (otherFields == null) otherFields = newHashMap();
+		otherFields.put(field, jp.readValueAs(Object.class));
+		return otherFields;
+	}
+
+
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.response;
+
+import org.springframework.roo.addon.javabean.RooJavaBean;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import dk.clanie.bitcoin.json.HexBytesDeserializer;
+import dk.clanie.bitcoin.json.HexBytesSerializer;
+import dk.clanie.bitcoin.json.JsonExtra;
+
+/**
+ * Data returned by BitcoindClient's signRawTransaction method when the raw
+ * transaction is passed as bytes.
+ * <p>
+ * Same as {@link SignRawTransactionResult}, except that the signed
+ * transaction is decoded into a byte array.
+ * 
+ * @author Claus Nielsen
+ */
+@SuppressWarnings("serial")
+@RooJavaBean(settersByDefault = false)
+@JsonPropertyOrder({
+	"hex", 
+	"complete" 
+})
+public class SignRawTransactionBytesResult extends JsonExtra {
+
+	@JsonProperty("hex")
+	@JsonSerialize(using = HexBytesSerializer.class)
+	@JsonDeserialize(using = HexBytesDeserializer.class)
+	private byte[] rawTransaction;
+
+	private Boolean complete;
+
+}
@@ -19,6 +19,7 @@ package dk.clanie.bitcoin.client.response;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.Map;
 
 import org.springframework.roo.addon.javabean.RooJavaBean;
 
@@ -26,6 +27,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import dk.clanie.bitcoin.json.BigDecimalPlainSerializer;
@@ -39,6 +41,7 @@ import dk.clanie.bitcoin.json.JsonExtra;
  */
 @SuppressWarnings("serial")
 @RooJavaBean(settersByDefault = false)
+@JsonDeserialize(using = TransactionDataDeserializer.class)
 @JsonPropertyOrder({
 	"account",
 	"address",
@@ -100,4 +103,73 @@ public class TransactionData extends JsonExtra {
 	@JsonInclude(Include.NON_NULL)
 	private String to;
 
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param account
+	 * @param address
+	 * @param category - send, receive, generate, immature or orphan.
+	 * @param amount - negative for sends.
+	 * @param fee - negative, only for sends.
+	 * @param confirmations
+	 * @param generated - true for coinbase transactions, otherwise null.
+	 * @param blockHash
+	 * @param blockIndex
+	 * @param blockTime
+	 * @param txId
+	 * @param time
+	 * @param timeReceived
+	 * @param comment
+	 * @param to
+	 */
+	public TransactionData(String account, String address, String category, BigDecimal amount, BigDecimal fee,
+			Integer confirmations, Boolean generated, String blockHash, Integer blockIndex, Date blockTime,
+			String txId, Date time, Date timeReceived, String comment, String to) {
+		this(account, address, category, amount, fee, confirmations, generated, blockHash, blockIndex,
+				blockTime, txId, time, timeReceived, comment, to, null);
+	}
+
+
+	/**
+	 * Constructor used by {@link TransactionDataDeserializer}.
+	 * 
+	 * @param account
+	 * @param address
+	 * @param category
+	 * @param amount
+	 * @param fee
+	 * @param confirmations
+	 * @param generated
+	 * @param blockHash
+	 * @param blockIndex
+	 * @param blockTime
+	 * @param txId
+	 * @param time
+	 * @param timeReceived
+	 * @param comment
+	 * @param to
+	 * @param otherFields - unknown fields; optional (may be null).
+	 */
+	TransactionData(String account, String address, String category, BigDecimal amount, BigDecimal fee,
+			Integer confirmations, Boolean generated, String blockHash, Integer blockIndex, Date blockTime,
+			String txId, Date time, Date timeReceived, String comment, String to, Map<String, Object> otherFields) {
+		super(otherFields);
+		this.account = account;
+		this.address = address;
+		this.category = category;
+		this.amount = amount;
+		this.fee = fee;
+		this.confirmations = confirmations;
+		this.generated = generated;
+		this.blockHash = blockHash;
+		this.blockIndex = blockIndex;
+		this.blockTime = blockTime;
+		this.txId = txId;
+		this.time = time;
+		this.timeReceived = timeReceived;
+		this.comment = comment;
+		this.to = to;
+	}
+
 }
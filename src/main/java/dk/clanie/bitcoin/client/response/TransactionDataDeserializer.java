@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.response;
+
+import static dk.clanie.bitcoin.client.response.ResponseFields.bool;
+import static dk.clanie.bitcoin.client.response.ResponseFields.date;
+import static dk.clanie.bitcoin.client.response.ResponseFields.decimal;
+import static dk.clanie.bitcoin.client.response.ResponseFields.endObject;
+import static dk.clanie.bitcoin.client.response.ResponseFields.integer;
+import static dk.clanie.bitcoin.client.response.ResponseFields.other;
+import static dk.clanie.bitcoin.client.response.ResponseFields.startObject;
+import static dk.clanie.bitcoin.client.response.ResponseFields.text;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+/**
+ * Deserializes {@link TransactionData} directly from the parser's tokens.
+ * <p>
+ * listtransactions and listsinceblock return long arrays of these, so they
+ * are bound without Jackson's reflection based bean deserializer, which
+ * also has to be built the first time a response is bound. Unknown fields
+ * go to otherFields.
+ * 
+ * @author Claus Nielsen
+ */
+public class TransactionDataDeserializer extends JsonDeserializer<TransactionData> {
+
+	@Override
+	public TransactionData deserialize(JsonParser jp, DeserializationContext ctxt)
+			throws IOException, JsonProcessingException {
+		String account = null;
+		String address = null;
+		String category = null;
+		BigDecimal amount = null;
+		BigDecimal fee = null;
+		Integer confirmations = null;
+		Boolean generated = null;
+		String blockHash = null;
+		Integer blockIndex = null;
+		Date blockTime = null;
+		String txId = null;
+		Date time = null;
+		Date timeReceived = null;
+		String comment = null;
+		String to = null;
+		Map<String, Object> otherFields = null;
+		JsonToken token = startObject(jp);
+		for (; token == JsonToken.FIELD_NAME; token = jp.nextToken()) {
+			String field = jp.getCurrentName();
+			token = jp.nextToken();
+			if ("account".equals(field)) account = text(jp, token);
+			else if ("address".equals(field)) address = text(jp, token);
+			else if ("category".equals(field)) category = text(jp, token);
+			else if ("amount".equals(field)) amount = decimal(jp, token);
+			else if ("fee".equals(field)) fee = decimal(jp, token);
+			else if ("confirmations".equals(field)) confirmations = integer(jp, token);
+			else if ("generated".equals(field)) generated = bool(jp, token);
+			else if ("blockhash".equals(field)) blockHash = text(jp, token);
+			else if ("blockindex".equals(field)) blockIndex = integer(jp, token);
+			else if ("blocktime".equals(field)) blockTime = date(jp, token, ctxt);
+			else if ("txid".equals(field)) txId = text(jp, token);
+			else if ("time".equals(field)) time = date(jp, token, ctxt);
+			else if ("timereceived".equals(field)) timeReceived = date(jp, token, ctxt);
+			else if ("comment".equals(field)) comment = text(jp, token);
+			else if ("to".equals(field)) to = text(jp, token);
+			else otherFields = other(otherFields, field, jp);
+		}
+		endObject(jp, token, "transaction");
+		return new TransactionData(account, address, category, amount, fee, confirmations, generated,
+				blockHash, blockIndex, blockTime, txId, time, timeReceived, comment, to, otherFields);
+	}
+
+}
@@ -49,5 +49,28 @@ public class TransactionDetail extends JsonExtra {
 	
 	@JsonInclude(Include.NON_NULL)
 	private BigDecimal fee;
-	
+
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param account
+	 * @param address
+	 * @param category - send, receive, generate, immature or orphan.
+	 * @param amount - negative for sends.
+	 * @param fee - negative, only for sends.
+	 */
+	public TransactionDetail(String account, String address, String category, BigDecimal amount, BigDecimal fee) {
+		this.account = account;
+		this.address = address;
+		this.category = category;
+		this.amount = amount;
+		this.fee = fee;
+	}
+
+
+	@SuppressWarnings("unused") // Used by Jackson
+	private TransactionDetail() {
+	}
+
 }
@@ -69,4 +69,32 @@ public class ValidateAddressResult extends JsonExtra {
 	@JsonInclude(Include.NON_NULL)
 	private String account;
 
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param valid
+	 * @param address
+	 * @param mine
+	 * @param script
+	 * @param pubKey
+	 * @param compressed
+	 * @param account
+	 */
+	public ValidateAddressResult(Boolean valid, String address, Boolean mine,
+			Boolean script, String pubKey, Boolean compressed, String account) {
+		this.valid = valid;
+		this.address = address;
+		this.mine = mine;
+		this.script = script;
+		this.pubKey = pubKey;
+		this.compressed = compressed;
+		this.account = account;
+	}
+
+
+	@SuppressWarnings("unused") // Used by Jackson
+	private ValidateAddressResult() {
+	}
+
 }
@@ -0,0 +1,1313 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.simulator;
+
+import static dk.clanie.bitcoin.client.response.BitcoindJsonRpcResponse.withResult;
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static dk.clanie.collections.CollectionFactory.newHashMap;
+import static dk.clanie.util.Util.firstNotNull;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import dk.clanie.bitcoin.AddressAndAmount;
+import dk.clanie.bitcoin.AddressValidator;
+import dk.clanie.bitcoin.BitcoinNetwork;
+import dk.clanie.bitcoin.SignatureHashAlgorithm;
+import dk.clanie.bitcoin.TransactionOutput;
+import dk.clanie.bitcoin.TransactionOutputRef;
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.request.AddNodeAction;
+import dk.clanie.bitcoin.client.request.TemplateRequest;
+import dk.clanie.bitcoin.client.response.BigDecimalResponse;
+import dk.clanie.bitcoin.client.response.BitcoindErrorResponse;
+import dk.clanie.bitcoin.client.response.BooleanResponse;
+import dk.clanie.bitcoin.client.response.ByteArrayResponse;
+import dk.clanie.bitcoin.client.response.CreateMultiSigResponse;
+import dk.clanie.bitcoin.client.response.DecodeRawTransactionResponse;
+import dk.clanie.bitcoin.client.response.DecodeRawTransactionResult;
+import dk.clanie.bitcoin.client.response.GetAddedNodeInfoResponse;
+import dk.clanie.bitcoin.client.response.GetBlockResponse;
+import dk.clanie.bitcoin.client.response.GetBlockResult;
+import dk.clanie.bitcoin.client.response.GetBlockTemplateResponse;
+import dk.clanie.bitcoin.client.response.GetInfoResponse;
+import dk.clanie.bitcoin.client.response.GetMiningInfoResponse;
+import dk.clanie.bitcoin.client.response.GetPeerInfoResponse;
+import dk.clanie.bitcoin.client.response.GetRawTransactionResponse;
+import dk.clanie.bitcoin.client.response.GetRawTransactionResult;
+import dk.clanie.bitcoin.client.response.GetTransactionResponse;
+import dk.clanie.bitcoin.client.response.GetTransactionResult;
+import dk.clanie.bitcoin.client.response.GetTxOutResponse;
+import dk.clanie.bitcoin.client.response.GetTxOutSetInfoResponse;
+import dk.clanie.bitcoin.client.response.GetWorkResponse;
+import dk.clanie.bitcoin.client.response.IntegerResponse;
+import dk.clanie.bitcoin.client.response.ListAccountsResponse;
+import dk.clanie.bitcoin.client.response.ListAddressGroupingsResponse;
+import dk.clanie.bitcoin.client.response.ListLockUnspentResponse;
+import dk.clanie.bitcoin.client.response.ListReceivedByAccountResponse;
+import dk.clanie.bitcoin.client.response.ListReceivedByAddressResponse;
+import dk.clanie.bitcoin.client.response.ListSinceBlockResponse;
+import dk.clanie.bitcoin.client.response.ListTransactionsResponse;
+import dk.clanie.bitcoin.client.response.ListUnspentResponse;
+import dk.clanie.bitcoin.client.response.ListUnspentResult;
+import dk.clanie.bitcoin.client.response.LongResponse;
+import dk.clanie.bitcoin.client.response.SignRawTransactionBytesResponse;
+import dk.clanie.bitcoin.client.response.SignRawTransactionResponse;
+import dk.clanie.bitcoin.client.response.StringArrayResponse;
+import dk.clanie.bitcoin.client.response.StringResponse;
+import dk.clanie.bitcoin.client.response.TransactionData;
+import dk.clanie.bitcoin.client.response.TransactionDetail;
+import dk.clanie.bitcoin.client.response.ValidateAddressResponse;
+import dk.clanie.bitcoin.client.response.ValidateAddressResult;
+import dk.clanie.bitcoin.client.response.VoidResponse;
+import dk.clanie.bitcoin.exception.server.BitcoinServerException;
+import dk.clanie.bitcoin.exception.server.InvalidAddressException;
+import dk.clanie.bitcoin.transaction.RawTransactionBuilder;
+import dk.clanie.bitcoin.transaction.RawTransactionDecoder;
+import dk.clanie.bitcoin.util.Base58;
+import dk.clanie.bitcoin.util.Hashes;
+import dk.clanie.bitcoin.util.Hex;
+import dk.clanie.bitcoin.wallet.Outpoint;
+
+/**
+ * BitcoindClient backed by an in-memory simulated block chain and wallet.
+ * <p>
+ * Meant for testing and benchmarking wallet logic without bitcoind or a
+ * network in the loop. The wallet and chain methods work much like they do
+ * on a regtest node: addresses, accounts, sends, unspent outputs, locked
+ * outputs, the memory pool, blocks and raw transactions. Methods not
+ * simulated throw UnsupportedOperationException.
+ * <p>
+ * Blocks are only mined on demand, with {@link #mineBlocks(int)} or
+ * {@link #setGenerate(Boolean, Integer)}, and payments from outside the
+ * wallet are made with {@link #receive(String, BigDecimal)}. Everything is
+ * deterministic: two simulators created with the same seed and given the
+ * same calls produce the same addresses, transaction ids and block hashes.
+ * Block times start at {@link #GENESIS_TIME} and advance
+ * {@link #BLOCK_INTERVAL_SECONDS} per block; transactions get the time of
+ * the block they were created on top of.
+ * <p>
+ * Transactions are real, unsigned, raw transactions, so ids and hex match
+ * what {@link RawTransactionBuilder} and {@link RawTransactionDecoder}
+ * produce. Simplifications: there are no private keys or signatures, the
+ * fee is a flat {@link #setTxFee(BigDecimal) txFee} per transaction, coins
+ * are selected oldest first with change last, and blocks aren't mined with
+ * proof of work.
+ * <p>
+ * Errors are thrown as the exceptions BitcoindClientImpl throws for the
+ * error codes bitcoind answers with, eg. InvalidAddressException for code
+ * -5, which bitcoind also uses for unknown transactions and blocks.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Claus Nielsen
+ */
+public class SimulatedBitcoindClient implements BitcoindClient {
+
+	/**
+	 * Time of the genesis block, 2013-01-01 00:00:00 UTC.
+	 */
+	public static final long GENESIS_TIME = 1356998400000L;
+
+	/**
+	 * Seconds between blocks.
+	 */
+	public static final int BLOCK_INTERVAL_SECONDS = 600;
+
+	/**
+	 * Number of blocks which must follow a block before its coinbase can be
+	 * spent.
+	 */
+	public static final int COINBASE_MATURITY = 100;
+
+	private static final long COIN = 100000000L;
+	private static final long BLOCK_REWARD = 50 * COIN;
+	private static final long DEFAULT_TX_FEE = COIN / 10000;
+	private static final int BLOCK_VERSION = 2;
+	private static final int BITS = 0x207fffff;
+	private static final BigDecimal DIFFICULTY = new BigDecimal("4.656542373906925E-10");
+	private static final int HASH_SIZE = 32;
+	private static final String NULL_TX_ID = Hex.encode(new byte[HASH_SIZE]);
+	private static final String ALL_ACCOUNTS = "*";
+
+	// bitcoind error codes.
+	private static final int RPC_INVALID_ADDRESS_OR_KEY = -5;
+	private static final int RPC_TYPE_ERROR = -3;
+	private static final int RPC_WALLET_INSUFFICIENT_FUNDS = -6;
+	private static final int RPC_INVALID_PARAMETER = -8;
+
+	/**
+	 * What bitcoind returns from validateaddress for an invalid address.
+	 */
+	private static final ValidateAddressResult INVALID_ADDRESS =
+			new ValidateAddressResult(false, null, null, null, null, null, null);
+
+	private final BitcoinNetwork network;
+	private final long seed;
+	private final RawTransactionBuilder rawTransactionBuilder;
+	private final RawTransactionDecoder rawTransactionDecoder;
+	private final AddressValidator addressValidator;
+
+	// Guarded by this
+	private long keyCount = 0;
+	private long externalCount = 0;
+	private long txFee = DEFAULT_TX_FEE;
+	private final Map<String, String> accountByAddress = new LinkedHashMap<String, String>();
+	private final Map<String, String> accountAddresses = newHashMap();
+	private final Map<String, AccountTotals> accountTotals = newHashMap();
+	private final Set<String> changeAddresses = new HashSet<String>();
+	private final List<Block> blocks = newArrayList();
+	private final Map<String, Block> blocksByHash = newHashMap();
+	private final Map<String, Tx> transactions = newHashMap();
+	private final List<Tx> walletTransactions = newArrayList();
+	private final List<Tx> memPool = newArrayList();
+	private final Map<Outpoint, Coin> unspent = new LinkedHashMap<Outpoint, Coin>();
+	private final Set<Outpoint> locked = new LinkedHashSet<Outpoint>();
+
+
+	/**
+	 * Creates a simulator on the test network with seed 0.
+	 */
+	public SimulatedBitcoindClient() {
+		this(BitcoinNetwork.TEST, 0);
+	}
+
+
+	/**
+	 * Creates a simulator with a chain holding only the genesis block and an
+	 * empty wallet.
+	 *
+	 * @param network - determines the version of generated addresses.
+	 * @param seed - addresses and external transactions are derived from the
+	 *            seed.
+	 */
+	public SimulatedBitcoindClient(BitcoinNetwork network, long seed) {
+		this.network = network;
+		this.seed = seed;
+		this.rawTransactionBuilder = new RawTransactionBuilder(network);
+		this.rawTransactionDecoder = new RawTransactionDecoder(network);
+		this.addressValidator = new AddressValidator(network);
+		mineBlock(Base58.encodeChecked(network.getPubKeyHashVersion(), new byte[20]));
+	}
+
+
+	/**
+	 * Mines blocks paying the block rewards to new addresses in the wallet's
+	 * default account.
+	 * <p>
+	 * Each block includes all transactions in the memory pool when it is
+	 * mined.
+	 *
+	 * @param count - number of blocks.
+	 * @return hashes of the new blocks.
+	 */
+	public synchronized String[] mineBlocks(int count) {
+		String[] hashes = new String[count];
+		for (int i = 0; i < count; i++) {
+			hashes[i] = mineBlock(newAddress("", false)).hash;
+		}
+		return hashes;
+	}
+
+
+	/**
+	 * Mines blocks paying the block rewards to the given address.
+	 *
+	 * @param count - number of blocks.
+	 * @param address - bitcoin address, in the wallet or not.
+	 * @return hashes of the new blocks.
+	 */
+	public synchronized String[] mineBlocks(int count, String address) {
+		checkAddress(address);
+		String[] hashes = new String[count];
+		for (int i = 0; i < count; i++) {
+			hashes[i] = mineBlock(address).hash;
+		}
+		return hashes;
+	}
+
+
+	/**
+	 * Simulates a payment from outside the wallet.
+	 * <p>
+	 * The transaction spends an output of a transaction the simulator
+	 * doesn't know, and is added to the memory pool.
+	 *
+	 * @param address - bitcoin address.
+	 * @param amount - bitcoins.
+	 * @return transaction id.
+	 */
+	public synchronized String receive(String address, BigDecimal amount) {
+		checkAddress(address);
+		checkAmount(amount);
+		byte[] hashInput = ByteBuffer.allocate(16).putLong(seed).putLong(++externalCount).array();
+		String externalTxId = Hex.encode(Hashes.doubleSha256(hashInput, 0, hashInput.length));
+		byte[] raw = rawTransactionBuilder.build(
+				Collections.singletonList(new TransactionOutputRef(externalTxId, 0)),
+				new AddressAndAmount(address, amount));
+		Tx tx = addTransaction(raw, false, tipTime(), null, 0, 0, null, null);
+		memPool.add(tx);
+		return tx.txId;
+	}
+
+
+	@Override
+	public void setUrl(String url) {
+		// Nothing to call.
+	}
+
+
+	@Override
+	public StringResponse addMultiSigAddress(int nrequired, List<String> keys, String account) {
+		throw notSimulated("addmultisigaddress");
+	}
+
+
+	@Override
+	public VoidResponse addNode(String node, AddNodeAction action) {
+		throw notSimulated("addnode");
+	}
+
+
+	@Override
+	public VoidResponse backupWallet(String destination) {
+		throw notSimulated("backupwallet");
+	}
+
+
+	@Override
+	public CreateMultiSigResponse createMultiSig(Integer nRequired, String[] keys) {
+		throw notSimulated("createmultisig");
+	}
+
+
+	@Override
+	public StringResponse createRawTransaction(List<TransactionOutputRef> txOutputs, AddressAndAmount... addressAndAmount) {
+		return withResult(StringResponse.class, rawTransactionBuilder.buildHex(txOutputs, addressAndAmount));
+	}
+
+
+	@Override
+	public DecodeRawTransactionResponse decodeRawTransaction(String rawTransaction) {
+		return withResult(DecodeRawTransactionResponse.class, rawTransactionDecoder.decode(rawTransaction));
+	}
+
+
+	@Override
+	public StringResponse dumpPrivateKey(String bitcoinAddress) {
+		throw notSimulated("dumpprivkey");
+	}
+
+
+	@Override
+	public VoidResponse encryptWallet(String passPhrase) {
+		throw notSimulated("encryptwallet");
+	}
+
+
+	@Override
+	public synchronized StringResponse getAccount(String bitcoinAddress) {
+		checkAddress(bitcoinAddress);
+		return withResult(StringResponse.class, firstNotNull(accountByAddress.get(bitcoinAddress), ""));
+	}
+
+
+	@Override
+	public synchronized StringResponse getAccountAddress(String account) {
+		String address = accountAddresses.get(account);
+		if (address == null) address = newAddress(account, false);
+		return withResult(StringResponse.class, address);
+	}
+
+
+	@Override
+	public GetAddedNodeInfoResponse getAddedNodeInfo(Boolean dns, String node) {
+		throw notSimulated("getaddednodeinfo");
+	}
+
+
+	@Override
+	public synchronized StringArrayResponse getAddressesByAccount(String account) {
+		List<String> addresses = newArrayList();
+		for (Map.Entry<String, String> entry : accountByAddress.entrySet()) {
+			if (entry.getValue().equals(account)) addresses.add(entry.getKey());
+		}
+		return withResult(StringArrayResponse.class, addresses.toArray(new String[addresses.size()]));
+	}
+
+
+	/**
+	 * Gets the balance of an account or, if account is null or "*", of the
+	 * whole wallet.
+	 * <p>
+	 * Without minConf the wallet balance is the sum of spendable coins,
+	 * including unconfirmed change. Otherwise balances are calculated as
+	 * bitcoind's accounting does: received with at least minConf
+	 * confirmations, less sent and fees.
+	 */
+	@Override
+	public synchronized BigDecimalResponse getBalance(String account, Integer minConf) {
+		long balance;
+		if (account == null || ALL_ACCOUNTS.equals(account)) {
+			balance = minConf == null ? walletBalance() : accountBalance(null, minConf);
+		} else {
+			balance = accountBalance(account, firstNotNull(minConf, 1));
+		}
+		return withResult(BigDecimalResponse.class, toBitcoins(balance));
+	}
+
+
+	@Override
+	public synchronized GetBlockResponse getBlock(String hash) {
+		Block block = blocksByHash.get(hash);
+		if (block == null) throw error(RPC_INVALID_ADDRESS_OR_KEY, "Block not found");
+		String[] txIds = new String[block.transactions.size()];
+		for (int i = 0; i < txIds.length; i++) {
+			txIds[i] = block.transactions.get(i).txId;
+		}
+		Block next = block.height + 1 < blocks.size() ? blocks.get(block.height + 1) : null;
+		return withResult(GetBlockResponse.class, new GetBlockResult(block.hash, confirmations(block), block.size,
+				Long.valueOf(block.height), BLOCK_VERSION, block.merkleRoot, txIds, new Date(block.time), 0L,
+				Integer.toHexString(BITS), DIFFICULTY, block.previousHash, next == null ? null : next.hash));
+	}
+
+
+	@Override
+	public synchronized LongResponse getBlockCount() {
+		return withResult(LongResponse.class, Long.valueOf(tipHeight()));
+	}
+
+
+	@Override
+	public synchronized StringResponse getBlockHash(Long index) {
+		if (index == null || index < 0 || index > tipHeight()) throw error(RPC_INVALID_PARAMETER, "Block number out of range.");
+		return withResult(StringResponse.class, blocks.get(index.intValue()).hash);
+	}
+
+
+	@Override
+	public GetBlockTemplateResponse getBlockTemplate(TemplateRequest templateRequest) {
+		throw notSimulated("getblocktemplate");
+	}
+
+
+	@Override
+	public IntegerResponse getConnectionCount() {
+		throw notSimulated("getconnectioncount");
+	}
+
+
+	@Override
+	public IntegerResponse getDifficulty() {
+		throw notSimulated("getdifficulty");
+	}
+
+
+	@Override
+	public BooleanResponse getGenerate() {
+		return withResult(BooleanResponse.class, Boolean.FALSE);
+	}
+
+
+	@Override
+	public LongResponse getHashesPerSecond() {
+		throw notSimulated("gethashespersec");
+	}
+
+
+	@Override
+	public GetInfoResponse getInfo() {
+		throw notSimulated("getinfo");
+	}
+
+
+	@Override
+	public GetMiningInfoResponse getMiningInfo() {
+		throw notSimulated("getmininginfo");
+	}
+
+
+	@Override
+	public synchronized StringResponse getNewAddress(String account) {
+		return withResult(StringResponse.class, newAddress(firstNotNull(account, ""), false));
+	}
+
+
+	@Override
+	public GetPeerInfoResponse getPeerInfo() {
+		throw notSimulated("getpeerinfo");
+	}
+
+
+	@Override
+	public synchronized StringArrayResponse getRawMemPool() {
+		String[] txIds = new String[memPool.size()];
+		for (int i = 0; i < txIds.length; i++) {
+			txIds[i] = memPool.get(i).txId;
+		}
+		return withResult(StringArrayResponse.class, txIds);
+	}
+
+
+	@Override
+	public synchronized StringResponse getRawTransaction(String txId) {
+		return withResult(StringResponse.class, Hex.encode(transaction(txId).raw));
+	}
+
+
+	@Override
+	public synchronized ByteArrayResponse getRawTransactionBytes(String txId) {
+		return withResult(ByteArrayResponse.class, transaction(txId).raw.clone());
+	}
+
+
+	@Override
+	public synchronized GetRawTransactionResponse getRawTransaction_verbose(String txId) {
+		Tx tx = transaction(txId);
+		DecodeRawTransactionResult decoded = tx.decoded;
+		Block block = tx.block;
+		return withResult(GetRawTransactionResponse.class, new GetRawTransactionResult(Hex.encode(tx.raw), tx.txId,
+				decoded.getVersion(), decoded.getLocktime(), decoded.getTxInputs(), decoded.getTxOutputs(),
+				block == null ? null : block.hash,
+				block == null ? null : confirmations(block),
+				block == null ? null : new Date(block.time),
+				block == null ? null : new Date(block.time)));
+	}
+
+
+	@Override
+	public BigDecimalResponse getReceivedByAccount(String account, Integer minConf) {
+		throw notSimulated("getreceivedbyaccount");
+	}
+
+
+	@Override
+	public BigDecimalResponse getReceivedByAddress(String address, Integer minConf) {
+		throw notSimulated("getreceivedbyaddress");
+	}
+
+
+	@Override
+	public synchronized GetTransactionResponse getTransaction(String txId) {
+		Tx tx = transactions.get(txId);
+		if (tx == null || !tx.inWallet) throw error(RPC_INVALID_ADDRESS_OR_KEY, "Invalid or non-wallet transaction id");
+		List<TransactionData> entries = newArrayList();
+		addEntries(tx, ALL_ACCOUNTS, entries);
+		TransactionDetail[] details = new TransactionDetail[entries.size()];
+		for (int i = 0; i < details.length; i++) {
+			TransactionData entry = entries.get(i);
+			details[i] = new TransactionDetail(entry.getAccount(), entry.getAddress(), entry.getCategory(),
+					entry.getAmount(), entry.getFee());
+		}
+		Block block = tx.block;
+		return withResult(GetTransactionResponse.class, new GetTransactionResult(
+				toBitcoins(tx.credit - tx.debit + tx.fee), confirmations(tx),
+				block == null ? null : block.hash,
+				block == null ? null : tx.blockIndex,
+				block == null ? null : new Date(block.time),
+				tx.txId, new Date(tx.time), new Date(tx.time), details));
+	}
+
+
+	@Override
+	public GetTxOutResponse getTxOut(String txId, Integer n, Boolean includeMemoryPool) {
+		throw notSimulated("gettxout");
+	}
+
+
+	@Override
+	public GetTxOutSetInfoResponse getTxOutSetInfo() {
+		throw notSimulated("gettxoutsetinfo");
+	}
+
+
+	@Override
+	public GetWorkResponse getWork() {
+		throw notSimulated("getwork");
+	}
+
+
+	@Override
+	public BooleanResponse getWork(String data) {
+		throw notSimulated("getwork");
+	}
+
+
+	@Override
+	public StringResponse help(String command) {
+		throw notSimulated("help");
+	}
+
+
+	@Override
+	public VoidResponse importPrivateKey(String key, String label, Boolean rescan) {
+		throw notSimulated("importprivkey");
+	}
+
+
+	/**
+	 * Does nothing; the simulated key pool never runs out.
+	 */
+	@Override
+	public VoidResponse keyPoolRefill() {
+		return withResult(VoidResponse.class, null);
+	}
+
+
+	@Override
+	public ListAccountsResponse listAccounts(Integer minConf) {
+		throw notSimulated("listaccounts");
+	}
+
+
+	@Override
+	public ListAddressGroupingsResponse listAddressGroupings() {
+		throw notSimulated("listaddressgroupings");
+	}
+
+
+	@Override
+	public synchronized ListLockUnspentResponse listLockUnspent() {
+		TransactionOutputRef[] txRefs = new TransactionOutputRef[locked.size()];
+		int i = 0;
+		for (Outpoint outpoint : locked) {
+			txRefs[i++] = outpoint.toTransactionOutputRef();
+		}
+		return withResult(ListLockUnspentResponse.class, txRefs);
+	}
+
+
+	@Override
+	public ListReceivedByAccountResponse listReceivedByAccount(Integer minConf, Boolean includeEmpty) {
+		throw notSimulated("listreceivedbyaccount");
+	}
+
+
+	@Override
+	public ListReceivedByAddressResponse listReceivedByAddress(Integer minConf, Boolean includeEmpty) {
+		throw notSimulated("listreceivedbyaddress");
+	}
+
+
+	@Override
+	public ListSinceBlockResponse listSinceBlock(String blockHash, Integer targetConfirmations) {
+		throw notSimulated("listsinceblock");
+	}
+
+
+	@Override
+	public synchronized ListTransactionsResponse listTransactions(String account, Integer count, Integer from) {
+		String filter = firstNotNull(account, ALL_ACCOUNTS);
+		int wanted = firstNotNull(count, 10) + firstNotNull(from, 0);
+		// Collect the newest entries, newest first, then cut and reverse.
+		List<TransactionData> newestFirst = newArrayList();
+		List<TransactionData> txEntries = newArrayList();
+		for (int t = walletTransactions.size() - 1; t >= 0 && newestFirst.size() < wanted; t--) {
+			txEntries.clear();
+			addEntries(walletTransactions.get(t), filter, txEntries);
+			for (int e = txEntries.size() - 1; e >= 0; e--) {
+				newestFirst.add(txEntries.get(e));
+			}
+		}
+		int end = Math.min(wanted, newestFirst.size());
+		int start = Math.min(firstNotNull(from, 0), end);
+		TransactionData[] result = new TransactionData[end - start];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = newestFirst.get(end - 1 - i);
+		}
+		return withResult(ListTransactionsResponse.class, result);
+	}
+
+
+	@Override
+	public synchronized ListUnspentResponse listUnspent(Integer minConf, Integer maxConf, String... address) {
+		int min = firstNotNull(minConf, 1);
+		int max = firstNotNull(maxConf, 9999999);
+		Set<String> addresses = null;
+		if (address != null && address.length > 0) {
+			addresses = new HashSet<String>();
+			for (String a : address) {
+				checkAddress(a);
+				addresses.add(a);
+			}
+		}
+		List<ListUnspentResult> result = newArrayList();
+		for (Map.Entry<Outpoint, Coin> entry : unspent.entrySet()) {
+			Coin coin = entry.getValue();
+			int confirmations = confirmations(coin.tx);
+			if (confirmations < min || confirmations > max) continue;
+			if (!isMature(coin.tx) || locked.contains(entry.getKey())) continue;
+			if (addresses != null && !addresses.contains(coin.tx.addresses[coin.vout])) continue;
+			TransactionOutput output = coin.tx.decoded.getTxOutputs()[coin.vout];
+			result.add(new ListUnspentResult(entry.getKey().toTransactionOutputRef(),
+					output.getScriptPubKey().getHex(), output.getValue(), confirmations));
+		}
+		return withResult(ListUnspentResponse.class, result.toArray(new ListUnspentResult[result.size()]));
+	}
+
+
+	@Override
+	public synchronized BooleanResponse lockUnspent(Boolean unlock, TransactionOutputRef[] txOutputs) {
+		if (Boolean.TRUE.equals(unlock) && (txOutputs == null || txOutputs.length == 0)) {
+			locked.clear();
+		} else if (txOutputs != null) {
+			for (TransactionOutputRef txRef : txOutputs) {
+				if (Boolean.TRUE.equals(unlock)) {
+					locked.remove(Outpoint.of(txRef));
+				} else {
+					locked.add(Outpoint.of(txRef));
+				}
+			}
+		}
+		return withResult(BooleanResponse.class, Boolean.TRUE);
+	}
+
+
+	@Override
+	public BooleanResponse move(String fromAccount, String toAccount, BigDecimal amount, Integer minConf, String comment) {
+		throw notSimulated("move");
+	}
+
+
+	@Override
+	public synchronized StringResponse sendFrom(String account, String address, BigDecimal amount, Integer minConf, String comment, String commentTo) {
+		String txId = send(account, new AddressAndAmount[] { new AddressAndAmount(address, amount) },
+				firstNotNull(minConf, 1), comment, commentTo);
+		return withResult(StringResponse.class, txId);
+	}
+
+
+	@Override
+	public synchronized StringResponse sendMany(String fromAccount, AddressAndAmount[] addressesAndAmounts, Integer minConf, String comment) {
+		String txId = send(fromAccount, addressesAndAmounts, firstNotNull(minConf, 1), comment, null);
+		return withResult(StringResponse.class, txId);
+	}
+
+
+	@Override
+	public StringResponse sendRawTransaction(String hex) {
+		throw notSimulated("sendrawtransaction");
+	}
+
+
+	@Override
+	public StringResponse sendRawTransaction(ByteBuffer rawTransaction) {
+		throw notSimulated("sendrawtransaction");
+	}
+
+
+	/**
+	 * Sends from the default account without checking its balance, as
+	 * bitcoind does.
+	 */
+	@Override
+	public synchronized StringResponse sendToAddress(String address, BigDecimal amount, String comment, String commentTo) {
+		String txId = send("", new AddressAndAmount[] { new AddressAndAmount(address, amount) },
+				null, comment, commentTo);
+		return withResult(StringResponse.class, txId);
+	}
+
+
+	@Override
+	public VoidResponse setAccount(String address, String account) {
+		throw notSimulated("setaccount");
+	}
+
+
+	/**
+	 * Mines <code>genProcLimit</code> blocks, default 1, if generate is true,
+	 * as bitcoind does on regtest.
+	 */
+	@Override
+	public synchronized VoidResponse setGenerate(Boolean generate, Integer genProcLimit) {
+		if (Boolean.TRUE.equals(generate)) mineBlocks(firstNotNull(genProcLimit, 1));
+		return withResult(VoidResponse.class, null);
+	}
+
+
+	@Override
+	public synchronized BooleanResponse setTxFee(BigDecimal amount) {
+		if (amount == null || amount.signum() < 0) throw error(RPC_TYPE_ERROR, "Invalid amount");
+		txFee = toSatoshis(amount);
+		return withResult(BooleanResponse.class, Boolean.TRUE);
+	}
+
+
+	@Override
+	public StringResponse signMessage(String address, String message) {
+		throw notSimulated("signmessage");
+	}
+
+
+	@Override
+	public SignRawTransactionResponse signRawTransaction(String hex, Object[] requiredTxOuts, String[] privKeys, SignatureHashAlgorithm sigHash) {
+		throw notSimulated("signrawtransaction");
+	}
+
+
+	@Override
+	public SignRawTransactionBytesResponse signRawTransaction(ByteBuffer rawTransaction, Object[] requiredTxOuts, String[] privKeys, SignatureHashAlgorithm sigHash) {
+		throw notSimulated("signrawtransaction");
+	}
+
+
+	@Override
+	public VoidResponse stop() {
+		throw notSimulated("stop");
+	}
+
+
+	@Override
+	public synchronized ValidateAddressResponse validateAddress(String address) {
+		if (!addressValidator.isValid(address)) return withResult(ValidateAddressResponse.class, INVALID_ADDRESS);
+		boolean mine = isMine(address);
+		return withResult(ValidateAddressResponse.class, new ValidateAddressResult(true, address, mine,
+				mine ? Boolean.FALSE : null, null, null, mine ? firstNotNull(accountByAddress.get(address), "") : null));
+	}
+
+
+	@Override
+	public BooleanResponse verifyMessage(String address, String signature, String message) {
+		throw notSimulated("verifymessage");
+	}
+
+
+	@Override
+	public VoidResponse walletLock() {
+		throw notSimulated("walletlock");
+	}
+
+
+	@Override
+	public VoidResponse walletPassPhrase(String passPhrase, int timeout) {
+		throw notSimulated("walletpassphrase");
+	}
+
+
+	@Override
+	public VoidResponse walletPassPhraseChange(String oldPassPhrase, String newPassPhrase) {
+		throw notSimulated("walletpassphrasechange");
+	}
+
+
+	/**
+	 * Creates a transaction paying from the wallet, with change to a new
+	 * address, and adds it to the memory pool.
+	 *
+	 * @param fromAccount - account charged.
+	 * @param payments
+	 * @param minConf - confirmations required for the account's balance, or
+	 *            null not to check it.
+	 * @return transaction id.
+	 */
+	private String send(String fromAccount, AddressAndAmount[] payments, Integer minConf, String comment, String commentTo) {
+		if (payments == null || payments.length == 0) throw error(RPC_INVALID_PARAMETER, "Invalid parameter, no recipients");
+		String account = firstNotNull(fromAccount, "");
+		long total = txFee;
+		for (AddressAndAmount payment : payments) {
+			checkAddress(payment.getAddress());
+			checkAmount(payment.getAmount());
+			total += toSatoshis(payment.getAmount());
+		}
+		if (minConf != null && accountBalance(account, minConf) < total) {
+			throw error(RPC_WALLET_INSUFFICIENT_FUNDS, "Account has insufficient funds");
+		}
+
+		List<TransactionOutputRef> inputs = newArrayList();
+		List<Outpoint> spent = newArrayList();
+		long selected = 0;
+		for (Iterator<Map.Entry<Outpoint, Coin>> it = unspent.entrySet().iterator(); it.hasNext() && selected < total;) {
+			Map.Entry<Outpoint, Coin> entry = it.next();
+			Coin coin = entry.getValue();
+			if (locked.contains(entry.getKey()) || !isMature(coin.tx) || !isTrusted(coin.tx)) continue;
+			inputs.add(entry.getKey().toTransactionOutputRef());
+			spent.add(entry.getKey());
+			selected += coin.tx.values[coin.vout];
+		}
+		if (selected < total) throw error(RPC_WALLET_INSUFFICIENT_FUNDS, "Insufficient funds");
+
+		AddressAndAmount[] outputs = payments;
+		if (selected > total) {
+			outputs = new AddressAndAmount[payments.length + 1];
+			System.arraycopy(payments, 0, outputs, 0, payments.length);
+			outputs[payments.length] = new AddressAndAmount(newAddress(null, true), toBitcoins(selected - total));
+		}
+		byte[] raw = rawTransactionBuilder.build(inputs, outputs);
+		for (Outpoint outpoint : spent) {
+			unspent.remove(outpoint);
+		}
+		Tx tx = addTransaction(raw, false, tipTime(), account, txFee, selected, comment, commentTo);
+		memPool.add(tx);
+		return tx.txId;
+	}
+
+
+	/**
+	 * Mines a block including the memory pool, with a coinbase paying the
+	 * block reward and fees to the given address.
+	 */
+	private Block mineBlock(String address) {
+		int height = blocks.size();
+		Block previous = height == 0 ? null : blocks.get(height - 1);
+		long time = GENESIS_TIME + height * BLOCK_INTERVAL_SECONDS * 1000L;
+		long fees = 0;
+		for (Tx tx : memPool) {
+			fees += tx.fee;
+		}
+		List<Tx> blockTransactions = newArrayList();
+		blockTransactions.add(addTransaction(coinbase(height, address, BLOCK_REWARD + fees), true, time, null, 0, 0, null, null));
+		blockTransactions.addAll(memPool);
+		memPool.clear();
+
+		byte[] merkleRoot = merkleRoot(blockTransactions);
+		ByteBuffer header = ByteBuffer.allocate(80).order(LITTLE_ENDIAN);
+		header.putInt(BLOCK_VERSION);
+		header.put(previous == null ? new byte[HASH_SIZE] : Hex.decodeReversed(previous.hash));
+		header.put(merkleRoot);
+		header.putInt((int) (time / 1000));
+		header.putInt(BITS);
+		header.putInt(0);
+		String hash = Hex.encodeReversed(Hashes.doubleSha256(header.array(), 0, 80), 0, HASH_SIZE);
+		int size = 80 + varIntSize(blockTransactions.size());
+		for (Tx tx : blockTransactions) {
+			size += tx.raw.length;
+		}
+		Block block = new Block(hash, height, time, blockTransactions, Hex.encodeReversed(merkleRoot, 0, HASH_SIZE),
+				previous == null ? null : previous.hash, size);
+		for (int i = 0; i < blockTransactions.size(); i++) {
+			blockTransactions.get(i).confirm(block, i);
+		}
+		blocks.add(block);
+		blocksByHash.put(hash, block);
+		return block;
+	}
+
+
+	/**
+	 * Builds the coinbase transaction of the block at the given height.
+	 * <p>
+	 * The transaction is built with a placeholder input, which is then
+	 * replaced by a coinbase input with the height as its script, making
+	 * coinbase transaction ids unique.
+	 */
+	private byte[] coinbase(int height, String address, long amount) {
+		byte[] template = rawTransactionBuilder.build(
+				Collections.singletonList(new TransactionOutputRef(NULL_TX_ID, 0)),
+				new AddressAndAmount(address, toBitcoins(amount)));
+		int inputStart = 4 + 1; // Version and input count.
+		int scriptStart = inputStart + HASH_SIZE + 4 + 1;
+		ByteBuffer coinbase = ByteBuffer.allocate(template.length + 4).order(LITTLE_ENDIAN);
+		coinbase.put(template, 0, inputStart + HASH_SIZE);
+		coinbase.putInt(-1);
+		coinbase.put((byte) 4);
+		coinbase.putInt(height);
+		coinbase.put(template, scriptStart, template.length - scriptStart);
+		return coinbase.array();
+	}
+
+
+	/**
+	 * Registers a transaction, adding outputs paying to the wallet to the
+	 * unspent outputs.
+	 */
+	private Tx addTransaction(byte[] raw, boolean coinbase, long time, String fromAccount, long fee, long debit, String comment, String commentTo) {
+		DecodeRawTransactionResult decoded = rawTransactionDecoder.decode(raw);
+		TransactionOutput[] outputs = decoded.getTxOutputs();
+		String[] addresses = new String[outputs.length];
+		long[] values = new long[outputs.length];
+		for (int i = 0; i < outputs.length; i++) {
+			addresses[i] = outputs[i].getScriptPubKey().getAddresses().get(0);
+			values[i] = outputs[i].getValue().unscaledValue().longValue();
+		}
+		Tx tx = new Tx(decoded.getTxId(), raw, decoded, coinbase, time, fromAccount, fee, debit, comment, commentTo,
+				addresses, values);
+		for (int i = 0; i < outputs.length; i++) {
+			if (isMine(addresses[i])) {
+				tx.credit += values[i];
+				unspent.put(Outpoint.of(tx.txId, i), new Coin(tx, i));
+			}
+			if (fromAccount != null && !changeAddresses.contains(addresses[i])) tx.sent += values[i];
+			String account = accountByAddress.get(addresses[i]);
+			if (account != null) accountTotals(account).received += values[i];
+		}
+		if (fromAccount != null) accountTotals(fromAccount).sent += tx.sent + fee;
+		tx.inWallet = fromAccount != null || tx.credit > 0;
+		transactions.put(tx.txId, tx);
+		if (tx.inWallet) walletTransactions.add(tx);
+		return tx;
+	}
+
+
+	/**
+	 * Adds the listtransactions entries of a wallet transaction for the given
+	 * account, or for all accounts if account is "*".
+	 */
+	private void addEntries(Tx tx, String account, List<TransactionData> entries) {
+		boolean all = ALL_ACCOUNTS.equals(account);
+		Integer confirmations = confirmations(tx);
+		Boolean generated = tx.coinbase ? Boolean.TRUE : null;
+		Block block = tx.block;
+		String blockHash = block == null ? null : block.hash;
+		Integer blockIndex = block == null ? null : tx.blockIndex;
+		Date blockTime = block == null ? null : new Date(block.time);
+		Date time = new Date(tx.time);
+		if (tx.fromAccount != null && (all || tx.fromAccount.equals(account))) {
+			BigDecimal fee = toBitcoins(-tx.fee);
+			for (int i = 0; i < tx.addresses.length; i++) {
+				if (changeAddresses.contains(tx.addresses[i])) continue;
+				entries.add(new TransactionData(tx.fromAccount, tx.addresses[i], "send", toBitcoins(-tx.values[i]),
+						fee, confirmations, generated, blockHash, blockIndex, blockTime, tx.txId, time, time,
+						tx.comment, tx.commentTo));
+			}
+		}
+		String category = !tx.coinbase ? "receive" : isMature(tx) ? "generate" : "immature";
+		for (int i = 0; i < tx.addresses.length; i++) {
+			String outputAccount = accountByAddress.get(tx.addresses[i]);
+			if (outputAccount == null || !(all || outputAccount.equals(account))) continue;
+			entries.add(new TransactionData(outputAccount, tx.addresses[i], category, toBitcoins(tx.values[i]),
+					null, confirmations, generated, blockHash, blockIndex, blockTime, tx.txId, time, time,
+					tx.comment, tx.commentTo));
+		}
+	}
+
+
+	/**
+	 * Gets the sum of spendable coins, including locked coins.
+	 */
+	private long walletBalance() {
+		long balance = 0;
+		for (Coin coin : unspent.values()) {
+			if (isMature(coin.tx) && isTrusted(coin.tx)) balance += coin.tx.values[coin.vout];
+		}
+		return balance;
+	}
+
+
+	/**
+	 * Gets an account's balance, or the balance of all accounts if account
+	 * is null.
+	 * <p>
+	 * Starts from the account's totals and takes back what was received in
+	 * transactions with less than minConf confirmations and in immature
+	 * coinbases, so only the memory pool, the blocks with less than minConf
+	 * confirmations and the coinbases of the latest blocks are visited.
+	 */
+	private long accountBalance(String account, int minConf) {
+		long balance = 0;
+		if (account == null) {
+			for (AccountTotals totals : accountTotals.values()) {
+				balance += totals.received - totals.sent;
+			}
+		} else {
+			AccountTotals totals = accountTotals.get(account);
+			if (totals != null) balance = totals.received - totals.sent;
+		}
+		if (minConf > 0) {
+			for (Tx tx : memPool) {
+				balance -= received(tx, account);
+			}
+		}
+		int recentBlocks = Math.max(minConf - 1, COINBASE_MATURITY);
+		for (int height = tipHeight(); height >= 0 && tipHeight() - height < recentBlocks; height--) {
+			Block block = blocks.get(height);
+			if (confirmations(block) < minConf) {
+				for (Tx tx : block.transactions) {
+					balance -= received(tx, account);
+				}
+			} else {
+				// Only the coinbase can be immature.
+				Tx coinbase = block.transactions.get(0);
+				if (!isMature(coinbase)) balance -= received(coinbase, account);
+			}
+		}
+		return balance;
+	}
+
+
+	/**
+	 * Gets the amount a transaction pays to an account, or to any account if
+	 * account is null.
+	 */
+	private long received(Tx tx, String account) {
+		long received = 0;
+		for (int i = 0; i < tx.addresses.length; i++) {
+			String outputAccount = accountByAddress.get(tx.addresses[i]);
+			if (outputAccount != null && (account == null || outputAccount.equals(account))) {
+				received += tx.values[i];
+			}
+		}
+		return received;
+	}
+
+
+	private AccountTotals accountTotals(String account) {
+		AccountTotals totals = accountTotals.get(account);
+		if (totals == null) {
+			totals = new AccountTotals();
+			accountTotals.put(account, totals);
+		}
+		return totals;
+	}
+
+
+	/**
+	 * Derives the next address from the seed and adds it to the wallet.
+	 *
+	 * @param account - ignored for change addresses.
+	 * @param change - if true the address is a change address, which isn't
+	 *            in any account.
+	 */
+	private String newAddress(String account, boolean change) {
+		byte[] hashInput = ByteBuffer.allocate(16).putLong(seed).putLong(++keyCount).array();
+		String address = Base58.encodeChecked(network.getPubKeyHashVersion(), Hashes.hash160(hashInput, 0, hashInput.length));
+		if (change) {
+			changeAddresses.add(address);
+		} else {
+			accountByAddress.put(address, account);
+			if (!accountAddresses.containsKey(account)) accountAddresses.put(account, address);
+		}
+		return address;
+	}
+
+
+	private boolean isMine(String address) {
+		return accountByAddress.containsKey(address) || changeAddresses.contains(address);
+	}
+
+
+	private Tx transaction(String txId) {
+		Tx tx = transactions.get(txId);
+		if (tx == null) throw error(RPC_INVALID_ADDRESS_OR_KEY, "No information available about transaction");
+		return tx;
+	}
+
+
+	private int tipHeight() {
+		return blocks.size() - 1;
+	}
+
+
+	private long tipTime() {
+		return blocks.get(blocks.size() - 1).time;
+	}
+
+
+	private int confirmations(Block block) {
+		return tipHeight() - block.height + 1;
+	}
+
+
+	private int confirmations(Tx tx) {
+		return tx.block == null ? 0 : confirmations(tx.block);
+	}
+
+
+	/**
+	 * Checks that a transaction isn't an immature coinbase.
+	 */
+	private boolean isMature(Tx tx) {
+		return !tx.coinbase || confirmations(tx) > COINBASE_MATURITY;
+	}
+
+
+	/**
+	 * Checks if outputs of a transaction can be spent, ie. if it is confirmed
+	 * or sent from the wallet.
+	 */
+	private boolean isTrusted(Tx tx) {
+		return tx.block != null || tx.fromAccount != null;
+	}
+
+
+	private void checkAddress(String address) {
+		if (address == null || !addressValidator.isValid(address)) {
+			throw error(RPC_INVALID_ADDRESS_OR_KEY, "Invalid Bitcoin address");
+		}
+	}
+
+
+	private static void checkAmount(BigDecimal amount) {
+		if (amount == null || amount.signum() <= 0) throw error(RPC_TYPE_ERROR, "Invalid amount");
+	}
+
+
+	private static long toSatoshis(BigDecimal bitcoins) {
+		return bitcoins.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValue();
+	}
+
+
+	private static BigDecimal toBitcoins(long satoshis) {
+		return BigDecimal.valueOf(satoshis, SCALE);
+	}
+
+
+	private static byte[] merkleRoot(List<Tx> txs) {
+		byte[][] level = new byte[txs.size()][];
+		for (int i = 0; i < level.length; i++) {
+			level[i] = Hex.decodeReversed(txs.get(i).txId);
+		}
+		byte[] pair = new byte[2 * HASH_SIZE];
+		while (level.length > 1) {
+			byte[][] next = new byte[(level.length + 1) / 2][];
+			for (int i = 0; i < next.length; i++) {
+				byte[] left = level[2 * i];
+				byte[] right = 2 * i + 1 < level.length ? level[2 * i + 1] : left;
+				System.arraycopy(left, 0, pair, 0, HASH_SIZE);
+				System.arraycopy(right, 0, pair, HASH_SIZE, HASH_SIZE);
+				next[i] = Hashes.doubleSha256(pair, 0, pair.length);
+			}
+			level = next;
+		}
+		return level[0];
+	}
+
+
+	private static int varIntSize(int value) {
+		return value < 0xfd ? 1 : value <= 0xffff ? 3 : 5;
+	}
+
+
+	/**
+	 * Creates the exception BitcoindClientImpl throws when bitcoind answers
+	 * with the given error.
+	 */
+	private static BitcoinServerException error(int code, String message) {
+		BitcoindErrorResponse errorResponse = BitcoindErrorResponse.withError(code, message);
+		if (code == RPC_INVALID_ADDRESS_OR_KEY) return new InvalidAddressException(errorResponse);
+		return new BitcoinServerException(errorResponse);
+	}
+
+
+	private static UnsupportedOperationException notSimulated(String method) {
+		return new UnsupportedOperationException(method + " is not simulated.");
+	}
+
+
+	/**
+	 * A block in the simulated chain.
+	 */
+	private static class Block {
+
+		private final String hash;
+		private final int height;
+		private final long time;
+		private final List<Tx> transactions;
+		private final String merkleRoot;
+		private final String previousHash;
+		private final int size;
+
+		private Block(String hash, int height, long time, List<Tx> transactions, String merkleRoot, String previousHash, int size) {
+			this.hash = hash;
+			this.height = height;
+			this.time = time;
+			this.transactions = transactions;
+			this.merkleRoot = merkleRoot;
+			this.previousHash = previousHash;
+			this.size = size;
+		}
+
+	}
+
+
+	/**
+	 * A transaction, with what the wallet knows about it.
+	 */
+	private static class Tx {
+
+		private final String txId;
+		private final byte[] raw;
+		private final DecodeRawTransactionResult decoded;
+		private final boolean coinbase;
+		private final long time;
+		private final String fromAccount;
+		private final long fee;
+		private final long debit;
+		private final String comment;
+		private final String commentTo;
+		private final String[] addresses;
+		private final long[] values;
+		private long credit;
+		private long sent;
+		private boolean inWallet;
+		private Block block;
+		private int blockIndex;
+
+		private Tx(String txId, byte[] raw, DecodeRawTransactionResult decoded, boolean coinbase, long time,
+				String fromAccount, long fee, long debit, String comment, String commentTo, String[] addresses, long[] values) {
+			this.txId = txId;
+			this.raw = raw;
+			this.decoded = decoded;
+			this.coinbase = coinbase;
+			this.time = time;
+			this.fromAccount = fromAccount;
+			this.fee = fee;
+			this.debit = debit;
+			this.comment = comment;
+			this.commentTo = commentTo;
+			this.addresses = addresses;
+			this.values = values;
+		}
+
+		private void confirm(Block block, int blockIndex) {
+			this.block = block;
+			this.blockIndex = blockIndex;
+		}
+
+	}
+
+
+	/**
+	 * Amounts received by and sent from an account, whatever their
+	 * confirmations.
+	 */
+	private static class AccountTotals {
+
+		private long received;
+		private long sent;
+
+	}
+
+
+	/**
+	 * An unspent output paying to the wallet.
+	 */
+	private static class Coin {
+
+		private final Tx tx;
+		private final int vout;
+
+		private Coin(Tx tx, int vout) {
+			this.tx = tx;
+			this.vout = vout;
+		}
+
+	}
+
+
+}
@@ -39,6 +39,11 @@ public class BitcoinException extends AbstractRuntimeException {
 	}
 
 
+	public BitcoinException(String message) {
+		super(message);
+	}
+
+
 	public BitcoinException(Exception cause) {
 		super(cause);
 	}
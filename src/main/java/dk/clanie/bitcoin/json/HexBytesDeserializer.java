@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.json;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import dk.clanie.bitcoin.util.Hex;
+
+/**
+ * Deserialize hex strings into byte arrays.
+ * <p>
+ * Decodes directly from the parser's character buffer, so no String holding
+ * the hex representation is created.
+ * 
+ * @author Claus Nielsen
+ */
+public class HexBytesDeserializer extends JsonDeserializer<byte[]> {
+
+	@Override
+	public byte[] deserialize(JsonParser jp, DeserializationContext ctxt)
+			throws IOException, JsonProcessingException {
+		if (jp.getCurrentToken() != JsonToken.VALUE_STRING) {
+			throw new JsonParseException("Expected hex string, got " + jp.getCurrentToken() + ".", jp.getCurrentLocation());
+		}
+		try {
+			return Hex.decode(jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength());
+		} catch (IllegalArgumentException e) {
+			throw new JsonParseException(e.getMessage(), jp.getCurrentLocation(), e);
+		}
+	}
+
+}
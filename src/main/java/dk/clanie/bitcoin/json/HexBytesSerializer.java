@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import dk.clanie.bitcoin.util.Hex;
+
+/**
+ * Serialize byte arrays as hex strings, which is how bitcoind represents
+ * binary data such as raw transactions.
+ * <p>
+ * Hex digits are written straight to the generator in chunks, so no String
+ * holding the whole hex representation is created.
+ * 
+ * @author Claus Nielsen
+ */
+public class HexBytesSerializer extends JsonSerializer<byte[]> {
+
+	private static final int CHUNK_SIZE = 8192;
+
+	@Override
+	public void serialize(byte[] value, JsonGenerator jgen,
+			SerializerProvider provider) throws IOException,
+			JsonProcessingException {
+		writeHex(ByteBuffer.wrap(value), jgen);
+	}
+
+
+	/**
+	 * Writes the remaining bytes in the given buffer as a hex string value.
+	 * <p>
+	 * The position of <code>bytes</code> is not changed.
+	 * 
+	 * @param bytes
+	 * @param jgen
+	 * @throws IOException
+	 */
+	public static void writeHex(ByteBuffer bytes, JsonGenerator jgen) throws IOException {
+		ByteBuffer src = bytes.duplicate();
+		char[] chunk = new char[Math.min(CHUNK_SIZE, src.remaining() * 2 + 1)];
+		// Hex digits need no escaping, so they can be written raw between quotes.
+		chunk[0] = '"';
+		jgen.writeRawValue(chunk, 0, 1 + Hex.encode(src, chunk, 1));
+		while (src.hasRemaining()) {
+			jgen.writeRaw(chunk, 0, Hex.encode(src, chunk, 0));
+		}
+		jgen.writeRaw('"');
+	}
+
+}
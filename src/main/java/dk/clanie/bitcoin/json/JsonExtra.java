@@ -40,6 +40,22 @@ public abstract class JsonExtra extends BaseClass {
 
 	private Map<String, Object> otherFields = newHashMap();
 
+
+	protected JsonExtra() {
+	}
+
+
+	/**
+	 * Creates object with the given other (unknown) JSON fields, for
+	 * deserializers not going through the any-setter.
+	 * 
+	 * @param otherFields - optional (may be null).
+	 */
+	protected JsonExtra(Map<String, Object> otherFields) {
+		if (otherFields != null) this.otherFields.putAll(otherFields);
+	}
+
+
 	/**
 	 * Sets name and value of other (unknown) JSON fields.
 	 * 
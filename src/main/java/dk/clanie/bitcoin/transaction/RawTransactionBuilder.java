@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.transaction;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import dk.clanie.bitcoin.AddressAndAmount;
+import dk.clanie.bitcoin.BitcoinNetwork;
+import dk.clanie.bitcoin.TransactionOutputRef;
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.exception.InvalidTransactionException;
+import dk.clanie.bitcoin.util.Base58;
+import dk.clanie.bitcoin.util.Hex;
+
+/**
+ * Builds unsigned raw transactions locally, producing the same bytes as
+ * bitcoind's createrawtransaction method.
+ * <p>
+ * Outputs pay to pay-to-pubkey-hash or pay-to-script-hash addresses. Amounts
+ * for the same address are added up into one output, as
+ * {@link BitcoindClient#createRawTransaction(List, AddressAndAmount...)}
+ * does; outputs are in the order each address first appears.
+ * <p>
+ * Instances are immutable and thread safe.
+ * 
+ * @author Claus Nielsen
+ */
+public class RawTransactionBuilder {
+
+	private static final int VERSION = 1;
+	private static final int SEQUENCE_FINAL = 0xffffffff;
+	private static final int LOCK_TIME = 0;
+	private static final int HASH_SIZE = 32;
+	private static final int HASH160_SIZE = 20;
+
+	/**
+	 * Size of an input with an empty scriptSig: previous output hash and
+	 * index, script length and sequence.
+	 */
+	private static final int UNSIGNED_INPUT_SIZE = HASH_SIZE + 4 + 1 + 4;
+
+	private static final int P2PKH_SCRIPT_SIZE = 25;
+	private static final int P2SH_SCRIPT_SIZE = 23;
+
+	/**
+	 * Max amount in satoshis bitcoind accepts for an output, 21 million
+	 * bitcoins.
+	 */
+	private static final long MAX_AMOUNT = 21000000L * 100000000L;
+
+	private final BitcoinNetwork network;
+
+
+	/**
+	 * Creates a builder for transactions on the given network.
+	 * 
+	 * @param network - determines which address versions are accepted.
+	 */
+	public RawTransactionBuilder(BitcoinNetwork network) {
+		this.network = network;
+	}
+
+
+	/**
+	 * Builds a hex encoded raw transaction.
+	 * 
+	 * @param txOutputs
+	 *            - transaction outputs to spend
+	 * @param addressAndAmount
+	 *            - recipient and amount
+	 * @return hex encoded raw transaction.
+	 * @throws InvalidTransactionException if an input or output is invalid.
+	 */
+	public String buildHex(List<TransactionOutputRef> txOutputs, AddressAndAmount... addressAndAmount) {
+		return Hex.encode(build(txOutputs, addressAndAmount));
+	}
+
+
+	/**
+	 * Builds a raw transaction.
+	 * 
+	 * @param txOutputs
+	 *            - transaction outputs to spend
+	 * @param addressAndAmount
+	 *            - recipient and amount
+	 * @return serialized raw transaction.
+	 * @throws InvalidTransactionException if an input or output is invalid.
+	 */
+	public byte[] build(List<TransactionOutputRef> txOutputs, AddressAndAmount... addressAndAmount) {
+		Map<String, Long> recipients = new LinkedHashMap<String, Long>();
+		for (AddressAndAmount aaa : addressAndAmount) {
+			String address = aaa.getAddress();
+			long amount = toSatoshis(aaa.getAmount());
+			Long previous = recipients.get(address);
+			if (previous != null) amount += previous;
+			if (amount > MAX_AMOUNT) throw new InvalidTransactionException("Invalid amount for " + address + ".");
+			recipients.put(address, amount);
+		}
+
+		int size = 4 + varIntSize(txOutputs.size()) + txOutputs.size() * UNSIGNED_INPUT_SIZE
+				+ varIntSize(recipients.size()) + 4;
+		byte[][] hashes = new byte[recipients.size()][];
+		boolean[] scriptHash = new boolean[hashes.length];
+		int i = 0;
+		for (String address : recipients.keySet()) {
+			byte[] decoded = Base58.decodeChecked(address);
+			if (decoded == null || decoded.length != HASH160_SIZE + 1) {
+				throw new InvalidTransactionException("Invalid bitcoin address: " + address);
+			}
+			int version = decoded[0] & 0xff;
+			if (version == network.getPubKeyHashVersion()) {
+				size += 8 + 1 + P2PKH_SCRIPT_SIZE;
+			} else if (version == network.getScriptHashVersion()) {
+				scriptHash[i] = true;
+				size += 8 + 1 + P2SH_SCRIPT_SIZE;
+			} else {
+				throw new InvalidTransactionException("Invalid bitcoin address: " + address);
+			}
+			hashes[i++] = decoded;
+		}
+
+		byte[] raw = new byte[size];
+		ByteBuffer out = ByteBuffer.wrap(raw).order(LITTLE_ENDIAN);
+		out.putInt(VERSION);
+		putVarInt(out, txOutputs.size());
+		for (TransactionOutputRef txOutput : txOutputs) {
+			putInput(out, txOutput);
+		}
+		putVarInt(out, recipients.size());
+		i = 0;
+		for (Long amount : recipients.values()) {
+			out.putLong(amount);
+			if (scriptHash[i]) putPayToScriptHash(out, hashes[i]);
+			else putPayToPubKeyHash(out, hashes[i]);
+			i++;
+		}
+		out.putInt(LOCK_TIME);
+		return raw;
+	}
+
+
+	private static void putInput(ByteBuffer out, TransactionOutputRef txOutput) {
+		String txId = txOutput.getTxId();
+		Integer vout = txOutput.getVout();
+		if (txId == null || txId.length() != HASH_SIZE * 2) {
+			throw new InvalidTransactionException("Invalid txid: " + txId);
+		}
+		if (vout == null || vout < 0) {
+			throw new InvalidTransactionException("Invalid vout " + vout + " for txid " + txId + ".");
+		}
+		try {
+			out.put(Hex.decodeReversed(txId));
+		} catch (IllegalArgumentException e) {
+			throw new InvalidTransactionException("Invalid txid: " + txId, e);
+		}
+		out.putInt(vout);
+		out.put((byte) 0); // Empty scriptSig
+		out.putInt(SEQUENCE_FINAL);
+	}
+
+
+	/**
+	 * Writes OP_DUP OP_HASH160 &lt;hash&gt; OP_EQUALVERIFY OP_CHECKSIG.
+	 * 
+	 * @param decoded - version byte followed by the public key hash.
+	 */
+	private static void putPayToPubKeyHash(ByteBuffer out, byte[] decoded) {
+		out.put((byte) P2PKH_SCRIPT_SIZE);
+		out.put((byte) Script.OP_DUP);
+		out.put((byte) Script.OP_HASH160);
+		out.put((byte) HASH160_SIZE);
+		out.put(decoded, 1, HASH160_SIZE);
+		out.put((byte) Script.OP_EQUALVERIFY);
+		out.put((byte) Script.OP_CHECKSIG);
+	}
+
+
+	/**
+	 * Writes OP_HASH160 &lt;hash&gt; OP_EQUAL.
+	 * 
+	 * @param decoded - version byte followed by the script hash.
+	 */
+	private static void putPayToScriptHash(ByteBuffer out, byte[] decoded) {
+		out.put((byte) P2SH_SCRIPT_SIZE);
+		out.put((byte) Script.OP_HASH160);
+		out.put((byte) HASH160_SIZE);
+		out.put(decoded, 1, HASH160_SIZE);
+		out.put((byte) Script.OP_EQUAL);
+	}
+
+
+	private static long toSatoshis(BigDecimal amount) {
+		long satoshis;
+		try {
+			satoshis = amount.movePointRight(BitcoindClient.SCALE).longValueExact();
+		} catch (ArithmeticException e) {
+			throw new InvalidTransactionException("Invalid amount: " + amount, e);
+		}
+		if (satoshis < 0 || satoshis > MAX_AMOUNT) throw new InvalidTransactionException("Invalid amount: " + amount);
+		return satoshis;
+	}
+
+
+	private static int varIntSize(long value) {
+		if (value < 0xfd) return 1;
+		if (value <= 0xffff) return 3;
+		if (value <= 0xffffffffL) return 5;
+		return 9;
+	}
+
+
+	private static void putVarInt(ByteBuffer out, long value) {
+		if (value < 0xfd) {
+			out.put((byte) value);
+		} else if (value <= 0xffff) {
+			out.put((byte) 0xfd);
+			out.putShort((short) value);
+		} else if (value <= 0xffffffffL) {
+			out.put((byte) 0xfe);
+			out.putInt((int) value);
+		} else {
+			out.put((byte) 0xff);
+			out.putLong(value);
+		}
+	}
+
+
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.transaction;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import dk.clanie.bitcoin.BitcoinNetwork;
+import dk.clanie.bitcoin.ScriptSig;
+import dk.clanie.bitcoin.TransactionInput;
+import dk.clanie.bitcoin.TransactionOutput;
+import dk.clanie.bitcoin.TransactionOutputRef;
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.DecodeRawTransactionResult;
+import dk.clanie.bitcoin.exception.InvalidTransactionException;
+import dk.clanie.bitcoin.util.Hashes;
+import dk.clanie.bitcoin.util.Hex;
+
+/**
+ * Decodes raw transactions locally, producing the same result as bitcoind's
+ * decoderawtransaction method.
+ * <p>
+ * The transaction is parsed directly from the raw bytes; the only objects
+ * allocated are those making up the result.
+ * <p>
+ * Instances are immutable and thread safe.
+ * 
+ * @author Claus Nielsen
+ */
+public class RawTransactionDecoder {
+
+	private static final int HASH_SIZE = 32;
+
+	private final BitcoinNetwork network;
+
+
+	/**
+	 * Creates a decoder for transactions on the given network.
+	 * 
+	 * @param network - determines how addresses are encoded.
+	 */
+	public RawTransactionDecoder(BitcoinNetwork network) {
+		this.network = network;
+	}
+
+
+	/**
+	 * Decodes the given hex encoded raw transaction.
+	 * 
+	 * @param hex - hex encoded raw transaction.
+	 * @return {@link DecodeRawTransactionResult}
+	 * @throws InvalidTransactionException if the transaction can't be parsed.
+	 */
+	public DecodeRawTransactionResult decode(String hex) {
+		byte[] raw;
+		try {
+			raw = Hex.decode(hex);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidTransactionException("Raw transaction is not valid hex.", e);
+		}
+		return decode(raw, 0, raw.length);
+	}
+
+
+	/**
+	 * Decodes the given raw transaction.
+	 * 
+	 * @param raw - serialized transaction.
+	 * @return {@link DecodeRawTransactionResult}
+	 * @throws InvalidTransactionException if the transaction can't be parsed.
+	 */
+	public DecodeRawTransactionResult decode(byte[] raw) {
+		return decode(raw, 0, raw.length);
+	}
+
+
+	/**
+	 * Decodes the raw transaction of <code>length</code> bytes starting at
+	 * <code>offset</code>.
+	 * 
+	 * @param raw
+	 * @param offset
+	 * @param length
+	 * @return {@link DecodeRawTransactionResult}
+	 * @throws InvalidTransactionException if the transaction can't be parsed.
+	 */
+	public DecodeRawTransactionResult decode(byte[] raw, int offset, int length) {
+		ByteBuffer in = ByteBuffer.wrap(raw, offset, length).order(LITTLE_ENDIAN);
+		try {
+			int version = in.getInt();
+			TransactionInput[] txInputs = new TransactionInput[readCount(in)];
+			for (int i = 0; i < txInputs.length; i++) {
+				txInputs[i] = readInput(raw, in, txInputs.length == 1);
+			}
+			TransactionOutput[] txOutputs = new TransactionOutput[readCount(in)];
+			for (int i = 0; i < txOutputs.length; i++) {
+				txOutputs[i] = readOutput(raw, in, i);
+			}
+			int lockTime = in.getInt();
+			if (in.hasRemaining()) {
+				throw new InvalidTransactionException(in.remaining() + " bytes of unexpected data after transaction.");
+			}
+			return new DecodeRawTransactionResult(txId(raw, offset, length), version, lockTime, txInputs, txOutputs);
+		} catch (BufferUnderflowException e) {
+			throw new InvalidTransactionException("Raw transaction is truncated.", e);
+		}
+	}
+
+
+	/**
+	 * Calculates the id of the raw transaction of <code>length</code> bytes
+	 * starting at <code>offset</code>.
+	 * 
+	 * @param raw
+	 * @param offset
+	 * @param length
+	 * @return transaction id.
+	 */
+	public static String txId(byte[] raw, int offset, int length) {
+		return Hex.encodeReversed(Hashes.doubleSha256(raw, offset, length), 0, HASH_SIZE);
+	}
+
+
+	private TransactionInput readInput(byte[] raw, ByteBuffer in, boolean onlyInput) {
+		int hashStart = in.position();
+		skip(in, HASH_SIZE);
+		int vout = in.getInt();
+		int scriptLength = readCount(in);
+		int scriptStart = in.position();
+		skip(in, scriptLength);
+		long sequence = in.getInt() & 0xffffffffL;
+		if (onlyInput && vout == -1 && isZero(raw, hashStart, HASH_SIZE)) {
+			return new TransactionInput(Hex.encode(raw, scriptStart, scriptLength), sequence);
+		}
+		TransactionOutputRef txRef = new TransactionOutputRef(Hex.encodeReversed(raw, hashStart, HASH_SIZE), vout);
+		ScriptSig scriptSig = new ScriptSig(Script.toAsm(raw, scriptStart, scriptLength), Hex.encode(raw, scriptStart, scriptLength));
+		return new TransactionInput(txRef, scriptSig, sequence);
+	}
+
+
+	private TransactionOutput readOutput(byte[] raw, ByteBuffer in, int n) {
+		BigDecimal value = BigDecimal.valueOf(in.getLong(), BitcoindClient.SCALE);
+		int scriptLength = readCount(in);
+		int scriptStart = in.position();
+		skip(in, scriptLength);
+		return new TransactionOutput(value, n, Script.toScriptPubKey(raw, scriptStart, scriptLength, network));
+	}
+
+
+	/**
+	 * Reads a variable length integer used as a count or length of something
+	 * that follows, checking that it doesn't exceed the remaining data.
+	 */
+	private static int readCount(ByteBuffer in) {
+		int first = in.get() & 0xff;
+		long count;
+		switch (first) {
+		case 0xfd: count = in.getShort() & 0xffff; break;
+		case 0xfe: count = in.getInt() & 0xffffffffL; break;
+		case 0xff: count = in.getLong(); break;
+		default: count = first;
+		}
+		if (count < 0 || count > in.remaining()) throw new BufferUnderflowException();
+		return (int) count;
+	}
+
+
+	private static void skip(ByteBuffer in, int length) {
+		if (length > in.remaining()) throw new BufferUnderflowException();
+		in.position(in.position() + length);
+	}
+
+
+	private static boolean isZero(byte[] bytes, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			if (bytes[i] != 0) return false;
+		}
+		return true;
+	}
+
+
+}
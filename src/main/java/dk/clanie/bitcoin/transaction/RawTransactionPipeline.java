@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.transaction;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import dk.clanie.bitcoin.AddressAndAmount;
+import dk.clanie.bitcoin.TransactionOutputRef;
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.SignRawTransactionBytesResult;
+import dk.clanie.bitcoin.exception.InvalidTransactionException;
+
+/**
+ * Spends given transaction outputs in one step: builds, signs and sends a
+ * raw transaction.
+ * <p>
+ * The transaction is built locally with a {@link RawTransactionBuilder},
+ * leaving two calls to bitcoind, signrawtransaction and sendrawtransaction.
+ * The transaction is passed as bytes all the way, so it is only hex encoded
+ * and decoded while the requests and responses are (de)serialized.
+ * <p>
+ * Independent transactions can be submitted for concurrent processing by at
+ * most <code>parallelism</code> threads. Call {@link #shutdown()} when done.
+ * 
+ * @author Claus Nielsen
+ */
+public class RawTransactionPipeline {
+
+	private final BitcoindClient bitcoindClient;
+	private final RawTransactionBuilder builder;
+	private final ExecutorService executor;
+
+
+	/**
+	 * Creates pipeline.
+	 * 
+	 * @param bitcoindClient - client used for signing and sending.
+	 * @param builder - builder for the network bitcoind runs on.
+	 * @param parallelism - max number of transactions processed concurrently.
+	 */
+	public RawTransactionPipeline(BitcoindClient bitcoindClient, RawTransactionBuilder builder, int parallelism) {
+		if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1.");
+		this.bitcoindClient = bitcoindClient;
+		this.builder = builder;
+		this.executor = Executors.newFixedThreadPool(parallelism);
+	}
+
+
+	/**
+	 * Builds, signs and sends a transaction on the calling thread.
+	 * <p>
+	 * Requires unlocked wallet.
+	 * 
+	 * @param txOutputs
+	 *            - transaction outputs to spend
+	 * @param addressAndAmount
+	 *            - recipient and amount
+	 * @return {@link RawTransactionPipelineResult} with the transaction id.
+	 * @throws InvalidTransactionException if the transaction can't be built
+	 *             or bitcoind can't sign all its inputs.
+	 */
+	public RawTransactionPipelineResult execute(List<TransactionOutputRef> txOutputs, AddressAndAmount... addressAndAmount) {
+		long start = System.nanoTime();
+		byte[] unsigned = builder.build(txOutputs, addressAndAmount);
+		long built = System.nanoTime();
+		SignRawTransactionBytesResult signed = bitcoindClient.signRawTransaction(ByteBuffer.wrap(unsigned), null, null, null).getResult();
+		long signedAt = System.nanoTime();
+		if (!Boolean.TRUE.equals(signed.getComplete())) {
+			throw new InvalidTransactionException("bitcoind could not sign all inputs of the transaction.");
+		}
+		String txId = bitcoindClient.sendRawTransaction(ByteBuffer.wrap(signed.getRawTransaction())).getResult();
+		long sent = System.nanoTime();
+		return new RawTransactionPipelineResult(txId, signed.getRawTransaction(), built - start, signedAt - built, sent - signedAt);
+	}
+
+
+	/**
+	 * Submits a transaction for being built, signed and sent by one of the
+	 * pipeline's threads.
+	 * 
+	 * @param txOutputs
+	 *            - transaction outputs to spend
+	 * @param addressAndAmount
+	 *            - recipient and amount
+	 * @return Future completing with {@link RawTransactionPipelineResult}, or
+	 *         with the exception thrown by
+	 *         {@link #execute(List, AddressAndAmount...)}.
+	 */
+	public Future<RawTransactionPipelineResult> submit(final List<TransactionOutputRef> txOutputs, final AddressAndAmount... addressAndAmount) {
+		return executor.submit(new Callable<RawTransactionPipelineResult>() {
+			@Override
+			public RawTransactionPipelineResult call() throws Exception {
+				return execute(txOutputs, addressAndAmount);
+			}
+		});
+	}
+
+
+	/**
+	 * Stops the pipeline's threads after already submitted transactions have
+	 * been processed.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.transaction;
+
+import org.springframework.roo.addon.javabean.RooJavaBean;
+
+import dk.clanie.core.BaseClass;
+
+/**
+ * Outcome of spending through a {@link RawTransactionPipeline}.
+ * 
+ * @author Claus Nielsen
+ */
+@SuppressWarnings("serial")
+@RooJavaBean(settersByDefault = false)
+public class RawTransactionPipelineResult extends BaseClass {
+
+	/**
+	 * Id of the sent transaction.
+	 */
+	private String txId;
+
+	/**
+	 * The signed transaction.
+	 */
+	private byte[] rawTransaction;
+
+	/**
+	 * Time spent building the unsigned transaction.
+	 */
+	private long buildNanos;
+
+	/**
+	 * Time spent on the signrawtransaction call.
+	 */
+	private long signNanos;
+
+	/**
+	 * Time spent on the sendrawtransaction call.
+	 */
+	private long sendNanos;
+
+
+	/**
+	 * Full constructor.
+	 */
+	public RawTransactionPipelineResult(String txId, byte[] rawTransaction,
+			long buildNanos, long signNanos, long sendNanos) {
+		this.txId = txId;
+		this.rawTransaction = rawTransaction;
+		this.buildNanos = buildNanos;
+		this.signNanos = signNanos;
+		this.sendNanos = sendNanos;
+	}
+
+
+	/**
+	 * Gets the total time spent in the pipeline.
+	 * 
+	 * @return nanoseconds.
+	 */
+	public long getTotalNanos() {
+		return buildNanos + signNanos + sendNanos;
+	}
+
+
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.transaction;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+
+import java.util.Collections;
+import java.util.List;
+
+import dk.clanie.bitcoin.BitcoinNetwork;
+import dk.clanie.bitcoin.ScriptPubKey;
+import dk.clanie.bitcoin.util.Base58;
+import dk.clanie.bitcoin.util.Hashes;
+import dk.clanie.bitcoin.util.Hex;
+
+/**
+ * Bitcoin script opcodes, rendering of scripts in assembler notation and
+ * classification of output scripts, all matching bitcoind's output.
+ * 
+ * @author Claus Nielsen
+ */
+public final class Script {
+
+	public static final int OP_0 = 0x00;
+	public static final int OP_PUSHDATA1 = 0x4c;
+	public static final int OP_PUSHDATA2 = 0x4d;
+	public static final int OP_PUSHDATA4 = 0x4e;
+	public static final int OP_1 = 0x51;
+	public static final int OP_16 = 0x60;
+	public static final int OP_RETURN = 0x6a;
+	public static final int OP_DUP = 0x76;
+	public static final int OP_EQUAL = 0x87;
+	public static final int OP_EQUALVERIFY = 0x88;
+	public static final int OP_HASH160 = 0xa9;
+	public static final int OP_CHECKSIG = 0xac;
+	public static final int OP_CHECKMULTISIG = 0xae;
+
+	public static final String TYPE_PUBKEY = "pubkey";
+	public static final String TYPE_PUBKEYHASH = "pubkeyhash";
+	public static final String TYPE_SCRIPTHASH = "scripthash";
+	public static final String TYPE_MULTISIG = "multisig";
+	public static final String TYPE_NULLDATA = "nulldata";
+	public static final String TYPE_NONSTANDARD = "nonstandard";
+
+	private static final int MIN_PUBKEY_SIZE = 33;
+	private static final int MAX_PUBKEY_SIZE = 120;
+
+	private static final String[] OP_NAMES = new String[256];
+	static {
+		String[] names = {
+			// 0x61 - 0x6f
+			"OP_NOP", "OP_VER", "OP_IF", "OP_NOTIF", "OP_VERIF", "OP_VERNOTIF", "OP_ELSE", "OP_ENDIF",
+			"OP_VERIFY", "OP_RETURN", "OP_TOALTSTACK", "OP_FROMALTSTACK", "OP_2DROP", "OP_2DUP", "OP_3DUP",
+			// 0x70 - 0x7f
+			"OP_2OVER", "OP_2ROT", "OP_2SWAP", "OP_IFDUP", "OP_DEPTH", "OP_DROP", "OP_DUP", "OP_NIP",
+			"OP_OVER", "OP_PICK", "OP_ROLL", "OP_ROT", "OP_SWAP", "OP_TUCK", "OP_CAT", "OP_SUBSTR",
+			// 0x80 - 0x8f
+			"OP_LEFT", "OP_RIGHT", "OP_SIZE", "OP_INVERT", "OP_AND", "OP_OR", "OP_XOR", "OP_EQUAL",
+			"OP_EQUALVERIFY", "OP_RESERVED1", "OP_RESERVED2", "OP_1ADD", "OP_1SUB", "OP_2MUL", "OP_2DIV", "OP_NEGATE",
+			// 0x90 - 0x9f
+			"OP_ABS", "OP_NOT", "OP_0NOTEQUAL", "OP_ADD", "OP_SUB", "OP_MUL", "OP_DIV", "OP_MOD",
+			"OP_LSHIFT", "OP_RSHIFT", "OP_BOOLAND", "OP_BOOLOR", "OP_NUMEQUAL", "OP_NUMEQUALVERIFY", "OP_NUMNOTEQUAL", "OP_LESSTHAN",
+			// 0xa0 - 0xaf
+			"OP_GREATERTHAN", "OP_LESSTHANOREQUAL", "OP_GREATERTHANOREQUAL", "OP_MIN", "OP_MAX", "OP_WITHIN", "OP_RIPEMD160", "OP_SHA1",
+			"OP_SHA256", "OP_HASH160", "OP_HASH256", "OP_CODESEPARATOR", "OP_CHECKSIG", "OP_CHECKSIGVERIFY", "OP_CHECKMULTISIG", "OP_CHECKMULTISIGVERIFY",
+			// 0xb0 - 0xb9
+			"OP_NOP1", "OP_NOP2", "OP_NOP3", "OP_NOP4", "OP_NOP5", "OP_NOP6", "OP_NOP7", "OP_NOP8",
+			"OP_NOP9", "OP_NOP10"
+		};
+		for (int i = 0; i < OP_NAMES.length; i++) OP_NAMES[i] = "OP_UNKNOWN";
+		System.arraycopy(names, 0, OP_NAMES, 0x61, names.length);
+		OP_NAMES[OP_PUSHDATA1] = "OP_PUSHDATA1";
+		OP_NAMES[OP_PUSHDATA2] = "OP_PUSHDATA2";
+		OP_NAMES[OP_PUSHDATA4] = "OP_PUSHDATA4";
+		OP_NAMES[0x4f] = "-1";
+		OP_NAMES[0x50] = "OP_RESERVED";
+		for (int n = 1; n <= 16; n++) OP_NAMES[OP_1 + n - 1] = Integer.toString(n);
+		OP_NAMES[0xff] = "OP_INVALIDOPCODE";
+	}
+
+
+	private Script() {
+	}
+
+
+	/**
+	 * Renders the given script in assembler notation, like bitcoind does.
+	 * <p>
+	 * Pushed data of up to four bytes is shown as a number, longer data as
+	 * hex. Other opcodes are shown by name.
+	 * 
+	 * @param script
+	 * @param offset - start of script.
+	 * @param length - script length.
+	 * @return script in assembler notation.
+	 */
+	public static String toAsm(byte[] script, int offset, int length) {
+		StringBuilder sb = new StringBuilder(length * 2 + 16);
+		int pos = offset;
+		int end = offset + length;
+		while (pos < end) {
+			if (pos > offset) sb.append(' ');
+			int opcode = script[pos++] & 0xff;
+			if (opcode > OP_PUSHDATA4) {
+				sb.append(OP_NAMES[opcode]);
+				continue;
+			}
+			int dataStart = dataStart(script, pos - 1, end);
+			int size = dataStart < 0 ? -1 : dataSize(script, pos - 1);
+			if (size < 0 || size > end - dataStart) {
+				sb.append("[error]");
+				break;
+			}
+			if (size <= 4) sb.append(toNumber(script, dataStart, size));
+			else Hex.encodeTo(sb, script, dataStart, size);
+			pos = dataStart + size;
+		}
+		return sb.toString();
+	}
+
+
+	/**
+	 * Decodes an output script into a {@link ScriptPubKey}, classifying it
+	 * and extracting the addresses it pays to.
+	 * 
+	 * @param script
+	 * @param offset - start of script.
+	 * @param length - script length.
+	 * @param network - network, determining address version bytes.
+	 * @return {@link ScriptPubKey}
+	 */
+	public static ScriptPubKey toScriptPubKey(byte[] script, int offset, int length, BitcoinNetwork network) {
+		String asm = toAsm(script, offset, length);
+		String hex = Hex.encode(script, offset, length);
+		int end = offset + length;
+
+		if (length == 25 && (script[offset] & 0xff) == OP_DUP && (script[offset + 1] & 0xff) == OP_HASH160
+				&& script[offset + 2] == 20 && (script[offset + 23] & 0xff) == OP_EQUALVERIFY
+				&& (script[offset + 24] & 0xff) == OP_CHECKSIG) {
+			String address = toAddress(network.getPubKeyHashVersion(), script, offset + 3, 20);
+			return new ScriptPubKey(asm, hex, 1, TYPE_PUBKEYHASH, Collections.singletonList(address));
+		}
+
+		if (length == 23 && (script[offset] & 0xff) == OP_HASH160 && script[offset + 1] == 20
+				&& (script[offset + 22] & 0xff) == OP_EQUAL) {
+			String address = toAddress(network.getScriptHashVersion(), script, offset + 2, 20);
+			return new ScriptPubKey(asm, hex, 1, TYPE_SCRIPTHASH, Collections.singletonList(address));
+		}
+
+		int first = length > 0 ? script[offset] & 0xff : -1;
+		if (first >= MIN_PUBKEY_SIZE && first <= MAX_PUBKEY_SIZE && first < OP_PUSHDATA1
+				&& length == first + 2 && (script[end - 1] & 0xff) == OP_CHECKSIG) {
+			String address = toAddress(network.getPubKeyHashVersion(), Hashes.hash160(script, offset + 1, first));
+			return new ScriptPubKey(asm, hex, 1, TYPE_PUBKEY, Collections.singletonList(address));
+		}
+
+		if (first >= OP_1 && first <= OP_16 && length >= 3 && (script[end - 1] & 0xff) == OP_CHECKMULTISIG) {
+			List<String> addresses = multiSigAddresses(script, offset + 1, end - 2, network);
+			int required = first - OP_1 + 1;
+			int keys = (script[end - 2] & 0xff) - OP_1 + 1;
+			if (addresses != null && addresses.size() == keys && required <= keys) {
+				return new ScriptPubKey(asm, hex, required, TYPE_MULTISIG, addresses);
+			}
+		}
+
+		if (first == OP_RETURN && (length == 1 || isSinglePush(script, offset + 1, end))) {
+			return new ScriptPubKey(asm, hex, null, TYPE_NULLDATA, null);
+		}
+
+		return new ScriptPubKey(asm, hex, null, TYPE_NONSTANDARD, null);
+	}
+
+
+	/**
+	 * Encodes a 20 byte hash as an address.
+	 */
+	private static String toAddress(int version, byte[] bytes, int offset, int length) {
+		byte[] hash = new byte[length];
+		System.arraycopy(bytes, offset, hash, 0, length);
+		return Base58.encodeChecked(version, hash);
+	}
+
+
+	private static String toAddress(int version, byte[] hash) {
+		return Base58.encodeChecked(version, hash);
+	}
+
+
+	/**
+	 * Extracts addresses of the public keys pushed between <code>pos</code>
+	 * and <code>end</code>.
+	 * 
+	 * @return addresses, or null if anything but public keys are found.
+	 */
+	private static List<String> multiSigAddresses(byte[] script, int pos, int end, BitcoinNetwork network) {
+		List<String> addresses = newArrayList();
+		while (pos < end) {
+			int size = script[pos] & 0xff;
+			if (size < MIN_PUBKEY_SIZE || size > MAX_PUBKEY_SIZE || size >= OP_PUSHDATA1 || pos + 1 + size > end) return null;
+			addresses.add(toAddress(network.getPubKeyHashVersion(), Hashes.hash160(script, pos + 1, size)));
+			pos += 1 + size;
+		}
+		return addresses;
+	}
+
+
+	private static boolean isSinglePush(byte[] script, int pos, int end) {
+		if ((script[pos] & 0xff) > OP_PUSHDATA4) return false;
+		int dataStart = dataStart(script, pos, end);
+		return dataStart >= 0 && dataStart + dataSize(script, pos) == end;
+	}
+
+
+	/**
+	 * Gets the position of the data pushed by the push opcode at
+	 * <code>pos</code>.
+	 * 
+	 * @return start of data, or -1 if the length prefix is truncated.
+	 */
+	private static int dataStart(byte[] script, int pos, int end) {
+		switch (script[pos] & 0xff) {
+		case OP_PUSHDATA1: return pos + 2 <= end ? pos + 2 : -1;
+		case OP_PUSHDATA2: return pos + 3 <= end ? pos + 3 : -1;
+		case OP_PUSHDATA4: return pos + 5 <= end ? pos + 5 : -1;
+		default: return pos + 1;
+		}
+	}
+
+
+	/**
+	 * Gets the size of the data pushed by the push opcode at
+	 * <code>pos</code>, which must be followed by its complete length prefix.
+	 * 
+	 * @return data size, negative if it doesn't fit in an int.
+	 */
+	private static int dataSize(byte[] script, int pos) {
+		int opcode = script[pos] & 0xff;
+		switch (opcode) {
+		case OP_PUSHDATA1:
+			return script[pos + 1] & 0xff;
+		case OP_PUSHDATA2:
+			return (script[pos + 1] & 0xff) | (script[pos + 2] & 0xff) << 8;
+		case OP_PUSHDATA4:
+			return (script[pos + 1] & 0xff) | (script[pos + 2] & 0xff) << 8
+					| (script[pos + 3] & 0xff) << 16 | (script[pos + 4] & 0xff) << 24;
+		default:
+			return opcode;
+		}
+	}
+
+
+	/**
+	 * Interprets up to four bytes as a little endian, sign-magnitude number,
+	 * as bitcoind does for short pushes.
+	 */
+	private static long toNumber(byte[] bytes, int offset, int size) {
+		if (size == 0) return 0;
+		long value = 0;
+		for (int i = 0; i < size; i++) {
+			value |= (long) (bytes[offset + i] & 0xff) << (8 * i);
+		}
+		long signBit = 0x80L << (8 * (size - 1));
+		if ((value & signBit) != 0) value = -(value & ~signBit);
+		return value;
+	}
+
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.util;
+
+import java.util.Arrays;
+
+/**
+ * Base58 and Base58Check encoding as used for bitcoin addresses and private
+ * keys.
+ * 
+ * @author Claus Nielsen
+ */
+public final class Base58 {
+
+	private static final char[] ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".toCharArray();
+
+	/**
+	 * Value of each ASCII character as a base58 digit, or -1 if it isn't one.
+	 */
+	private static final byte[] VALUES = new byte[128];
+	static {
+		Arrays.fill(VALUES, (byte) -1);
+		for (int i = 0; i < ALPHABET.length; i++) VALUES[ALPHABET[i]] = (byte) i;
+	}
+
+
+	private Base58() {
+	}
+
+
+	/**
+	 * Encodes the given bytes.
+	 * 
+	 * @param bytes
+	 * @return base58 string.
+	 */
+	public static String encode(byte[] bytes) {
+		int zeros = 0;
+		while (zeros < bytes.length && bytes[zeros] == 0) zeros++;
+		// log(256) / log(58) is just below 1.38
+		char[] digits = new char[bytes.length * 138 / 100 + 1];
+		byte[] number = Arrays.copyOf(bytes, bytes.length);
+		int pos = digits.length;
+		int start = zeros;
+		while (start < number.length) {
+			// Divide the number by 58 in place, the remainder is the next digit.
+			int remainder = 0;
+			for (int i = start; i < number.length; i++) {
+				int value = (remainder << 8) | (number[i] & 0xff);
+				number[i] = (byte) (value / 58);
+				remainder = value % 58;
+			}
+			digits[--pos] = ALPHABET[remainder];
+			while (start < number.length && number[start] == 0) start++;
+		}
+		for (int i = 0; i < zeros; i++) digits[--pos] = ALPHABET[0];
+		return new String(digits, pos, digits.length - pos);
+	}
+
+
+	/**
+	 * Decodes the given base58 string.
+	 * 
+	 * @param base58
+	 * @return decoded bytes, or null if the string contains characters not in
+	 *         the base58 alphabet.
+	 */
+	public static byte[] decode(CharSequence base58) {
+		int length = base58.length();
+		int zeros = 0;
+		while (zeros < length && base58.charAt(zeros) == ALPHABET[0]) zeros++;
+		// log(58) / log(256) is just below 0.733
+		byte[] number = new byte[length * 733 / 1000 + 1];
+		int start = number.length;
+		for (int c = zeros; c < length; c++) {
+			char ch = base58.charAt(c);
+			int carry = ch < 128 ? VALUES[ch] : -1;
+			if (carry < 0) return null;
+			// Multiply the number by 58 in place and add the digit.
+			for (int i = number.length - 1; i >= start || carry != 0; i--) {
+				carry += 58 * (number[i] & 0xff);
+				number[i] = (byte) carry;
+				carry >>>= 8;
+				if (i < start) start = i;
+			}
+		}
+		byte[] bytes = new byte[zeros + number.length - start];
+		System.arraycopy(number, start, bytes, zeros, number.length - start);
+		return bytes;
+	}
+
+
+	/**
+	 * Base58Check encodes the given version byte and payload.
+	 * 
+	 * @param version
+	 * @param payload
+	 * @return base58 string.
+	 */
+	public static String encodeChecked(int version, byte[] payload) {
+		byte[] bytes = new byte[1 + payload.length + 4];
+		bytes[0] = (byte) version;
+		System.arraycopy(payload, 0, bytes, 1, payload.length);
+		byte[] checksum = Hashes.doubleSha256(bytes, 0, 1 + payload.length);
+		System.arraycopy(checksum, 0, bytes, 1 + payload.length, 4);
+		return encode(bytes);
+	}
+
+
+	/**
+	 * Decodes a Base58Check encoded string, verifying the checksum.
+	 * 
+	 * @param base58
+	 * @return version byte followed by payload, or null if the string isn't
+	 *         valid Base58Check.
+	 */
+	public static byte[] decodeChecked(CharSequence base58) {
+		byte[] bytes = decode(base58);
+		if (bytes == null || bytes.length < 5) return null;
+		int dataLength = bytes.length - 4;
+		byte[] checksum = Hashes.doubleSha256(bytes, 0, dataLength);
+		for (int i = 0; i < 4; i++) {
+			if (checksum[i] != bytes[dataLength + i]) return null;
+		}
+		return Arrays.copyOf(bytes, dataLength);
+	}
+
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The hash functions used by bitcoin.
+ * 
+ * @author Claus Nielsen
+ */
+public final class Hashes {
+
+	private Hashes() {
+	}
+
+
+	/**
+	 * Calculates SHA-256 of <code>length</code> bytes starting at
+	 * <code>offset</code>.
+	 * 
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return 32 byte hash.
+	 */
+	public static byte[] sha256(byte[] bytes, int offset, int length) {
+		MessageDigest digest = sha256Digest();
+		digest.update(bytes, offset, length);
+		return digest.digest();
+	}
+
+
+	/**
+	 * Calculates SHA-256 of SHA-256 of <code>length</code> bytes starting at
+	 * <code>offset</code>.
+	 * <p>
+	 * This is the hash used for transaction ids, block hashes and checksums.
+	 * 
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return 32 byte hash.
+	 */
+	public static byte[] doubleSha256(byte[] bytes, int offset, int length) {
+		MessageDigest digest = sha256Digest();
+		digest.update(bytes, offset, length);
+		return digest.digest(digest.digest());
+	}
+
+
+	/**
+	 * Calculates RIPEMD-160 of SHA-256 of <code>length</code> bytes starting
+	 * at <code>offset</code>.
+	 * <p>
+	 * This is the hash of public keys and scripts used in addresses.
+	 * 
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return 20 byte hash.
+	 */
+	public static byte[] hash160(byte[] bytes, int offset, int length) {
+		return Ripemd160.digest(sha256(bytes, offset, length));
+	}
+
+
+	private static MessageDigest sha256Digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+}
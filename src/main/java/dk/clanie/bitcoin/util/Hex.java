@@ -0,0 +1,210 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Table driven hexadecimal encoding and decoding.
+ * <p>
+ * Encodes to lower case, which is what bitcoind uses. Decodes upper as well as
+ * lower case.
+ * 
+ * @author Claus Nielsen
+ */
+public final class Hex {
+
+	private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Value of each ASCII character as a hex digit, or -1 if it isn't one.
+	 */
+	private static final byte[] VALUES = new byte[128];
+	static {
+		for (int i = 0; i < VALUES.length; i++) VALUES[i] = -1;
+		for (int i = 0; i < 10; i++) VALUES['0' + i] = (byte) i;
+		for (int i = 0; i < 6; i++) {
+			VALUES['a' + i] = (byte) (10 + i);
+			VALUES['A' + i] = (byte) (10 + i);
+		}
+	}
+
+
+	private Hex() {
+	}
+
+
+	/**
+	 * Encodes the given bytes.
+	 * 
+	 * @param bytes
+	 * @return hex string, two characters per byte.
+	 */
+	public static String encode(byte[] bytes) {
+		return encode(bytes, 0, bytes.length);
+	}
+
+
+	/**
+	 * Encodes <code>length</code> bytes starting at <code>offset</code>.
+	 * 
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return hex string, two characters per byte.
+	 */
+	public static String encode(byte[] bytes, int offset, int length) {
+		char[] chars = new char[length * 2];
+		for (int i = 0, c = 0; i < length; i++) {
+			int b = bytes[offset + i];
+			chars[c++] = DIGITS[(b >> 4) & 0x0f];
+			chars[c++] = DIGITS[b & 0x0f];
+		}
+		return new String(chars);
+	}
+
+
+	/**
+	 * Appends hex encoding of <code>length</code> bytes starting at
+	 * <code>offset</code> to the given StringBuilder.
+	 * 
+	 * @param sb
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 */
+	public static void encodeTo(StringBuilder sb, byte[] bytes, int offset, int length) {
+		sb.ensureCapacity(sb.length() + length * 2);
+		for (int i = offset; i < offset + length; i++) {
+			int b = bytes[i];
+			sb.append(DIGITS[(b >> 4) & 0x0f]).append(DIGITS[b & 0x0f]);
+		}
+	}
+
+
+	/**
+	 * Encodes as many of the remaining bytes in <code>src</code> as there is
+	 * room for in <code>dst</code> from <code>dstOffset</code>, advancing the
+	 * position of <code>src</code>.
+	 * 
+	 * @param src
+	 * @param dst
+	 * @param dstOffset
+	 * @return number of characters written.
+	 */
+	public static int encode(ByteBuffer src, char[] dst, int dstOffset) {
+		int length = Math.min(src.remaining(), (dst.length - dstOffset) / 2);
+		for (int i = 0, c = dstOffset; i < length; i++) {
+			int b = src.get();
+			dst[c++] = DIGITS[(b >> 4) & 0x0f];
+			dst[c++] = DIGITS[b & 0x0f];
+		}
+		return length * 2;
+	}
+
+
+	/**
+	 * Encodes <code>length</code> bytes starting at <code>offset</code> in
+	 * reverse order.
+	 * <p>
+	 * Transaction ids and block hashes are displayed byte-reversed relative to
+	 * the order in which they are hashed and serialized.
+	 * 
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return hex string, two characters per byte.
+	 */
+	public static String encodeReversed(byte[] bytes, int offset, int length) {
+		char[] chars = new char[length * 2];
+		for (int i = offset + length - 1, c = 0; i >= offset; i--) {
+			int b = bytes[i];
+			chars[c++] = DIGITS[(b >> 4) & 0x0f];
+			chars[c++] = DIGITS[b & 0x0f];
+		}
+		return new String(chars);
+	}
+
+
+	/**
+	 * Decodes the given hex string.
+	 * 
+	 * @param hex
+	 * @return decoded bytes.
+	 * @throws IllegalArgumentException if <code>hex</code> has odd length or
+	 *             contains characters which aren't hex digits.
+	 */
+	public static byte[] decode(CharSequence hex) {
+		int length = hex.length();
+		if ((length & 1) != 0) throw new IllegalArgumentException("Hex string has odd length " + length + ".");
+		byte[] bytes = new byte[length / 2];
+		for (int i = 0, c = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) ((value(hex.charAt(c++)) << 4) | value(hex.charAt(c++)));
+		}
+		return bytes;
+	}
+
+
+	/**
+	 * Decodes <code>length</code> hex digits starting at <code>offset</code>.
+	 * <p>
+	 * Allows decoding directly from a parser's character buffer.
+	 * 
+	 * @param chars
+	 * @param offset
+	 * @param length
+	 * @return decoded bytes.
+	 * @throws IllegalArgumentException if <code>length</code> is odd or the
+	 *             characters aren't all hex digits.
+	 */
+	public static byte[] decode(char[] chars, int offset, int length) {
+		if ((length & 1) != 0) throw new IllegalArgumentException("Hex string has odd length " + length + ".");
+		byte[] bytes = new byte[length / 2];
+		for (int i = 0, c = offset; i < bytes.length; i++) {
+			bytes[i] = (byte) ((value(chars[c++]) << 4) | value(chars[c++]));
+		}
+		return bytes;
+	}
+
+
+	/**
+	 * Decodes the given hex string into a byte array in reverse order.
+	 * 
+	 * @param hex - eg. a transaction id.
+	 * @return decoded bytes.
+	 * @see #encodeReversed(byte[], int, int)
+	 */
+	public static byte[] decodeReversed(CharSequence hex) {
+		byte[] bytes = decode(hex);
+		for (int i = 0, j = bytes.length - 1; i < j; i++, j--) {
+			byte b = bytes[i];
+			bytes[i] = bytes[j];
+			bytes[j] = b;
+		}
+		return bytes;
+	}
+
+
+	private static int value(char c) {
+		int value = c < 128 ? VALUES[c] : -1;
+		if (value < 0) throw new IllegalArgumentException("Invalid hex digit '" + c + "'.");
+		return value;
+	}
+
+
+}
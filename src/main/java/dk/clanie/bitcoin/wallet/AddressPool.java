@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+
+/**
+ * Hands out new addresses from a buffer of addresses fetched in advance.
+ * <p>
+ * Each account has its own buffer of up to <code>bufferSize</code> addresses.
+ * Addresses are taken from it with a lock-free dequeue. When fewer than
+ * <code>lowWatermark</code> addresses are left, a background thread fills it
+ * up again, making the getnewaddress calls in one run. If the buffer is
+ * empty, eg. for an account asked for the first time, the address is fetched
+ * on the calling thread.
+ * <p>
+ * Before each run the refill thread checks the size of bitcoind's key pool,
+ * and calls keypoolrefill if it is below the key pool watermark, so
+ * getnewaddress doesn't stall generating keys. On an encrypted wallet that
+ * only works while the wallet is unlocked; the refill carries on regardless.
+ * <p>
+ * Call {@link #shutdown()} when done.
+ * 
+ * @author Claus Nielsen
+ */
+public class AddressPool {
+
+	/**
+	 * Default key pool size below which keypoolrefill is called. bitcoind's
+	 * default key pool size is 100.
+	 */
+	public static final int DEFAULT_KEY_POOL_LOW_WATERMARK = 25;
+
+	private final BitcoindClient bitcoindClient;
+	private final int bufferSize;
+	private final int lowWatermark;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private final ConcurrentMap<String, Buffer> buffers = new ConcurrentHashMap<String, Buffer>();
+	private volatile int keyPoolLowWatermark = DEFAULT_KEY_POOL_LOW_WATERMARK;
+	private volatile RuntimeException lastRefillFailure;
+
+
+	/**
+	 * Creates pool.
+	 * 
+	 * @param bitcoindClient
+	 * @param bufferSize - number of addresses buffered per account.
+	 * @param lowWatermark - number of buffered addresses below which the
+	 *            buffer is refilled.
+	 */
+	public AddressPool(BitcoindClient bitcoindClient, int bufferSize, int lowWatermark) {
+		if (bufferSize < 1) throw new IllegalArgumentException("bufferSize must be at least 1.");
+		if (lowWatermark > bufferSize) throw new IllegalArgumentException("lowWatermark must not exceed bufferSize.");
+		this.bitcoindClient = bitcoindClient;
+		this.bufferSize = bufferSize;
+		this.lowWatermark = lowWatermark;
+	}
+
+
+	/**
+	 * Sets the key pool size below which keypoolrefill is called.
+	 * 
+	 * @param keyPoolLowWatermark - 0 to never call keypoolrefill.
+	 */
+	public void setKeyPoolLowWatermark(int keyPoolLowWatermark) {
+		this.keyPoolLowWatermark = keyPoolLowWatermark;
+	}
+
+
+	/**
+	 * Gets a new address for receiving payments.
+	 * 
+	 * @param account - account to associate with the new address, "" or null
+	 *            for the default account.
+	 * @return bitcoin address.
+	 */
+	public String getAddress(String account) {
+		Buffer buffer = buffer(account);
+		String address = buffer.addresses.poll();
+		if (address != null) {
+			if (buffer.size.decrementAndGet() < lowWatermark) scheduleRefill(buffer);
+			return address;
+		}
+		scheduleRefill(buffer);
+		return bitcoindClient.getNewAddress(buffer.account).getResult();
+	}
+
+
+	/**
+	 * Starts filling the buffer of the given account in the background.
+	 * 
+	 * @param account - "" or null for the default account.
+	 */
+	public void prefill(String account) {
+		scheduleRefill(buffer(account));
+	}
+
+
+	/**
+	 * Gets the number of addresses buffered for the given account.
+	 * 
+	 * @param account - "" or null for the default account.
+	 * @return number of addresses.
+	 */
+	public int getBufferedCount(String account) {
+		Buffer buffer = buffers.get(account == null ? "" : account);
+		return buffer == null ? 0 : buffer.size.get();
+	}
+
+
+	/**
+	 * Gets the exception that ended the latest failed refill.
+	 * 
+	 * @return exception, or null if no refill has failed.
+	 */
+	public RuntimeException getLastRefillFailure() {
+		return lastRefillFailure;
+	}
+
+
+	/**
+	 * Stops the refill thread. Buffered addresses can still be handed out.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+
+	private Buffer buffer(String account) {
+		if (account == null) account = "";
+		Buffer buffer = buffers.get(account);
+		if (buffer == null) {
+			Buffer newBuffer = new Buffer(account);
+			buffer = buffers.putIfAbsent(account, newBuffer);
+			if (buffer == null) buffer = newBuffer;
+		}
+		return buffer;
+	}
+
+
+	private void scheduleRefill(final Buffer buffer) {
+		if (executor.isShutdown() || !buffer.refillScheduled.compareAndSet(false, true)) return;
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						refill(buffer);
+					} catch (RuntimeException e) {
+						lastRefillFailure = e;
+					} finally {
+						buffer.refillScheduled.set(false);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// Shut down since checked.
+			buffer.refillScheduled.set(false);
+		}
+	}
+
+
+	private void refill(Buffer buffer) {
+		int missing = bufferSize - buffer.size.get();
+		if (missing <= 0) return;
+		Integer keyPoolSize = bitcoindClient.getInfo().getResult().getKeyPoolSize();
+		if (keyPoolSize != null && keyPoolSize - missing < keyPoolLowWatermark) {
+			try {
+				bitcoindClient.keyPoolRefill();
+			} catch (RuntimeException e) {
+				// Typically a locked wallet; getnewaddress still works while keys last.
+				lastRefillFailure = e;
+			}
+		}
+		for (int i = 0; i < missing; i++) {
+			buffer.addresses.add(bitcoindClient.getNewAddress(buffer.account).getResult());
+			buffer.size.incrementAndGet();
+		}
+	}
+
+
+	/**
+	 * Addresses buffered for one account.
+	 */
+	private static class Buffer {
+
+		private final String account;
+		private final Queue<String> addresses = new ConcurrentLinkedQueue<String>();
+		private final AtomicInteger size = new AtomicInteger();
+		private final AtomicBoolean refillScheduled = new AtomicBoolean();
+
+		private Buffer(String account) {
+			this.account = account;
+		}
+
+	}
+
+
+}
@@ -0,0 +1,477 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static dk.clanie.collections.CollectionFactory.newHashMap;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.ListSinceBlockResult;
+import dk.clanie.bitcoin.client.response.TransactionData;
+
+/**
+ * Keeps per-account and per-address balances of the wallet of a bitcoind,
+ * answering the questions otherwise asked with one getbalance or
+ * getreceivedbyaddress call per account or address.
+ * <p>
+ * {@link #reload()} builds the balances from a listtransactions snapshot of
+ * all accounts. They are then kept up to date with {@link #refresh()}, which
+ * only lists transactions in blocks since the previous refresh and those not
+ * yet confirmed, plus the most recent listtransactions entries for finding
+ * new moves, or by feeding transactions to
+ * {@link #update(long, TransactionData...)}. A transaction seen again, eg.
+ * when it has been confirmed, replaces the earlier version.
+ * <p>
+ * Moves have no txid, so identical moves, ie. of the same amount between the
+ * same accounts with the same comment in the same second, can only be told
+ * apart by counting them.
+ * <p>
+ * Credits are kept in buckets by the height of the block confirming them, so
+ * a balance with any number of confirmations is a sum over the buckets deep
+ * enough, with no need to rebuild anything when blocks arrive.
+ * <p>
+ * Account balances follow getbalance: received and generated amounts count
+ * when they have <code>minConf</code> confirmations, while sends, fees and
+ * moves count at once. The fee of a transaction counts once, although
+ * bitcoind repeats it on every send entry of the transaction. Address
+ * figures follow getreceivedbyaddress, ie. they are amounts received, not
+ * what is left of them.
+ * <p>
+ * Transactions conflicted away or dropped from the memory pool, and blocks
+ * lost in a reorganization, are only corrected by {@link #reload()}, which
+ * should therefore be called now and then.
+ * 
+ * @author Claus Nielsen
+ */
+public class BalanceAggregator {
+
+	/**
+	 * Number of transactions listed per listtransactions call.
+	 */
+	private static final int PAGE_SIZE = 1000;
+
+	/**
+	 * Number of transactions listed per listtransactions call when looking
+	 * for new moves.
+	 */
+	private static final int MOVE_SCAN_PAGE_SIZE = 100;
+
+	/**
+	 * Height of transactions not yet in a block.
+	 */
+	private static final int UNCONFIRMED = Integer.MAX_VALUE;
+
+	private final BitcoindClient bitcoindClient;
+
+	// Guarded by this
+	private final Map<String, Entry> entries = newHashMap();
+	private final Map<String, Buckets> accounts = newHashMap();
+	private final Map<String, Buckets> addresses = newHashMap();
+	private final Map<String, Integer> moveCounts = newHashMap();
+	private long blockCount = 0;
+	private String lastBlockHash = null;
+	private long lastScanTime = Long.MIN_VALUE;
+	private boolean loaded = false;
+
+
+	/**
+	 * Creates aggregator for the wallet of the given bitcoind.
+	 * <p>
+	 * All balances are zero until {@link #reload()} or {@link #refresh()} is
+	 * called.
+	 * 
+	 * @param bitcoindClient
+	 */
+	public BalanceAggregator(BitcoindClient bitcoindClient) {
+		this.bitcoindClient = bitcoindClient;
+	}
+
+
+	/**
+	 * Rebuilds all balances from the wallet's complete transaction list.
+	 */
+	public synchronized void reload() {
+		long newBlockCount = bitcoindClient.getBlockCount().getResult();
+		String newLastBlockHash = bitcoindClient.getBlockHash(newBlockCount).getResult();
+		clear();
+		blockCount = newBlockCount;
+		for (int from = 0;; from += PAGE_SIZE) {
+			TransactionData[] page = bitcoindClient.listTransactions("*", PAGE_SIZE, from).getResult();
+			for (TransactionData transaction : page) {
+				if (isMove(transaction)) addMove(transaction, moveCount(moveKey(transaction)));
+				else add(transaction);
+				lastScanTime = Math.max(lastScanTime, timeOf(transaction));
+			}
+			if (page.length < PAGE_SIZE) break;
+		}
+		lastBlockHash = newLastBlockHash;
+		loaded = true;
+	}
+
+
+	/**
+	 * Applies transactions in blocks since the last refresh, those not yet
+	 * confirmed and new moves.
+	 * <p>
+	 * Reloads if the balances haven't been loaded yet.
+	 */
+	public synchronized void refresh() {
+		if (!loaded) {
+			reload();
+			return;
+		}
+		ListSinceBlockResult since = bitcoindClient.listSinceBlock(lastBlockHash, null).getResult();
+		// The confirmations are counted from the last block, which may be newer than getblockcount told before the call.
+		if (!since.getLastBlock().equals(lastBlockHash)) {
+			blockCount = bitcoindClient.getBlock(since.getLastBlock()).getResult().getHeight();
+		}
+		for (TransactionData transaction : since.getTransactions()) {
+			if (!isMove(transaction)) add(transaction);
+		}
+		lastBlockHash = since.getLastBlock();
+		addNewMoves();
+	}
+
+
+	/**
+	 * Applies the given transactions, eg. from a wallet notification.
+	 * <p>
+	 * Moves are counted as new moves.
+	 * 
+	 * @param blockCount - number of blocks in the chain the transactions'
+	 *            confirmations were counted in.
+	 * @param transactions
+	 */
+	public synchronized void update(long blockCount, TransactionData... transactions) {
+		if (blockCount > this.blockCount) this.blockCount = blockCount;
+		for (TransactionData transaction : transactions) {
+			if (isMove(transaction)) addMove(transaction, moveCount(moveKey(transaction)));
+			else add(transaction, blockCount);
+		}
+	}
+
+
+	/**
+	 * Gets the balance of an account, like getbalance.
+	 * 
+	 * @param account - account name, "" for the default account.
+	 * @param minConf - min number of confirmations of received amounts.
+	 * @return balance in bitcoins.
+	 */
+	public synchronized BigDecimal getAccountBalance(String account, int minConf) {
+		return toBitcoins(sum(accounts.get(account), minConf));
+	}
+
+
+	/**
+	 * Gets the balances of all accounts, like listaccounts.
+	 * 
+	 * @param minConf - min number of confirmations of received amounts.
+	 * @return map from account name to balance in bitcoins.
+	 */
+	public synchronized Map<String, BigDecimal> getAccountBalances(int minConf) {
+		Map<String, BigDecimal> balances = newHashMap();
+		for (Map.Entry<String, Buckets> account : accounts.entrySet()) {
+			balances.put(account.getKey(), toBitcoins(sum(account.getValue(), minConf)));
+		}
+		return balances;
+	}
+
+
+	/**
+	 * Gets the amount received by an address, like getreceivedbyaddress.
+	 * 
+	 * @param address
+	 * @param minConf - min number of confirmations.
+	 * @return amount in bitcoins.
+	 */
+	public synchronized BigDecimal getReceivedByAddress(String address, int minConf) {
+		return toBitcoins(sum(addresses.get(address), minConf));
+	}
+
+
+	/**
+	 * Gets the number of blocks the balances are up to date with.
+	 * 
+	 * @return block count.
+	 */
+	public synchronized long getBlockCount() {
+		return blockCount;
+	}
+
+
+	private void clear() {
+		entries.clear();
+		accounts.clear();
+		addresses.clear();
+		moveCounts.clear();
+		lastScanTime = Long.MIN_VALUE;
+	}
+
+
+	/**
+	 * Adds the moves among the most recent listtransactions entries which
+	 * haven't been counted yet.
+	 * <p>
+	 * New moves are among the most recent entries, so listing stops at a page
+	 * entirely older than the newest entry seen by the previous scan, unless
+	 * the page starts in the second of a listed move, where older entries may
+	 * be identical moves already counted.
+	 */
+	private void addNewMoves() {
+		Map<String, List<TransactionData>> listed = newHashMap();
+		long firstMoveTime = Long.MAX_VALUE;
+		long newestTime = lastScanTime;
+		for (int from = 0;; from += MOVE_SCAN_PAGE_SIZE) {
+			TransactionData[] page = bitcoindClient.listTransactions("*", MOVE_SCAN_PAGE_SIZE, from).getResult();
+			long pageNewestTime = Long.MIN_VALUE;
+			for (TransactionData transaction : page) {
+				pageNewestTime = Math.max(pageNewestTime, timeOf(transaction));
+				if (!isMove(transaction)) continue;
+				String key = moveKey(transaction);
+				List<TransactionData> moves = listed.get(key);
+				if (moves == null) {
+					moves = newArrayList();
+					listed.put(key, moves);
+				}
+				moves.add(transaction);
+				firstMoveTime = Math.min(firstMoveTime, timeOf(transaction));
+			}
+			newestTime = Math.max(newestTime, pageNewestTime);
+			if (page.length < MOVE_SCAN_PAGE_SIZE) break;
+			if (pageNewestTime < lastScanTime && timeOf(page[0]) < firstMoveTime) break;
+		}
+		lastScanTime = newestTime;
+		for (Map.Entry<String, List<TransactionData>> moves : listed.entrySet()) {
+			for (int n = moveCount(moves.getKey()); n < moves.getValue().size(); n++) {
+				addMove(moves.getValue().get(n), n);
+			}
+		}
+	}
+
+
+	private void add(TransactionData transaction) {
+		add(transaction, blockCount);
+	}
+
+
+	private void add(TransactionData transaction, long blockCount) {
+		put(Entry.of(transaction, blockCount));
+		if ("send".equals(transaction.getCategory()) && toSatoshis(transaction.getFee()) != 0) {
+			put(Entry.feeOf(transaction));
+		}
+	}
+
+
+	/**
+	 * Adds the <code>n</code>th of the identical moves like the given one.
+	 */
+	private void addMove(TransactionData move, int n) {
+		String key = moveKey(move);
+		put(Entry.ofMove(move, key + '#' + n));
+		if (n >= moveCount(key)) moveCounts.put(key, n + 1);
+	}
+
+
+	private int moveCount(String moveKey) {
+		Integer count = moveCounts.get(moveKey);
+		return count == null ? 0 : count;
+	}
+
+
+	private void put(Entry entry) {
+		Entry previous = entries.put(entry.key, entry);
+		if (previous != null) apply(previous, -1);
+		apply(entry, 1);
+	}
+
+
+	private void apply(Entry entry, int sign) {
+		if (entry.kind == Kind.NONE) return;
+		long amount = sign * entry.satoshis;
+		int height = entry.kind == Kind.DEBIT ? Buckets.ALWAYS : entry.height;
+		buckets(accounts, entry.account).add(height, amount);
+		if (entry.kind == Kind.CREDIT && entry.address != null) {
+			buckets(addresses, entry.address).add(height, amount);
+		}
+	}
+
+
+	private long sum(Buckets buckets, int minConf) {
+		if (buckets == null) return 0;
+		return buckets.sum(minConf <= 0 ? UNCONFIRMED : blockCount - minConf + 1);
+	}
+
+
+	private static Buckets buckets(Map<String, Buckets> map, String key) {
+		Buckets buckets = map.get(key);
+		if (buckets == null) {
+			buckets = new Buckets();
+			map.put(key, buckets);
+		}
+		return buckets;
+	}
+
+
+	private static boolean isMove(TransactionData transaction) {
+		return "move".equals(transaction.getCategory());
+	}
+
+
+	/**
+	 * Key shared by identical moves.
+	 */
+	private static String moveKey(TransactionData move) {
+		return "move/" + timeOf(move) + '/' + accountOf(move) + '/' + toSatoshis(move.getAmount()) + '/' + move.getComment();
+	}
+
+
+	private static long timeOf(TransactionData transaction) {
+		return transaction.getTime() == null ? 0 : transaction.getTime().getTime();
+	}
+
+
+	private static String accountOf(TransactionData transaction) {
+		return transaction.getAccount() == null ? "" : transaction.getAccount();
+	}
+
+
+	private static long toSatoshis(BigDecimal amount) {
+		return amount == null ? 0 : amount.movePointRight(BitcoindClient.SCALE).longValueExact();
+	}
+
+
+	private static BigDecimal toBitcoins(long satoshis) {
+		return BigDecimal.valueOf(satoshis, BitcoindClient.SCALE);
+	}
+
+
+	/**
+	 * How a transaction entry affects balances.
+	 */
+	private enum Kind {
+
+		/**
+		 * Received or generated; counts once confirmed deep enough.
+		 */
+		CREDIT,
+
+		/**
+		 * Sent or moved; counts at once.
+		 */
+		DEBIT,
+
+		/**
+		 * Immature or orphaned coinbase; doesn't count.
+		 */
+		NONE;
+
+		private static Kind of(String category) {
+			if ("receive".equals(category) || "generate".equals(category)) return CREDIT;
+			if ("send".equals(category) || "move".equals(category)) return DEBIT;
+			return NONE;
+		}
+
+	}
+
+
+	/**
+	 * One listtransactions entry, or the fee of a transaction, reduced to
+	 * what balances need.
+	 */
+	private static class Entry {
+
+		private final String key;
+		private final Kind kind;
+		private final String account;
+		private final String address;
+		private final long satoshis;
+		private final int height;
+
+		private Entry(String key, Kind kind, String account, String address, long satoshis, int height) {
+			this.key = key;
+			this.kind = kind;
+			this.account = account;
+			this.address = address;
+			this.satoshis = satoshis;
+			this.height = height;
+		}
+
+		private static Entry of(TransactionData transaction, long blockCount) {
+			Integer confirmations = transaction.getConfirmations();
+			int height = confirmations == null || confirmations <= 0 ? UNCONFIRMED : (int) (blockCount - confirmations + 1);
+			// The category of a coinbase changes as it matures, so it's not part of the key.
+			String key = transaction.getTxId() + '/' + accountOf(transaction) + '/' + transaction.getAddress()
+					+ '/' + toSatoshis(transaction.getAmount());
+			return new Entry(key, Kind.of(transaction.getCategory()), accountOf(transaction), transaction.getAddress(),
+					toSatoshis(transaction.getAmount()), height);
+		}
+
+		/**
+		 * Entry charging the fee of a send to the account sent from.
+		 */
+		private static Entry feeOf(TransactionData send) {
+			return new Entry(send.getTxId() + "/fee", Kind.DEBIT, accountOf(send), null, toSatoshis(send.getFee()), UNCONFIRMED);
+		}
+
+		private static Entry ofMove(TransactionData move, String key) {
+			return new Entry(key, Kind.DEBIT, accountOf(move), null, toSatoshis(move.getAmount()), UNCONFIRMED);
+		}
+
+	}
+
+
+	/**
+	 * Amounts by the height of the block confirming them.
+	 */
+	private static class Buckets {
+
+		/**
+		 * Pseudo height of amounts counting regardless of confirmations.
+		 */
+		private static final int ALWAYS = Integer.MIN_VALUE;
+
+		private final TreeMap<Integer, Long> byHeight = new TreeMap<Integer, Long>();
+
+		private void add(int height, long amount) {
+			Long current = byHeight.get(height);
+			long sum = (current == null ? 0 : current) + amount;
+			if (sum == 0) byHeight.remove(height);
+			else byHeight.put(height, sum);
+		}
+
+		/**
+		 * Sums amounts confirmed at or below the given height.
+		 */
+		private long sum(long maxHeight) {
+			long sum = 0;
+			for (long amount : byHeight.headMap((int) Math.min(maxHeight, UNCONFIRMED), true).values()) {
+				sum += amount;
+			}
+			return sum;
+		}
+
+	}
+
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import java.util.List;
+
+import org.springframework.roo.addon.javabean.RooJavaBean;
+
+import dk.clanie.bitcoin.TransactionOutputRef;
+import dk.clanie.core.BaseClass;
+
+/**
+ * Unspent outputs chosen by a {@link CoinSelector}.
+ * 
+ * @author Claus Nielsen
+ */
+@SuppressWarnings("serial")
+@RooJavaBean(settersByDefault = false)
+public class CoinSelection extends BaseClass {
+
+	private List<TransactionOutputRef> txOutputs;
+
+	/**
+	 * Amount requested, in satoshis.
+	 */
+	private long targetSatoshis;
+
+	/**
+	 * Sum of the selected outputs, in satoshis.
+	 */
+	private long totalSatoshis;
+
+
+	/**
+	 * Full constructor.
+	 */
+	public CoinSelection(List<TransactionOutputRef> txOutputs, long targetSatoshis, long totalSatoshis) {
+		this.txOutputs = txOutputs;
+		this.targetSatoshis = targetSatoshis;
+		this.totalSatoshis = totalSatoshis;
+	}
+
+
+	/**
+	 * Gets the amount left over when the target has been paid.
+	 * 
+	 * @return change in satoshis.
+	 */
+	public long getChangeSatoshis() {
+		return totalSatoshis - targetSatoshis;
+	}
+
+
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+/**
+ * Strategy used by {@link CoinSelector} for choosing which unspent outputs
+ * to spend.
+ * 
+ * @author Claus Nielsen
+ */
+public enum CoinSelectionStrategy {
+
+	/**
+	 * Searches for a set of outputs adding up to the target without leaving
+	 * more change than the cost of creating a change output, so no change
+	 * output is needed. Falls back to {@link #KNAPSACK} if there is no such
+	 * set.
+	 */
+	BRANCH_AND_BOUND,
+
+	/**
+	 * Spends the largest outputs first. Fast, and uses few inputs, but
+	 * fragments large outputs.
+	 */
+	LARGEST_FIRST,
+
+	/**
+	 * Bitcoin-Qt's approach: an exact match if there is one, otherwise the
+	 * smallest set of smaller outputs found by random approximation, or the
+	 * smallest single larger output if that is closer to the target.
+	 */
+	KNAPSACK;
+
+}
@@ -0,0 +1,473 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static dk.clanie.collections.CollectionFactory.newHashMap;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import dk.clanie.bitcoin.TransactionOutputRef;
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.ListUnspentResult;
+
+/**
+ * Chooses unspent outputs to spend from a local snapshot of the wallet's
+ * unspent outputs.
+ * <p>
+ * The snapshot is held in arrays sorted by amount, with amounts in satoshis
+ * and outputs identified by {@link Outpoint}s, so selection doesn't call
+ * bitcoind or create objects other than the result. Selections read an
+ * immutable snapshot and run concurrently with each other and with
+ * refreshes.
+ * <p>
+ * {@link #reload()} lists all unspent outputs. {@link #refresh()} only lists
+ * those confirmed in blocks since the previous refresh, or not confirmed
+ * yet; those are the only outputs that can have appeared or changed. Outputs
+ * spent through this application should be reported with
+ * {@link #markSpent(Collection)}. Outputs spent in other ways and older
+ * than the refresh window, are only dropped by {@link #reload()}, which
+ * should therefore be called now and then.
+ * 
+ * @author Claus Nielsen
+ */
+public class CoinSelector {
+
+	/**
+	 * Default cost of adding a change output, in satoshis. Branch and bound
+	 * accepts selections leaving at most this much change.
+	 */
+	public static final long DEFAULT_COST_OF_CHANGE = 10000;
+
+	/**
+	 * Max number of steps taken by the branch and bound search.
+	 */
+	private static final int MAX_BRANCH_AND_BOUND_TRIES = 100000;
+
+	/**
+	 * Number of random passes made by the knapsack approximation.
+	 */
+	private static final int KNAPSACK_ITERATIONS = 1000;
+
+	/**
+	 * Height of outputs not yet in a block.
+	 */
+	private static final int UNCONFIRMED = Integer.MAX_VALUE;
+
+	/**
+	 * bitcoind's default maxconf for listunspent.
+	 */
+	private static final int MAX_CONF = 9999999;
+
+	private final BitcoindClient bitcoindClient;
+	private volatile long costOfChange = DEFAULT_COST_OF_CHANGE;
+	private volatile Snapshot snapshot = new Snapshot(0, new Outpoint[0], new long[0], new int[0]);
+
+	// Guarded by this
+	private final Map<Outpoint, Coin> coins = newHashMap();
+	private long lastBlockCount = -1;
+
+
+	/**
+	 * Creates selector for the wallet of the given bitcoind.
+	 * <p>
+	 * The snapshot is empty until {@link #reload()} or {@link #refresh()} is
+	 * called.
+	 * 
+	 * @param bitcoindClient
+	 */
+	public CoinSelector(BitcoindClient bitcoindClient) {
+		this.bitcoindClient = bitcoindClient;
+	}
+
+
+	/**
+	 * Sets the cost of adding a change output, used by
+	 * {@link CoinSelectionStrategy#BRANCH_AND_BOUND}.
+	 * 
+	 * @param costOfChange - satoshis.
+	 */
+	public void setCostOfChange(long costOfChange) {
+		this.costOfChange = costOfChange;
+	}
+
+
+	/**
+	 * Replaces the snapshot with all the wallet's unspent outputs.
+	 */
+	public synchronized void reload() {
+		long blockCount = bitcoindClient.getBlockCount().getResult();
+		ListUnspentResult[] unspent = bitcoindClient.listUnspent(0, MAX_CONF).getResult();
+		coins.clear();
+		add(unspent, blockCount);
+		lastBlockCount = blockCount;
+		publish(blockCount);
+	}
+
+
+	/**
+	 * Updates the snapshot with outputs confirmed since the last refresh, or
+	 * not yet confirmed.
+	 * <p>
+	 * Reloads if the snapshot hasn't been loaded yet.
+	 */
+	public synchronized void refresh() {
+		if (lastBlockCount < 0) {
+			reload();
+			return;
+		}
+		long blockCount = bitcoindClient.getBlockCount().getResult();
+		// Outputs confirmed at lastBlockCount or later have at most this many confirmations.
+		int window = (int) (blockCount - lastBlockCount + 1);
+		ListUnspentResult[] recent = bitcoindClient.listUnspent(0, window).getResult();
+		for (Iterator<Coin> it = coins.values().iterator(); it.hasNext();) {
+			Coin coin = it.next();
+			if (coin.height >= lastBlockCount) it.remove();
+		}
+		add(recent, blockCount);
+		lastBlockCount = blockCount;
+		publish(blockCount);
+	}
+
+
+	/**
+	 * Removes the given outputs from the snapshot.
+	 * 
+	 * @param txOutputs - outputs that have been spent.
+	 */
+	public synchronized void markSpent(Collection<TransactionOutputRef> txOutputs) {
+		for (TransactionOutputRef txOutput : txOutputs) {
+			coins.remove(Outpoint.of(txOutput));
+		}
+		publish(snapshot.blockCount);
+	}
+
+
+	/**
+	 * Gets the number of unspent outputs in the snapshot.
+	 * 
+	 * @return number of outputs.
+	 */
+	public int getUnspentCount() {
+		return snapshot.amounts.length;
+	}
+
+
+	/**
+	 * Chooses outputs adding up to at least the given amount.
+	 * 
+	 * @param amount - bitcoins.
+	 * @param minConf - min number of confirmations of the chosen outputs.
+	 * @param strategy
+	 * @return {@link CoinSelection}, or null if the outputs with
+	 *         <code>minConf</code> confirmations don't add up to
+	 *         <code>amount</code>.
+	 */
+	public CoinSelection select(BigDecimal amount, int minConf, CoinSelectionStrategy strategy) {
+		return select(amount.movePointRight(BitcoindClient.SCALE).longValueExact(), minConf, strategy);
+	}
+
+
+	/**
+	 * Chooses outputs adding up to at least the given amount.
+	 * 
+	 * @param targetSatoshis - amount in satoshis.
+	 * @param minConf - min number of confirmations of the chosen outputs.
+	 * @param strategy
+	 * @return {@link CoinSelection}, or null if the outputs with
+	 *         <code>minConf</code> confirmations don't add up to
+	 *         <code>targetSatoshis</code>.
+	 */
+	public CoinSelection select(long targetSatoshis, int minConf, CoinSelectionStrategy strategy) {
+		return select(targetSatoshis, minConf, strategy, null);
+	}
+
+
+	/**
+	 * Chooses outputs adding up to at least the given amount, skipping
+	 * outputs reserved by others.
+	 * <p>
+	 * The chosen outputs are not reserved; reserve them with
+	 * {@link OutputReservations#reserve(java.util.Collection, long)} and
+	 * select again if that fails.
+	 * 
+	 * @param targetSatoshis - amount in satoshis.
+	 * @param minConf - min number of confirmations of the chosen outputs.
+	 * @param strategy
+	 * @param reservations - outputs to skip, may be null.
+	 * @return {@link CoinSelection}, or null if the unreserved outputs with
+	 *         <code>minConf</code> confirmations don't add up to
+	 *         <code>targetSatoshis</code>.
+	 */
+	public CoinSelection select(long targetSatoshis, int minConf, CoinSelectionStrategy strategy, OutputReservations reservations) {
+		if (targetSatoshis <= 0) throw new IllegalArgumentException("Amount must be positive.");
+		Snapshot s = snapshot;
+		int[] eligible = s.eligible(minConf, reservations);
+		int[] chosen;
+		switch (strategy) {
+		case BRANCH_AND_BOUND:
+			chosen = branchAndBound(s.amounts, eligible, targetSatoshis, targetSatoshis + costOfChange);
+			if (chosen == null) chosen = knapsack(s.amounts, eligible, targetSatoshis);
+			break;
+		case LARGEST_FIRST:
+			chosen = largestFirst(s.amounts, eligible, targetSatoshis);
+			break;
+		default:
+			chosen = knapsack(s.amounts, eligible, targetSatoshis);
+		}
+		if (chosen == null) return null;
+		List<TransactionOutputRef> txOutputs = newArrayList();
+		long total = 0;
+		for (int i : chosen) {
+			txOutputs.add(s.outpoints[i].toTransactionOutputRef());
+			total += s.amounts[i];
+		}
+		return new CoinSelection(txOutputs, targetSatoshis, total);
+	}
+
+
+	/**
+	 * Takes outputs in order, ie. largest first, until the target is reached.
+	 */
+	private static int[] largestFirst(long[] amounts, int[] eligible, long target) {
+		long total = 0;
+		for (int n = 0; n < eligible.length; n++) {
+			total += amounts[eligible[n]];
+			if (total >= target) return Arrays.copyOf(eligible, n + 1);
+		}
+		return null;
+	}
+
+
+	/**
+	 * Depth first search for the subset with a sum between target and
+	 * upperBound closest to target, considering outputs largest first.
+	 */
+	private static int[] branchAndBound(long[] amounts, int[] eligible, long target, long upperBound) {
+		int n = eligible.length;
+		long remaining = 0; // Sum of outputs not yet included or excluded
+		for (int i : eligible) remaining += amounts[i];
+		if (remaining < target) return null;
+		boolean[] included = new boolean[n];
+		boolean[] best = null;
+		long bestWaste = Long.MAX_VALUE;
+		long value = 0;
+		int depth = 0;
+		for (int tries = 0; tries < MAX_BRANCH_AND_BOUND_TRIES; tries++) {
+			boolean backtrack = false;
+			if (value + remaining < target || value > upperBound) {
+				backtrack = true;
+			} else if (value >= target) {
+				if (value - target < bestWaste) {
+					bestWaste = value - target;
+					best = included.clone();
+					if (bestWaste == 0) break;
+				}
+				backtrack = true;
+			} else if (depth == n) {
+				backtrack = true;
+			}
+			if (backtrack) {
+				// Undo exclusions back to the last included output, and exclude that instead.
+				while (depth > 0 && !included[depth - 1]) {
+					depth--;
+					remaining += amounts[eligible[depth]];
+				}
+				if (depth == 0) break;
+				included[depth - 1] = false;
+				value -= amounts[eligible[depth - 1]];
+			} else {
+				long amount = amounts[eligible[depth]];
+				remaining -= amount;
+				// Including an output equal to an excluded predecessor would repeat that branch.
+				if (depth == 0 || included[depth - 1] || amounts[eligible[depth - 1]] != amount) {
+					included[depth] = true;
+					value += amount;
+				}
+				depth++;
+			}
+		}
+		if (best == null) return null;
+		return pick(eligible, best);
+	}
+
+
+	/**
+	 * Bitcoin-Qt's coin selection.
+	 */
+	private static int[] knapsack(long[] amounts, int[] eligible, long target) {
+		int lowestLarger = -1;
+		int[] smaller = new int[eligible.length];
+		int smallerCount = 0;
+		long totalSmaller = 0;
+		for (int i : eligible) {
+			long amount = amounts[i];
+			if (amount == target) return new int[] {i};
+			if (amount < target) {
+				smaller[smallerCount++] = i;
+				totalSmaller += amount;
+			} else if (lowestLarger == -1 || amount < amounts[lowestLarger]) {
+				lowestLarger = i;
+			}
+		}
+		if (totalSmaller == target) return Arrays.copyOf(smaller, smallerCount);
+		if (totalSmaller < target) return lowestLarger == -1 ? null : new int[] {lowestLarger};
+
+		// Approximate the smallest subset of the smaller outputs reaching the target.
+		Random random = ThreadLocalRandom.current();
+		boolean[] best = new boolean[smallerCount];
+		Arrays.fill(best, true);
+		long bestValue = totalSmaller;
+		boolean[] included = new boolean[smallerCount];
+		for (int rep = 0; rep < KNAPSACK_ITERATIONS && bestValue != target; rep++) {
+			Arrays.fill(included, false);
+			long total = 0;
+			boolean reached = false;
+			for (int pass = 0; pass < 2 && !reached; pass++) {
+				for (int k = 0; k < smallerCount; k++) {
+					if (pass == 0 ? random.nextBoolean() : !included[k]) {
+						total += amounts[smaller[k]];
+						included[k] = true;
+						if (total >= target) {
+							reached = true;
+							if (total < bestValue) {
+								bestValue = total;
+								System.arraycopy(included, 0, best, 0, smallerCount);
+							}
+							total -= amounts[smaller[k]];
+							included[k] = false;
+						}
+					}
+				}
+			}
+		}
+		if (lowestLarger != -1 && bestValue != target && amounts[lowestLarger] <= bestValue) {
+			return new int[] {lowestLarger};
+		}
+		return pick(Arrays.copyOf(smaller, smallerCount), best);
+	}
+
+
+	private static int[] pick(int[] indexes, boolean[] included) {
+		int count = 0;
+		for (boolean b : included) if (b) count++;
+		int[] picked = new int[count];
+		for (int k = 0, p = 0; k < indexes.length; k++) {
+			if (included[k]) picked[p++] = indexes[k];
+		}
+		return picked;
+	}
+
+
+	private void add(ListUnspentResult[] unspent, long blockCount) {
+		for (ListUnspentResult result : unspent) {
+			int confirmations = result.getConfirmations();
+			int height = confirmations == 0 ? UNCONFIRMED : (int) (blockCount - confirmations + 1);
+			long amount = result.getAmount().movePointRight(BitcoindClient.SCALE).longValueExact();
+			coins.put(Outpoint.of(result.getTxRef()), new Coin(amount, height));
+		}
+	}
+
+
+	/**
+	 * Replaces the snapshot with one built from <code>coins</code>.
+	 */
+	private void publish(long blockCount) {
+		@SuppressWarnings("unchecked")
+		final Map.Entry<Outpoint, Coin>[] entries = coins.entrySet().toArray(new Map.Entry[coins.size()]);
+		Arrays.sort(entries, new Comparator<Map.Entry<Outpoint, Coin>>() {
+			@Override
+			public int compare(Map.Entry<Outpoint, Coin> e1, Map.Entry<Outpoint, Coin> e2) {
+				long a1 = e1.getValue().amount;
+				long a2 = e2.getValue().amount;
+				return a1 > a2 ? -1 : a1 == a2 ? 0 : 1;
+			}
+		});
+		Outpoint[] outpoints = new Outpoint[entries.length];
+		long[] amounts = new long[entries.length];
+		int[] heights = new int[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			outpoints[i] = entries[i].getKey();
+			amounts[i] = entries[i].getValue().amount;
+			heights[i] = entries[i].getValue().height;
+		}
+		snapshot = new Snapshot(blockCount, outpoints, amounts, heights);
+	}
+
+
+	/**
+	 * An unspent output.
+	 */
+	private static class Coin {
+
+		private final long amount;
+		private final int height;
+
+		private Coin(long amount, int height) {
+			this.amount = amount;
+			this.height = height;
+		}
+
+	}
+
+
+	/**
+	 * Immutable snapshot of unspent outputs, largest amount first.
+	 */
+	private static class Snapshot {
+
+		private final long blockCount;
+		private final Outpoint[] outpoints;
+		private final long[] amounts;
+		private final int[] heights;
+
+		private Snapshot(long blockCount, Outpoint[] outpoints, long[] amounts, int[] heights) {
+			this.blockCount = blockCount;
+			this.outpoints = outpoints;
+			this.amounts = amounts;
+			this.heights = heights;
+		}
+
+		/**
+		 * Gets the indexes of the outputs with at least <code>minConf</code>
+		 * confirmations which aren't reserved.
+		 */
+		private int[] eligible(int minConf, OutputReservations reservations) {
+			int[] eligible = new int[amounts.length];
+			int count = 0;
+			for (int i = 0; i < amounts.length; i++) {
+				long confirmations = heights[i] == UNCONFIRMED ? 0 : blockCount - heights[i] + 1;
+				if (confirmations < minConf) continue;
+				if (reservations != null && reservations.isReserved(outpoints[i])) continue;
+				eligible[count++] = i;
+			}
+			return count == eligible.length ? eligible : Arrays.copyOf(eligible, count);
+		}
+
+	}
+
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future confirmation of a transaction registered with a
+ * {@link ConfirmationTracker}.
+ * <p>
+ * Completes with the hash of the block containing the transaction when it
+ * has the requested number of confirmations. Can't be cancelled; use
+ * {@link ConfirmationTracker#unregister(String)} instead.
+ * 
+ * @author Claus Nielsen
+ */
+class ConfirmationFuture implements Future<String> {
+
+	private final int depth;
+	private final CountDownLatch done = new CountDownLatch(1);
+	private volatile String blockHash;
+
+
+	ConfirmationFuture(int depth) {
+		this.depth = depth;
+	}
+
+
+	int getDepth() {
+		return depth;
+	}
+
+
+	void complete(String blockHash) {
+		this.blockHash = blockHash;
+		done.countDown();
+	}
+
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return false;
+	}
+
+
+	@Override
+	public boolean isCancelled() {
+		return false;
+	}
+
+
+	@Override
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+
+	@Override
+	public String get() throws InterruptedException, ExecutionException {
+		done.await();
+		return blockHash;
+	}
+
+
+	@Override
+	public String get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!done.await(timeout, unit)) throw new TimeoutException();
+		return blockHash;
+	}
+
+
+}
@@ -0,0 +1,340 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static dk.clanie.collections.CollectionFactory.newHashMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.GetBlockResult;
+import dk.clanie.bitcoin.client.response.GetTransactionResult;
+import dk.clanie.bitcoin.exception.BitcoinException;
+
+/**
+ * Tells when transactions reach a given number of confirmations, by
+ * following the block chain rather than polling each transaction.
+ * <p>
+ * Each {@link #poll()} asks bitcoind for the tip of the chain. When it has
+ * changed, every new block is fetched once with getblock and its
+ * transaction list is matched against the registered transactions. The
+ * number of calls thus depends on the number of blocks, not on the number
+ * of transactions waited for. A transaction is looked up with
+ * gettransaction only once, when it is registered, in case it is already
+ * confirmed; transactions not in the wallet are found when they get into a
+ * new block.
+ * <p>
+ * The hashes of the most recent blocks are kept, so a reorganization is
+ * detected when the new tip doesn't lead back to a known block. Blocks
+ * above the fork point are disconnected, their transactions become
+ * unconfirmed again, and the blocks of the new branch are processed like
+ * any other new blocks. A reorganization deeper than the kept blocks makes
+ * the tracker start over, looking up all registered transactions.
+ * Confirmations that have been reported can't be taken back, so the
+ * requested depth should match the risk of reorganizations.
+ * <p>
+ * Call {@link #poll()} when a new block is announced, eg. through
+ * bitcoind's -blocknotify, or use {@link #start(long)} to poll periodically.
+ * 
+ * @author Claus Nielsen
+ */
+public class ConfirmationTracker {
+
+	/**
+	 * Default number of recent blocks kept for detecting reorganizations.
+	 */
+	public static final int DEFAULT_MAX_REORG_DEPTH = 100;
+
+	private final BitcoindClient bitcoindClient;
+	private final int maxReorgDepth;
+	private ScheduledExecutorService executor;
+	private volatile RuntimeException lastPollFailure;
+
+	// Guarded by this
+	private final TreeMap<Long, String> chain = new TreeMap<Long, String>();
+	private final Map<String, Long> blockHeights = newHashMap();
+	private final Map<String, TrackedTransaction> tracked = newHashMap();
+	private long tipHeight = -1;
+
+
+	/**
+	 * Creates tracker keeping {@value #DEFAULT_MAX_REORG_DEPTH} recent blocks.
+	 * 
+	 * @param bitcoindClient
+	 */
+	public ConfirmationTracker(BitcoindClient bitcoindClient) {
+		this(bitcoindClient, DEFAULT_MAX_REORG_DEPTH);
+	}
+
+
+	/**
+	 * Creates tracker.
+	 * 
+	 * @param bitcoindClient
+	 * @param maxReorgDepth - number of recent blocks kept for detecting
+	 *            reorganizations.
+	 */
+	public ConfirmationTracker(BitcoindClient bitcoindClient, int maxReorgDepth) {
+		if (maxReorgDepth < 1) throw new IllegalArgumentException("maxReorgDepth must be at least 1.");
+		this.bitcoindClient = bitcoindClient;
+		this.maxReorgDepth = maxReorgDepth;
+	}
+
+
+	/**
+	 * Registers a transaction to wait for.
+	 * 
+	 * @param txId - transaction id.
+	 * @param depth - number of confirmations to wait for.
+	 * @return Future completing with the hash of the block containing the
+	 *         transaction when it has <code>depth</code> confirmations.
+	 */
+	public synchronized Future<String> register(String txId, int depth) {
+		if (depth < 1) throw new IllegalArgumentException("depth must be at least 1.");
+		if (tipHeight < 0) poll();
+		TrackedTransaction transaction = tracked.get(txId);
+		if (transaction == null) {
+			transaction = new TrackedTransaction();
+			lookUp(txId, transaction);
+			tracked.put(txId, transaction);
+		}
+		ConfirmationFuture future = new ConfirmationFuture(depth);
+		transaction.waiting.add(future);
+		completeConfirmed();
+		return future;
+	}
+
+
+	/**
+	 * Stops waiting for the given transaction. Its futures never complete.
+	 * 
+	 * @param txId
+	 */
+	public synchronized void unregister(String txId) {
+		tracked.remove(txId);
+	}
+
+
+	/**
+	 * Processes blocks added to (or removed from) the chain since the last
+	 * poll, completing futures of transactions that have reached their
+	 * depth.
+	 */
+	public synchronized void poll() {
+		long newTipHeight = bitcoindClient.getBlockCount().getResult();
+		String newTipHash = bitcoindClient.getBlockHash(newTipHeight).getResult();
+		if (newTipHeight == tipHeight && newTipHash.equals(chain.get(tipHeight))) return;
+		if (tipHeight < 0) {
+			connect(newTipHeight, newTipHash);
+			tipHeight = newTipHeight;
+			return;
+		}
+
+		// Walk back from the new tip to a block we know.
+		List<GetBlockResult> newBlocks = newArrayList();
+		String hash = newTipHash;
+		long height = newTipHeight;
+		while (!hash.equals(chain.get(height))) {
+			if (height < chain.firstKey()) {
+				startOver(newTipHeight, newTipHash);
+				return;
+			}
+			GetBlockResult block = bitcoindClient.getBlock(hash).getResult();
+			newBlocks.add(block);
+			hash = block.getPreviousBlockHash();
+			height--;
+		}
+
+		disconnectAbove(height);
+		for (int i = newBlocks.size() - 1; i >= 0; i--) {
+			GetBlockResult block = newBlocks.get(i);
+			connect(block.getHeight(), block.getHash());
+			for (String txId : block.getTransactions()) {
+				TrackedTransaction transaction = tracked.get(txId);
+				if (transaction != null) transaction.confirm(block.getHash(), block.getHeight());
+			}
+		}
+		while (chain.size() > maxReorgDepth) {
+			blockHeights.remove(chain.pollFirstEntry().getValue());
+		}
+		tipHeight = newTipHeight;
+		completeConfirmed();
+	}
+
+
+	/**
+	 * Starts polling bitcoind periodically.
+	 * 
+	 * @param intervalMillis
+	 */
+	public synchronized void start(long intervalMillis) {
+		if (executor != null) throw new IllegalStateException("ConfirmationTracker already started.");
+		executor = Executors.newSingleThreadScheduledExecutor();
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					poll();
+				} catch (RuntimeException e) {
+					lastPollFailure = e;
+				}
+			}
+		}, 0, intervalMillis, MILLISECONDS);
+	}
+
+
+	/**
+	 * Stops polling started with {@link #start(long)}.
+	 */
+	public synchronized void shutdown() {
+		if (executor != null) executor.shutdown();
+	}
+
+
+	/**
+	 * Gets the exception that ended the latest failed periodic poll.
+	 * 
+	 * @return exception, or null if no poll has failed.
+	 */
+	public RuntimeException getLastPollFailure() {
+		return lastPollFailure;
+	}
+
+
+	/**
+	 * Gets the number of transactions waited for.
+	 * 
+	 * @return number of transactions.
+	 */
+	public synchronized int getTrackedCount() {
+		return tracked.size();
+	}
+
+
+	/**
+	 * Gets the height of the tip of the chain as of the last poll.
+	 * 
+	 * @return block height, -1 before the first poll.
+	 */
+	public synchronized long getTipHeight() {
+		return tipHeight;
+	}
+
+
+	private void connect(long height, String hash) {
+		chain.put(height, hash);
+		blockHeights.put(hash, height);
+	}
+
+
+	private void disconnectAbove(long height) {
+		Map<Long, String> disconnected = chain.tailMap(height, false);
+		for (String hash : disconnected.values()) {
+			blockHeights.remove(hash);
+		}
+		disconnected.clear();
+		for (TrackedTransaction transaction : tracked.values()) {
+			if (transaction.height > height) transaction.unconfirm();
+		}
+	}
+
+
+	/**
+	 * Forgets all blocks and looks up all registered transactions again.
+	 */
+	private void startOver(long newTipHeight, String newTipHash) {
+		chain.clear();
+		blockHeights.clear();
+		connect(newTipHeight, newTipHash);
+		tipHeight = newTipHeight;
+		for (Map.Entry<String, TrackedTransaction> entry : tracked.entrySet()) {
+			lookUp(entry.getKey(), entry.getValue());
+		}
+		completeConfirmed();
+	}
+
+
+	/**
+	 * Finds the block a transaction is in, if any, with gettransaction.
+	 * Transactions bitcoind doesn't know are taken to be unconfirmed.
+	 */
+	private void lookUp(String txId, TrackedTransaction transaction) {
+		transaction.unconfirm();
+		GetTransactionResult result;
+		try {
+			result = bitcoindClient.getTransaction(txId).getResult();
+		} catch (BitcoinException e) {
+			if (e.getErrorCode() == null) throw e;
+			return;
+		}
+		String blockHash = result.getBlockHash();
+		if (blockHash == null || result.getConfirmations() == null || result.getConfirmations() < 1) return;
+		Long height = blockHeights.get(blockHash);
+		if (height == null) height = bitcoindClient.getBlock(blockHash).getResult().getHeight();
+		transaction.confirm(blockHash, height);
+	}
+
+
+	private void completeConfirmed() {
+		for (Iterator<TrackedTransaction> it = tracked.values().iterator(); it.hasNext();) {
+			TrackedTransaction transaction = it.next();
+			if (transaction.blockHash == null) continue;
+			long confirmations = tipHeight - transaction.height + 1;
+			for (Iterator<ConfirmationFuture> fit = transaction.waiting.iterator(); fit.hasNext();) {
+				ConfirmationFuture future = fit.next();
+				if (confirmations >= future.getDepth()) {
+					future.complete(transaction.blockHash);
+					fit.remove();
+				}
+			}
+			if (transaction.waiting.isEmpty()) it.remove();
+		}
+	}
+
+
+	/**
+	 * A registered transaction, and the block it is in.
+	 */
+	private static class TrackedTransaction {
+
+		private final List<ConfirmationFuture> waiting = newArrayList();
+		private String blockHash;
+		private long height = Long.MAX_VALUE;
+
+		private void confirm(String blockHash, long height) {
+			this.blockHash = blockHash;
+			this.height = height;
+		}
+
+		private void unconfirm() {
+			blockHash = null;
+			height = Long.MAX_VALUE;
+		}
+
+	}
+
+
+}
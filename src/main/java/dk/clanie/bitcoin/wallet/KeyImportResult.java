@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import java.util.List;
+
+import org.springframework.roo.addon.javabean.RooJavaBean;
+
+import dk.clanie.core.BaseClass;
+
+/**
+ * Outcome of a bulk import with {@link KeyImporter}.
+ * 
+ * @author Claus Nielsen
+ */
+@SuppressWarnings("serial")
+@RooJavaBean(settersByDefault = false)
+public class KeyImportResult extends BaseClass {
+
+	/**
+	 * Number of keys in the batch.
+	 */
+	private int total;
+
+	/**
+	 * Number of keys imported.
+	 */
+	private int imported;
+
+	/**
+	 * Keys that could not be imported, ordered by index.
+	 */
+	private List<KeyImportFailure> failures;
+
+	/**
+	 * Whether the wallet was rescanned, ie. if the last key was imported.
+	 */
+	private boolean rescanned;
+
+	/**
+	 * Time spent importing keys without rescanning.
+	 */
+	private long importNanos;
+
+	/**
+	 * Time spent on the rescan.
+	 */
+	private long rescanNanos;
+
+
+	/**
+	 * Full constructor.
+	 */
+	public KeyImportResult(int total, int imported, List<KeyImportFailure> failures,
+			boolean rescanned, long importNanos, long rescanNanos) {
+		this.total = total;
+		this.imported = imported;
+		this.failures = failures;
+		this.rescanned = rescanned;
+		this.importNanos = importNanos;
+		this.rescanNanos = rescanNanos;
+	}
+
+
+}
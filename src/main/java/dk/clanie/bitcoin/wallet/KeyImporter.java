@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static java.lang.Boolean.FALSE;
+import static java.lang.Boolean.TRUE;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.exception.BitcoinException;
+
+/**
+ * Imports many private keys with a single rescan of the wallet.
+ * <p>
+ * importprivkey rescans the whole block chain for each key unless told not
+ * to. The importer imports every key but the last with rescan=false, using
+ * up to <code>parallelism</code> concurrent calls, and then imports the last
+ * key with rescan=true. A key that can't be imported is reported and doesn't
+ * stop the batch.
+ * <p>
+ * bitcoind has no call for just rescanning, and importprivkey doesn't rescan
+ * for a key the wallet already holds, so the rescan can't be done by
+ * importing a key again. If the last key can't be imported, the keys which
+ * failed are retried with rescan=true, from the last one, until one is
+ * imported; such a key is then no longer reported as failed in the result,
+ * although the listener was told. Only if none of them can be imported
+ * either, the result tells that the wallet wasn't rescanned, and importing
+ * any new key with rescan=true will do it. If the last key is already in the
+ * wallet bitcoind quietly skips the rescan, so the last key should be a new
+ * one. The rescanning call takes as long as a rescan, so the client's read
+ * timeout must allow for it.
+ * <p>
+ * Requires unlocked wallet. Call {@link #shutdown()} when done.
+ * 
+ * @author Claus Nielsen
+ */
+public class KeyImporter {
+
+	/**
+	 * Error code of an invalid private key.
+	 */
+	private static final int INVALID_KEY = -5;
+
+	private final BitcoindClient bitcoindClient;
+	private final ExecutorService executor;
+
+
+	/**
+	 * Creates importer.
+	 * 
+	 * @param bitcoindClient
+	 * @param parallelism - max number of concurrent importprivkey calls;
+	 *            should not exceed the client's connection pool size.
+	 */
+	public KeyImporter(BitcoindClient bitcoindClient, int parallelism) {
+		if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1.");
+		this.bitcoindClient = bitcoindClient;
+		this.executor = Executors.newFixedThreadPool(parallelism);
+	}
+
+
+	/**
+	 * Imports the given keys and rescans the wallet once.
+	 * 
+	 * @param keys - private keys, as returned by dumpprivkey.
+	 * @param label - optional label given to all the keys.
+	 * @param listener - optional (may be null).
+	 * @return {@link KeyImportResult}
+	 */
+	public KeyImportResult importKeys(List<String> keys, final String label, final KeyImportListener listener) {
+		final int total = keys.size();
+		final List<KeyImportFailure> failures = newArrayList();
+		final AtomicInteger completed = new AtomicInteger();
+		final int last = total - 1;
+		final CountDownLatch done = new CountDownLatch(Math.max(last, 0));
+		long start = System.nanoTime();
+		for (int i = 0; i < last; i++) {
+			final int index = i;
+			final String key = keys.get(i);
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						bitcoindClient.importPrivateKey(key, label, FALSE);
+					} catch (RuntimeException e) {
+						failed(index, e, failures, listener);
+					} finally {
+						if (listener != null) listener.progress(completed.incrementAndGet(), total);
+						done.countDown();
+					}
+				}
+			});
+		}
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BitcoinException("Interrupted while importing keys.", e);
+		}
+		long imported = System.nanoTime();
+
+		boolean rescanned = false;
+		if (total > 0) {
+			try {
+				bitcoindClient.importPrivateKey(keys.get(last), label, TRUE);
+				rescanned = true;
+			} catch (RuntimeException e) {
+				failed(last, e, failures, listener);
+			} finally {
+				if (listener != null) listener.progress(completed.incrementAndGet(), total);
+			}
+		}
+		// Failures were added before done was counted down, and are visible here.
+		Collections.sort(failures, new Comparator<KeyImportFailure>() {
+			@Override
+			public int compare(KeyImportFailure f1, KeyImportFailure f2) {
+				return f1.getIndex() < f2.getIndex() ? -1 : f1.getIndex() == f2.getIndex() ? 0 : 1;
+			}
+		});
+		if (!rescanned) rescanned = retryWithRescan(keys, label, failures);
+		long end = System.nanoTime();
+
+		return new KeyImportResult(total, total - failures.size(), failures,
+				rescanned, imported - start, end - imported);
+	}
+
+
+	/**
+	 * Retries the failed keys, from the last one, with rescan=true until one
+	 * is imported, as the keys not in the wallet are the only ones which can
+	 * still start the rescan. Invalid keys aren't retried.
+	 * 
+	 * @return true if a key was imported, and the wallet rescanned.
+	 */
+	private boolean retryWithRescan(List<String> keys, String label, List<KeyImportFailure> failures) {
+		for (int i = failures.size() - 1; i >= 0; i--) {
+			KeyImportFailure failure = failures.get(i);
+			if (Integer.valueOf(INVALID_KEY).equals(failure.getErrorCode())) continue;
+			try {
+				bitcoindClient.importPrivateKey(keys.get(failure.getIndex()), label, TRUE);
+			} catch (RuntimeException e) {
+				continue;
+			}
+			failures.remove(i);
+			return true;
+		}
+		return false;
+	}
+
+
+	private static void failed(int index, RuntimeException e, List<KeyImportFailure> failures, KeyImportListener listener) {
+		Integer errorCode = e instanceof BitcoinException ? ((BitcoinException) e).getErrorCode() : null;
+		KeyImportFailure failure = new KeyImportFailure(index, errorCode, e.getMessage());
+		synchronized (failures) {
+			failures.add(failure);
+		}
+		if (listener != null) listener.failed(failure);
+	}
+
+
+	/**
+	 * Stops the importer's threads.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+
+}
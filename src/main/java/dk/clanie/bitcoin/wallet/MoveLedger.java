@@ -0,0 +1,451 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.exception.BitcoinException;
+
+/**
+ * Nets moves between accounts locally and sends only the net transfers to
+ * bitcoind.
+ * <p>
+ * {@link #move(String, String, BigDecimal)} records a move in a journal on
+ * disk and adds it to the net amount pending between the two accounts.
+ * {@link #flush()}, typically called periodically, makes one move call per
+ * pair of accounts with a non-zero net amount. Moves that cancel out never
+ * reach bitcoind.
+ * <p>
+ * The journal is synced to disk before <code>move</code> returns, and is
+ * replayed when a ledger is created, so pending moves survive a restart.
+ * Each net transfer is journaled before it is sent and after bitcoind has
+ * answered. If the outcome of a transfer is unknown, eg. because the
+ * connection was lost or the process died while it was being sent, it is
+ * neither sent again nor returned to the pending amounts, but reported by
+ * {@link #getInDoubt()} until resolved with
+ * {@link #resolveInDoubt(long, boolean)}. Whether it was executed can be
+ * seen in listtransactions; the comment of each transfer contains its id.
+ * <p>
+ * {@link #getPendingChange(String)} and
+ * {@link #getBalance(String, Integer)} include moves not yet flushed.
+ * 
+ * @author Claus Nielsen
+ */
+public class MoveLedger {
+
+	/**
+	 * Comment of moves made by the ledger, followed by the transfer id.
+	 */
+	public static final String COMMENT_PREFIX = "net transfer ";
+
+	private static final byte MOVE = 1;
+	private static final byte PREPARED = 2;
+	private static final byte FLUSHED = 3;
+	private static final byte ABORTED = 4;
+	private static final byte NEXT_ID = 5;
+
+	private final BitcoindClient bitcoindClient;
+	private final File journalFile;
+	private final Object flushLock = new Object();
+	private volatile Integer minConf;
+
+	// Guarded by this
+	private final Map<AccountPair, Long> pending = new LinkedHashMap<AccountPair, Long>();
+	private final Map<Long, NetTransfer> inFlight = new LinkedHashMap<Long, NetTransfer>();
+	private final Map<Long, NetTransfer> inDoubt = new LinkedHashMap<Long, NetTransfer>();
+	private long nextId = 1;
+	private FileOutputStream journalStream;
+	private DataOutputStream journal;
+
+
+	/**
+	 * Creates ledger, replaying the given journal if it exists.
+	 * 
+	 * @param bitcoindClient
+	 * @param journalFile - file the ledger's journal is kept in.
+	 * @throws BitcoinException if the journal can't be read or written.
+	 */
+	public MoveLedger(BitcoindClient bitcoindClient, File journalFile) {
+		this.bitcoindClient = bitcoindClient;
+		this.journalFile = journalFile;
+		synchronized (this) {
+			if (journalFile.exists()) replay();
+			compact();
+		}
+	}
+
+
+	/**
+	 * Sets the minimum number of confirmations passed with net transfers.
+	 * 
+	 * @param minConf - optional (may be null), default 1.
+	 */
+	public void setMinConf(Integer minConf) {
+		this.minConf = minConf;
+	}
+
+
+	/**
+	 * Records a move between two accounts.
+	 * 
+	 * @param fromAccount
+	 * @param toAccount
+	 * @param amount - bitcoins.
+	 * @throws BitcoinException if the move can't be journaled.
+	 */
+	public synchronized void move(String fromAccount, String toAccount, BigDecimal amount) {
+		long satoshis = amount.movePointRight(BitcoindClient.SCALE).longValueExact();
+		if (satoshis <= 0) throw new IllegalArgumentException("Amount must be positive.");
+		if (fromAccount.equals(toAccount)) throw new IllegalArgumentException("Can't move to the same account.");
+		try {
+			writeMove(journal, fromAccount, toAccount, satoshis);
+			sync();
+		} catch (IOException e) {
+			throw new BitcoinException("Could not write to move journal " + journalFile + ".", e);
+		}
+		addPending(fromAccount, toAccount, satoshis);
+	}
+
+
+	/**
+	 * Sends the net amount pending between each pair of accounts to bitcoind.
+	 * <p>
+	 * Transfers rejected by bitcoind are returned to the pending amounts and
+	 * retried by the next flush.
+	 * 
+	 * @return number of net transfers executed.
+	 * @throws BitcoinException if the journal can't be written.
+	 */
+	public int flush() {
+		synchronized (flushLock) {
+			List<NetTransfer> batch = newArrayList();
+			synchronized (this) {
+				try {
+					for (Map.Entry<AccountPair, Long> entry : pending.entrySet()) {
+						AccountPair pair = entry.getKey();
+						long net = entry.getValue();
+						NetTransfer transfer = net > 0
+								? new NetTransfer(nextId++, pair.first, pair.second, net)
+								: new NetTransfer(nextId++, pair.second, pair.first, -net);
+						writePrepared(journal, transfer);
+						batch.add(transfer);
+						inFlight.put(transfer.getId(), transfer);
+					}
+					sync();
+				} catch (IOException e) {
+					// Nothing has been sent; the moves stay pending.
+					for (NetTransfer transfer : batch) {
+						inFlight.remove(transfer.getId());
+					}
+					throw new BitcoinException("Could not write to move journal " + journalFile + ".", e);
+				}
+				pending.clear();
+			}
+			if (batch.isEmpty()) return 0;
+			int executed = 0;
+			try {
+				for (NetTransfer transfer : batch) {
+					byte outcome;
+					try {
+						Boolean moved = bitcoindClient.move(transfer.getFromAccount(), transfer.getToAccount(),
+								transfer.getAmount(), minConf, COMMENT_PREFIX + transfer.getId()).getResult();
+						outcome = Boolean.FALSE.equals(moved) ? ABORTED : FLUSHED;
+					} catch (RuntimeException e) {
+						// Only an error answer from bitcoind tells that the move wasn't made.
+						boolean rejected = e instanceof BitcoinException && ((BitcoinException) e).getErrorCode() != null;
+						outcome = rejected ? ABORTED : PREPARED;
+					}
+					synchronized (this) {
+						if (outcome == PREPARED) {
+							inDoubt.put(transfer.getId(), transfer);
+						} else {
+							resolve(transfer, outcome);
+							if (outcome == FLUSHED) executed++;
+						}
+						inFlight.remove(transfer.getId());
+					}
+				}
+			} finally {
+				// If the outcome of a transfer couldn't be journaled, it and the
+				// transfers not yet sent are journaled as prepared, ie. in doubt.
+				synchronized (this) {
+					for (NetTransfer transfer : batch) {
+						if (inFlight.remove(transfer.getId()) != null) inDoubt.put(transfer.getId(), transfer);
+					}
+				}
+			}
+			synchronized (this) {
+				compact();
+			}
+			return executed;
+		}
+	}
+
+
+	/**
+	 * Gets the net transfers whose outcome is unknown.
+	 * 
+	 * @return list of {@link NetTransfer}.
+	 */
+	public synchronized List<NetTransfer> getInDoubt() {
+		List<NetTransfer> transfers = newArrayList();
+		transfers.addAll(inDoubt.values());
+		return transfers;
+	}
+
+
+	/**
+	 * Records the outcome of a net transfer reported by {@link #getInDoubt()}.
+	 * 
+	 * @param id - transfer id.
+	 * @param executed - true if bitcoind made the move, false to return the
+	 *            amount to the pending moves.
+	 */
+	public synchronized void resolveInDoubt(long id, boolean executed) {
+		NetTransfer transfer = inDoubt.remove(id);
+		if (transfer == null) throw new IllegalArgumentException("No transfer in doubt with id " + id + ".");
+		resolve(transfer, executed ? FLUSHED : ABORTED);
+	}
+
+
+	/**
+	 * Gets the change to the balance of an account by moves not yet executed
+	 * by bitcoind, excluding transfers in doubt.
+	 * 
+	 * @param account
+	 * @return change in bitcoins, negative if the account is net sender.
+	 */
+	public synchronized BigDecimal getPendingChange(String account) {
+		long change = 0;
+		for (Map.Entry<AccountPair, Long> entry : pending.entrySet()) {
+			AccountPair pair = entry.getKey();
+			if (pair.first.equals(account)) change -= entry.getValue();
+			else if (pair.second.equals(account)) change += entry.getValue();
+		}
+		for (NetTransfer transfer : inFlight.values()) {
+			if (transfer.getFromAccount().equals(account)) change -= transfer.getSatoshis();
+			else if (transfer.getToAccount().equals(account)) change += transfer.getSatoshis();
+		}
+		return BigDecimal.valueOf(change, BitcoindClient.SCALE);
+	}
+
+
+	/**
+	 * Gets the balance of an account from bitcoind, adjusted by the moves not
+	 * yet executed.
+	 * 
+	 * @param account
+	 * @param minConf - optional (may be null), default 1.
+	 * @return balance in bitcoins.
+	 */
+	public BigDecimal getBalance(String account, Integer minConf) {
+		return bitcoindClient.getBalance(account, minConf).getResult().add(getPendingChange(account));
+	}
+
+
+	/**
+	 * Closes the journal. The ledger can't be used afterwards.
+	 */
+	public synchronized void close() {
+		try {
+			journal.close();
+		} catch (IOException e) {
+			throw new BitcoinException("Could not close move journal " + journalFile + ".", e);
+		}
+	}
+
+
+	private void addPending(String fromAccount, String toAccount, long satoshis) {
+		AccountPair pair;
+		if (fromAccount.compareTo(toAccount) <= 0) {
+			pair = new AccountPair(fromAccount, toAccount);
+		} else {
+			pair = new AccountPair(toAccount, fromAccount);
+			satoshis = -satoshis;
+		}
+		Long current = pending.get(pair);
+		long net = (current == null ? 0 : current) + satoshis;
+		if (net == 0) pending.remove(pair);
+		else pending.put(pair, net);
+	}
+
+
+	private void resolve(NetTransfer transfer, byte outcome) {
+		try {
+			journal.writeByte(outcome);
+			journal.writeLong(transfer.getId());
+			sync();
+		} catch (IOException e) {
+			throw new BitcoinException("Could not write to move journal " + journalFile + ".", e);
+		}
+		if (outcome == ABORTED) {
+			addPending(transfer.getFromAccount(), transfer.getToAccount(), transfer.getSatoshis());
+		}
+	}
+
+
+	private static void writeMove(DataOutputStream out, String fromAccount, String toAccount, long satoshis) throws IOException {
+		out.writeByte(MOVE);
+		out.writeUTF(fromAccount);
+		out.writeUTF(toAccount);
+		out.writeLong(satoshis);
+	}
+
+
+	private static void writePrepared(DataOutputStream out, NetTransfer transfer) throws IOException {
+		out.writeByte(PREPARED);
+		out.writeLong(transfer.getId());
+		out.writeUTF(transfer.getFromAccount());
+		out.writeUTF(transfer.getToAccount());
+		out.writeLong(transfer.getSatoshis());
+	}
+
+
+	private void sync() throws IOException {
+		journal.flush();
+		journalStream.getFD().sync();
+	}
+
+
+	/**
+	 * Rebuilds pending moves and transfers in doubt from the journal.
+	 * <p>
+	 * A record cut short by a crash ends the journal.
+	 */
+	private void replay() {
+		Map<Long, NetTransfer> prepared = new LinkedHashMap<Long, NetTransfer>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+			while (true) {
+				int type = in.read();
+				if (type == -1) break;
+				switch (type) {
+				case MOVE:
+					addPending(in.readUTF(), in.readUTF(), in.readLong());
+					break;
+				case PREPARED:
+					NetTransfer transfer = new NetTransfer(in.readLong(), in.readUTF(), in.readUTF(), in.readLong());
+					addPending(transfer.getFromAccount(), transfer.getToAccount(), -transfer.getSatoshis());
+					prepared.put(transfer.getId(), transfer);
+					nextId = Math.max(nextId, transfer.getId() + 1);
+					break;
+				case FLUSHED:
+					prepared.remove(in.readLong());
+					break;
+				case ABORTED:
+					transfer = prepared.remove(in.readLong());
+					if (transfer != null) addPending(transfer.getFromAccount(), transfer.getToAccount(), transfer.getSatoshis());
+					break;
+				case NEXT_ID:
+					nextId = Math.max(nextId, in.readLong());
+					break;
+				default:
+					throw new BitcoinException("Move journal " + journalFile + " is corrupt.");
+				}
+			}
+		} catch (EOFException e) {
+			// Incomplete last record.
+		} catch (IOException e) {
+			throw new BitcoinException("Could not read move journal " + journalFile + ".", e);
+		}
+		inDoubt.putAll(prepared);
+	}
+
+
+	/**
+	 * Replaces the journal with one holding just the pending moves and the
+	 * transfers in doubt.
+	 */
+	private void compact() {
+		File tmp = new File(journalFile.getPath() + ".tmp");
+		try {
+			if (journal != null) journal.close();
+			try (FileOutputStream tmpStream = new FileOutputStream(tmp)) {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(tmpStream));
+				// Transfer ids are never reused, so comments in bitcoind stay unique.
+				out.writeByte(NEXT_ID);
+				out.writeLong(nextId);
+				for (NetTransfer transfer : inDoubt.values()) {
+					// Replaying a prepared transfer takes its amount from the moves before it.
+					writeMove(out, transfer.getFromAccount(), transfer.getToAccount(), transfer.getSatoshis());
+					writePrepared(out, transfer);
+				}
+				for (Map.Entry<AccountPair, Long> entry : pending.entrySet()) {
+					AccountPair pair = entry.getKey();
+					long net = entry.getValue();
+					if (net > 0) writeMove(out, pair.first, pair.second, net);
+					else writeMove(out, pair.second, pair.first, -net);
+				}
+				out.flush();
+				tmpStream.getFD().sync();
+			}
+			Files.move(tmp.toPath(), journalFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+			journalStream = new FileOutputStream(journalFile, true);
+			journal = new DataOutputStream(new BufferedOutputStream(journalStream));
+		} catch (IOException e) {
+			throw new BitcoinException("Could not compact move journal " + journalFile + ".", e);
+		}
+	}
+
+
+	/**
+	 * Two accounts, in alphabetical order.
+	 */
+	private static class AccountPair {
+
+		private final String first;
+		private final String second;
+
+		private AccountPair(String first, String second) {
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof AccountPair)) return false;
+			AccountPair other = (AccountPair) obj;
+			return first.equals(other.first) && second.equals(other.second);
+		}
+
+		@Override
+		public int hashCode() {
+			return first.hashCode() * 31 + second.hashCode();
+		}
+
+	}
+
+
+}
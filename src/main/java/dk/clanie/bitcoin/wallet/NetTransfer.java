@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import java.math.BigDecimal;
+
+import org.springframework.roo.addon.javabean.RooJavaBean;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.core.BaseClass;
+
+/**
+ * Net result of the moves between two accounts, as flushed to bitcoind by
+ * {@link MoveLedger}.
+ * 
+ * @author Claus Nielsen
+ */
+@SuppressWarnings("serial")
+@RooJavaBean(settersByDefault = false)
+public class NetTransfer extends BaseClass {
+
+	/**
+	 * Id of the transfer, unique within the ledger's journal. It is part of
+	 * the comment of the move.
+	 */
+	private long id;
+
+	private String fromAccount;
+	private String toAccount;
+
+	/**
+	 * Amount in satoshis, always positive.
+	 */
+	private long satoshis;
+
+
+	/**
+	 * Full constructor.
+	 */
+	public NetTransfer(long id, String fromAccount, String toAccount, long satoshis) {
+		this.id = id;
+		this.fromAccount = fromAccount;
+		this.toAccount = toAccount;
+		this.satoshis = satoshis;
+	}
+
+
+	/**
+	 * Gets the amount in bitcoins.
+	 * 
+	 * @return amount.
+	 */
+	public BigDecimal getAmount() {
+		return BigDecimal.valueOf(satoshis, BitcoindClient.SCALE);
+	}
+
+
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import dk.clanie.bitcoin.TransactionOutputRef;
+
+/**
+ * Compact, immutable identifier of a transaction output, for use as a key in
+ * in-memory structures.
+ * <p>
+ * The transaction id is packed into four longs, so equals and hashCode don't
+ * involve strings or reflection, as they do for {@link TransactionOutputRef}.
+ * 
+ * @author Claus Nielsen
+ */
+public final class Outpoint {
+
+	private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+	private final long h0, h1, h2, h3;
+	private final int vout;
+
+
+	private Outpoint(long h0, long h1, long h2, long h3, int vout) {
+		this.h0 = h0;
+		this.h1 = h1;
+		this.h2 = h2;
+		this.h3 = h3;
+		this.vout = vout;
+	}
+
+
+	/**
+	 * Creates Outpoint identifying output <code>vout</code> of the given
+	 * transaction.
+	 * 
+	 * @param txId - transaction id, 64 hex digits.
+	 * @param vout - output number.
+	 * @return Outpoint
+	 * @throws IllegalArgumentException if txId isn't 64 hex digits.
+	 */
+	public static Outpoint of(String txId, int vout) {
+		if (txId == null || txId.length() != 64) throw new IllegalArgumentException("Invalid txid: " + txId);
+		return new Outpoint(parse(txId, 0), parse(txId, 16), parse(txId, 32), parse(txId, 48), vout);
+	}
+
+
+	/**
+	 * Creates Outpoint identifying the same output as the given reference.
+	 * 
+	 * @param txRef
+	 * @return Outpoint
+	 */
+	public static Outpoint of(TransactionOutputRef txRef) {
+		return of(txRef.getTxId(), txRef.getVout());
+	}
+
+
+	/**
+	 * Gets the transaction id.
+	 * 
+	 * @return transaction id, 64 lower case hex digits.
+	 */
+	public String getTxId() {
+		char[] chars = new char[64];
+		format(h0, chars, 0);
+		format(h1, chars, 16);
+		format(h2, chars, 32);
+		format(h3, chars, 48);
+		return new String(chars);
+	}
+
+
+	public int getVout() {
+		return vout;
+	}
+
+
+	/**
+	 * Creates reference to the output for use with {@link dk.clanie.bitcoin.client.BitcoindClient}.
+	 * 
+	 * @return {@link TransactionOutputRef}
+	 */
+	public TransactionOutputRef toTransactionOutputRef() {
+		return new TransactionOutputRef(getTxId(), vout);
+	}
+
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof Outpoint)) return false;
+		Outpoint other = (Outpoint) obj;
+		return h0 == other.h0 && h1 == other.h1 && h2 == other.h2 && h3 == other.h3 && vout == other.vout;
+	}
+
+
+	@Override
+	public int hashCode() {
+		// The txid is a hash, so any part of it is well distributed.
+		return (int) (h3 ^ (h3 >>> 32)) * 31 + vout;
+	}
+
+
+	@Override
+	public String toString() {
+		return getTxId() + ":" + vout;
+	}
+
+
+	private static long parse(String hex, int offset) {
+		long value = 0;
+		for (int i = offset; i < offset + 16; i++) {
+			int digit = Character.digit(hex.charAt(i), 16);
+			if (digit < 0) throw new IllegalArgumentException("Invalid txid: " + hex);
+			value = (value << 4) | digit;
+		}
+		return value;
+	}
+
+
+	private static void format(long value, char[] chars, int offset) {
+		for (int i = offset + 15; i >= offset; i--) {
+			chars[i] = DIGITS[(int) (value & 0x0f)];
+			value >>>= 4;
+		}
+	}
+
+
+}
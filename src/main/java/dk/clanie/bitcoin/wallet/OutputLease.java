@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dk.clanie.bitcoin.TransactionOutputRef;
+
+/**
+ * Time limited reservation of a set of unspent outputs, obtained from
+ * {@link OutputReservations}.
+ * <p>
+ * The lease is valid until it is released, or until it expires without
+ * being renewed. An expired lease may be taken over by another reservation
+ * at any time, after which it can't be renewed.
+ * 
+ * @author Claus Nielsen
+ */
+public class OutputLease {
+
+	/**
+	 * Expiry of a released lease.
+	 */
+	private static final long RELEASED = Long.MIN_VALUE;
+
+	/**
+	 * Expiry of leases representing outputs locked in bitcoind by others.
+	 */
+	static final long NEVER = Long.MAX_VALUE;
+
+	private final OutputReservations reservations;
+	private final Outpoint[] outpoints;
+	private final AtomicLong expiresNanos;
+
+
+	OutputLease(OutputReservations reservations, Outpoint[] outpoints, long expiresNanos) {
+		this.reservations = reservations;
+		this.outpoints = outpoints;
+		this.expiresNanos = new AtomicLong(expiresNanos);
+	}
+
+
+	/**
+	 * Gets the leased outputs.
+	 * 
+	 * @return list of {@link TransactionOutputRef}.
+	 */
+	public List<TransactionOutputRef> getTxOutputs() {
+		List<TransactionOutputRef> txOutputs = newArrayList();
+		for (Outpoint outpoint : outpoints) {
+			txOutputs.add(outpoint.toTransactionOutputRef());
+		}
+		return txOutputs;
+	}
+
+
+	/**
+	 * Checks if the lease is still held.
+	 * 
+	 * @return true if neither released nor expired.
+	 */
+	public boolean isValid() {
+		return isValid(expiresNanos.get(), System.nanoTime());
+	}
+
+
+	/**
+	 * Extends the lease to expire <code>leaseMillis</code> from now.
+	 * 
+	 * @param leaseMillis
+	 * @return true if renewed, false if the lease had already been released
+	 *         or expired.
+	 */
+	public boolean renew(long leaseMillis) {
+		while (true) {
+			long expires = expiresNanos.get();
+			long now = System.nanoTime();
+			if (!isValid(expires, now) || expires == NEVER) return false;
+			if (expiresNanos.compareAndSet(expires, now + MILLISECONDS.toNanos(leaseMillis))) return true;
+		}
+	}
+
+
+	/**
+	 * Gives up the reservation.
+	 * <p>
+	 * Call this both when the outputs have been spent and when they are no
+	 * longer going to be.
+	 */
+	public void release() {
+		if (expiresNanos.getAndSet(RELEASED) != RELEASED) {
+			reservations.removed(this);
+		}
+	}
+
+
+	Outpoint[] getOutpoints() {
+		return outpoints;
+	}
+
+
+	boolean isExternal() {
+		return expiresNanos.get() == NEVER;
+	}
+
+
+	/**
+	 * Marks an expired lease as released, so it can't be renewed.
+	 * 
+	 * @return true if the lease had expired and is now released.
+	 */
+	boolean claimExpired() {
+		long expires = expiresNanos.get();
+		return expires != RELEASED && !isValid(expires, System.nanoTime())
+				&& expiresNanos.compareAndSet(expires, RELEASED);
+	}
+
+
+	private static boolean isValid(long expires, long now) {
+		return expires != RELEASED && (expires == NEVER || expires - now > 0);
+	}
+
+
+}
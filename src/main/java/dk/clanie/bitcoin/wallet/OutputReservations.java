@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import dk.clanie.bitcoin.TransactionOutputRef;
+import dk.clanie.bitcoin.client.BitcoindClient;
+
+/**
+ * In-process reservation table for unspent outputs, mirrored to bitcoind's
+ * lockunspent list.
+ * <p>
+ * Threads building transactions in parallel reserve the outputs they are
+ * going to spend with {@link #reserve(Collection, long)}, which either
+ * leases all of them or none. Reservations are made with compare-and-set
+ * operations on a concurrent map, so conflicts are resolved without locks
+ * or calls to bitcoind.
+ * <p>
+ * {@link #synchronize()} brings bitcoind up to date in batches: one
+ * lockunspent call locking outputs reserved since the last synchronization,
+ * one unlocking outputs released or expired, and a listlockunspent call
+ * picking up outputs locked by other clients of the same wallet. Outputs
+ * reserved and released between two synchronizations are never sent to
+ * bitcoind. Call it periodically, eg. from a scheduled executor.
+ * 
+ * @author Claus Nielsen
+ */
+public class OutputReservations {
+
+	private final BitcoindClient bitcoindClient;
+	private final ConcurrentMap<Outpoint, OutputLease> leases = new ConcurrentHashMap<Outpoint, OutputLease>();
+
+	/**
+	 * Outputs reserved or released since the last synchronization.
+	 */
+	private final Set<Outpoint> dirty = Collections.newSetFromMap(new ConcurrentHashMap<Outpoint, Boolean>());
+
+	// Guarded by this
+	private final Set<Outpoint> lockedInBitcoind = new HashSet<Outpoint>();
+
+
+	/**
+	 * Creates reservation table for the wallet of the given bitcoind.
+	 * 
+	 * @param bitcoindClient
+	 */
+	public OutputReservations(BitcoindClient bitcoindClient) {
+		this.bitcoindClient = bitcoindClient;
+	}
+
+
+	/**
+	 * Reserves the given outputs.
+	 * 
+	 * @param txOutputs - outputs to reserve.
+	 * @param leaseMillis - time until the reservation expires, unless renewed.
+	 * @return {@link OutputLease}, or null if any of the outputs is already
+	 *         reserved, in which case none of them are reserved.
+	 */
+	public OutputLease reserve(Collection<TransactionOutputRef> txOutputs, long leaseMillis) {
+		Outpoint[] outpoints = new Outpoint[txOutputs.size()];
+		int n = 0;
+		for (TransactionOutputRef txOutput : txOutputs) {
+			outpoints[n++] = Outpoint.of(txOutput);
+		}
+		OutputLease lease = new OutputLease(this, outpoints, System.nanoTime() + MILLISECONDS.toNanos(leaseMillis));
+		for (int i = 0; i < outpoints.length; i++) {
+			if (!acquire(outpoints[i], lease)) {
+				for (int j = 0; j < i; j++) {
+					leases.remove(outpoints[j], lease);
+				}
+				return null;
+			}
+		}
+		for (Outpoint outpoint : outpoints) {
+			dirty.add(outpoint);
+		}
+		return lease;
+	}
+
+
+	/**
+	 * Checks if the given output is reserved, here or in bitcoind.
+	 * 
+	 * @param txOutput
+	 * @return true if reserved.
+	 */
+	public boolean isReserved(TransactionOutputRef txOutput) {
+		return isReserved(Outpoint.of(txOutput));
+	}
+
+
+	/**
+	 * Checks if the given output is reserved, here or in bitcoind.
+	 * 
+	 * @param outpoint
+	 * @return true if reserved.
+	 */
+	public boolean isReserved(Outpoint outpoint) {
+		OutputLease lease = leases.get(outpoint);
+		return lease != null && lease.isValid();
+	}
+
+
+	/**
+	 * Gets the number of reserved outputs, including expired reservations
+	 * not yet removed.
+	 * 
+	 * @return number of outputs.
+	 */
+	public int getReservedCount() {
+		return leases.size();
+	}
+
+
+	/**
+	 * Updates bitcoind's list of locked outputs with the reservations made
+	 * and released since the last call, and picks up outputs locked in
+	 * bitcoind by others.
+	 */
+	public synchronized void synchronize() {
+		// Remove expired leases.
+		for (OutputLease lease : leases.values()) {
+			if (lease.claimExpired()) removed(lease);
+		}
+
+		List<TransactionOutputRef> toLock = newArrayList();
+		List<TransactionOutputRef> toUnlock = newArrayList();
+		List<Outpoint> changed = newArrayList();
+		for (Iterator<Outpoint> it = dirty.iterator(); it.hasNext();) {
+			Outpoint outpoint = it.next();
+			it.remove();
+			changed.add(outpoint);
+			boolean reserved = isReserved(outpoint);
+			boolean locked = lockedInBitcoind.contains(outpoint);
+			if (reserved && !locked) toLock.add(outpoint.toTransactionOutputRef());
+			if (!reserved && locked) toUnlock.add(outpoint.toTransactionOutputRef());
+		}
+		try {
+			if (!toLock.isEmpty()) {
+				bitcoindClient.lockUnspent(false, toLock.toArray(new TransactionOutputRef[toLock.size()]));
+				for (TransactionOutputRef txOutput : toLock) lockedInBitcoind.add(Outpoint.of(txOutput));
+			}
+			if (!toUnlock.isEmpty()) {
+				bitcoindClient.lockUnspent(true, toUnlock.toArray(new TransactionOutputRef[toUnlock.size()]));
+				for (TransactionOutputRef txOutput : toUnlock) lockedInBitcoind.remove(Outpoint.of(txOutput));
+			}
+		} catch (RuntimeException e) {
+			// Try again next time.
+			dirty.addAll(changed);
+			throw e;
+		}
+
+		// Outputs locked in bitcoind, but not by us, are reserved by someone else.
+		Set<Outpoint> lockedByOthers = new HashSet<Outpoint>();
+		for (TransactionOutputRef txOutput : bitcoindClient.listLockUnspent().getResult()) {
+			Outpoint outpoint = Outpoint.of(txOutput);
+			if (!lockedInBitcoind.contains(outpoint)) lockedByOthers.add(outpoint);
+		}
+		for (Map.Entry<Outpoint, OutputLease> entry : leases.entrySet()) {
+			OutputLease lease = entry.getValue();
+			if (lease.isExternal() && !lockedByOthers.contains(entry.getKey())) {
+				leases.remove(entry.getKey(), lease);
+			}
+		}
+		for (Outpoint outpoint : lockedByOthers) {
+			acquire(outpoint, new OutputLease(this, new Outpoint[] {outpoint}, OutputLease.NEVER));
+		}
+	}
+
+
+	/**
+	 * Called when a lease has been released or has expired.
+	 */
+	void removed(OutputLease lease) {
+		for (Outpoint outpoint : lease.getOutpoints()) {
+			if (leases.remove(outpoint, lease)) dirty.add(outpoint);
+		}
+	}
+
+
+	/**
+	 * Leases the given output unless it is held by another valid lease.
+	 */
+	private boolean acquire(Outpoint outpoint, OutputLease lease) {
+		while (true) {
+			OutputLease current = leases.putIfAbsent(outpoint, lease);
+			if (current == null || current == lease) return true;
+			if (!current.claimExpired()) {
+				// Valid, or released and about to be removed.
+				if (current.isValid()) return false;
+				leases.remove(outpoint, current);
+				continue;
+			}
+			removed(current);
+		}
+	}
+
+
+}
@@ -0,0 +1,266 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import dk.clanie.bitcoin.AddressAndAmount;
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.exception.BitcoinException;
+
+/**
+ * Coalesces individual payments into sendmany calls.
+ * <p>
+ * Payments are queued and sent together in one transaction when
+ * <code>maxBatchSize</code> payments are queued, or <code>maxDelayMillis</code>
+ * after the first payment in the batch was queued, whichever comes first.
+ * Payments to the same address are merged into one output by
+ * {@link BitcoindClient#sendMany(String, AddressAndAmount[], Integer, String)}.
+ * <p>
+ * Amounts which aren't positive, or have more than 8 decimals, are refused
+ * by {@link #pay(String, BigDecimal)}. If bitcoind still rejects a batch
+ * because of an invalid amount or address, or insufficient funds, it is
+ * split in two and each half is retried, until the payments
+ * causing the rejection are isolated and failed. These errors are raised
+ * before anything is stored in the wallet. Other failures fail the whole
+ * batch, since retrying could pay twice: a lost connection leaves it
+ * unknown whether the transaction was sent, and eg. "Transaction commit
+ * failed" (-4) is raised after the transaction has been recorded in the
+ * wallet and its coins marked spent.
+ * 
+ * @author Claus Nielsen
+ */
+public class PaymentBatcher {
+
+	/**
+	 * bitcoind's error code for "Invalid amount".
+	 */
+	private static final int INVALID_AMOUNT = -3;
+
+	/**
+	 * bitcoind's error code for "Invalid Bitcoin address".
+	 */
+	private static final int INVALID_ADDRESS = -5;
+
+	/**
+	 * bitcoind's error code for "Account has insufficient funds".
+	 */
+	private static final int INSUFFICIENT_FUNDS = -6;
+
+	private final BitcoindClient bitcoindClient;
+	private final String fromAccount;
+	private final int maxBatchSize;
+	private final long maxDelayMillis;
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+	private volatile Integer minConf;
+	private volatile String comment;
+
+	// Guarded by this
+	private List<PaymentFuture> pending = newArrayList();
+	private ScheduledFuture<?> scheduledFlush;
+	private boolean shutdown = false;
+
+
+	/**
+	 * Creates batcher sending payments from the given account.
+	 * 
+	 * @param bitcoindClient
+	 * @param fromAccount - account to pay from.
+	 * @param maxBatchSize - max number of payments sent together.
+	 * @param maxDelayMillis - max time a payment is held back waiting for
+	 *            other payments.
+	 */
+	public PaymentBatcher(BitcoindClient bitcoindClient, String fromAccount, int maxBatchSize, long maxDelayMillis) {
+		if (maxBatchSize < 1) throw new IllegalArgumentException("maxBatchSize must be at least 1.");
+		this.bitcoindClient = bitcoindClient;
+		this.fromAccount = fromAccount;
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayMillis = maxDelayMillis;
+	}
+
+
+	/**
+	 * Sets the minimum number of confirmations of the coins paid with.
+	 * 
+	 * @param minConf - optional (may be null), default 1.
+	 */
+	public void setMinConf(Integer minConf) {
+		this.minConf = minConf;
+	}
+
+
+	/**
+	 * Sets the comment stored in the wallet with each transaction.
+	 * 
+	 * @param comment - optional (may be null).
+	 */
+	public void setComment(String comment) {
+		this.comment = comment;
+	}
+
+
+	/**
+	 * Queues a payment.
+	 * 
+	 * @param address - bitcoin address.
+	 * @param amount - bitcoins.
+	 * @return Future completing with the id of the transaction the payment is
+	 *         sent in.
+	 * @throws IllegalArgumentException if the amount isn't positive or has
+	 *             more than {@link BitcoindClient#SCALE} decimals.
+	 * @throws IllegalStateException if the batcher has been shut down.
+	 */
+	public Future<String> pay(String address, BigDecimal amount) {
+		if (amount == null || amount.signum() <= 0 || amount.stripTrailingZeros().scale() > BitcoindClient.SCALE) {
+			throw new IllegalArgumentException("Invalid amount: " + amount + ".");
+		}
+		PaymentFuture future = new PaymentFuture(new AddressAndAmount(address, amount));
+		synchronized (this) {
+			if (shutdown) throw new IllegalStateException("PaymentBatcher has been shut down.");
+			pending.add(future);
+			if (pending.size() >= maxBatchSize) {
+				scheduleFlush(0);
+			} else if (pending.size() == 1) {
+				scheduleFlush(maxDelayMillis);
+			}
+		}
+		return future;
+	}
+
+
+	/**
+	 * Sends queued payments without waiting for the batch to fill up.
+	 */
+	public synchronized void flush() {
+		if (!shutdown) scheduleFlush(0);
+	}
+
+
+	/**
+	 * Sends queued payments and stops the batcher's thread.
+	 * <p>
+	 * Payments can't be queued after shutdown.
+	 */
+	public synchronized void shutdown() {
+		if (shutdown) return;
+		shutdown = true;
+		scheduleFlush(0);
+		executor.shutdown();
+	}
+
+
+	/**
+	 * Gets the number of queued payments not yet sent.
+	 * 
+	 * @return number of payments.
+	 */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+
+	/**
+	 * Schedules sending of queued payments, replacing any flush already
+	 * scheduled.
+	 */
+	private void scheduleFlush(long delayMillis) {
+		if (scheduledFlush != null) scheduledFlush.cancel(false);
+		scheduledFlush = executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				sendPending();
+			}
+		}, delayMillis, MILLISECONDS);
+	}
+
+
+	private void sendPending() {
+		List<PaymentFuture> batch;
+		while ((batch = nextBatch()) != null) {
+			send(batch);
+		}
+	}
+
+
+	private synchronized List<PaymentFuture> nextBatch() {
+		if (pending.isEmpty()) return null;
+		if (pending.size() <= maxBatchSize) {
+			List<PaymentFuture> batch = pending;
+			pending = newArrayList();
+			return batch;
+		}
+		List<PaymentFuture> batch = newArrayList();
+		batch.addAll(pending.subList(0, maxBatchSize));
+		pending.subList(0, maxBatchSize).clear();
+		return batch;
+	}
+
+
+	private void send(List<PaymentFuture> batch) {
+		AddressAndAmount[] payments = new AddressAndAmount[batch.size()];
+		for (int i = 0; i < payments.length; i++) {
+			payments[i] = batch.get(i).getPayment();
+		}
+		String txId;
+		try {
+			txId = bitcoindClient.sendMany(fromAccount, payments, minConf, comment).getResult();
+		} catch (BitcoinException e) {
+			if (batch.size() > 1 && isRejection(e)) {
+				int half = batch.size() / 2;
+				send(batch.subList(0, half));
+				send(batch.subList(half, batch.size()));
+			} else {
+				fail(batch, e);
+			}
+			return;
+		} catch (RuntimeException e) {
+			fail(batch, e);
+			return;
+		}
+		for (PaymentFuture future : batch) {
+			future.complete(txId);
+		}
+	}
+
+
+	/**
+	 * Checks if bitcoind rejected the batch, without side effects, for a
+	 * reason which may only apply to some of its payments.
+	 */
+	private static boolean isRejection(BitcoinException e) {
+		Integer errorCode = e.getErrorCode();
+		return errorCode != null && (errorCode == INVALID_AMOUNT || errorCode == INVALID_ADDRESS || errorCode == INSUFFICIENT_FUNDS);
+	}
+
+
+	private static void fail(List<PaymentFuture> batch, Exception e) {
+		for (PaymentFuture future : batch) {
+			future.fail(e);
+		}
+	}
+
+
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import dk.clanie.bitcoin.AddressAndAmount;
+
+/**
+ * Future result of a payment queued in a {@link PaymentBatcher}.
+ * <p>
+ * Completes with the id of the transaction the payment was sent in, or
+ * with the exception that made it fail. Payments can't be cancelled.
+ * 
+ * @author Claus Nielsen
+ */
+class PaymentFuture implements Future<String> {
+
+	private final AddressAndAmount payment;
+	private final CountDownLatch done = new CountDownLatch(1);
+	private volatile String txId;
+	private volatile Throwable failure;
+
+
+	PaymentFuture(AddressAndAmount payment) {
+		this.payment = payment;
+	}
+
+
+	AddressAndAmount getPayment() {
+		return payment;
+	}
+
+
+	void complete(String txId) {
+		this.txId = txId;
+		done.countDown();
+	}
+
+
+	void fail(Throwable failure) {
+		this.failure = failure;
+		done.countDown();
+	}
+
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return false;
+	}
+
+
+	@Override
+	public boolean isCancelled() {
+		return false;
+	}
+
+
+	@Override
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+
+	@Override
+	public String get() throws InterruptedException, ExecutionException {
+		done.await();
+		return result();
+	}
+
+
+	@Override
+	public String get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!done.await(timeout, unit)) throw new TimeoutException();
+		return result();
+	}
+
+
+	private String result() throws ExecutionException {
+		if (failure != null) throw new ExecutionException(failure);
+		return txId;
+	}
+
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An operation's claim on the wallet being unlocked, obtained from
+ * {@link WalletUnlocker#open()}.
+ * <p>
+ * Close the session when the operation is done, eg. with
+ * try-with-resources.
+ * 
+ * @author Claus Nielsen
+ */
+public class WalletUnlockSession implements AutoCloseable {
+
+	private final WalletUnlocker unlocker;
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+
+	WalletUnlockSession(WalletUnlocker unlocker) {
+		this.unlocker = unlocker;
+	}
+
+
+	/**
+	 * Ends the session. The wallet is locked if this was the last open
+	 * session. Closing a session more than once has no effect.
+	 */
+	@Override
+	public void close() {
+		if (closed.compareAndSet(false, true)) unlocker.release();
+	}
+
+
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.Callable;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.exception.BitcoinException;
+
+/**
+ * Shares one walletpassphrase unlock between concurrent operations on an
+ * encrypted wallet.
+ * <p>
+ * Operations needing the wallet unlocked open a {@link WalletUnlockSession}
+ * and close it when done. The first session unlocks the wallet for
+ * <code>unlockSeconds</code>; sessions opened while it is unlocked just
+ * increment a count, and the wallet is locked again when the last session
+ * is closed. A burst of operations thus costs one walletpassphrase and one
+ * walletlock call.
+ * <p>
+ * bitcoind 0.8 refuses to extend an unlock (error -17, "Wallet is already
+ * unlocked"), so when less than the minimum remaining time is left of the
+ * unlock window, new sessions wait until the open sessions are closed and
+ * the wallet can be locked and unlocked again. Operations must therefore
+ * complete well within <code>unlockSeconds</code>.
+ * <p>
+ * If the wallet turns out to have been unlocked by someone else the unlock
+ * is replaced with one of known duration.
+ * 
+ * @author Claus Nielsen
+ */
+public class WalletUnlocker {
+
+	/**
+	 * Default minimum time left of the unlock window for a new session to
+	 * join it.
+	 */
+	public static final long DEFAULT_MIN_REMAINING_MILLIS = 5000;
+
+	/**
+	 * bitcoind's error code for "Error: Wallet is already unlocked."
+	 */
+	private static final int WALLET_ALREADY_UNLOCKED = -17;
+
+	private final BitcoindClient bitcoindClient;
+	private final String passPhrase;
+	private final int unlockSeconds;
+	private volatile long minRemainingNanos = MILLISECONDS.toNanos(DEFAULT_MIN_REMAINING_MILLIS);
+
+	// Guarded by this
+	private boolean changing = false; // A walletlock or walletpassphrase call is in progress.
+	private int openSessions = 0;
+	private long unlockedUntilNanos;
+	private boolean unlocked = false;
+	private long unlockCount = 0;
+
+
+	/**
+	 * Creates unlocker.
+	 * 
+	 * @param bitcoindClient
+	 * @param passPhrase - the wallet's pass phrase.
+	 * @param unlockSeconds - duration of each unlock.
+	 */
+	public WalletUnlocker(BitcoindClient bitcoindClient, String passPhrase, int unlockSeconds) {
+		if (unlockSeconds < 1) throw new IllegalArgumentException("unlockSeconds must be at least 1.");
+		this.bitcoindClient = bitcoindClient;
+		this.passPhrase = passPhrase;
+		this.unlockSeconds = unlockSeconds;
+	}
+
+
+	/**
+	 * Sets the minimum time left of the unlock window for a new session to
+	 * join it.
+	 * 
+	 * @param minRemainingMillis
+	 */
+	public void setMinRemainingMillis(long minRemainingMillis) {
+		this.minRemainingNanos = MILLISECONDS.toNanos(minRemainingMillis);
+	}
+
+
+	/**
+	 * Opens a session, unlocking the wallet unless it is already unlocked.
+	 * <p>
+	 * May wait for open sessions to be closed, if the current unlock is about
+	 * to expire.
+	 * 
+	 * @return {@link WalletUnlockSession}
+	 */
+	public WalletUnlockSession open() {
+		boolean relock;
+		synchronized (this) {
+			boolean interrupted = false;
+			try {
+				while (true) {
+					if (!changing && unlocked && unlockedUntilNanos - System.nanoTime() > minRemainingNanos) {
+						openSessions++;
+						return new WalletUnlockSession(this);
+					}
+					if (!changing && openSessions == 0) break;
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			} finally {
+				if (interrupted) Thread.currentThread().interrupt();
+			}
+			changing = true;
+			relock = unlocked;
+			unlocked = false;
+		}
+		boolean succeeded = false;
+		long unlockedUntil = 0;
+		try {
+			if (relock) bitcoindClient.walletLock();
+			unlockedUntil = unlock();
+			succeeded = true;
+		} finally {
+			synchronized (this) {
+				changing = false;
+				if (succeeded) {
+					unlockCount++;
+					unlocked = true;
+					unlockedUntilNanos = unlockedUntil;
+					openSessions++;
+				}
+				notifyAll();
+			}
+		}
+		return new WalletUnlockSession(this);
+	}
+
+
+	/**
+	 * Runs the given task with the wallet unlocked.
+	 * 
+	 * @param task - typically one or more calls to a {@link BitcoindClient}.
+	 * @return the task's result.
+	 */
+	public <T> T callUnlocked(Callable<T> task) {
+		WalletUnlockSession session = open();
+		try {
+			return task.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new BitcoinException(e);
+		} finally {
+			session.close();
+		}
+	}
+
+
+	/**
+	 * Gets the number of open sessions.
+	 * 
+	 * @return number of sessions.
+	 */
+	public synchronized int getOpenSessions() {
+		return openSessions;
+	}
+
+
+	/**
+	 * Gets the number of walletpassphrase calls made.
+	 * 
+	 * @return number of unlocks.
+	 */
+	public synchronized long getUnlockCount() {
+		return unlockCount;
+	}
+
+
+	void release() {
+		synchronized (this) {
+			if (--openSessions > 0) return;
+			changing = true;
+			unlocked = false;
+		}
+		try {
+			bitcoindClient.walletLock();
+		} finally {
+			synchronized (this) {
+				changing = false;
+				notifyAll();
+			}
+		}
+	}
+
+
+	/**
+	 * Unlocks the wallet.
+	 * 
+	 * @return System.nanoTime() when the unlock expires.
+	 */
+	private long unlock() {
+		long start = System.nanoTime();
+		try {
+			bitcoindClient.walletPassPhrase(passPhrase, unlockSeconds);
+		} catch (BitcoinException e) {
+			Integer errorCode = e.getErrorCode();
+			if (errorCode == null || errorCode != WALLET_ALREADY_UNLOCKED) throw e;
+			// Unlocked by someone else, for an unknown time.
+			bitcoindClient.walletLock();
+			start = System.nanoTime();
+			bitcoindClient.walletPassPhrase(passPhrase, unlockSeconds);
+		}
+		return start + SECONDS.toNanos(unlockSeconds);
+	}
+
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link AddressValidator}.
+ * 
+ * @author Claus Nielsen
+ */
+public class AddressValidatorTest {
+
+	private AddressValidator testNet = new AddressValidator(BitcoinNetwork.TEST);
+	private AddressValidator mainNet = new AddressValidator(BitcoinNetwork.MAIN);
+
+
+	@Test
+	public void testValidAddresses() throws Exception {
+		assertTrue(testNet.isValid("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq"));
+		assertTrue(testNet.isValid("n39aMXCuUdB5YfgAxSpgyPqCRZGtdWGMMG"));
+		assertTrue(testNet.isValid("2N2kM2KPixnVxLquqNTse2QsFUAoEwfdDPa"));
+		assertTrue(mainNet.isValid("1A1zP1eP5QGefi2DMPTfTL5SLmv7DivfNa"));
+		assertTrue(mainNet.isValid("3J98t1WpEZ73CNmQviecrnyiWrnqRhWNLy"));
+	}
+
+
+	@Test
+	public void testWrongNetwork() throws Exception {
+		assertFalse(mainNet.isValid("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq"));
+		assertFalse(mainNet.isValid("2N2kM2KPixnVxLquqNTse2QsFUAoEwfdDPa"));
+		assertFalse(testNet.isValid("1A1zP1eP5QGefi2DMPTfTL5SLmv7DivfNa"));
+	}
+
+
+	@Test
+	public void testInvalidAddresses() throws Exception {
+		assertFalse(testNet.isValid(null));
+		assertFalse(testNet.isValid(""));
+		// Checksum mismatch
+		assertFalse(testNet.isValid("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFr"));
+		// Not base58
+		assertFalse(testNet.isValid("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRF0"));
+		// Truncated
+		assertFalse(testNet.isValid("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbR"));
+		assertFalse(testNet.isValid("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFqmj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq"));
+	}
+
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.benchmark;
+
+import static java.util.Collections.singletonList;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.client.request.BitcoindJsonRpcRequest;
+import dk.clanie.bitcoin.client.request.HexData;
+import dk.clanie.bitcoin.client.response.ByteArrayResponse;
+import dk.clanie.bitcoin.client.response.StringResponse;
+import dk.clanie.bitcoin.util.Hex;
+
+/**
+ * Compares the String and the byte based ways of passing raw transactions
+ * to and from bitcoind, for transactions of different sizes.
+ * <p>
+ * The String path is what a caller holding a serialized transaction has to
+ * do with the String based client methods: hex encode the bytes into a
+ * String before the request is serialized, and decode the String in the
+ * response afterwards. The byte path encodes directly into the request body
+ * and decodes directly from the parser's buffer.
+ * <p>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=dk.clanie.bitcoin.benchmark.HexPayloadBenchmark</code>
+ * or from the IDE.
+ * 
+ * @author Claus Nielsen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HexPayloadBenchmark {
+
+	/**
+	 * Transaction size in bytes.
+	 */
+	@Param({"250", "10000", "100000"})
+	private int size;
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+	private byte[] rawTransaction;
+	private byte[] responseJson;
+
+
+	@Setup
+	public void setUp() throws Exception {
+		rawTransaction = new byte[size];
+		new Random(42).nextBytes(rawTransaction);
+		responseJson = ("{\"result\":\"" + Hex.encode(rawTransaction) + "\",\"error\":null,\"id\":null}").getBytes("US-ASCII");
+	}
+
+
+	@Benchmark
+	public byte[] requestStringPath() throws Exception {
+		String hex = Hex.encode(rawTransaction);
+		return objectMapper.writeValueAsBytes(new BitcoindJsonRpcRequest("sendrawtransaction", singletonList(hex)));
+	}
+
+
+	@Benchmark
+	public byte[] requestBytePath() throws Exception {
+		HexData data = new HexData(ByteBuffer.wrap(rawTransaction));
+		return objectMapper.writeValueAsBytes(new BitcoindJsonRpcRequest("sendrawtransaction", singletonList(data)));
+	}
+
+
+	@Benchmark
+	public byte[] responseStringPath() throws Exception {
+		return Hex.decode(objectMapper.readValue(responseJson, StringResponse.class).getResult());
+	}
+
+
+	@Benchmark
+	public byte[] responseBytePath() throws Exception {
+		return objectMapper.readValue(responseJson, ByteArrayResponse.class).getResult();
+	}
+
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+				.include(HexPayloadBenchmark.class.getSimpleName())
+				.addProfiler("gc")
+				.build()).run();
+	}
+
+
+}
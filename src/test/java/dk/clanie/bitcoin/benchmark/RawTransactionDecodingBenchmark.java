@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.BitcoinNetwork;
+import dk.clanie.bitcoin.client.response.DecodeRawTransactionResponse;
+import dk.clanie.bitcoin.client.response.DecodeRawTransactionResult;
+import dk.clanie.bitcoin.client.response.SignRawTransactionResponse;
+import dk.clanie.bitcoin.transaction.RawTransactionDecoder;
+
+/**
+ * Compares local decoding of a raw transaction with the client side of a
+ * decoderawtransaction call, ie. binding bitcoind's JSON response.
+ * <p>
+ * The network round trip and bitcoind's own decoding come on top of the RPC
+ * figure.
+ * <p>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=dk.clanie.bitcoin.benchmark.RawTransactionDecodingBenchmark</code>
+ * or from the IDE.
+ * 
+ * @author Claus Nielsen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RawTransactionDecodingBenchmark {
+
+	private static final String SAMPLES = "src/test/resources/sampleResponse/";
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+	private RawTransactionDecoder decoder = new RawTransactionDecoder(BitcoinNetwork.TEST);
+	private String hex;
+	private String responseJson;
+
+
+	@Setup
+	public void setUp() throws Exception {
+		hex = objectMapper.readValue(new File(SAMPLES + "SignRawTransactionResponse.json"), SignRawTransactionResponse.class).getResult().getHex();
+		responseJson = IOUtils.toString(new File(SAMPLES + "DecodeRawTransactionResponse_signedTransaction.json").toURI());
+	}
+
+
+	@Benchmark
+	public DecodeRawTransactionResult localDecode() {
+		return decoder.decode(hex);
+	}
+
+
+	@Benchmark
+	public DecodeRawTransactionResponse rpcResponseBinding() throws Exception {
+		return objectMapper.readValue(responseJson, DecodeRawTransactionResponse.class);
+	}
+
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+				.include(RawTransactionDecodingBenchmark.class.getSimpleName())
+				.addProfiler("gc")
+				.build()).run();
+	}
+
+
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.benchmark;
+
+import static dk.clanie.collections.CollectionFactory.newHashMap;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Measures binding of bitcoind responses to the response classes, for
+ * responses of different sizes.
+ * <p>
+ * Responses are made from the sample responses used by
+ * ResponseSerializationTest, by repeating the elements of their main array
+ * (the result itself, or eg. the transactions of a block) until it has the
+ * given number of elements. The response class is given by the sample file
+ * name.
+ * <p>
+ * {@link #bind()} measures throughput with a warmed up ObjectMapper, and
+ * {@link #bindColdStart()} the first binding in a fresh JVM.
+ * <p>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=dk.clanie.bitcoin.benchmark.ResponseBindingBenchmark</code>
+ * or from the IDE. The gc profiler reports allocation per operation as
+ * gc.alloc.rate.norm.
+ * 
+ * @author Claus Nielsen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBindingBenchmark {
+
+	private static final String SAMPLES = "src/test/resources/sampleResponse/";
+
+	private static final String RESPONSE_PACKAGE = "dk.clanie.bitcoin.client.response.";
+
+	/**
+	 * Array scaled in responses where the result isn't an array itself.
+	 */
+	private static final Map<String, String> SCALED_ARRAY = newHashMap();
+	static {
+		SCALED_ARRAY.put("GetBlockResponse", "tx");
+		SCALED_ARRAY.put("GetBlockTemplateResponse", "transactions");
+		SCALED_ARRAY.put("GetRawTransactionResponse_verbose", "vout");
+		SCALED_ARRAY.put("ListSinceBlockResponse", "transactions");
+	}
+
+	/**
+	 * Sample response, ie. file name without .json.
+	 */
+	@Param({
+		"GetBlockResponse",
+		"GetBlockTemplateResponse",
+		"GetPeerInfoResponse",
+		"GetRawTransactionResponse_verbose",
+		"ListReceivedByAddressResponse",
+		"ListSinceBlockResponse",
+		"ListTransactionsResponse",
+		"ListUnspentResponse"})
+	private String sample;
+
+	/**
+	 * Number of elements in the scaled array.
+	 */
+	@Param({"1", "100", "10000", "100000"})
+	private int elements;
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+	private Class<?> responseType;
+	private byte[] responseJson;
+
+
+	@Setup
+	public void setUp() throws Exception {
+		int suffix = sample.indexOf('_');
+		responseType = Class.forName(RESPONSE_PACKAGE + (suffix < 0 ? sample : sample.substring(0, suffix)));
+		responseJson = objectMapper.writeValueAsBytes(scale(objectMapper.readTree(new File(SAMPLES + sample + ".json"))));
+	}
+
+
+	@Benchmark
+	public Object bind() throws Exception {
+		return objectMapper.readValue(responseJson, responseType);
+	}
+
+
+	/**
+	 * Binds a response once with a new ObjectMapper in a fresh JVM, so the
+	 * time includes building the deserializers and running cold code, as
+	 * for the first response after a client is started.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	@Fork(10)
+	public Object bindColdStart() throws Exception {
+		return new ObjectMapper().readValue(responseJson, responseType);
+	}
+
+
+	/**
+	 * Repeats the elements of the sample's array until there are
+	 * <code>elements</code> of them.
+	 */
+	private JsonNode scale(JsonNode response) {
+		String field = SCALED_ARRAY.get(sample);
+		JsonNode parent = field == null ? response : response.get("result");
+		JsonNode array = parent.get(field == null ? "result" : field);
+		ArrayNode scaled = objectMapper.createArrayNode();
+		for (int i = 0; i < elements; i++) {
+			scaled.add(array.get(i % array.size()));
+		}
+		((ObjectNode) parent).put(field == null ? "result" : field, scaled);
+		return response;
+	}
+
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+				.include(ResponseBindingBenchmark.class.getSimpleName())
+				.addProfiler("gc")
+				.build()).run();
+	}
+
+
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import dk.clanie.bitcoin.client.monitoring.JfrCallListener;
+import dk.clanie.bitcoin.client.monitoring.RpcCall;
+import dk.clanie.bitcoin.client.monitoring.RpcMetricsRegistry;
+
+/**
+ * Measures what metrics collection adds to each call: starting and ending an
+ * {@link RpcCall} and recording it in an {@link RpcMetricsRegistry}, with
+ * four threads calling concurrently. Also measures the
+ * {@link JfrCallListener} when no recording is running.
+ * <p>
+ * Compare with the round trip to bitcoind, typically hundreds of
+ * microseconds even on localhost.
+ * <p>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=dk.clanie.bitcoin.benchmark.RpcMetricsBenchmark</code>
+ * or from the IDE.
+ * 
+ * @author Claus Nielsen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class RpcMetricsBenchmark {
+
+	private RpcMetricsRegistry registry = new RpcMetricsRegistry();
+	private JfrCallListener jfrCallListener = new JfrCallListener();
+
+
+	@Benchmark
+	public RpcCall completeCall() {
+		RpcCall call = RpcCall.begin("getinfo", null);
+		call.setRequestBytes(56);
+		call.setResponseBytes(420);
+		call.end(null);
+		registry.callCompleted(call);
+		return call;
+	}
+
+
+	@Benchmark
+	public RpcCall jfrNotRecording() {
+		RpcCall call = RpcCall.begin("getinfo", null);
+		jfrCallListener.callStarted(call);
+		call.end(null);
+		jfrCallListener.callCompleted(call);
+		return call;
+	}
+
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+				.include(RpcMetricsBenchmark.class.getSimpleName())
+				.addProfiler("gc")
+				.build()).run();
+	}
+
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import dk.clanie.bitcoin.client.response.BigDecimalResponse;
+import dk.clanie.bitcoin.client.response.ListTransactionsResponse;
+import dk.clanie.bitcoin.client.response.ListUnspentResponse;
+import dk.clanie.bitcoin.client.response.StringResponse;
+import dk.clanie.bitcoin.client.simulator.SimulatedBitcoindClient;
+
+/**
+ * Measures calls to {@link SimulatedBitcoindClient}, ie. the cost of the
+ * client when benchmarking wallet logic against the simulator.
+ * <p>
+ * The simulator is recreated for each iteration, as it keeps every
+ * transaction. sendToAddress spends the change of the previous send, and a
+ * block is mined every 100 sends.
+ * <p>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=dk.clanie.bitcoin.benchmark.SimulatedBitcoindClientBenchmark</code>
+ * or from the IDE.
+ *
+ * @author Claus Nielsen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulatedBitcoindClientBenchmark {
+
+	private static final String EXTERNAL_ADDRESS = "mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq";
+	private static final BigDecimal AMOUNT = new BigDecimal("0.001");
+
+	private SimulatedBitcoindClient client;
+	private int sends;
+
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		client = new SimulatedBitcoindClient();
+		for (int i = 0; i < 100; i++) {
+			client.receive(client.getNewAddress("").getResult(), new BigDecimal("100000"));
+		}
+		client.mineBlocks(1);
+		sends = 0;
+	}
+
+
+	@Benchmark
+	public StringResponse getNewAddress() {
+		return client.getNewAddress("benchmark");
+	}
+
+
+	@Benchmark
+	public StringResponse sendToAddress() {
+		if (++sends % 100 == 0) client.mineBlocks(1);
+		return client.sendToAddress(EXTERNAL_ADDRESS, AMOUNT, null, null);
+	}
+
+
+	@Benchmark
+	public BigDecimalResponse getBalance() {
+		return client.getBalance("", 1);
+	}
+
+
+	@Benchmark
+	public ListUnspentResponse listUnspent() {
+		return client.listUnspent(1, null);
+	}
+
+
+	@Benchmark
+	public ListTransactionsResponse listTransactions() {
+		return client.listTransactions(null, 10, 0);
+	}
+
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+				.include(SimulatedBitcoindClientBenchmark.class.getSimpleName())
+				.addProfiler("gc")
+				.build()).run();
+	}
+
+
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.BitcoindClientBuilder;
+import dk.clanie.bitcoin.client.BitcoindClientDefaultConfig;
+import dk.clanie.bitcoin.client.fake.FakeBitcoind;
+import dk.clanie.bitcoin.client.monitoring.JfrCallListener;
+import dk.clanie.bitcoin.client.monitoring.RpcMetricsRegistry;
+import dk.clanie.bitcoin.client.monitoring.SlowCallLog;
+
+/**
+ * Compares the startup time of a client created in a Spring context from
+ * {@link BitcoindClientDefaultConfig} with one created by
+ * {@link BitcoindClientBuilder}, given the same call listeners.
+ * <p>
+ * Each measurement is the time from nothing being created to the first
+ * getblockcount call, to a {@link FakeBitcoind}, having returned. Every
+ * measurement is made in a fresh JVM, so class loading and initialization
+ * are included, except for the classes already loaded by JMH and the fake
+ * server.
+ * <p>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=dk.clanie.bitcoin.benchmark.StartupTimeBenchmark</code>
+ * or from the IDE.
+ * 
+ * @author Claus Nielsen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupTimeBenchmark {
+
+	private FakeBitcoind bitcoind;
+	private AnnotationConfigApplicationContext context;
+	private RpcMetricsRegistry rpcMetricsRegistry;
+	private SlowCallLog slowCallLog;
+
+
+	@Setup
+	public void setUp() throws Exception {
+		bitcoind = new FakeBitcoind("bitcoinrpc", "letmepass");
+		bitcoind.start();
+		System.setProperty("bitcoind.client.host", "localhost");
+		System.setProperty("bitcoind.client.port", String.valueOf(bitcoind.getPort()));
+		System.setProperty("bitcoind.client.user", "bitcoinrpc");
+		System.setProperty("bitcoind.client.password", "letmepass");
+	}
+
+
+	@TearDown
+	public void tearDown() {
+		if (context != null) context.close();
+		if (rpcMetricsRegistry != null) rpcMetricsRegistry.unregisterMBean();
+		if (slowCallLog != null) slowCallLog.unregisterMBean();
+		bitcoind.stop();
+	}
+
+
+	@Benchmark
+	public Long springContext() {
+		context = new AnnotationConfigApplicationContext(BitcoindClientDefaultConfig.class);
+		return context.getBean(BitcoindClient.class).getBlockCount().getResult();
+	}
+
+
+	/**
+	 * Creates the client with the same call listeners, registered as MBeans
+	 * the same way, as {@link BitcoindClientDefaultConfig}.
+	 */
+	@Benchmark
+	public Long builder() {
+		rpcMetricsRegistry = new RpcMetricsRegistry();
+		rpcMetricsRegistry.setMBeanName(bitcoind.getUrl());
+		rpcMetricsRegistry.registerMBean();
+		slowCallLog = new SlowCallLog(20, 100);
+		slowCallLog.setMBeanName(bitcoind.getUrl());
+		slowCallLog.registerMBean();
+		BitcoindClient client = new BitcoindClientBuilder()
+				.url(bitcoind.getUrl())
+				.credentials("bitcoinrpc", "letmepass")
+				.callListener(rpcMetricsRegistry)
+				.callListener(new JfrCallListener())
+				.callListener(slowCallLog)
+				.build();
+		return client.getBlockCount().getResult();
+	}
+
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+				.include(StartupTimeBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import dk.clanie.bitcoin.client.fake.FakeBitcoind;
+import dk.clanie.bitcoin.client.monitoring.RpcCall;
+import dk.clanie.bitcoin.client.monitoring.RpcCallListener;
+
+/**
+ * Tests {@link BitcoindClientBuilder} against a {@link FakeBitcoind}.
+ * 
+ * @author Claus Nielsen
+ */
+public class BitcoindClientBuilderTest {
+
+	private FakeBitcoind bitcoind;
+
+
+	@Before
+	public void setUp() throws Exception {
+		bitcoind = new FakeBitcoind("bitcoinrpc", "letmepass");
+		bitcoind.start();
+	}
+
+
+	@After
+	public void tearDown() {
+		bitcoind.stop();
+	}
+
+
+	@Test
+	public void testBuild() {
+		final List<String> completed = newArrayList();
+		BitcoindClient client = new BitcoindClientBuilder()
+				.url(bitcoind.getUrl())
+				.credentials("bitcoinrpc", "letmepass")
+				.maxConnections(2)
+				.callListener(new RpcCallListener() {
+					@Override
+					public void callStarted(RpcCall call) {
+					}
+					@Override
+					public void callCompleted(RpcCall call) {
+						completed.add(call.getMethod());
+					}
+				})
+				.build();
+		assertThat(client.getBlockCount().getResult(), equalTo(64842L));
+		assertThat(completed.size(), equalTo(1));
+		assertThat(completed.get(0), equalTo("getblockcount"));
+	}
+
+
+	@Test(expected = IllegalStateException.class)
+	public void testUrlRequired() {
+		new BitcoindClientBuilder().credentials("bitcoinrpc", "letmepass").build();
+	}
+
+
+	@Test(expected = IllegalStateException.class)
+	public void testCredentialsNotUsedWithTransport() {
+		new BitcoindClientBuilder()
+				.url(bitcoind.getUrl())
+				.credentials("bitcoinrpc", "letmepass")
+				.transport(new SimpleClientHttpRequestFactory())
+				.build();
+	}
+
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link RpcScheduler}.
+ *
+ * @author Claus Nielsen
+ */
+public class RpcSchedulerTest {
+
+	private final List<String> dispatchOrder = new CopyOnWriteArrayList<String>();
+
+
+	@Test
+	public void testHighPriorityDispatchedFirst() throws Exception {
+		RpcScheduler scheduler = new RpcScheduler(1);
+		scheduler.setAgingThresholdMillis(60000);
+		scheduler.acquire("getinfo");
+		Thread bulk = startCall(scheduler, "listunspent");
+		awaitQueueDepth(scheduler, RpcPriority.BULK, 1);
+		Thread high = startCall(scheduler, "sendrawtransaction");
+		awaitQueueDepth(scheduler, RpcPriority.HIGH, 1);
+		scheduler.release();
+		bulk.join();
+		high.join();
+		assertThat(dispatchOrder.get(0), equalTo("sendrawtransaction"));
+		assertThat(dispatchOrder.get(1), equalTo("listunspent"));
+		assertThat(scheduler.getStatistics(RpcPriority.BULK).getDispatched(), equalTo(1L));
+		assertThat(scheduler.getActiveCalls(), equalTo(0));
+	}
+
+
+	@Test
+	public void testStarvationProtection() throws Exception {
+		RpcScheduler scheduler = new RpcScheduler(1);
+		scheduler.setAgingThresholdMillis(0);
+		scheduler.acquire("getinfo");
+		Thread bulk = startCall(scheduler, "listunspent");
+		awaitQueueDepth(scheduler, RpcPriority.BULK, 1);
+		Thread high = startCall(scheduler, "sendrawtransaction");
+		awaitQueueDepth(scheduler, RpcPriority.HIGH, 1);
+		scheduler.release();
+		bulk.join();
+		high.join();
+		assertThat(dispatchOrder.get(0), equalTo("listunspent"));
+		assertThat(scheduler.getStatistics(RpcPriority.BULK).getPromoted(), equalTo(1L));
+	}
+
+
+	@Test
+	public void testPriorityOverride() throws Exception {
+		final RpcScheduler scheduler = new RpcScheduler(1);
+		RpcPriority priority = scheduler.callWithPriority(RpcPriority.HIGH, new Callable<RpcPriority>() {
+			@Override
+			public RpcPriority call() throws Exception {
+				return scheduler.priorityOf("listunspent");
+			}
+		});
+		assertThat(priority, equalTo(RpcPriority.HIGH));
+		assertThat(scheduler.priorityOf("listunspent"), equalTo(RpcPriority.BULK));
+	}
+
+
+	private Thread startCall(final RpcScheduler scheduler, final String method) {
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				scheduler.acquire(method);
+				dispatchOrder.add(method);
+				scheduler.release();
+			}
+		};
+		thread.start();
+		return thread;
+	}
+
+
+	private void awaitQueueDepth(RpcScheduler scheduler, RpcPriority priority, int depth) throws InterruptedException {
+		while (scheduler.getStatistics(priority).getQueueDepth() < depth) {
+			Thread.sleep(1);
+		}
+	}
+
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import dk.clanie.bitcoin.client.response.ValidateAddressResult;
+
+/**
+ * Tests {@link ValidateAddressCache}.
+ * 
+ * @author Claus Nielsen
+ */
+public class ValidateAddressCacheTest {
+
+	private ValidateAddressResult result = new ValidateAddressResult(true, "mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq", true, false, null, null, "Test");
+
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		ValidateAddressCache cache = new ValidateAddressCache(2, 60000);
+		cache.put("a", result);
+		cache.put("b", result);
+		cache.get("a");
+		cache.put("c", result);
+		assertThat(cache.size(), equalTo(2));
+		assertThat(cache.get("a"), sameInstance(result));
+		assertThat(cache.get("b"), nullValue());
+	}
+
+
+	@Test
+	public void testExpires() throws Exception {
+		ValidateAddressCache cache = new ValidateAddressCache(2, 0);
+		cache.put("a", result);
+		assertThat(cache.get("a"), nullValue());
+		assertThat(cache.size(), equalTo(0));
+	}
+
+
+	@Test
+	public void testPutSkippedWhenInvalidatedDuringLookup() throws Exception {
+		ValidateAddressCache cache = new ValidateAddressCache(2, 60000);
+		long generation = cache.generation();
+		cache.invalidate("a");
+		assertThat(cache.put("a", result, generation), is(false));
+		assertThat(cache.put("b", result, generation), is(true));
+		assertThat(cache.get("a"), nullValue());
+		assertThat(cache.get("b"), sameInstance(result));
+		assertThat(cache.put("a", result, cache.generation()), is(true));
+		assertThat(cache.get("a"), sameInstance(result));
+	}
+
+
+	@Test
+	public void testPutSkippedWhenClearedDuringLookup() throws Exception {
+		ValidateAddressCache cache = new ValidateAddressCache(2, 60000);
+		long generation = cache.generation();
+		cache.clear();
+		assertThat(cache.put("a", result, generation), is(false));
+		assertThat(cache.size(), equalTo(0));
+	}
+
+
+	@Test
+	public void testPutSkippedWhenInvalidationForgotten() throws Exception {
+		ValidateAddressCache cache = new ValidateAddressCache(2, 60000);
+		long generation = cache.generation();
+		cache.invalidate("a");
+		cache.invalidate("b");
+		cache.invalidate("c");
+		assertThat(cache.put("a", result, generation), is(false));
+		assertThat(cache.put("d", result, generation), is(false));
+		assertThat(cache.put("d", result, cache.generation()), is(true));
+	}
+
+
+}
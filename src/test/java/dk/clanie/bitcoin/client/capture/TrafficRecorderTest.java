@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.capture;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.FileCopyUtils;
+
+import dk.clanie.bitcoin.client.monitoring.Secrets;
+
+/**
+ * Tests {@link TrafficRecorder} and {@link CaptureReader}.
+ * 
+ * @author Claus Nielsen
+ */
+public class TrafficRecorderTest {
+
+	private File file;
+
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("capture", ".bin");
+	}
+
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+
+	@Test
+	public void testRecordAndRead() throws Exception {
+		TrafficRecorder recorder = new TrafficRecorder(file);
+		String response = "{\"result\":42,\"error\":null,\"id\":null}";
+		ClientHttpResponse passedOn = call(recorder, "{\"method\":\"getblockcount\",\"params\":[]}", 200, response);
+		assertThat(new String(FileCopyUtils.copyToByteArray(passedOn.getBody()), "UTF-8"), equalTo(response));
+		call(recorder, "{\"method\":\"getblock\",\"params\":[\"00ab\"]}", 500, "{\"result\":null,\"error\":{\"code\":-5,\"message\":\"Block not found\"},\"id\":null}");
+		recorder.close();
+
+		List<CapturedExchange> exchanges = CaptureReader.readAll(file);
+		assertThat(exchanges.size(), equalTo(2));
+		assertThat(exchanges.get(0).getMethod(), equalTo("getblockcount"));
+		assertThat(exchanges.get(0).getStatus(), equalTo(200));
+		assertThat(new String(exchanges.get(0).getResponse(), "UTF-8"), equalTo(response));
+		assertThat(exchanges.get(0).getDurationNanos(), greaterThan(0L));
+		assertThat(exchanges.get(1).getStatus(), equalTo(500));
+		assertThat(exchanges.get(1).getOffsetNanos(), greaterThanOrEqualTo(exchanges.get(0).getOffsetNanos()));
+	}
+
+
+	@Test
+	public void testSecretsRedacted() throws Exception {
+		TrafficRecorder recorder = new TrafficRecorder(file);
+		call(recorder, "{\"method\":\"walletpassphrase\",\"params\":[\"hunter2\",60]}", 200, "{\"result\":null,\"error\":null,\"id\":null}");
+		String key = "cVK1kTNuBgDHUvuzDGzKc4xw3ffDUEwKLXxQw3MbA2JcHXjDuP2m";
+		ClientHttpResponse passedOn = call(recorder, "{\"method\":\"dumpprivkey\",\"params\":[\"mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq\"]}",
+				200, "{\"result\":\"" + key + "\",\"error\":null,\"id\":null}");
+		assertThat(new String(FileCopyUtils.copyToByteArray(passedOn.getBody()), "UTF-8"), containsString(key));
+		call(recorder, "[{\"method\":\"getblockcount\",\"params\":[]},{\"method\":\"dumpprivkey\",\"params\":[\"mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq\"]}]",
+				200, "[{\"result\":42,\"error\":null,\"id\":null},{\"result\":\"" + key + "\",\"error\":null,\"id\":null}]");
+		recorder.close();
+
+		List<CapturedExchange> exchanges = CaptureReader.readAll(file);
+		assertThat(new String(exchanges.get(0).getRequest(), "UTF-8"), not(containsString("hunter2")));
+		assertThat(new String(exchanges.get(0).getRequest(), "UTF-8"), containsString(Secrets.REDACTED));
+		assertThat(new String(exchanges.get(1).getResponse(), "UTF-8"), not(containsString(key)));
+		assertThat(exchanges.get(2).getMethod(), equalTo(TrafficRecorder.BATCH));
+		String batchResponse = new String(exchanges.get(2).getResponse(), "UTF-8");
+		assertThat(batchResponse, not(containsString(key)));
+		assertThat(batchResponse, containsString("42"));
+	}
+
+
+	@Test
+	public void testAppendAndTruncatedRecord() throws Exception {
+		TrafficRecorder recorder = new TrafficRecorder(file);
+		call(recorder, "{\"method\":\"getblockcount\",\"params\":[]}", 200, "{\"result\":1,\"error\":null,\"id\":null}");
+		recorder.close();
+		recorder = new TrafficRecorder(file);
+		call(recorder, "{\"method\":\"getblockcount\",\"params\":[]}", 200, "{\"result\":2,\"error\":null,\"id\":null}");
+		call(recorder, "{\"method\":\"getblockcount\",\"params\":[]}", 200, "{\"result\":3,\"error\":null,\"id\":null}");
+		recorder.close();
+		assertThat(CaptureReader.readAll(file).size(), equalTo(3));
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 5);
+		raf.close();
+		List<CapturedExchange> exchanges = CaptureReader.readAll(file);
+		assertThat(exchanges.size(), equalTo(2));
+		assertThat(exchanges.get(1).getOffsetNanos(), greaterThanOrEqualTo(exchanges.get(0).getOffsetNanos()));
+	}
+
+
+	@Test
+	public void testUnwritableExchangeSkipped() throws Exception {
+		TrafficRecorder recorder = new TrafficRecorder(file);
+		StringBuilder method = new StringBuilder();
+		while (method.length() <= 65535) {
+			method.append("getblockcount");
+		}
+		call(recorder, "{\"method\":\"" + method + "\",\"params\":[]}", 200, "{\"result\":null,\"error\":null,\"id\":null}");
+		call(recorder, "{\"method\":\"getblockcount\",\"params\":[]}", 200, "{\"result\":1,\"error\":null,\"id\":null}");
+		recorder.close();
+
+		List<CapturedExchange> exchanges = CaptureReader.readAll(file);
+		assertThat(exchanges.size(), equalTo(1));
+		assertThat(exchanges.get(0).getMethod(), equalTo("getblockcount"));
+	}
+
+
+	private static ClientHttpResponse call(TrafficRecorder recorder, String request, final int status, final String response) throws IOException {
+		return recorder.intercept(null, request.getBytes("UTF-8"), new ClientHttpRequestExecution() {
+			@Override
+			public ClientHttpResponse execute(HttpRequest request, byte[] body) throws IOException {
+				return new CannedResponse(status, response.getBytes("UTF-8"));
+			}
+		});
+	}
+
+
+	private static class CannedResponse implements ClientHttpResponse {
+
+		private final int status;
+		private final byte[] body;
+
+
+		CannedResponse(int status, byte[] body) {
+			this.status = status;
+			this.body = body;
+		}
+
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(body);
+		}
+
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return new HttpHeaders();
+		}
+
+
+		@Override
+		public HttpStatus getStatusCode() {
+			return HttpStatus.valueOf(status);
+		}
+
+
+		@Override
+		public int getRawStatusCode() {
+			return status;
+		}
+
+
+		@Override
+		public String getStatusText() {
+			return getStatusCode().getReasonPhrase();
+		}
+
+
+		@Override
+		public void close() {
+		}
+
+
+	}
+
+
+}
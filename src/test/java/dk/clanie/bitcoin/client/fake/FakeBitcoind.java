@@ -0,0 +1,406 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.fake;
+
+import static dk.clanie.util.Util.firstNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.BasicAuthenticator;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process JSON-RPC server answering like bitcoind, for testing the
+ * client without a running bitcoind.
+ * <p>
+ * Like bitcoind it requires Basic authentication, answers errors with HTTP
+ * 500 (404 for unknown methods) and an error object in the body, and
+ * answers batches, ie. arrays of requests, with an array of responses.
+ * <p>
+ * Calls are answered with the results of the sample responses in
+ * src/test/resources/sampleResponse, unless another result or a
+ * {@link FakeResponder} has been set for the method. Each call takes a time
+ * drawn from a {@link FakeLatency}, and errors and dropped connections can
+ * be injected at given rates. At most
+ * {@link #setMaxConcurrentRequests(int)} requests are executed at a time,
+ * like bitcoind's rpcthreads; others wait.
+ * 
+ * @author Claus Nielsen
+ */
+public class FakeBitcoind {
+
+	public static final int METHOD_NOT_FOUND = -32601;
+
+	private static final String SAMPLES = "src/test/resources/sampleResponse/";
+
+	/**
+	 * Sample response answering each method by default.
+	 */
+	private static final String[][] SAMPLE_RESPONSES = {
+		{"addmultisigaddress", "StringResponse_addMultiSigAddress"},
+		{"backupwallet", "VoidResponse"},
+		{"createmultisig", "CreateMultiSigResponse"},
+		{"createrawtransaction", "StringResponse_creteRawTransaction"},
+		{"decoderawtransaction", "DecodeRawTransactionResponse"},
+		{"dumpprivkey", "StringResponse_dumpPrivateKey"},
+		{"encryptwallet", "StringResponse_encryptWallet"},
+		{"getaccount", "StringResponse_getAccount"},
+		{"getaddednodeinfo", "GetAddedNodeInfoResponse_dnsArgTrue"},
+		{"getaddressesbyaccount", "StringArrayResponse_getAddressesByAccount"},
+		{"getbalance", "BigDecimalResponse_getBalance"},
+		{"getblock", "GetBlockResponse"},
+		{"getblockcount", "LongResponse_getBlockCount"},
+		{"getblocktemplate", "GetBlockTemplateResponse"},
+		{"getinfo", "GetInfoResponse"},
+		{"getmininginfo", "GetMiningInfoResponse"},
+		{"getpeerinfo", "GetPeerInfoResponse"},
+		{"getrawtransaction", "ByteArrayResponse_getRawTransaction"},
+		{"gettransaction", "GetTransactionResponse"},
+		{"gettxout", "GetTxOutResponse"},
+		{"gettxoutsetinfo", "GetTxOutSetInfoResponse"},
+		{"getwork", "GetWorkResponse"},
+		{"help", "StringResponse_help"},
+		{"importprivkey", "VoidResponse"},
+		{"keypoolrefill", "VoidResponse"},
+		{"listaccounts", "_ListAccountsResponse"},
+		{"listaddressgroupings", "_ListAddressGroupingsResponse"},
+		{"listlockunspent", "ListLockUnspentResponse"},
+		{"listreceivedbyaccount", "ListReceivedByAccountResponse"},
+		{"listreceivedbyaddress", "ListReceivedByAddressResponse"},
+		{"listsinceblock", "ListSinceBlockResponse"},
+		{"listtransactions", "ListTransactionsResponse"},
+		{"listunspent", "ListUnspentResponse"},
+		{"lockunspent", "BooleanResponse"},
+		{"move", "BooleanResponse"},
+		{"setaccount", "VoidResponse"},
+		{"settxfee", "BooleanResponse"},
+		{"signrawtransaction", "SignRawTransactionResponse"},
+		{"validateaddress", "ValidateAddressResponse"},
+		{"walletlock", "VoidResponse"},
+		{"walletpassphrase", "VoidResponse"},
+		{"walletpassphrasechange", "VoidResponse"}};
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final String user;
+	private final String password;
+	private final ConcurrentMap<String, JsonNode> results = new ConcurrentHashMap<String, JsonNode>();
+	private final ConcurrentMap<String, FakeResponder> responders = new ConcurrentHashMap<String, FakeResponder>();
+	private final ConcurrentMap<String, FakeLatency> latencies = new ConcurrentHashMap<String, FakeLatency>();
+	private final ConcurrentMap<String, AtomicLong> callCounts = new ConcurrentHashMap<String, AtomicLong>();
+	private final AtomicLong requestCount = new AtomicLong();
+	private volatile FakeLatency latency = FakeLatency.NONE;
+	private volatile double errorRate = 0;
+	private volatile int injectedErrorCode;
+	private volatile String injectedErrorMessage;
+	private volatile double dropRate = 0;
+	private int maxConcurrentRequests = 4;
+	private HttpServer server;
+	private ExecutorService executor;
+
+
+	/**
+	 * Creates server accepting the given credentials.
+	 * 
+	 * @param user
+	 * @param password
+	 * @throws IOException if the sample responses can't be read.
+	 */
+	public FakeBitcoind(String user, String password) throws IOException {
+		this.user = user;
+		this.password = password;
+		for (String[] sample : SAMPLE_RESPONSES) {
+			results.put(sample[0], objectMapper.readTree(new File(SAMPLES + sample[1] + ".json")).get("result"));
+		}
+	}
+
+
+	/**
+	 * Starts the server on a free port.
+	 * 
+	 * @throws IOException
+	 */
+	public void start() throws IOException {
+		start(0);
+	}
+
+
+	/**
+	 * Starts the server.
+	 * 
+	 * @param port - port on localhost, 0 for any free port.
+	 * @throws IOException
+	 */
+	public synchronized void start(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", port), 50);
+		HttpContext context = server.createContext("/", new Handler());
+		context.setAuthenticator(new BasicAuthenticator("jsonrpc") {
+			@Override
+			public boolean checkCredentials(String username, String pwd) {
+				return user.equals(username) && password.equals(pwd);
+			}
+		});
+		executor = Executors.newFixedThreadPool(maxConcurrentRequests);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+
+	/**
+	 * Stops the server.
+	 */
+	public synchronized void stop() {
+		if (server == null) return;
+		server.stop(0);
+		executor.shutdownNow();
+		server = null;
+	}
+
+
+	public synchronized int getPort() {
+		return server.getAddress().getPort();
+	}
+
+
+	public String getUrl() {
+		return "http://localhost:" + getPort();
+	}
+
+
+	/**
+	 * Sets the number of requests executed at a time. Must be set before
+	 * the server is started.
+	 * 
+	 * @param maxConcurrentRequests - default 4, like bitcoind's rpcthreads.
+	 */
+	public synchronized void setMaxConcurrentRequests(int maxConcurrentRequests) {
+		if (server != null) throw new IllegalStateException("Server is running.");
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+
+	/**
+	 * Sets the result of a method, replacing the sample response.
+	 * 
+	 * @param method
+	 * @param result
+	 */
+	public void setResult(String method, JsonNode result) {
+		results.put(method, result);
+	}
+
+
+	/**
+	 * Sets a responder computing the results of a method.
+	 * 
+	 * @param method
+	 * @param responder
+	 */
+	public void setResponder(String method, FakeResponder responder) {
+		responders.put(method, responder);
+	}
+
+
+	/**
+	 * Sets the latency of calls without a latency of their own.
+	 * 
+	 * @param latency - default {@link FakeLatency#NONE}.
+	 */
+	public void setLatency(FakeLatency latency) {
+		this.latency = latency;
+	}
+
+
+	/**
+	 * Sets the latency of calls to a method.
+	 * 
+	 * @param method
+	 * @param latency
+	 */
+	public void setLatency(String method, FakeLatency latency) {
+		latencies.put(method, latency);
+	}
+
+
+	/**
+	 * Makes a share of all calls fail with the given error.
+	 * 
+	 * @param rate - share of calls, 0 to 1.
+	 * @param code - bitcoind error code.
+	 * @param message
+	 */
+	public void injectErrors(double rate, int code, String message) {
+		this.injectedErrorCode = code;
+		this.injectedErrorMessage = message;
+		this.errorRate = rate;
+	}
+
+
+	/**
+	 * Makes a share of all requests be dropped, closing the connection
+	 * without answering.
+	 * 
+	 * @param rate - share of requests, 0 to 1.
+	 */
+	public void setDropRate(double rate) {
+		this.dropRate = rate;
+	}
+
+
+	/**
+	 * Gets the number of HTTP requests received, batches counting as one.
+	 * 
+	 * @return number of requests.
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+
+	/**
+	 * Gets the number of calls to a method, including calls in batches.
+	 * 
+	 * @param method
+	 * @return number of calls.
+	 */
+	public long getCallCount(String method) {
+		AtomicLong count = callCounts.get(method);
+		return count == null ? 0 : count.get();
+	}
+
+
+	private class Handler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			requestCount.incrementAndGet();
+			JsonNode request;
+			try {
+				request = objectMapper.readTree(exchange.getRequestBody());
+			} catch (IOException e) {
+				exchange.sendResponseHeaders(500, -1);
+				exchange.close();
+				return;
+			}
+			if (ThreadLocalRandom.current().nextDouble() < dropRate) {
+				exchange.close();
+				return;
+			}
+			int status = 200;
+			JsonNode response;
+			if (request.isArray()) {
+				ArrayNode responses = objectMapper.createArrayNode();
+				for (JsonNode call : request) {
+					responses.add(call(call));
+				}
+				response = responses;
+			} else {
+				response = call(request);
+				JsonNode error = response.get("error");
+				if (!error.isNull()) status = error.get("code").asInt() == METHOD_NOT_FOUND ? 404 : 500;
+			}
+			byte[] body = objectMapper.writeValueAsBytes(response);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(status, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+
+
+	}
+
+
+	/**
+	 * Executes one call.
+	 * 
+	 * @return response object.
+	 */
+	private ObjectNode call(JsonNode request) {
+		String method = request.path("method").asText();
+		count(method);
+		sleep(firstNotNull(latencies.get(method), latency).nextMicros(ThreadLocalRandom.current()));
+		ObjectNode response = objectMapper.createObjectNode();
+		try {
+			response.put("result", result(method, request.path("params")));
+			response.put("error", NullNode.getInstance());
+		} catch (FakeBitcoindError e) {
+			ObjectNode error = objectMapper.createObjectNode();
+			error.put("code", e.getCode());
+			error.put("message", e.getMessage());
+			response.put("result", NullNode.getInstance());
+			response.put("error", error);
+		}
+		JsonNode id = request.get("id");
+		response.put("id", id == null ? NullNode.getInstance() : id);
+		return response;
+	}
+
+
+	private JsonNode result(String method, JsonNode params) {
+		if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+			throw new FakeBitcoindError(injectedErrorCode, injectedErrorMessage);
+		}
+		FakeResponder responder = responders.get(method);
+		if (responder != null) return responder.respond(method, params);
+		JsonNode result = results.get(method);
+		if (result == null) throw new FakeBitcoindError(METHOD_NOT_FOUND, "Method not found");
+		return result;
+	}
+
+
+	private void count(String method) {
+		AtomicLong count = callCounts.get(method);
+		if (count == null) {
+			AtomicLong newCount = new AtomicLong();
+			count = callCounts.putIfAbsent(method, newCount);
+			if (count == null) count = newCount;
+		}
+		count.incrementAndGet();
+	}
+
+
+	private static void sleep(long micros) {
+		if (micros <= 0) return;
+		try {
+			TimeUnit.MICROSECONDS.sleep(micros);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+}
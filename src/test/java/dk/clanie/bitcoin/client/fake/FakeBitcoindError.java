@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.fake;
+
+/**
+ * Thrown by a {@link FakeResponder} to make {@link FakeBitcoind} answer
+ * with an error.
+ * 
+ * @author Claus Nielsen
+ */
+@SuppressWarnings("serial")
+public class FakeBitcoindError extends RuntimeException {
+
+	private final int code;
+
+
+	/**
+	 * Full constructor.
+	 * 
+	 * @param code - bitcoind error code, eg. -5 for an invalid address.
+	 * @param message
+	 */
+	public FakeBitcoindError(int code, String message) {
+		super(message);
+		this.code = code;
+	}
+
+
+	public int getCode() {
+		return code;
+	}
+
+
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.fake;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Tests {@link FakeBitcoind} and {@link LoadGenerator} with a plain
+ * HttpClient.
+ * 
+ * @author Claus Nielsen
+ */
+public class FakeBitcoindTest {
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+	private FakeBitcoind bitcoind;
+	private DefaultHttpClient httpClient;
+	private int status;
+
+
+	@Before
+	public void setUp() throws Exception {
+		bitcoind = new FakeBitcoind("bitcoinrpc", "letmepass");
+		bitcoind.setMaxConcurrentRequests(2);
+		bitcoind.start();
+		PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager();
+		connectionManager.setDefaultMaxPerRoute(8);
+		httpClient = new DefaultHttpClient(connectionManager);
+		httpClient.getCredentialsProvider().setCredentials(
+				new AuthScope("localhost", bitcoind.getPort()),
+				new UsernamePasswordCredentials("bitcoinrpc", "letmepass"));
+	}
+
+
+	@After
+	public void tearDown() {
+		httpClient.getConnectionManager().shutdown();
+		bitcoind.stop();
+	}
+
+
+	@Test
+	public void testAuthenticationAndSampleResponse() throws Exception {
+		DefaultHttpClient anonymous = new DefaultHttpClient();
+		HttpResponse response = anonymous.execute(post("{\"method\":\"getinfo\",\"params\":[],\"id\":\"1\"}", bitcoind.getUrl()));
+		assertThat(response.getStatusLine().getStatusCode(), equalTo(401));
+		anonymous.getConnectionManager().shutdown();
+
+		JsonNode getInfo = post("{\"jsonrpc\":\"1.0\",\"method\":\"getinfo\",\"params\":[],\"id\":\"7\"}");
+		assertThat(status, equalTo(200));
+		JsonNode sample = objectMapper.readTree(new File("src/test/resources/sampleResponse/GetInfoResponse.json"));
+		assertThat(getInfo.get("result"), equalTo(sample.get("result")));
+		assertThat(getInfo.get("error").isNull(), equalTo(true));
+		assertThat(getInfo.get("id").asText(), equalTo("7"));
+		assertThat(bitcoind.getCallCount("getinfo"), equalTo(1L));
+	}
+
+
+	@Test
+	public void testErrors() throws Exception {
+		JsonNode unknown = post("{\"method\":\"getnothing\",\"params\":[],\"id\":\"1\"}");
+		assertThat(status, equalTo(404));
+		assertThat(unknown.get("error").get("code").asInt(), equalTo(FakeBitcoind.METHOD_NOT_FOUND));
+
+		bitcoind.setResponder("validateaddress", new FakeResponder() {
+			@Override
+			public JsonNode respond(String method, JsonNode params) {
+				throw new FakeBitcoindError(-5, "Invalid Bitcoin address");
+			}
+		});
+		JsonNode invalid = post("{\"method\":\"validateaddress\",\"params\":[\"bad\"],\"id\":\"2\"}");
+		assertThat(status, equalTo(500));
+		assertThat(invalid.get("result").isNull(), equalTo(true));
+		assertThat(invalid.get("error").get("code").asInt(), equalTo(-5));
+		assertThat(invalid.get("id").asText(), equalTo("2"));
+
+		bitcoind.injectErrors(1, -28, "Loading block index...");
+		JsonNode loading = post("{\"method\":\"getinfo\",\"params\":[],\"id\":\"3\"}");
+		assertThat(status, equalTo(500));
+		assertThat(loading.get("error").get("message").asText(), equalTo("Loading block index..."));
+	}
+
+
+	@Test
+	public void testBatch() throws Exception {
+		JsonNode responses = post("[{\"method\":\"getblockcount\",\"params\":[],\"id\":1},"
+				+ "{\"method\":\"getnothing\",\"params\":[],\"id\":2}]");
+		assertThat(status, equalTo(200));
+		assertThat(responses.size(), equalTo(2));
+		assertThat(responses.get(0).get("id").asInt(), equalTo(1));
+		assertThat(responses.get(0).get("result").isNumber(), equalTo(true));
+		assertThat(responses.get(1).get("error").get("code").asInt(), equalTo(FakeBitcoind.METHOD_NOT_FOUND));
+		assertThat(bitcoind.getRequestCount(), equalTo(1L));
+	}
+
+
+	@Test
+	public void testDroppedConnection() throws Exception {
+		bitcoind.setDropRate(1);
+		try {
+			post("{\"method\":\"getinfo\",\"params\":[],\"id\":\"1\"}");
+			fail("Dropped request should fail.");
+		} catch (IOException e) {
+			// Expected.
+		}
+	}
+
+
+	@Test
+	public void testLoadLimitedByConcurrentRequests() throws Exception {
+		bitcoind.setLatency(FakeLatency.fixed(10));
+		LoadGenerator.Report report = new LoadGenerator(4, 500).run(new Callable<JsonNode>() {
+			@Override
+			public JsonNode call() throws Exception {
+				return post("{\"method\":\"getblockcount\",\"params\":[],\"id\":\"1\"}");
+			}
+		});
+		assertThat(report.getCalls(), greaterThan(10L));
+		assertThat(report.getErrors(), equalTo(0L));
+		// 2 requests at a time, 10 ms each.
+		assertThat(report.getThroughput(), lessThanOrEqualTo(220.0));
+		assertThat(report.getLatency().getPercentileNanos(50), greaterThanOrEqualTo(15000000L));
+	}
+
+
+	private JsonNode post(String json) throws IOException {
+		HttpResponse response = httpClient.execute(post(json, bitcoind.getUrl()));
+		status = response.getStatusLine().getStatusCode();
+		return objectMapper.readTree(EntityUtils.toString(response.getEntity()));
+	}
+
+
+	private HttpPost post(String json, String url) throws IOException {
+		HttpPost post = new HttpPost(url);
+		post.setEntity(new StringEntity(json));
+		return post;
+	}
+
+
+}
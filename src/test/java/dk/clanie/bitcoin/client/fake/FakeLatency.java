@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.fake;
+
+import java.util.Random;
+
+/**
+ * Distribution of the time {@link FakeBitcoind} takes to execute a call.
+ * 
+ * @author Claus Nielsen
+ */
+public abstract class FakeLatency {
+
+	/**
+	 * No delay.
+	 */
+	public static final FakeLatency NONE = fixed(0);
+
+
+	/**
+	 * Draws the time to spend on a call.
+	 * 
+	 * @param random
+	 * @return microseconds.
+	 */
+	public abstract long nextMicros(Random random);
+
+
+	/**
+	 * Same latency for every call.
+	 * 
+	 * @param millis
+	 */
+	public static FakeLatency fixed(final double millis) {
+		return new FakeLatency() {
+			@Override
+			public long nextMicros(Random random) {
+				return (long) (millis * 1000);
+			}
+		};
+	}
+
+
+	/**
+	 * Latency evenly distributed between min and max.
+	 * 
+	 * @param minMillis
+	 * @param maxMillis
+	 */
+	public static FakeLatency uniform(final double minMillis, final double maxMillis) {
+		return new FakeLatency() {
+			@Override
+			public long nextMicros(Random random) {
+				return (long) ((minMillis + random.nextDouble() * (maxMillis - minMillis)) * 1000);
+			}
+		};
+	}
+
+
+	/**
+	 * Exponentially distributed latency.
+	 * 
+	 * @param meanMillis
+	 */
+	public static FakeLatency exponential(final double meanMillis) {
+		return new FakeLatency() {
+			@Override
+			public long nextMicros(Random random) {
+				return (long) (-Math.log(1 - random.nextDouble()) * meanMillis * 1000);
+			}
+		};
+	}
+
+
+	/**
+	 * Log-normally distributed latency, ie. mostly close to the median with a
+	 * long tail of slow calls, like real RPC latencies.
+	 * 
+	 * @param medianMillis
+	 * @param sigma - spread; 0.5 gives a p99 of about 3 times the median.
+	 */
+	public static FakeLatency logNormal(final double medianMillis, final double sigma) {
+		return new FakeLatency() {
+			@Override
+			public long nextMicros(Random random) {
+				return (long) (medianMillis * Math.exp(sigma * random.nextGaussian()) * 1000);
+			}
+		};
+	}
+
+
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.fake;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.BitcoindClientDefaultConfig;
+import dk.clanie.bitcoin.client.monitoring.LatencyHistogram;
+import dk.clanie.bitcoin.client.monitoring.MethodMetrics;
+import dk.clanie.bitcoin.client.monitoring.RpcMetricsRegistry;
+import dk.clanie.bitcoin.client.monitoring.RpcPhase;
+
+/**
+ * Makes calls from a number of threads for a while and reports throughput
+ * and latency.
+ * <p>
+ * {@link #main(String[])} load tests the client, as configured by
+ * {@link BitcoindClientDefaultConfig}, against a {@link FakeBitcoind}. Run
+ * with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=dk.clanie.bitcoin.client.fake.LoadGenerator
+ * -Dexec.args="threads seconds medianMillis"</code> or from the IDE.
+ * 
+ * @author Claus Nielsen
+ */
+public class LoadGenerator {
+
+	private final int threads;
+	private final long durationMillis;
+
+
+	/**
+	 * Creates load generator.
+	 * 
+	 * @param threads - number of threads calling.
+	 * @param durationMillis - how long to call.
+	 */
+	public LoadGenerator(int threads, long durationMillis) {
+		this.threads = threads;
+		this.durationMillis = durationMillis;
+	}
+
+
+	/**
+	 * Makes calls until the duration has passed.
+	 * 
+	 * @param call - the call to make.
+	 * @return {@link Report}
+	 * @throws InterruptedException
+	 */
+	public Report run(final Callable<?> call) throws InterruptedException {
+		final LatencyHistogram latency = new LatencyHistogram();
+		final AtomicLong errors = new AtomicLong();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		final long[] deadline = new long[1];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread("load-" + i) {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					while (System.nanoTime() < deadline[0]) {
+						long callStart = System.nanoTime();
+						try {
+							call.call();
+						} catch (Exception e) {
+							errors.incrementAndGet();
+						}
+						latency.record(System.nanoTime() - callStart);
+					}
+				}
+			};
+			workers[i].start();
+		}
+		long startNanos = System.nanoTime();
+		deadline[0] = startNanos + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		return new Report(latency, errors.get(), System.nanoTime() - startNanos);
+	}
+
+
+	/**
+	 * Outcome of a load test.
+	 */
+	public static class Report {
+
+		private final LatencyHistogram latency;
+		private final long errors;
+		private final long elapsedNanos;
+
+
+		Report(LatencyHistogram latency, long errors, long elapsedNanos) {
+			this.latency = latency;
+			this.errors = errors;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+
+		public long getCalls() {
+			return latency.getCount();
+		}
+
+
+		public long getErrors() {
+			return errors;
+		}
+
+
+		/**
+		 * Gets the number of calls per second.
+		 */
+		public double getThroughput() {
+			return latency.getCount() * 1e9 / elapsedNanos;
+		}
+
+
+		public LatencyHistogram getLatency() {
+			return latency;
+		}
+
+
+		@Override
+		public String toString() {
+			return String.format("%d calls, %d errors, %.0f calls/s, latency mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+					getCalls(), errors, getThroughput(),
+					latency.getMeanNanos() / 1e6, latency.getPercentileNanos(50) / 1e6,
+					latency.getPercentileNanos(99) / 1e6, latency.getMaxNanos() / 1e6);
+		}
+
+
+	}
+
+
+	/**
+	 * Load tests getinfo calls against a fake bitcoind answering with
+	 * log-normally distributed latency.
+	 * 
+	 * @param args - optional: threads (default 16), seconds (10) and median
+	 *            latency in milliseconds (2).
+	 */
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		double medianMillis = args.length > 2 ? Double.parseDouble(args[2]) : 2;
+
+		FakeBitcoind bitcoind = new FakeBitcoind("bitcoinrpc", "letmepass");
+		bitcoind.setLatency(FakeLatency.logNormal(medianMillis, 0.5));
+		bitcoind.start();
+		System.setProperty("bitcoind.client.host", "localhost");
+		System.setProperty("bitcoind.client.port", String.valueOf(bitcoind.getPort()));
+		System.setProperty("bitcoind.client.user", "bitcoinrpc");
+		System.setProperty("bitcoind.client.password", "letmepass");
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(BitcoindClientDefaultConfig.class);
+		try {
+			final BitcoindClient client = context.getBean(BitcoindClient.class);
+			Callable<Object> getInfo = new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return client.getInfo();
+				}
+			};
+			new LoadGenerator(threads, 2000).run(getInfo);
+			RpcMetricsRegistry registry = context.getBean(RpcMetricsRegistry.class);
+			registry.reset();
+
+			Report report = new LoadGenerator(threads, seconds * 1000L).run(getInfo);
+			System.out.println("getinfo, " + threads + " threads: " + report);
+			MethodMetrics metrics = registry.getMethodMetrics("getinfo");
+			for (RpcPhase phase : RpcPhase.values()) {
+				System.out.println(String.format("  %-16s mean %.3f ms", phase, metrics.getPhaseMeanNanos(phase) / 1e6));
+			}
+		} finally {
+			context.close();
+			bitcoind.stop();
+		}
+	}
+
+
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.fake;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static dk.clanie.collections.CollectionFactory.newHashMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.client.capture.CaptureReader;
+import dk.clanie.bitcoin.client.capture.CapturedExchange;
+import dk.clanie.bitcoin.client.capture.TrafficRecorder;
+
+/**
+ * Serves traffic recorded by {@link TrafficRecorder} back through a
+ * {@link FakeBitcoind}, for benchmarking client changes against a recorded
+ * workload.
+ * <p>
+ * A call is answered with the next recorded response to the same method
+ * and params, in recorded order and starting over when they run out. If the
+ * params weren't recorded, eg. because they were redacted, the recorded
+ * responses to the method are used. Errors are answered as recorded.
+ * <p>
+ * Each answer takes the recorded duration divided by the
+ * {@link #setSpeedup(double) speedup}. Calls in a recorded batch each take
+ * an equal share of the batch's duration.
+ * 
+ * @author Claus Nielsen
+ */
+public class TrafficReplayer {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final List<CapturedExchange> exchanges;
+	private final Map<String, Answers> answersByCall = newHashMap();
+	private final Map<String, Answers> answersByMethod = newHashMap();
+	private volatile double speedup = 1;
+
+
+	/**
+	 * Creates replayer serving the exchanges in a capture file.
+	 * 
+	 * @param captureFile
+	 * @throws IOException if the file can't be read.
+	 */
+	public TrafficReplayer(File captureFile) throws IOException {
+		this(CaptureReader.readAll(captureFile));
+	}
+
+
+	/**
+	 * Creates replayer serving the given exchanges.
+	 * <p>
+	 * Exchanges without a JSON response, such as authentication failures,
+	 * are skipped.
+	 * 
+	 * @param exchanges
+	 * @throws IOException if a request isn't JSON.
+	 */
+	public TrafficReplayer(List<CapturedExchange> exchanges) throws IOException {
+		this.exchanges = Collections.unmodifiableList(exchanges);
+		for (CapturedExchange exchange : exchanges) {
+			JsonNode response;
+			try {
+				response = objectMapper.readTree(exchange.getResponse());
+			} catch (IOException e) {
+				continue;
+			}
+			if (response == null) continue;
+			List<JsonNode> calls = elements(objectMapper.readTree(exchange.getRequest()));
+			List<JsonNode> responses = elements(response);
+			long delayNanos = exchange.getDurationNanos() / Math.max(calls.size(), 1);
+			for (int i = 0; i < calls.size() && i < responses.size(); i++) {
+				String method = calls.get(i).path("method").asText();
+				Answer answer = new Answer(responses.get(i).path("result"), responses.get(i).path("error"), delayNanos);
+				answers(answersByCall, key(method, calls.get(i).path("params"))).add(answer);
+				answers(answersByMethod, method).add(answer);
+			}
+		}
+	}
+
+
+	/**
+	 * Sets how much faster than recorded calls are answered.
+	 * 
+	 * @param speedup - 1, the default, for the recorded durations,
+	 *            <code>Double.POSITIVE_INFINITY</code> to answer at once.
+	 */
+	public void setSpeedup(double speedup) {
+		if (speedup <= 0) throw new IllegalArgumentException("speedup must be positive.");
+		this.speedup = speedup;
+	}
+
+
+	/**
+	 * Gets the recorded exchanges, eg. for driving a client with the recorded
+	 * calls at their recorded offsets.
+	 * 
+	 * @return exchanges in recorded order.
+	 */
+	public List<CapturedExchange> getExchanges() {
+		return exchanges;
+	}
+
+
+	/**
+	 * Makes a FakeBitcoind answer the recorded methods with the recorded
+	 * responses.
+	 * <p>
+	 * Other methods are still answered as set up on the FakeBitcoind.
+	 * 
+	 * @param bitcoind
+	 */
+	public void install(FakeBitcoind bitcoind) {
+		FakeResponder responder = new FakeResponder() {
+			@Override
+			public JsonNode respond(String method, JsonNode params) {
+				return answer(method, params);
+			}
+		};
+		for (String method : answersByMethod.keySet()) {
+			bitcoind.setResponder(method, responder);
+		}
+	}
+
+
+	private JsonNode answer(String method, JsonNode params) {
+		Answers answers = answersByCall.get(key(method, params));
+		if (answers == null) answers = answersByMethod.get(method);
+		Answer answer = answers.next();
+		sleep((long) (answer.delayNanos / speedup));
+		if (!answer.error.isNull() && !answer.error.isMissingNode()) {
+			throw new FakeBitcoindError(answer.error.path("code").asInt(), answer.error.path("message").asText());
+		}
+		return answer.result;
+	}
+
+
+	private static String key(String method, JsonNode params) {
+		return method + " " + params;
+	}
+
+
+	private static Answers answers(Map<String, Answers> map, String key) {
+		Answers answers = map.get(key);
+		if (answers == null) {
+			answers = new Answers();
+			map.put(key, answers);
+		}
+		return answers;
+	}
+
+
+	/**
+	 * Gets the calls in a batch, or the call itself if it isn't a batch.
+	 */
+	private static List<JsonNode> elements(JsonNode node) {
+		if (!node.isArray()) return Collections.singletonList(node);
+		List<JsonNode> elements = newArrayList();
+		for (JsonNode element : node) {
+			elements.add(element);
+		}
+		return elements;
+	}
+
+
+	private static void sleep(long nanos) {
+		if (nanos <= 0) return;
+		try {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * A recorded response to one call.
+	 */
+	private static class Answer {
+
+		private final JsonNode result;
+		private final JsonNode error;
+		private final long delayNanos;
+
+		private Answer(JsonNode result, JsonNode error, long delayNanos) {
+			this.result = result;
+			this.error = error;
+			this.delayNanos = delayNanos;
+		}
+
+	}
+
+
+	/**
+	 * Recorded responses to a call or method, served in turn.
+	 */
+	private static class Answers {
+
+		private final List<Answer> answers = newArrayList();
+		private final AtomicInteger next = new AtomicInteger();
+
+		private void add(Answer answer) {
+			answers.add(answer);
+		}
+
+		private Answer next() {
+			return answers.get((next.getAndIncrement() & Integer.MAX_VALUE) % answers.size());
+		}
+
+	}
+
+
+}
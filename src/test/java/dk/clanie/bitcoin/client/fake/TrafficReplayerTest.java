@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.fake;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.client.capture.CapturedExchange;
+
+/**
+ * Tests {@link TrafficReplayer}.
+ * 
+ * @author Claus Nielsen
+ */
+public class TrafficReplayerTest {
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+	private FakeBitcoind bitcoind;
+	private DefaultHttpClient httpClient;
+	private List<CapturedExchange> exchanges = newArrayList();
+
+
+	@Before
+	public void setUp() throws Exception {
+		bitcoind = new FakeBitcoind("bitcoinrpc", "letmepass");
+		bitcoind.start();
+		httpClient = new DefaultHttpClient();
+		httpClient.getCredentialsProvider().setCredentials(
+				new AuthScope("localhost", bitcoind.getPort()),
+				new UsernamePasswordCredentials("bitcoinrpc", "letmepass"));
+	}
+
+
+	@After
+	public void tearDown() {
+		httpClient.getConnectionManager().shutdown();
+		bitcoind.stop();
+	}
+
+
+	@Test
+	public void testRecordedResponses() throws Exception {
+		record("{\"method\":\"getbalance\",\"params\":[\"alice\"]}", "{\"result\":1.5,\"error\":null,\"id\":null}", 0);
+		record("{\"method\":\"getbalance\",\"params\":[\"alice\"]}", "{\"result\":2.5,\"error\":null,\"id\":null}", 0);
+		record("{\"method\":\"getbalance\",\"params\":[\"bob\"]}", "{\"result\":7,\"error\":null,\"id\":null}", 0);
+		record("{\"method\":\"getblock\",\"params\":[\"00\"]}", "{\"result\":null,\"error\":{\"code\":-5,\"message\":\"Block not found\"},\"id\":null}", 0);
+		record("[{\"method\":\"getblockcount\",\"params\":[]}]", "[{\"result\":250000,\"error\":null,\"id\":null}]", 0);
+		TrafficReplayer replayer = new TrafficReplayer(exchanges);
+		replayer.install(bitcoind);
+
+		assertThat(post("getbalance", "[\"alice\"]").get("result").asText(), equalTo("1.5"));
+		assertThat(post("getbalance", "[\"alice\"]").get("result").asText(), equalTo("2.5"));
+		assertThat(post("getbalance", "[\"alice\"]").get("result").asText(), equalTo("1.5"));
+		assertThat(post("getbalance", "[\"bob\"]").get("result").asInt(), equalTo(7));
+		assertThat(post("getbalance", "[\"carol\"]").get("result").isNumber(), equalTo(true));
+		assertThat(post("getblock", "[\"00\"]").get("error").get("code").asInt(), equalTo(-5));
+		assertThat(post("getblockcount", "[]").get("result").asLong(), equalTo(250000L));
+	}
+
+
+	@Test
+	public void testSpeedup() throws Exception {
+		record("{\"method\":\"getblockcount\",\"params\":[]}", "{\"result\":1,\"error\":null,\"id\":null}", 400);
+		TrafficReplayer replayer = new TrafficReplayer(exchanges);
+		replayer.setSpeedup(10);
+		replayer.install(bitcoind);
+		long start = System.nanoTime();
+		post("getblockcount", "[]");
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertThat(millis, greaterThanOrEqualTo(40L));
+		assertThat(millis, lessThan(400L));
+	}
+
+
+	private void record(String request, String response, long durationMillis) throws Exception {
+		String method = request.startsWith("[") ? "batch" : objectMapper.readTree(request).get("method").asText();
+		exchanges.add(new CapturedExchange(exchanges.size(), TimeUnit.MILLISECONDS.toNanos(durationMillis), 200,
+				method, request.getBytes("UTF-8"), response.getBytes("UTF-8")));
+	}
+
+
+	private JsonNode post(String method, String params) throws Exception {
+		HttpPost post = new HttpPost(bitcoind.getUrl());
+		post.setEntity(new StringEntity("{\"method\":\"" + method + "\",\"params\":" + params + ",\"id\":\"1\"}"));
+		return objectMapper.readTree(EntityUtils.toString(httpClient.execute(post).getEntity()));
+	}
+
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.client.response.BitcoindErrorResponse;
+import dk.clanie.bitcoin.exception.server.InvalidAddressException;
+
+/**
+ * Tests {@link JfrCallListener} by recording calls and reading the
+ * recording back.
+ * <p>
+ * Flight Recorder is used through reflection as the project is built for
+ * Java 7. The test does nothing on JVMs without JFR.
+ * 
+ * @author Claus Nielsen
+ */
+public class JfrCallListenerTest {
+
+	private JfrCallListener listener = new JfrCallListener();
+
+
+	@Test
+	public void testEventsRecorded() throws Exception {
+		if (!listener.isAvailable()) return;
+		assertThat(listener.isEnabled(), equalTo(false));
+		call("getblockcount", null);
+
+		Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+		Object recording = recordingClass.newInstance();
+		recordingClass.getMethod("enable", String.class).invoke(recording, JfrCallListener.EVENT_NAME);
+		recordingClass.getMethod("start").invoke(recording);
+		assertThat(listener.isEnabled(), equalTo(true));
+		call("getinfo", null);
+		BitcoindErrorResponse invalidAddress = new ObjectMapper().readValue(
+				"{\"result\":null,\"error\":{\"code\":-5,\"message\":\"Invalid Bitcoin address\"},\"id\":null}",
+				BitcoindErrorResponse.class);
+		call("validateaddress", new InvalidAddressException(invalidAddress));
+		call("getbalance", new IllegalStateException("Connection reset"));
+		recordingClass.getMethod("stop").invoke(recording);
+		File file = File.createTempFile("rpc", ".jfr");
+		try {
+			recordingClass.getMethod("dump", Path.class).invoke(recording, file.toPath());
+			recordingClass.getMethod("close").invoke(recording);
+
+			List<String> events = newArrayList();
+			List<?> recorded = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+					.getMethod("readAllEvents", Path.class).invoke(null, file.toPath());
+			for (Object event : recorded) {
+				events.add(get(event, "method") + " " + get(event, "paramCount") + " "
+						+ get(event, "outcome") + " " + get(event, "errorCode"));
+			}
+			assertThat(events.size(), equalTo(3));
+			assertThat(events.get(0), equalTo("getinfo 0 OK 0"));
+			assertThat(events.get(1), equalTo("validateaddress 1 Error -5 -5"));
+			assertThat(events.get(2), equalTo("getbalance 0 java.lang.IllegalStateException 0"));
+		} finally {
+			file.delete();
+		}
+	}
+
+
+	private void call(String method, RuntimeException failure) {
+		RpcCall call = RpcCall.begin(method, failure instanceof InvalidAddressException ? Arrays.asList("bad") : null);
+		listener.callStarted(call);
+		call.end(failure);
+		listener.callCompleted(call);
+	}
+
+
+	private static Object get(Object recordedEvent, String field) throws Exception {
+		return recordedEvent.getClass().getMethod("getValue", String.class).invoke(recordedEvent, field);
+	}
+
+
+}
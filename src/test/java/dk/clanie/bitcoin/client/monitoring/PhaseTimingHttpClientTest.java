@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests {@link PhaseTimingHttpClient} and
+ * {@link PhaseTimingConnectionManager} against a local HTTP server
+ * challenging for credentials like bitcoind does.
+ * 
+ * @author Claus Nielsen
+ */
+public class PhaseTimingHttpClientTest {
+
+	private static final long SERVER_MILLIS = 50;
+
+	private HttpServer server;
+	private PhaseTimingHttpClient httpClient;
+	private String url;
+
+
+	@Before
+	public void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.getRequestBody().close();
+				if (exchange.getRequestHeaders().getFirst("Authorization") == null) {
+					exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"jsonrpc\"");
+					exchange.sendResponseHeaders(401, -1);
+					exchange.close();
+					return;
+				}
+				try {
+					Thread.sleep(SERVER_MILLIS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				byte[] body = "{\"result\":0,\"error\":null,\"id\":null}".getBytes("UTF-8");
+				exchange.sendResponseHeaders(200, body.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+		server.start();
+		url = "http://localhost:" + server.getAddress().getPort() + "/";
+		httpClient = new PhaseTimingHttpClient(new PhaseTimingConnectionManager());
+		httpClient.getCredentialsProvider().setCredentials(
+				new AuthScope("localhost", server.getAddress().getPort()),
+				new UsernamePasswordCredentials("user", "password"));
+	}
+
+
+	@After
+	public void tearDown() {
+		httpClient.getConnectionManager().shutdown();
+		server.stop(0);
+	}
+
+
+	@Test
+	public void testPhasesTimed() throws Exception {
+		RpcCall first = call();
+		assertThat(first.getPhaseNanos(RpcPhase.POOL_WAIT), greaterThan(0L));
+		assertThat(first.getPhaseNanos(RpcPhase.CONNECT), greaterThan(0L));
+		assertThat(first.getPhaseNanos(RpcPhase.AUTH_CHALLENGE), greaterThan(0L));
+		assertThat(first.getPhaseNanos(RpcPhase.REQUEST_WRITE), greaterThan(0L));
+		assertThat(first.getPhaseNanos(RpcPhase.FIRST_BYTE), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(SERVER_MILLIS)));
+		assertThat(first.getPhaseNanos(RpcPhase.SCHEDULER_WAIT), equalTo(0L));
+
+		RpcCall second = call();
+		assertThat(second.getPhaseNanos(RpcPhase.CONNECT), equalTo(0L));
+		assertThat(second.getPhaseNanos(RpcPhase.FIRST_BYTE), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(SERVER_MILLIS)));
+	}
+
+
+	@Test
+	public void testNotTimedOutsideCall() throws Exception {
+		HttpResponse response = httpClient.execute(post());
+		assertThat(EntityUtils.toString(response.getEntity()).startsWith("{\"result\":0"), equalTo(true));
+		assertThat(RpcCall.current() == null, equalTo(true));
+	}
+
+
+	private RpcCall call() throws Exception {
+		RpcCall call = RpcCall.begin("getblockcount", null);
+		HttpResponse response = httpClient.execute(post());
+		assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+		EntityUtils.consume(response.getEntity());
+		call.end(null);
+		return call;
+	}
+
+
+	private HttpPost post() throws Exception {
+		HttpPost post = new HttpPost(url);
+		post.setEntity(new StringEntity("{\"jsonrpc\":\"1.0\",\"method\":\"getblockcount\",\"params\":[],\"id\":\"1\"}"));
+		return post;
+	}
+
+
+}
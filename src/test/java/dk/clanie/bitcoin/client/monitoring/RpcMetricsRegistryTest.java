@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.client.response.BitcoindErrorResponse;
+import dk.clanie.bitcoin.exception.server.BitcoinServerException;
+
+/**
+ * Tests {@link RpcMetricsRegistry} and {@link LatencyHistogram}.
+ * 
+ * @author Claus Nielsen
+ */
+public class RpcMetricsRegistryTest {
+
+	private RpcMetricsRegistry registry = new RpcMetricsRegistry();
+
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long micros = 1; micros <= 1000; micros++) {
+			histogram.record(micros * 1000);
+		}
+		assertThat(histogram.getCount(), equalTo(1000L));
+		assertThat(histogram.getMaxNanos(), equalTo(1000000L));
+		assertThat(histogram.getMeanNanos(), equalTo(500500L));
+		assertWithinPrecision(histogram.getPercentileNanos(50), 500000);
+		assertWithinPrecision(histogram.getPercentileNanos(99), 990000);
+		assertWithinPrecision(histogram.getPercentileNanos(100), 1000000);
+		histogram.reset();
+		assertThat(histogram.getCount(), equalTo(0L));
+		assertThat(histogram.getPercentileNanos(99), equalTo(0L));
+	}
+
+
+	@Test
+	public void testCallsAndErrorsCounted() throws Exception {
+		BitcoindErrorResponse walletUnlocked = new ObjectMapper().readValue(
+				"{\"result\":null,\"error\":{\"code\":-17,\"message\":\"Wallet is already unlocked.\"},\"id\":null}",
+				BitcoindErrorResponse.class);
+		complete("getinfo", 120, 400, null);
+		complete("getinfo", 120, 410, null);
+		complete("walletpassphrase", 80, 60, new BitcoinServerException(walletUnlocked));
+		complete("walletpassphrase", 80, -1, new IllegalStateException("Connection reset"));
+
+		assertThat(registry.getMethods(), equalTo(new String[] {"getinfo", "walletpassphrase"}));
+		assertThat(registry.getCalls("getinfo"), equalTo(2L));
+		assertThat(registry.getErrors("getinfo"), equalTo(0L));
+		assertThat(registry.getRequestBytes("getinfo"), equalTo(240L));
+		assertThat(registry.getResponseBytes("getinfo"), equalTo(810L));
+
+		assertThat(registry.getCalls("walletpassphrase"), equalTo(2L));
+		assertThat(registry.getErrors("walletpassphrase"), equalTo(2L));
+		assertThat(registry.getResponseBytes("walletpassphrase"), equalTo(60L));
+		Map<Integer, Long> errors = registry.getErrorsByCode("walletpassphrase");
+		assertThat(errors.size(), equalTo(2));
+		assertThat(errors.get(-17), equalTo(1L));
+		assertThat(errors.get(MethodMetrics.NO_ERROR_CODE), equalTo(1L));
+
+		assertThat(registry.getCalls("getbalance"), equalTo(0L));
+		registry.reset();
+		assertThat(registry.getCalls("getinfo"), equalTo(0L));
+		assertThat(registry.getErrorsByCode("walletpassphrase").size(), equalTo(0));
+	}
+
+
+	@Test
+	public void testPhasesAggregated() {
+		for (long firstByteMillis : new long[] {2, 4, 9}) {
+			RpcCall call = RpcCall.begin("getblock", Arrays.asList("000000000019d6689c085ae165831e934ff763ae46a2a6c172b3f1b60a8ce26f"));
+			call.addPhaseNanos(RpcPhase.FIRST_BYTE, firstByteMillis * 1000000);
+			call.responseReceived();
+			call.addPhaseNanos(RpcPhase.BODY_READ, 1000);
+			call.end(null);
+			assertThat(call.getPhaseNanos(RpcPhase.DESERIALIZATION) <= call.getDurationNanos(), equalTo(true));
+			registry.callCompleted(call);
+		}
+		MethodMetrics metrics = registry.getMethodMetrics("getblock");
+		assertThat(metrics.getPhaseMeanNanos(RpcPhase.FIRST_BYTE), equalTo(5000000L));
+		assertThat(metrics.getPhaseMaxNanos(RpcPhase.FIRST_BYTE), equalTo(9000000L));
+		assertThat(metrics.getPhaseMeanNanos(RpcPhase.BODY_READ), equalTo(1000L));
+		assertThat(metrics.getPhaseMeanNanos(RpcPhase.CONNECT), equalTo(0L));
+		assertThat(registry.getPhaseMeanNanos("getblock").get("FIRST_BYTE"), equalTo(5000000L));
+	}
+
+
+	private void complete(String method, long requestBytes, long responseBytes, RuntimeException failure) {
+		RpcCall call = RpcCall.begin(method, Arrays.asList(1));
+		assertThat(RpcCall.current() == call, equalTo(true));
+		call.setRequestBytes(requestBytes);
+		call.setResponseBytes(responseBytes);
+		call.end(failure);
+		assertThat(RpcCall.current() == null, equalTo(true));
+		registry.callCompleted(call);
+	}
+
+
+	private static void assertWithinPrecision(long actual, long expected) {
+		assertThat(actual, greaterThanOrEqualTo(expected - expected / 32));
+		assertThat(actual, lessThanOrEqualTo(expected + expected / 32));
+	}
+
+
+	@Test
+	public void testMBeanNames() throws Exception {
+		RpcMetricsRegistry other = new RpcMetricsRegistry();
+		RpcMetricsRegistry sameName = new RpcMetricsRegistry();
+		registry.setMBeanName("http://localhost:18332");
+		other.setMBeanName("http://localhost:8332");
+		sameName.setMBeanName("http://localhost:18332");
+		registry.registerMBean();
+		try {
+			other.registerMBean();
+			sameName.registerMBean();
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertThat(server.isRegistered(new ObjectName(RpcMetricsRegistry.OBJECT_NAME + ",name=\"http://localhost:8332\"")), equalTo(true));
+			sameName.unregisterMBean();
+			assertThat(server.isRegistered(new ObjectName(RpcMetricsRegistry.OBJECT_NAME + ",name=\"http://localhost:18332\"")), equalTo(true));
+		} finally {
+			other.unregisterMBean();
+			registry.unregisterMBean();
+		}
+	}
+
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.monitoring;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import dk.clanie.bitcoin.AddressAndAmount;
+
+/**
+ * Tests {@link SlowCallLog}.
+ * 
+ * @author Claus Nielsen
+ */
+public class SlowCallLogTest {
+
+	private SlowCallLog slowCallLog = new SlowCallLog(2, 3);
+
+
+	@Test
+	public void testSlowestAndRecentKept() throws Exception {
+		call("getinfo", null, 0);
+		call("listunspent", Arrays.asList(1, 9999999), 40);
+		call("getbalance", null, 0);
+		call("listtransactions", Arrays.asList("*", 10, 0), 20);
+		call("getblockcount", null, 0);
+
+		List<RecordedCall> slowest = slowCallLog.getSlowest();
+		assertThat(slowest.size(), equalTo(2));
+		assertThat(slowest.get(0).getMethod(), equalTo("listunspent"));
+		assertThat(slowest.get(0).getParams(), equalTo("[1, 9999999]"));
+		assertThat(slowest.get(1).getMethod(), equalTo("listtransactions"));
+
+		List<RecordedCall> recent = slowCallLog.getRecent();
+		assertThat(recent.size(), equalTo(3));
+		assertThat(recent.get(0).getMethod(), equalTo("getblockcount"));
+		assertThat(recent.get(1).getMethod(), equalTo("listtransactions"));
+		assertThat(recent.get(2).getMethod(), equalTo("getbalance"));
+		assertThat(slowCallLog.getRecentCalls()[0].contains(" getblockcount "), equalTo(true));
+
+		slowCallLog.clear();
+		assertThat(slowCallLog.getSlowest().size(), equalTo(0));
+		assertThat(slowCallLog.getRecent().size(), equalTo(0));
+	}
+
+
+	@Test
+	public void testSecretsRedactedAndParamsTruncated() throws Exception {
+		slowCallLog.setMaxParamsLength(40);
+		call("walletpassphrase", Arrays.asList("correct horse battery staple", 60), 0);
+		call("importprivkey", Arrays.asList("5KJvsngHeMpm884wtkJNzQGaCErckhHJBGFsvd3VyK5qMZXj3hS", "cold", false), 0);
+		call("sendmany", Arrays.asList("payouts", new AddressAndAmount[] {
+				new AddressAndAmount("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq", BigDecimal.ONE),
+				new AddressAndAmount("n39aMXCuUdB5YfgAxSpgyPqCRZGtdWGMMG", BigDecimal.ONE)}), 0);
+
+		List<RecordedCall> recent = slowCallLog.getRecent();
+		assertThat(recent.get(2).getParams(), equalTo("[" + SlowCallLog.REDACTED + ", 60]"));
+		assertThat(recent.get(1).getParams(), equalTo("[" + SlowCallLog.REDACTED + ", cold, false]"));
+		assertThat(recent.get(0).getParams().length(), equalTo(43));
+		assertThat(recent.get(0).getParams().endsWith("..."), equalTo(true));
+		for (String line : slowCallLog.getRecentCalls()) {
+			assertThat(line.contains("staple") || line.contains("5KJvsngHeMpm"), equalTo(false));
+		}
+	}
+
+
+	@Test
+	public void testLargeParamsTruncatedWhileFormatting() throws Exception {
+		slowCallLog.setMaxParamsLength(40);
+		Map<String, Object> recipients = new LinkedHashMap<String, Object>();
+		recipients.put("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq", new Object() {
+			@Override
+			public String toString() {
+				throw new AssertionError("Formatted past the maximum length.");
+			}
+		});
+		call("sendmany", Arrays.asList("payouts", recipients), 0);
+		call("getblock", Arrays.asList("0000000000000000000000000000000000000000000000000000000000000000"), 0);
+		call("listreceivedbyaddress", Arrays.asList(1, Arrays.asList("a", "b")), 0);
+
+		List<RecordedCall> recent = slowCallLog.getRecent();
+		assertThat(recent.get(2).getParams(), equalTo("[payouts, {mj3QxNUyp4Ry2pbbP19tznUAAPqFv..."));
+		assertThat(recent.get(1).getParams(), equalTo("[000000000000000000000000000000000000000..."));
+		assertThat(recent.get(0).getParams(), equalTo("[1, [a, b]]"));
+	}
+
+
+	private void call(String method, List<?> params, long millis) throws InterruptedException {
+		RpcCall call = RpcCall.begin(method, params);
+		slowCallLog.callStarted(call);
+		Thread.sleep(millis);
+		call.end(null);
+		slowCallLog.callCompleted(call);
+	}
+
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.request;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.util.Hex;
+
+/**
+ * Tests {@link HexDataSerializer}.
+ *
+ * @author Claus Nielsen
+ */
+public class HexDataSerializerTest {
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+
+
+	@Test
+	public void testSameAsHexString() throws Exception {
+		for (int size : new int[] {0, 1, 4095, 4096, 4097, 20000}) {
+			byte[] bytes = new byte[size];
+			new Random(size).nextBytes(bytes);
+			List<Object> hexParams = newArrayList();
+			hexParams.add(Hex.encode(bytes));
+			hexParams.add("x");
+			List<Object> byteParams = newArrayList();
+			byteParams.add(new HexData(ByteBuffer.wrap(bytes)));
+			byteParams.add("x");
+			assertThat(serialize(byteParams), equalTo(serialize(hexParams)));
+		}
+	}
+
+
+	@Test
+	public void testBufferPositionUnchanged() throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0x00, 0x01, (byte) 0xab, (byte) 0xff});
+		buffer.position(1);
+		List<Object> params = newArrayList();
+		params.add(new HexData(buffer));
+		assertThat(serialize(params), equalTo("{\"jsonrpc\":\"2.0\",\"method\":\"sendrawtransaction\",\"params\":[\"01abff\"]}"));
+		assertThat(buffer.position(), equalTo(1));
+	}
+
+
+	private String serialize(List<Object> params) throws Exception {
+		return objectMapper.writeValueAsString(new BitcoindJsonRpcRequest("sendrawtransaction", params));
+	}
+
+
+}
@@ -17,20 +17,26 @@
  */
 package dk.clanie.bitcoin.client.response;
 
+import static dk.clanie.collections.CollectionFactory.newArrayList;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
-import org.junit.Ignore;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import dk.clanie.bitcoin.json.JsonExtra;
@@ -45,34 +51,58 @@ public class ResponseSerializationTest {
 
 	private static final Logger log = LoggerFactory.getLogger(ResponseSerializationTest.class);
 
+	/**
+	 * Responses with a hand-written deserializer for (part of) their result,
+	 * with the class bound by it and the path to the objects bound, where *
+	 * stands for each element of an array.
+	 */
+	private static final Object[][] FAST_PATH = {
+		{"GetBlockResponse", GetBlockResult.class, "result"},
+		{"GetRawTransactionResponse", GetRawTransactionResult.class, "result"},
+		{"ListSinceBlockResponse", TransactionData.class, "result/transactions/*"},
+		{"ListTransactionsResponse", TransactionData.class, "result/*"},
+		{"ListUnspentResponse", ListUnspentResult.class, "result/*"}
+	};
+
 	private ObjectMapper objectMapper = new ObjectMapper();
 
 
 	/**
-	 * Reveals a bug in Jackson.
+	 * Tests that fields of a ListUnspentResult not explicitly mapped are kept
+	 * next to the inlined txid and vout.
 	 * 
-	 * @JsonUnwrapped conflicts with @JsonAnySetter/@JsonAnyGetter.
-	 * See https://github.com/FasterXML/jackson-annotations/issues/10
-	 * <p>
-	 * Some serialization tests have been disabled by prefixing some
-	 * of the sample file names with an underscore. 
-	 * <p>
-	 * When the Jackson bug has been fixed remove this test and it's
-	 * resource file "_DOUBLE_UNWRAP.json" and re-enable other tests
-	 * by removing the underscore prefix from sample file names.
+	 * @throws Exception
+	 */
+	@Test
+	public void testListUnspentResultOtherFields() throws Exception {
+		String json = "{\"txid\":\"280acc1c3611fee83331465c715b0da2d10b65733a688ee2273fdcc7581f149b\",\"vout\":1,"
+				+ "\"scriptPubKey\":\"76a91426ab1c83e2a8269b7007baf0244151cca4c5e3fd88ac\",\"amount\":5.00000000,"
+				+ "\"confirmations\":956,\"account\":\"savings\"}";
+		ListUnspentResult result = objectMapper.readValue(json, ListUnspentResult.class);
+		assertThat(result.getTxRef().getVout(), equalTo(1));
+		assertThat(result.getOtherFields().get("account"), equalTo((Object) "savings"));
+		assertThat(objectMapper.writeValueAsString(result), equalTo(json));
+	}
+
+
+	/**
+	 * Tests that TransactionDataDeserializer keeps fields not explicitly
+	 * mapped, and binds times like Jackson's bean deserializer.
 	 * 
 	 * @throws Exception
 	 */
 	@Test
-	@Ignore
-	// TODO Remove when Jackson has been fixed.
-	public void testDoubleUnwrapped() throws Exception {
-		File file = new File("src/test/resources/sampleResponse/_DOUBLE_UNWRAP.json");
-		String jsonSample = IOUtils.toString(file.toURI());
-		ListUnspentResult obj = objectMapper.readValue(jsonSample, ListUnspentResult.class);
-		String roundtrippedJson = objectMapper.writeValueAsString(obj);
-		System.out.println(roundtrippedJson);
-		assertThat("json -> obj -> json roundtrip serialization failed for " + file.getName() + ".", roundtrippedJson, equalTo(jsonSample));
+	public void testTransactionDataOtherFields() throws Exception {
+		String json = "{\"account\":\"clanie\",\"address\":\"mwswEtw6t2ziSjsfip62FPg84NXGsJ5H2o\",\"category\":\"send\","
+				+ "\"amount\":-0.01000000,\"fee\":0.00000000,\"confirmations\":0,"
+				+ "\"txid\":\"25b06029ed04804d649badd17f4618db9edf73e547bb0dcab342f31af4e3c365\","
+				+ "\"time\":1365535047,\"timereceived\":1365535047,\"comment\":\"Comment\",\"to\":\"CommentTO\","
+				+ "\"bip125-replaceable\":\"no\"}";
+		TransactionData result = objectMapper.readValue(json, TransactionData.class);
+		assertThat(result.getTime().getTime(), equalTo(1365535047L));
+		assertThat(result.getBlockHash(), nullValue());
+		assertThat(result.getOtherFields().get("bip125-replaceable"), equalTo((Object) "no"));
+		assertThat(objectMapper.writeValueAsString(result), equalTo(json));
 	}
 
 
@@ -90,10 +120,6 @@ public class ResponseSerializationTest {
 	 * <p>
 	 * Following response samples are currently skipped:
 	 * <dl>
-	 * <dt>_DOUBLE_UNWRAP.json</dt>
-	 * <dd>Not a real response sample, but a constructed json objects which
-	 * helps check if an Jackson bug has been fixed. See
-	 * {@link #testDoubleUnwrapped()}.</dd>
 	 * <dt>_GetAddedNodeInfo</dt>
 	 * <dd>The bitcoind getaddednodeinfo method returns an array or an object
 	 * depending on the input. I think that is a bug - see
@@ -105,8 +131,6 @@ public class ResponseSerializationTest {
 	 * preserve order, and so we cannot do roundtrip serialization to the exact
 	 * same json. When we try the serialization output IS equivalent to the
 	 * sample, so you could argue that it's bug in the test.</dd>
-	 * <dt>_ListUnspentResponse.json</dt>
-	 * <dd>ListUnspentResult is not yet finished - it should be shortly.</dd>
 	 * <dt>_ListAddressGroupingsResponse.json</dt>
 	 * <dd>BigDecimal values are serialized using scientific notation.<br>
 	 * When jackson-databind commit 8a8322b493fe67059d8a46718dde8185266c8c0c
@@ -126,6 +150,80 @@ public class ResponseSerializationTest {
 	}
 
 
+	/**
+	 * Tests that the objects bound by the hand-written deserializers in every
+	 * sample of their responses are bound completely, and serialized back to
+	 * the original.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testFastPathRoundtrip() throws Exception {
+		ObjectMapper treeMapper = new ObjectMapper().configure(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS, true);
+		int bound = 0;
+		for (File file : IOUtil.listFilesRecursively(new File("src/test/resources/sampleResponse"))) {
+			if (file.getName().startsWith("_")) continue;
+			for (Object[] fastPath : FAST_PATH) {
+				if (!fastPath[0].equals(extractResponseClassName(file))) continue;
+				String[] path = ((String) fastPath[2]).split("/");
+				List<JsonNode> nodes = newArrayList();
+				select(treeMapper.readTree(file), path, 0, nodes);
+				List<Object> results = newArrayList();
+				JsonParser jp = objectMapper.getFactory().createParser(file);
+				jp.nextToken();
+				bind(jp, path, 0, (Class<?>) fastPath[1], results);
+				jp.close();
+				assertThat(results.size(), equalTo(nodes.size()));
+				for (int i = 0; i < nodes.size(); i++) {
+					JsonExtra result = (JsonExtra) results.get(i);
+					assertThat("Fields not mapped in " + file.getName() + ": " + result.getOtherFields().keySet(), result.getOtherFields().size(), equalTo(0));
+					assertThat("Roundtrip failed for " + file.getName() + ".", treeMapper.readTree(objectMapper.writeValueAsString(result)), equalTo(nodes.get(i)));
+					bound++;
+				}
+			}
+		}
+		assertThat(bound > FAST_PATH.length, equalTo(true));
+	}
+
+
+	/**
+	 * Adds the nodes at the given path below a node.
+	 */
+	private static void select(JsonNode node, String[] path, int depth, List<JsonNode> selected) {
+		if (depth == path.length) {
+			selected.add(node);
+		} else if ("*".equals(path[depth])) {
+			for (JsonNode element : node) {
+				select(element, path, depth + 1, selected);
+			}
+		} else {
+			select(node.get(path[depth]), path, depth + 1, selected);
+		}
+	}
+
+
+	/**
+	 * Binds the objects at the given path below the parser's current token,
+	 * straight from the sample's text.
+	 */
+	private void bind(JsonParser jp, String[] path, int depth, Class<?> type, List<Object> bound) throws IOException {
+		if (depth == path.length) {
+			bound.add(objectMapper.readValue(jp, type));
+		} else if ("*".equals(path[depth])) {
+			while (jp.nextToken() != JsonToken.END_ARRAY) {
+				bind(jp, path, depth + 1, type, bound);
+			}
+		} else {
+			while (jp.nextToken() == JsonToken.FIELD_NAME) {
+				String field = jp.getCurrentName();
+				jp.nextToken();
+				if (field.equals(path[depth])) bind(jp, path, depth + 1, type, bound);
+				else jp.skipChildren();
+			}
+		}
+	}
+
+
 	/**
 	 * Perform serialization roundtrip testing of the given file.
 	 * 
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.client.simulator;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+import dk.clanie.bitcoin.AddressAndAmount;
+import dk.clanie.bitcoin.BitcoinNetwork;
+import dk.clanie.bitcoin.TransactionOutputRef;
+import dk.clanie.bitcoin.client.response.GetBlockResult;
+import dk.clanie.bitcoin.client.response.GetRawTransactionResult;
+import dk.clanie.bitcoin.client.response.ListUnspentResult;
+import dk.clanie.bitcoin.client.response.TransactionData;
+import dk.clanie.bitcoin.exception.server.BitcoinServerException;
+import dk.clanie.bitcoin.exception.server.InvalidAddressException;
+import dk.clanie.bitcoin.transaction.RawTransactionDecoder;
+import dk.clanie.bitcoin.util.Hex;
+
+/**
+ * Tests {@link SimulatedBitcoindClient}.
+ *
+ * @author Claus Nielsen
+ */
+public class SimulatedBitcoindClientTest {
+
+	private static final String EXTERNAL_1 = "mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq";
+	private static final String EXTERNAL_2 = "n39aMXCuUdB5YfgAxSpgyPqCRZGtdWGMMG";
+
+	private SimulatedBitcoindClient client = new SimulatedBitcoindClient();
+
+
+	@Test
+	public void testCoinbaseMaturity() throws Exception {
+		String[] hashes = client.mineBlocks(SimulatedBitcoindClient.COINBASE_MATURITY);
+		assertThat(client.getBalance(null, null).getResult(), equalTo(new BigDecimal("0E-8")));
+		client.mineBlocks(1);
+		assertThat(client.getBlockCount().getResult(), equalTo(101L));
+		assertThat(client.getBalance(null, null).getResult(), equalTo(new BigDecimal("50.00000000")));
+		assertThat(client.getBalance("", 1).getResult(), equalTo(new BigDecimal("50.00000000")));
+		assertThat(client.getBalance("*", 0).getResult(), equalTo(new BigDecimal("50.00000000")));
+		assertThat(client.listUnspent(null, null).getResult().length, equalTo(1));
+
+		GetBlockResult block = client.getBlock(hashes[0]).getResult();
+		assertThat(block.getHeight(), equalTo(1L));
+		assertThat(block.getConfirmations(), equalTo(101));
+		assertThat(block.getPreviousBlockHash(), equalTo(client.getBlockHash(0L).getResult()));
+		assertThat(block.getNextBlockHash(), equalTo(hashes[1]));
+		assertThat(block.getTransactions().length, equalTo(1));
+		TransactionData[] transactions = client.listTransactions(null, 200, null).getResult();
+		assertThat(transactions.length, equalTo(101));
+		assertThat(transactions[0].getCategory(), equalTo("generate"));
+		assertThat(transactions[1].getCategory(), equalTo("immature"));
+	}
+
+
+	@Test
+	public void testSendMany() throws Exception {
+		String address = client.getNewAddress("alice").getResult();
+		String receiveTxId = client.receive(address, new BigDecimal("10"));
+		assertThat(client.getRawMemPool().getResult(), equalTo(new String[] { receiveTxId }));
+		client.mineBlocks(1);
+
+		String txId = client.sendMany("alice", new AddressAndAmount[] {
+				new AddressAndAmount(EXTERNAL_1, new BigDecimal("1")),
+				new AddressAndAmount(EXTERNAL_2, new BigDecimal("2")) }, 1, "payout").getResult();
+		assertThat(client.getBalance("alice", 0).getResult(), equalTo(new BigDecimal("6.99990000")));
+		assertThat(client.getBalance(null, null).getResult(), equalTo(new BigDecimal("6.99990000")));
+
+		GetRawTransactionResult raw = client.getRawTransaction_verbose(txId).getResult();
+		assertThat(raw.getConfirmations(), nullValue());
+		assertThat(raw.getTxInputs()[0].getTxRef(), equalTo(new TransactionOutputRef(receiveTxId, 0)));
+		assertThat(raw.getTxOutputs().length, equalTo(3));
+		assertThat(raw.getTxOutputs()[2].getValue(), equalTo(new BigDecimal("6.99990000")));
+		byte[] bytes = Hex.decode(client.getRawTransaction(txId).getResult());
+		assertThat(RawTransactionDecoder.txId(bytes, 0, bytes.length), equalTo(txId));
+
+		client.mineBlocks(1);
+		assertThat(client.getTransaction(txId).getResult().getConfirmations(), equalTo(1));
+		assertThat(client.getTransaction(txId).getResult().getAmount(), equalTo(new BigDecimal("-3.00000000")));
+		TransactionData[] transactions = client.listTransactions("alice", null, null).getResult();
+		assertThat(transactions.length, equalTo(3));
+		assertThat(transactions[0].getCategory(), equalTo("receive"));
+		assertThat(transactions[1].getCategory(), equalTo("send"));
+		assertThat(transactions[1].getAmount(), equalTo(new BigDecimal("-1.00000000")));
+		assertThat(transactions[1].getFee(), equalTo(new BigDecimal("-0.00010000")));
+		assertThat(transactions[2].getAddress(), equalTo(EXTERNAL_2));
+		assertThat(transactions[2].getComment(), equalTo("payout"));
+	}
+
+
+	@Test
+	public void testInsufficientFunds() throws Exception {
+		client.receive(client.getNewAddress("alice").getResult(), BigDecimal.ONE);
+		client.mineBlocks(1);
+		try {
+			client.sendMany("alice", new AddressAndAmount[] { new AddressAndAmount(EXTERNAL_1, BigDecimal.ONE) }, 1, null);
+			fail("Sending more than the balance should fail.");
+		} catch (BitcoinServerException e) {
+			assertThat(e.getErrorCode(), equalTo(-6));
+		}
+	}
+
+
+	@Test
+	public void testLockedOutputsNotSpent() throws Exception {
+		String address = client.getNewAddress("").getResult();
+		client.receive(address, BigDecimal.ONE);
+		client.receive(address, BigDecimal.TEN);
+		client.mineBlocks(1);
+		ListUnspentResult first = client.listUnspent(1, null).getResult()[0];
+		client.lockUnspent(false, new TransactionOutputRef[] { first.getTxRef() });
+		assertThat(client.listUnspent(1, null).getResult().length, equalTo(1));
+		assertThat(client.listLockUnspent().getResult(), equalTo(new TransactionOutputRef[] { first.getTxRef() }));
+
+		String txId = client.sendToAddress(EXTERNAL_1, new BigDecimal("0.5"), null, null).getResult();
+		GetRawTransactionResult raw = client.getRawTransaction_verbose(txId).getResult();
+		assertThat(raw.getTxInputs().length, equalTo(1));
+		assertThat(raw.getTxOutputs()[1].getValue(), equalTo(new BigDecimal("9.49990000")));
+	}
+
+
+	@Test
+	public void testDeterministic() throws Exception {
+		SimulatedBitcoindClient other = new SimulatedBitcoindClient(BitcoinNetwork.TEST, 0);
+		assertThat(client.getNewAddress("a").getResult(), equalTo(other.getNewAddress("a").getResult()));
+		assertThat(client.mineBlocks(2), equalTo(other.mineBlocks(2)));
+		SimulatedBitcoindClient otherSeed = new SimulatedBitcoindClient(BitcoinNetwork.TEST, 1);
+		assertThat(otherSeed.getNewAddress("a").getResult().equals(client.getNewAddress("a").getResult()), equalTo(false));
+	}
+
+
+	@Test(expected = InvalidAddressException.class)
+	public void testUnknownTransaction() throws Exception {
+		client.getRawTransaction("00");
+	}
+
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.transaction;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.AddressAndAmount;
+import dk.clanie.bitcoin.BitcoinNetwork;
+import dk.clanie.bitcoin.TransactionInput;
+import dk.clanie.bitcoin.TransactionOutput;
+import dk.clanie.bitcoin.TransactionOutputRef;
+import dk.clanie.bitcoin.client.response.DecodeRawTransactionResponse;
+import dk.clanie.bitcoin.client.response.DecodeRawTransactionResult;
+import dk.clanie.bitcoin.client.response.StringResponse;
+import dk.clanie.bitcoin.exception.InvalidTransactionException;
+
+/**
+ * Tests {@link RawTransactionBuilder} against the createrawtransaction
+ * sample in src/test/resources/sampleResponse/.
+ * 
+ * @author Claus Nielsen
+ */
+public class RawTransactionBuilderTest {
+
+	private static final String P2SH_ADDRESS = "2N2kM2KPixnVxLquqNTse2QsFUAoEwfdDPa";
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+
+	private RawTransactionBuilder builder = new RawTransactionBuilder(BitcoinNetwork.TEST);
+	private RawTransactionDecoder decoder = new RawTransactionDecoder(BitcoinNetwork.TEST);
+
+
+	@Test
+	public void testSameAsCreateRawTransaction() throws Exception {
+		String expected = readSample("StringResponse_creteRawTransaction.json", StringResponse.class).getResult();
+		DecodeRawTransactionResult decoded = readSample("DecodeRawTransactionResponse.json", DecodeRawTransactionResponse.class).getResult();
+		List<TransactionOutputRef> txOutputs = newArrayList();
+		for (TransactionInput txInput : decoded.getTxInputs()) {
+			txOutputs.add(txInput.getTxRef());
+		}
+		List<AddressAndAmount> recipients = newArrayList();
+		for (TransactionOutput txOutput : decoded.getTxOutputs()) {
+			recipients.add(new AddressAndAmount(txOutput.getScriptPubKey().getAddresses().get(0), txOutput.getValue()));
+		}
+		String hex = builder.buildHex(txOutputs, recipients.toArray(new AddressAndAmount[recipients.size()]));
+		assertThat(hex, equalTo(expected));
+	}
+
+
+	@Test
+	public void testPayToScriptHashAndMergedAddresses() throws Exception {
+		List<TransactionOutputRef> txOutputs = newArrayList();
+		txOutputs.add(new TransactionOutputRef("280acc1c3611fee83331465c715b0da2d10b65733a688ee2273fdcc7581f149b", 0));
+		txOutputs.add(new TransactionOutputRef("280acc1c3611fee83331465c715b0da2d10b65733a688ee2273fdcc7581f149b", 1));
+		DecodeRawTransactionResult decoded = decoder.decode(builder.build(txOutputs,
+				new AddressAndAmount(P2SH_ADDRESS, new BigDecimal("0.5")),
+				new AddressAndAmount("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq", new BigDecimal("1")),
+				new AddressAndAmount(P2SH_ADDRESS, new BigDecimal("0.25"))));
+		assertThat(decoded.getTxInputs().length, equalTo(2));
+		assertThat(decoded.getTxInputs()[1].getTxRef().getVout(), equalTo(1));
+		assertThat(decoded.getTxOutputs().length, equalTo(2));
+		assertThat(decoded.getTxOutputs()[0].getScriptPubKey().getType(), equalTo(Script.TYPE_SCRIPTHASH));
+		assertThat(decoded.getTxOutputs()[0].getScriptPubKey().getAddresses().get(0), equalTo(P2SH_ADDRESS));
+		assertThat(decoded.getTxOutputs()[0].getValue(), equalTo(new BigDecimal("0.75000000")));
+		assertThat(decoded.getTxOutputs()[1].getScriptPubKey().getType(), equalTo(Script.TYPE_PUBKEYHASH));
+	}
+
+
+	@Test(expected = InvalidTransactionException.class)
+	public void testAddressOnOtherNetwork() throws Exception {
+		List<TransactionOutputRef> txOutputs = newArrayList();
+		builder.build(txOutputs, new AddressAndAmount("1A1zP1eP5QGefi2DMPTfTL5SLmv7DivfNa", BigDecimal.ONE));
+	}
+
+
+	@Test(expected = InvalidTransactionException.class)
+	public void testInvalidTxId() throws Exception {
+		List<TransactionOutputRef> txOutputs = newArrayList();
+		txOutputs.add(new TransactionOutputRef("280acc1c", 0));
+		builder.build(txOutputs, new AddressAndAmount(P2SH_ADDRESS, BigDecimal.ONE));
+	}
+
+
+	private <T> T readSample(String fileName, Class<T> responseType) throws Exception {
+		return objectMapper.readValue(new File("src/test/resources/sampleResponse/" + fileName), responseType);
+	}
+
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.transaction;
+
+import static dk.clanie.bitcoin.client.response.BitcoindJsonRpcResponse.withResult;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.BitcoinNetwork;
+import dk.clanie.bitcoin.client.response.DecodeRawTransactionResponse;
+import dk.clanie.bitcoin.client.response.DecodeRawTransactionResult;
+import dk.clanie.bitcoin.client.response.GetRawTransactionResponse;
+import dk.clanie.bitcoin.client.response.GetRawTransactionResult;
+import dk.clanie.bitcoin.client.response.SignRawTransactionResponse;
+import dk.clanie.bitcoin.client.response.StringResponse;
+import dk.clanie.bitcoin.exception.InvalidTransactionException;
+
+/**
+ * Tests {@link RawTransactionDecoder} against the decoderawtransaction
+ * samples in src/test/resources/sampleResponse/.
+ * 
+ * @author Claus Nielsen
+ */
+public class RawTransactionDecoderTest {
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+
+	private RawTransactionDecoder decoder = new RawTransactionDecoder(BitcoinNetwork.TEST);
+
+
+	@Test
+	public void testDecodeUnsignedTransaction() throws Exception {
+		String hex = readSample("StringResponse_creteRawTransaction.json", StringResponse.class).getResult();
+		assertDecodesTo(hex, "DecodeRawTransactionResponse.json");
+	}
+
+
+	@Test
+	public void testDecodeSignedTransaction() throws Exception {
+		String hex = readSample("SignRawTransactionResponse.json", SignRawTransactionResponse.class).getResult().getHex();
+		assertDecodesTo(hex, "DecodeRawTransactionResponse_signedTransaction.json");
+	}
+
+
+	@Test
+	public void testDecodeGetRawTransactionHex() throws Exception {
+		GetRawTransactionResult expected = readSample("GetRawTransactionResponse_verbose.json", GetRawTransactionResponse.class).getResult();
+		DecodeRawTransactionResult decoded = decoder.decode(expected.getHex());
+		assertThat(decoded.getTxId(), equalTo(expected.getTxId()));
+		assertThat(decoded.getLocktime(), equalTo(expected.getLockTime()));
+		assertThat(objectMapper.writeValueAsString(decoded.getTxInputs()), equalTo(objectMapper.writeValueAsString(expected.getTxInputs())));
+		assertThat(objectMapper.writeValueAsString(decoded.getTxOutputs()), equalTo(objectMapper.writeValueAsString(expected.getTxOutputs())));
+	}
+
+
+	@Test
+	public void testAsm() throws Exception {
+		byte[] script = {0x00, 0x01, (byte) 0x81, 0x02, (byte) 0xe8, 0x03, 0x52, (byte) 0xae, (byte) 0xff};
+		assertThat(Script.toAsm(script, 0, script.length), equalTo("0 -1 1000 2 OP_CHECKMULTISIG OP_INVALIDOPCODE"));
+		byte[] truncated = {0x76, 0x14, 0x01};
+		assertThat(Script.toAsm(truncated, 0, truncated.length), equalTo("OP_DUP [error]"));
+	}
+
+
+	@Test(expected = InvalidTransactionException.class)
+	public void testTruncatedTransaction() throws Exception {
+		String hex = readSample("StringResponse_creteRawTransaction.json", StringResponse.class).getResult();
+		decoder.decode(hex.substring(0, hex.length() - 2));
+	}
+
+
+	@Test(expected = InvalidTransactionException.class)
+	public void testInvalidHex() throws Exception {
+		decoder.decode("01000000zz");
+	}
+
+
+	private void assertDecodesTo(String hex, String sampleFileName) throws Exception {
+		String expectedJson = IOUtils.toString(sampleFile(sampleFileName).toURI());
+		DecodeRawTransactionResponse response = withResult(DecodeRawTransactionResponse.class, decoder.decode(hex));
+		assertThat("Local decoding differs from " + sampleFileName + ".", objectMapper.writeValueAsString(response), equalTo(expectedJson));
+	}
+
+
+	private <T> T readSample(String fileName, Class<T> responseType) throws Exception {
+		return objectMapper.readValue(sampleFile(fileName), responseType);
+	}
+
+
+	private File sampleFile(String fileName) {
+		return new File("src/test/resources/sampleResponse/" + fileName);
+	}
+
+
+}
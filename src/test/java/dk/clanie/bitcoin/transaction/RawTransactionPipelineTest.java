@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.transaction;
+
+import static dk.clanie.bitcoin.client.response.BitcoindJsonRpcResponse.withResult;
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.AddressAndAmount;
+import dk.clanie.bitcoin.BitcoinNetwork;
+import dk.clanie.bitcoin.SignatureHashAlgorithm;
+import dk.clanie.bitcoin.TransactionOutputRef;
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.SignRawTransactionBytesResponse;
+import dk.clanie.bitcoin.client.response.StringResponse;
+import dk.clanie.bitcoin.exception.InvalidTransactionException;
+import dk.clanie.bitcoin.util.Hex;
+
+/**
+ * Tests {@link RawTransactionPipeline} with a mocked BitcoindClient, using the
+ * createrawtransaction and signrawtransaction samples in
+ * src/test/resources/sampleResponse/.
+ * 
+ * @author Claus Nielsen
+ */
+public class RawTransactionPipelineTest {
+
+	private static final String SAMPLES = "src/test/resources/sampleResponse/";
+	private static final String SIGNED_TX_ID = "4da3cf0b40e3d25885f3d632f7e7d420837b84a4bbaf6a165a5f8dcecb5b3f92";
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+	private BitcoindClient bitcoindClient = mock(BitcoindClient.class);
+	private RawTransactionPipeline pipeline = new RawTransactionPipeline(bitcoindClient, new RawTransactionBuilder(BitcoinNetwork.TEST), 2);
+	private List<TransactionOutputRef> txOutputs = newArrayList();
+	private AddressAndAmount recipient = new AddressAndAmount("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq", new BigDecimal("2"));
+	private String unsignedHex;
+	private SignRawTransactionBytesResponse signResponse;
+	private String signedHex;
+
+
+	@Before
+	public void setUp() throws Exception {
+		txOutputs.add(new TransactionOutputRef("280acc1c3611fee83331465c715b0da2d10b65733a688ee2273fdcc7581f149b", 0));
+		unsignedHex = objectMapper.readValue(new File(SAMPLES + "StringResponse_creteRawTransaction.json"), StringResponse.class).getResult();
+		signResponse = objectMapper.readValue(new File(SAMPLES + "SignRawTransactionBytesResponse.json"), SignRawTransactionBytesResponse.class);
+		signedHex = Hex.encode(signResponse.getResult().getRawTransaction());
+		when(bitcoindClient.signRawTransaction(any(ByteBuffer.class), (Object[]) isNull(), (String[]) isNull(), (SignatureHashAlgorithm) isNull()))
+				.thenAnswer(new Answer<SignRawTransactionBytesResponse>() {
+			@Override
+			public SignRawTransactionBytesResponse answer(InvocationOnMock invocation) throws Throwable {
+				assertThat(hexOf((ByteBuffer) invocation.getArguments()[0]), equalTo(unsignedHex));
+				return signResponse;
+			}
+		});
+		when(bitcoindClient.sendRawTransaction(any(ByteBuffer.class))).thenAnswer(new Answer<StringResponse>() {
+			@Override
+			public StringResponse answer(InvocationOnMock invocation) throws Throwable {
+				assertThat(hexOf((ByteBuffer) invocation.getArguments()[0]), equalTo(signedHex));
+				return withResult(StringResponse.class, SIGNED_TX_ID);
+			}
+		});
+	}
+
+
+	@After
+	public void tearDown() {
+		pipeline.shutdown();
+	}
+
+
+	@Test
+	public void testExecute() throws Exception {
+		RawTransactionPipelineResult result = pipeline.execute(txOutputs, recipient);
+		assertThat(result.getTxId(), equalTo(SIGNED_TX_ID));
+		assertThat(Hex.encode(result.getRawTransaction()), equalTo(signedHex));
+		assertThat(result.getTotalNanos(), equalTo(result.getBuildNanos() + result.getSignNanos() + result.getSendNanos()));
+	}
+
+
+	@Test
+	public void testSubmit() throws Exception {
+		List<Future<RawTransactionPipelineResult>> futures = newArrayList();
+		for (int i = 0; i < 5; i++) {
+			futures.add(pipeline.submit(txOutputs, recipient));
+		}
+		for (Future<RawTransactionPipelineResult> future : futures) {
+			assertThat(future.get().getTxId(), equalTo(SIGNED_TX_ID));
+		}
+	}
+
+
+	@Test
+	public void testSubmitInvalidTransaction() throws Exception {
+		Future<RawTransactionPipelineResult> future = pipeline.submit(txOutputs, new AddressAndAmount("invalid", BigDecimal.ONE));
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause().getClass().getName(), equalTo(InvalidTransactionException.class.getName()));
+			return;
+		}
+		throw new AssertionError("Expected ExecutionException.");
+	}
+
+
+	private static String hexOf(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return Hex.encode(bytes);
+	}
+
+
+}
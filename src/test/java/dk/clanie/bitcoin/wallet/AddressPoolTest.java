@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.bitcoin.client.response.BitcoindJsonRpcResponse.withResult;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.GetInfoResponse;
+import dk.clanie.bitcoin.client.response.GetInfoResult;
+import dk.clanie.bitcoin.client.response.StringResponse;
+
+/**
+ * Tests {@link AddressPool} with a mocked BitcoindClient.
+ * 
+ * @author Claus Nielsen
+ */
+public class AddressPoolTest {
+
+	private BitcoindClient bitcoindClient = mock(BitcoindClient.class);
+	private AddressPool pool = new AddressPool(bitcoindClient, 5, 2);
+	private AtomicInteger addressCount = new AtomicInteger();
+
+
+	@Before
+	public void setUp() throws Exception {
+		GetInfoResult info = new ObjectMapper().readValue("{\"keypoolsize\":20}", GetInfoResult.class);
+		when(bitcoindClient.getInfo()).thenReturn(withResult(GetInfoResponse.class, info));
+		when(bitcoindClient.getNewAddress(anyString())).thenAnswer(new Answer<StringResponse>() {
+			@Override
+			public StringResponse answer(InvocationOnMock invocation) throws Throwable {
+				return withResult(StringResponse.class, invocation.getArguments()[0] + "-" + addressCount.incrementAndGet());
+			}
+		});
+	}
+
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+
+	@Test
+	public void testBufferedAddressesHandedOut() throws Exception {
+		// The first address is fetched directly, and the buffer filled in the background.
+		assertThat(pool.getAddress("shop").startsWith("shop-"), equalTo(true));
+		awaitBuffered("shop", 5);
+		assertThat(addressCount.get(), equalTo(6));
+		for (int i = 0; i < 4; i++) {
+			pool.getAddress("shop");
+		}
+
+		// Below the low watermark, so refilled.
+		awaitBuffered("shop", 5);
+		assertThat(addressCount.get(), equalTo(10));
+		verify(bitcoindClient, times(2)).keyPoolRefill();
+	}
+
+
+	private void awaitBuffered(String account, int count) throws InterruptedException {
+		while (pool.getBufferedCount(account) < count) {
+			Thread.sleep(1);
+		}
+	}
+
+
+}
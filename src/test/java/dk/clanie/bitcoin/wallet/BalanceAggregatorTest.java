@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.bitcoin.client.response.BitcoindJsonRpcResponse.withResult;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.GetBlockResponse;
+import dk.clanie.bitcoin.client.response.GetBlockResult;
+import dk.clanie.bitcoin.client.response.ListSinceBlockResponse;
+import dk.clanie.bitcoin.client.response.ListTransactionsResponse;
+import dk.clanie.bitcoin.client.response.LongResponse;
+import dk.clanie.bitcoin.client.response.StringResponse;
+import dk.clanie.bitcoin.client.response.TransactionData;
+
+/**
+ * Tests {@link BalanceAggregator} with a mocked BitcoindClient returning
+ * ListTransactionsResponse.json.
+ * 
+ * @author Claus Nielsen
+ */
+public class BalanceAggregatorTest {
+
+	private static final String ADDRESS = "mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq";
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+	private BitcoindClient bitcoindClient = mock(BitcoindClient.class);
+	private BalanceAggregator aggregator = new BalanceAggregator(bitcoindClient);
+
+
+	@Before
+	public void setUp() throws Exception {
+		when(bitcoindClient.getBlockCount()).thenReturn(withResult(LongResponse.class, 3700L));
+		when(bitcoindClient.getBlockHash(3700L)).thenReturn(withResult(StringResponse.class, "hash3700"));
+		when(bitcoindClient.listTransactions("*", 1000, 0)).thenReturn(objectMapper.readValue(
+				new File("src/test/resources/sampleResponse/ListTransactionsResponse.json"), ListTransactionsResponse.class));
+		aggregator.reload();
+	}
+
+
+	@Test
+	public void testBalancesByConfirmations() throws Exception {
+		// Received 2 and 5 with 3641 and 3640 confirmations, sent 0.01 unconfirmed.
+		assertThat(aggregator.getAccountBalance("clanie", 1), equalTo(new BigDecimal("6.99000000")));
+		assertThat(aggregator.getAccountBalance("clanie", 3641), equalTo(new BigDecimal("1.99000000")));
+		assertThat(aggregator.getAccountBalance("clanie", 3642), equalTo(new BigDecimal("-0.01000000")));
+		assertThat(aggregator.getAccountBalances(1).toString(), equalTo("{clanie=6.99000000}"));
+		assertThat(aggregator.getReceivedByAddress(ADDRESS, 1), equalTo(new BigDecimal("7.00000000")));
+		assertThat(aggregator.getReceivedByAddress(ADDRESS, 3641), equalTo(new BigDecimal("2.00000000")));
+		assertThat(aggregator.getAccountBalance("nobody", 1), equalTo(new BigDecimal("0E-8")));
+	}
+
+
+	@Test
+	public void testUpdate() throws Exception {
+		// A block later the send is confirmed, and another payment has arrived.
+		aggregator.update(3701,
+				transaction("{\"account\":\"clanie\",\"address\":\"mwswEtw6t2ziSjsfip62FPg84NXGsJ5H2o\",\"category\":\"send\",\"amount\":-0.01,\"fee\":0,\"confirmations\":1,"
+						+ "\"txid\":\"25b06029ed04804d649badd17f4618db9edf73e547bb0dcab342f31af4e3c365\"}"),
+				transaction("{\"account\":\"clanie\",\"address\":\"" + ADDRESS + "\",\"category\":\"receive\",\"amount\":1,\"confirmations\":0,"
+						+ "\"txid\":\"0000000000000000000000000000000000000000000000000000000000000001\"}"));
+		assertThat(aggregator.getAccountBalance("clanie", 0), equalTo(new BigDecimal("7.99000000")));
+		assertThat(aggregator.getAccountBalance("clanie", 1), equalTo(new BigDecimal("6.99000000")));
+		assertThat(aggregator.getAccountBalance("clanie", 3642), equalTo(new BigDecimal("1.99000000")));
+		assertThat(aggregator.getReceivedByAddress(ADDRESS, 0), equalTo(new BigDecimal("8.00000000")));
+	}
+
+
+	@Test
+	public void testFeeCountedOncePerTransaction() throws Exception {
+		// One transaction paying 1 and 2 with a fee of 0.0001, repeated on both send entries.
+		String txId = "0000000000000000000000000000000000000000000000000000000000000002";
+		aggregator.update(3700,
+				transaction("{\"account\":\"clanie\",\"address\":\"mwswEtw6t2ziSjsfip62FPg84NXGsJ5H2o\",\"category\":\"send\",\"amount\":-1,\"fee\":-0.0001,\"confirmations\":0,"
+						+ "\"txid\":\"" + txId + "\"}"),
+				transaction("{\"account\":\"clanie\",\"address\":\"n39aMXCuUdB5YfgAxSpgyPqCRZGtdWGMMG\",\"category\":\"send\",\"amount\":-2,\"fee\":-0.0001,\"confirmations\":0,"
+						+ "\"txid\":\"" + txId + "\"}"));
+		assertThat(aggregator.getAccountBalance("clanie", 1), equalTo(new BigDecimal("3.98990000")));
+		// Seen again when confirmed.
+		aggregator.update(3701,
+				transaction("{\"account\":\"clanie\",\"address\":\"mwswEtw6t2ziSjsfip62FPg84NXGsJ5H2o\",\"category\":\"send\",\"amount\":-1,\"fee\":-0.0001,\"confirmations\":1,"
+						+ "\"txid\":\"" + txId + "\"}"),
+				transaction("{\"account\":\"clanie\",\"address\":\"n39aMXCuUdB5YfgAxSpgyPqCRZGtdWGMMG\",\"category\":\"send\",\"amount\":-2,\"fee\":-0.0001,\"confirmations\":1,"
+						+ "\"txid\":\"" + txId + "\"}"));
+		assertThat(aggregator.getAccountBalance("clanie", 1), equalTo(new BigDecimal("3.98990000")));
+	}
+
+
+	@Test
+	public void testMovesFoundByRefresh() throws Exception {
+		// Two identical moves of 0.5 from clanie to savings in the same second.
+		String move = "{\"account\":\"clanie\",\"category\":\"move\",\"time\":1366060000,\"amount\":-0.5,\"otheraccount\":\"savings\",\"comment\":\"\"},"
+				+ "{\"account\":\"savings\",\"category\":\"move\",\"time\":1366060000,\"amount\":0.5,\"otheraccount\":\"clanie\",\"comment\":\"\"}";
+		when(bitcoindClient.listSinceBlock("hash3700", null)).thenReturn(objectMapper.readValue(
+				"{\"result\":{\"transactions\":[],\"lastblock\":\"hash3700\"},\"error\":null,\"id\":null}", ListSinceBlockResponse.class));
+		when(bitcoindClient.listTransactions("*", 100, 0)).thenReturn(objectMapper.readValue(
+				"{\"result\":[" + move + "," + move + "],\"error\":null,\"id\":null}", ListTransactionsResponse.class));
+		aggregator.refresh();
+		assertThat(aggregator.getAccountBalance("clanie", 1), equalTo(new BigDecimal("5.99000000")));
+		assertThat(aggregator.getAccountBalance("savings", 1), equalTo(new BigDecimal("1.00000000")));
+		aggregator.refresh();
+		assertThat(aggregator.getAccountBalance("clanie", 1), equalTo(new BigDecimal("5.99000000")));
+		assertThat(aggregator.getAccountBalance("savings", 1), equalTo(new BigDecimal("1.00000000")));
+	}
+
+
+	@Test
+	public void testMoveFoundBehindManyReceives() throws Exception {
+		// A block later, 120 payments have arrived after a move of 0.5 from clanie to savings.
+		String move = "{\"account\":\"clanie\",\"category\":\"move\",\"time\":1366060000,\"amount\":-0.5,\"otheraccount\":\"savings\",\"comment\":\"\"},"
+				+ "{\"account\":\"savings\",\"category\":\"move\",\"time\":1366060000,\"amount\":0.5,\"otheraccount\":\"clanie\",\"comment\":\"\"}";
+		StringBuilder receives = new StringBuilder();
+		for (int i = 0; i < 120; i++) {
+			if (i > 0) receives.append(',');
+			receives.append("{\"account\":\"clanie\",\"address\":\"" + ADDRESS + "\",\"category\":\"receive\",\"amount\":0.01,"
+					+ "\"confirmations\":0,\"txid\":\"" + String.format("%064x", i) + "\",\"time\":1366060001}");
+		}
+		when(bitcoindClient.listSinceBlock("hash3700", null)).thenReturn(objectMapper.readValue(
+				"{\"result\":{\"transactions\":[" + receives + "],\"lastblock\":\"hash3701\"},\"error\":null,\"id\":null}", ListSinceBlockResponse.class));
+		when(bitcoindClient.getBlock("hash3701")).thenReturn(withResult(GetBlockResponse.class,
+				new GetBlockResult("hash3701", 1, 215, 3701L, 2, null, null, null, null, null, null, "hash3700", null)));
+		String all = "[" + move + "," + receives + "]";
+		ListTransactionsResponse listed = objectMapper.readValue("{\"result\":" + all + ",\"error\":null,\"id\":null}", ListTransactionsResponse.class);
+		TransactionData[] transactions = listed.getResult();
+		when(bitcoindClient.listTransactions("*", 100, 0)).thenReturn(withResult(ListTransactionsResponse.class,
+				Arrays.copyOfRange(transactions, transactions.length - 100, transactions.length)));
+		when(bitcoindClient.listTransactions("*", 100, 100)).thenReturn(withResult(ListTransactionsResponse.class,
+				Arrays.copyOfRange(transactions, 0, transactions.length - 100)));
+		aggregator.refresh();
+		assertThat(aggregator.getBlockCount(), equalTo(3701L));
+		assertThat(aggregator.getAccountBalance("clanie", 0), equalTo(new BigDecimal("7.69000000")));
+		assertThat(aggregator.getAccountBalance("savings", 0), equalTo(new BigDecimal("0.50000000")));
+		// Received 2 and 5 now have 3642 and 3641 confirmations.
+		assertThat(aggregator.getAccountBalance("clanie", 3642), equalTo(new BigDecimal("1.49000000")));
+	}
+
+
+	private TransactionData transaction(String json) throws Exception {
+		return objectMapper.readValue(json, TransactionData.class);
+	}
+
+
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.bitcoin.client.response.BitcoindJsonRpcResponse.withResult;
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import dk.clanie.bitcoin.TransactionOutputRef;
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.ListUnspentResponse;
+import dk.clanie.bitcoin.client.response.ListUnspentResult;
+import dk.clanie.bitcoin.client.response.LongResponse;
+
+/**
+ * Tests {@link CoinSelector} with a mocked BitcoindClient.
+ * 
+ * @author Claus Nielsen
+ */
+public class CoinSelectorTest {
+
+	private static final long COIN = 100000000L;
+
+	private BitcoindClient bitcoindClient = mock(BitcoindClient.class);
+	private CoinSelector selector = new CoinSelector(bitcoindClient);
+
+
+	@Before
+	public void setUp() throws Exception {
+		when(bitcoindClient.getBlockCount()).thenReturn(withResult(LongResponse.class, 100L));
+		when(bitcoindClient.listUnspent(0, 9999999)).thenReturn(unspent(
+				coin(1, "5", 10),
+				coin(2, "3", 10),
+				coin(3, "2", 10),
+				coin(4, "1", 10),
+				coin(5, "8", 0)));
+		selector.reload();
+	}
+
+
+	@Test
+	public void testLargestFirst() throws Exception {
+		CoinSelection selection = selector.select(6 * COIN, 1, CoinSelectionStrategy.LARGEST_FIRST);
+		assertThat(txIds(selection), equalTo("[1, 2]"));
+		assertThat(selection.getChangeSatoshis(), equalTo(2 * COIN));
+	}
+
+
+	@Test
+	public void testBranchAndBoundFindsExactMatch() throws Exception {
+		CoinSelection selection = selector.select(new BigDecimal("4"), 1, CoinSelectionStrategy.BRANCH_AND_BOUND);
+		assertThat(txIds(selection), equalTo("[2, 4]"));
+		assertThat(selection.getChangeSatoshis(), equalTo(0L));
+	}
+
+
+	@Test
+	public void testKnapsack() throws Exception {
+		CoinSelection selection = selector.select(4 * COIN, 1, CoinSelectionStrategy.KNAPSACK);
+		assertThat(selection.getTotalSatoshis(), equalTo(4 * COIN));
+		selection = selector.select(new BigDecimal("10.5"), 1, CoinSelectionStrategy.KNAPSACK);
+		assertThat(selection.getTotalSatoshis(), equalTo(11 * COIN));
+	}
+
+
+	@Test
+	public void testMinConf() throws Exception {
+		assertThat(selector.select(12 * COIN, 1, CoinSelectionStrategy.LARGEST_FIRST), nullValue());
+		assertThat(selector.select(12 * COIN, 0, CoinSelectionStrategy.LARGEST_FIRST).getTotalSatoshis(), equalTo(13 * COIN));
+	}
+
+
+	@Test
+	public void testRefreshAndMarkSpent() throws Exception {
+		// Two blocks later coin 5 has been confirmed, and coin 6 has arrived.
+		when(bitcoindClient.getBlockCount()).thenReturn(withResult(LongResponse.class, 102L));
+		when(bitcoindClient.listUnspent(0, 3)).thenReturn(unspent(
+				coin(5, "8", 2),
+				coin(6, "0.5", 0)));
+		selector.refresh();
+		assertThat(selector.getUnspentCount(), equalTo(6));
+		assertThat(txIds(selector.select(8 * COIN, 1, CoinSelectionStrategy.BRANCH_AND_BOUND)), equalTo("[5]"));
+
+		List<TransactionOutputRef> spent = newArrayList();
+		spent.add(txRef(5));
+		selector.markSpent(spent);
+		assertThat(txIds(selector.select(8 * COIN, 1, CoinSelectionStrategy.LARGEST_FIRST)), equalTo("[1, 2]"));
+	}
+
+
+	@Test
+	public void testReservedOutputsSkipped() throws Exception {
+		OutputReservations reservations = new OutputReservations(bitcoindClient);
+		reservations.reserve(txRefs(1), 60000);
+		CoinSelection selection = selector.select(4 * COIN, 1, CoinSelectionStrategy.LARGEST_FIRST, reservations);
+		assertThat(txIds(selection), equalTo("[2, 3]"));
+	}
+
+
+	private static ListUnspentResponse unspent(ListUnspentResult... results) {
+		return withResult(ListUnspentResponse.class, results);
+	}
+
+
+	private static ListUnspentResult coin(int n, String amount, int confirmations) {
+		return new ListUnspentResult(txRef(n), null, new BigDecimal(amount), confirmations);
+	}
+
+
+	private static List<TransactionOutputRef> txRefs(int n) {
+		List<TransactionOutputRef> txRefs = newArrayList();
+		txRefs.add(txRef(n));
+		return txRefs;
+	}
+
+
+	private static TransactionOutputRef txRef(int n) {
+		return new TransactionOutputRef(String.format("%064x", n), 0);
+	}
+
+
+	private static String txIds(CoinSelection selection) {
+		List<Long> ids = newArrayList();
+		for (TransactionOutputRef txRef : selection.getTxOutputs()) {
+			ids.add(Long.parseLong(txRef.getTxId(), 16));
+		}
+		return ids.toString();
+	}
+
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.bitcoin.client.response.BitcoindJsonRpcResponse.withResult;
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static dk.clanie.collections.CollectionFactory.newHashMap;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.BitcoindErrorResponse;
+import dk.clanie.bitcoin.client.response.GetBlockResponse;
+import dk.clanie.bitcoin.client.response.GetBlockResult;
+import dk.clanie.bitcoin.client.response.GetTransactionResponse;
+import dk.clanie.bitcoin.client.response.LongResponse;
+import dk.clanie.bitcoin.client.response.StringResponse;
+import dk.clanie.bitcoin.exception.server.InvalidAddressException;
+
+/**
+ * Tests {@link ConfirmationTracker} against a block chain simulated with a
+ * mocked BitcoindClient.
+ * 
+ * @author Claus Nielsen
+ */
+public class ConfirmationTrackerTest {
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+	private BitcoindClient bitcoindClient = mock(BitcoindClient.class);
+	private ConfirmationTracker tracker = new ConfirmationTracker(bitcoindClient);
+	private List<String> chain = newArrayList();
+	private Map<String, GetBlockResult> blocks = newHashMap();
+
+
+	@Before
+	public void setUp() throws Exception {
+		final BitcoindErrorResponse noSuchTransaction = objectMapper.readValue(
+				"{\"result\":null,\"error\":{\"code\":-5,\"message\":\"Invalid or non-wallet transaction id\"},\"id\":null}",
+				BitcoindErrorResponse.class);
+		when(bitcoindClient.getBlockCount()).thenAnswer(new Answer<LongResponse>() {
+			@Override
+			public LongResponse answer(InvocationOnMock invocation) throws Throwable {
+				return withResult(LongResponse.class, (long) chain.size() - 1);
+			}
+		});
+		when(bitcoindClient.getBlockHash(any(Long.class))).thenAnswer(new Answer<StringResponse>() {
+			@Override
+			public StringResponse answer(InvocationOnMock invocation) throws Throwable {
+				return withResult(StringResponse.class, chain.get(((Long) invocation.getArguments()[0]).intValue()));
+			}
+		});
+		when(bitcoindClient.getBlock(anyString())).thenAnswer(new Answer<GetBlockResponse>() {
+			@Override
+			public GetBlockResponse answer(InvocationOnMock invocation) throws Throwable {
+				return withResult(GetBlockResponse.class, blocks.get(invocation.getArguments()[0]));
+			}
+		});
+		when(bitcoindClient.getTransaction(anyString())).thenAnswer(new Answer<GetTransactionResponse>() {
+			@Override
+			public GetTransactionResponse answer(InvocationOnMock invocation) throws Throwable {
+				throw new InvalidAddressException(noSuchTransaction);
+			}
+		});
+		mine("b0");
+	}
+
+
+	@Test
+	public void testConfirmedAcrossReorganization() throws Exception {
+		Future<String> confirmed = tracker.register("t1", 2);
+		mine("b1", "t1");
+		tracker.poll();
+		assertThat(confirmed.isDone(), equalTo(false));
+
+		// b1 is replaced by a longer branch, with t1 in its second block.
+		chain.remove(1);
+		mine("c1");
+		mine("c2", "t1");
+		tracker.poll();
+		assertThat(confirmed.isDone(), equalTo(false));
+
+		mine("c3");
+		tracker.poll();
+		assertThat(confirmed.isDone(), equalTo(true));
+		assertThat(confirmed.get(), equalTo("c2"));
+		assertThat(tracker.getTrackedCount(), equalTo(0));
+		verify(bitcoindClient, times(4)).getBlock(anyString());
+	}
+
+
+	private void mine(String hash, String... txIds) throws Exception {
+		StringBuilder json = new StringBuilder("{\"hash\":\"").append(hash).append("\",\"height\":").append(chain.size());
+		if (!chain.isEmpty()) json.append(",\"previousblockhash\":\"").append(chain.get(chain.size() - 1)).append('"');
+		json.append(",\"tx\":").append(objectMapper.writeValueAsString(txIds)).append('}');
+		blocks.put(hash, objectMapper.readValue(json.toString(), GetBlockResult.class));
+		chain.add(hash);
+	}
+
+
+}
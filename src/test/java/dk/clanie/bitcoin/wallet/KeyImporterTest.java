@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.VoidResponse;
+import dk.clanie.bitcoin.exception.BitcoinException;
+
+/**
+ * Tests {@link KeyImporter} with a mocked BitcoindClient.
+ * 
+ * @author Claus Nielsen
+ */
+public class KeyImporterTest {
+
+	private BitcoindClient bitcoindClient = mock(BitcoindClient.class);
+	private KeyImporter importer = new KeyImporter(bitcoindClient, 3);
+	private List<String> rescans = newArrayList();
+	private Set<String> attempted = new HashSet<String>();
+
+
+	@After
+	public void tearDown() {
+		importer.shutdown();
+	}
+
+
+	@Before
+	public void setUp() {
+		when(bitcoindClient.importPrivateKey(anyString(), anyString(), any(Boolean.class))).thenAnswer(new Answer<VoidResponse>() {
+			@Override
+			public VoidResponse answer(InvocationOnMock invocation) throws Throwable {
+				String key = (String) invocation.getArguments()[0];
+				if (key.startsWith("bad")) throw new BitcoinException("Invalid private key");
+				synchronized (attempted) {
+					if (key.startsWith("flaky") && attempted.add(key)) throw new BitcoinException("Connection reset");
+				}
+				if (Boolean.TRUE.equals(invocation.getArguments()[2])) {
+					synchronized (rescans) {
+						rescans.add(key);
+					}
+				}
+				return null;
+			}
+		});
+	}
+
+
+	@Test
+	public void testImportWithOneRescan() throws Exception {
+		final AtomicInteger progressReports = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		KeyImportResult result = importer.importKeys(Arrays.asList("bad0", "key1", "bad2", "key3", "key4"), "imported", new KeyImportListener() {
+			@Override
+			public void progress(int completed, int total) {
+				progressReports.incrementAndGet();
+			}
+			@Override
+			public void failed(KeyImportFailure failure) {
+				failed.incrementAndGet();
+			}
+		});
+		assertThat(result.getImported(), equalTo(3));
+		assertThat(result.getFailures().size(), equalTo(2));
+		assertThat(result.getFailures().get(0).getIndex(), equalTo(0));
+		assertThat(result.getFailures().get(1).getIndex(), equalTo(2));
+		assertThat(result.isRescanned(), equalTo(true));
+		assertThat(rescans.toString(), equalTo("[key4]"));
+		assertThat(progressReports.get(), equalTo(5));
+		assertThat(failed.get(), equalTo(2));
+	}
+
+
+	@Test
+	public void testFailedKeyRetriedWhenLastKeyFails() throws Exception {
+		KeyImportResult result = importer.importKeys(Arrays.asList("key0", "flaky1", "key2", "bad3"), "imported", null);
+		assertThat(result.getImported(), equalTo(3));
+		assertThat(result.getFailures().size(), equalTo(1));
+		assertThat(result.getFailures().get(0).getIndex(), equalTo(3));
+		assertThat(result.isRescanned(), equalTo(true));
+		assertThat(rescans.toString(), equalTo("[flaky1]"));
+	}
+
+
+	@Test
+	public void testNoRescanWhenLastKeyFails() throws Exception {
+		KeyImportResult result = importer.importKeys(Arrays.asList("key0", "key1", "bad2"), "imported", null);
+		assertThat(result.getImported(), equalTo(2));
+		assertThat(result.getFailures().get(0).getIndex(), equalTo(2));
+		assertThat(result.isRescanned(), equalTo(false));
+		assertThat(rescans.size(), equalTo(0));
+	}
+
+
+}
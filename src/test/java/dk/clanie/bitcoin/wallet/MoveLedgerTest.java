@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.bitcoin.client.response.BitcoindJsonRpcResponse.withResult;
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.BooleanResponse;
+import dk.clanie.bitcoin.exception.BitcoinException;
+
+/**
+ * Tests {@link MoveLedger} with a mocked BitcoindClient.
+ * 
+ * @author Claus Nielsen
+ */
+public class MoveLedgerTest {
+
+	private BitcoindClient bitcoindClient = mock(BitcoindClient.class);
+	private List<String> moves = newArrayList();
+	private boolean connectionLost = false;
+	private File journalFile;
+	private MoveLedger ledger;
+
+
+	@Before
+	public void setUp() throws Exception {
+		journalFile = File.createTempFile("moves", ".journal");
+		journalFile.delete();
+		ledger = new MoveLedger(bitcoindClient, journalFile);
+		when(bitcoindClient.move(anyString(), anyString(), any(BigDecimal.class), any(Integer.class), anyString())).thenAnswer(new Answer<BooleanResponse>() {
+			@Override
+			public BooleanResponse answer(InvocationOnMock invocation) throws Throwable {
+				if (connectionLost) throw new BitcoinException("Connection reset");
+				Object[] args = invocation.getArguments();
+				moves.add(args[0] + "->" + args[1] + " " + args[2] + " (" + args[4] + ")");
+				return withResult(BooleanResponse.class, Boolean.TRUE);
+			}
+		});
+	}
+
+
+	@After
+	public void tearDown() {
+		ledger.close();
+		journalFile.delete();
+	}
+
+
+	@Test
+	public void testMovesNetted() throws Exception {
+		ledger.move("a", "b", new BigDecimal("1"));
+		ledger.move("b", "a", new BigDecimal("0.4"));
+		ledger.move("c", "a", new BigDecimal("2"));
+		ledger.move("a", "c", new BigDecimal("2"));
+		assertThat(ledger.getPendingChange("a"), equalTo(new BigDecimal("-0.60000000")));
+		assertThat(ledger.getPendingChange("b"), equalTo(new BigDecimal("0.60000000")));
+
+		assertThat(ledger.flush(), equalTo(1));
+		assertThat(moves.toString(), equalTo("[a->b 0.60000000 (net transfer 1)]"));
+		assertThat(ledger.getPendingChange("a"), equalTo(new BigDecimal("0E-8")));
+	}
+
+
+	@Test
+	public void testJournalReplayed() throws Exception {
+		ledger.move("a", "b", new BigDecimal("1"));
+		ledger.move("b", "c", new BigDecimal("0.25"));
+		reopen();
+		assertThat(ledger.getPendingChange("b"), equalTo(new BigDecimal("0.75000000")));
+
+		// The outcome of transfers is unknown when the connection is lost.
+		connectionLost = true;
+		assertThat(ledger.flush(), equalTo(0));
+		reopen();
+		assertThat(ledger.getInDoubt().size(), equalTo(2));
+		assertThat(ledger.getPendingChange("b"), equalTo(new BigDecimal("0E-8")));
+
+		// One was made, the other wasn't and is sent again.
+		connectionLost = false;
+		ledger.resolveInDoubt(1, true);
+		ledger.resolveInDoubt(2, false);
+		reopen();
+		assertThat(ledger.getInDoubt().size(), equalTo(0));
+		assertThat(ledger.getPendingChange("c"), equalTo(new BigDecimal("0.25000000")));
+		ledger.flush();
+		assertThat(moves.toString(), equalTo("[b->c 0.25000000 (net transfer 3)]"));
+	}
+
+
+	private void reopen() {
+		ledger.close();
+		ledger = new MoveLedger(bitcoindClient, journalFile);
+	}
+
+
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.bitcoin.client.response.BitcoindJsonRpcResponse.withResult;
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import dk.clanie.bitcoin.TransactionOutputRef;
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.BooleanResponse;
+import dk.clanie.bitcoin.client.response.ListLockUnspentResponse;
+
+/**
+ * Tests {@link OutputReservations} with a mocked BitcoindClient.
+ * 
+ * @author Claus Nielsen
+ */
+public class OutputReservationsTest {
+
+	private BitcoindClient bitcoindClient = mock(BitcoindClient.class);
+	private OutputReservations reservations = new OutputReservations(bitcoindClient);
+	private List<String> lockUnspentCalls = newArrayList();
+
+
+	@Before
+	public void setUp() throws Exception {
+		when(bitcoindClient.lockUnspent(anyBoolean(), any(TransactionOutputRef[].class))).thenAnswer(new Answer<BooleanResponse>() {
+			@Override
+			public BooleanResponse answer(InvocationOnMock invocation) throws Throwable {
+				Object[] args = invocation.getArguments();
+				List<Long> ids = newArrayList();
+				for (TransactionOutputRef txRef : (TransactionOutputRef[]) args[1]) {
+					ids.add(Long.parseLong(txRef.getTxId(), 16));
+				}
+				Collections.sort(ids);
+				lockUnspentCalls.add((Boolean.TRUE.equals(args[0]) ? "unlock " : "lock ") + ids);
+				return withResult(BooleanResponse.class, Boolean.TRUE);
+			}
+		});
+		lockedInBitcoind();
+	}
+
+
+	@Test
+	public void testConflictingReservationFails() throws Exception {
+		OutputLease lease = reservations.reserve(txRefs(1, 2), 60000);
+		assertThat(lease, notNullValue());
+		assertThat(reservations.reserve(txRefs(2, 3), 60000), nullValue());
+		assertThat(reservations.isReserved(txRef(3)), equalTo(false));
+
+		lease.release();
+		assertThat(lease.isValid(), equalTo(false));
+		assertThat(reservations.reserve(txRefs(2, 3), 60000), notNullValue());
+		assertThat(reservations.getReservedCount(), equalTo(2));
+	}
+
+
+	@Test
+	public void testExpiredLeaseTakenOver() throws Exception {
+		OutputLease expired = reservations.reserve(txRefs(1), 0);
+		assertThat(expired.isValid(), equalTo(false));
+		OutputLease lease = reservations.reserve(txRefs(1), 60000);
+		assertThat(lease, notNullValue());
+		assertThat(expired.renew(60000), equalTo(false));
+		assertThat(lease.renew(60000), equalTo(true));
+		assertThat(reservations.isReserved(txRef(1)), equalTo(true));
+	}
+
+
+	@Test
+	public void testSynchronizeBatchesLocks() throws Exception {
+		OutputLease lease = reservations.reserve(txRefs(1), 60000);
+		reservations.reserve(txRefs(2), 60000);
+		reservations.reserve(txRefs(3), 60000).release();
+		reservations.synchronize();
+		assertThat(lockUnspentCalls.toString(), equalTo("[lock [1, 2]]"));
+
+		lease.release();
+		reservations.reserve(txRefs(4), 0);
+		reservations.synchronize();
+		assertThat(lockUnspentCalls.toString(), equalTo("[lock [1, 2], unlock [1]]"));
+	}
+
+
+	@Test
+	public void testOutputsLockedByOthers() throws Exception {
+		reservations.reserve(txRefs(1), 60000);
+		lockedInBitcoind(1, 9);
+		reservations.synchronize();
+		assertThat(reservations.isReserved(txRef(9)), equalTo(true));
+		assertThat(reservations.reserve(txRefs(9), 60000), nullValue());
+
+		lockedInBitcoind(1);
+		reservations.synchronize();
+		assertThat(reservations.isReserved(txRef(9)), equalTo(false));
+		assertThat(reservations.isReserved(txRef(1)), equalTo(true));
+	}
+
+
+	private void lockedInBitcoind(int... ns) {
+		when(bitcoindClient.listLockUnspent()).thenReturn(withResult(ListLockUnspentResponse.class,
+				txRefs(ns).toArray(new TransactionOutputRef[ns.length])));
+	}
+
+
+	private static List<TransactionOutputRef> txRefs(int... ns) {
+		TransactionOutputRef[] txRefs = new TransactionOutputRef[ns.length];
+		for (int i = 0; i < ns.length; i++) {
+			txRefs[i] = txRef(ns[i]);
+		}
+		return Arrays.asList(txRefs);
+	}
+
+
+	private static TransactionOutputRef txRef(int n) {
+		return new TransactionOutputRef(String.format("%064x", n), 0);
+	}
+
+
+}
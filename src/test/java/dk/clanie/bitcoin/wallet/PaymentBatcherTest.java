@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static dk.clanie.bitcoin.client.response.BitcoindJsonRpcResponse.withResult;
+import static dk.clanie.collections.CollectionFactory.newArrayList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.AddressAndAmount;
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.BitcoindErrorResponse;
+import dk.clanie.bitcoin.client.response.StringResponse;
+import dk.clanie.bitcoin.exception.server.BitcoinServerException;
+import dk.clanie.bitcoin.exception.server.InvalidAddressException;
+
+/**
+ * Tests {@link PaymentBatcher} with a mocked BitcoindClient.
+ * 
+ * @author Claus Nielsen
+ */
+public class PaymentBatcherTest {
+
+	private static final String BAD_ADDRESS = "bad";
+	private static final String COMMIT_FAILS = "commitfails";
+
+	private BitcoindClient bitcoindClient = mock(BitcoindClient.class);
+	private PaymentBatcher batcher;
+	private List<Integer> batchSizes = newArrayList();
+	private AtomicInteger txCounter = new AtomicInteger();
+
+
+	@Before
+	public void setUp() throws Exception {
+		final BitcoindErrorResponse invalidAddress = new ObjectMapper().readValue(
+				"{\"result\":null,\"error\":{\"code\":-5,\"message\":\"Invalid Bitcoin address\"},\"id\":null}",
+				BitcoindErrorResponse.class);
+		final BitcoindErrorResponse commitFailed = BitcoindErrorResponse.withError(-4, "Transaction commit failed");
+		when(bitcoindClient.sendMany(eq("payouts"), any(AddressAndAmount[].class), any(Integer.class), anyString()))
+				.thenAnswer(new Answer<StringResponse>() {
+			@Override
+			public StringResponse answer(InvocationOnMock invocation) throws Throwable {
+				AddressAndAmount[] payments = (AddressAndAmount[]) invocation.getArguments()[1];
+				for (AddressAndAmount payment : payments) {
+					if (payment.getAddress().equals(BAD_ADDRESS)) throw new InvalidAddressException(invalidAddress);
+					if (payment.getAddress().equals(COMMIT_FAILS)) throw new BitcoinServerException(commitFailed);
+				}
+				batchSizes.add(payments.length);
+				return withResult(StringResponse.class, "tx" + txCounter.incrementAndGet());
+			}
+		});
+	}
+
+
+	@After
+	public void tearDown() {
+		batcher.shutdown();
+	}
+
+
+	@Test
+	public void testFlushWhenFull() throws Exception {
+		batcher = new PaymentBatcher(bitcoindClient, "payouts", 3, 60000);
+		List<Future<String>> futures = newArrayList();
+		for (int i = 0; i < 3; i++) {
+			futures.add(batcher.pay("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq", BigDecimal.ONE));
+		}
+		for (Future<String> future : futures) {
+			assertThat(future.get(), equalTo("tx1"));
+		}
+		assertThat(batchSizes.size(), equalTo(1));
+		assertThat(batchSizes.get(0), equalTo(3));
+	}
+
+
+	@Test
+	public void testFlushAfterDelay() throws Exception {
+		batcher = new PaymentBatcher(bitcoindClient, "payouts", 100, 10);
+		Future<String> first = batcher.pay("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq", BigDecimal.ONE);
+		Future<String> second = batcher.pay("n39aMXCuUdB5YfgAxSpgyPqCRZGtdWGMMG", BigDecimal.ONE);
+		assertThat(first.get(), equalTo("tx1"));
+		assertThat(second.get(), equalTo("tx1"));
+		assertThat(batcher.getPendingCount(), equalTo(0));
+	}
+
+
+	@Test
+	public void testSplitRejectedBatch() throws Exception {
+		batcher = new PaymentBatcher(bitcoindClient, "payouts", 4, 60000);
+		List<Future<String>> futures = newArrayList();
+		futures.add(batcher.pay("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq", BigDecimal.ONE));
+		futures.add(batcher.pay("n39aMXCuUdB5YfgAxSpgyPqCRZGtdWGMMG", BigDecimal.ONE));
+		futures.add(batcher.pay(BAD_ADDRESS, BigDecimal.ONE));
+		futures.add(batcher.pay("mwswEtw6t2ziSjsfip62FPg84NXGsJ5H2o", BigDecimal.ONE));
+		assertThat(futures.get(0).get(), equalTo("tx1"));
+		assertThat(futures.get(1).get(), equalTo("tx1"));
+		assertThat(futures.get(3).get(), equalTo("tx2"));
+		try {
+			futures.get(2).get();
+			fail("Payment to invalid address should fail.");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(InvalidAddressException.class));
+		}
+	}
+
+
+	@Test
+	public void testInvalidAmountsRejected() throws Exception {
+		batcher = new PaymentBatcher(bitcoindClient, "payouts", 2, 60000);
+		for (String amount : Arrays.asList("0", "-1", "0.000000001")) {
+			try {
+				batcher.pay("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq", new BigDecimal(amount));
+				fail("Payment of " + amount + " should be rejected.");
+			} catch (IllegalArgumentException e) {
+				// Expected.
+			}
+		}
+		assertThat(batcher.pay("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq", new BigDecimal("0.00000001000")).isDone(), equalTo(false));
+		assertThat(batcher.getPendingCount(), equalTo(1));
+	}
+
+
+	@Test
+	public void testCommitFailureNotSplit() throws Exception {
+		batcher = new PaymentBatcher(bitcoindClient, "payouts", 2, 60000);
+		List<Future<String>> futures = newArrayList();
+		futures.add(batcher.pay("mj3QxNUyp4Ry2pbbP19tznUAAPqFvDbRFq", BigDecimal.ONE));
+		futures.add(batcher.pay(COMMIT_FAILS, BigDecimal.ONE));
+		for (Future<String> future : futures) {
+			try {
+				future.get();
+				fail("Payments in a batch failing to commit should fail.");
+			} catch (ExecutionException e) {
+				assertThat(e.getCause(), instanceOf(BitcoinServerException.class));
+			}
+		}
+		assertThat(batchSizes.size(), equalTo(0));
+	}
+
+
+}
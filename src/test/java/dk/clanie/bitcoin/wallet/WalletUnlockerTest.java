@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2013, Claus Nielsen, cn@cn-consult.dk
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package dk.clanie.bitcoin.wallet;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dk.clanie.bitcoin.client.BitcoindClient;
+import dk.clanie.bitcoin.client.response.BitcoindErrorResponse;
+import dk.clanie.bitcoin.client.response.VoidResponse;
+import dk.clanie.bitcoin.exception.server.BitcoinServerException;
+
+/**
+ * Tests {@link WalletUnlocker} with a mocked BitcoindClient.
+ * 
+ * @author Claus Nielsen
+ */
+public class WalletUnlockerTest {
+
+	private BitcoindClient bitcoindClient = mock(BitcoindClient.class);
+	private WalletUnlocker unlocker = new WalletUnlocker(bitcoindClient, "secret", 60);
+
+
+	@Test
+	public void testSessionsShareOneUnlock() throws Exception {
+		WalletUnlockSession first = unlocker.open();
+		WalletUnlockSession second = unlocker.open();
+		first.close();
+		first.close();
+		verify(bitcoindClient, times(1)).walletPassPhrase("secret", 60);
+		verify(bitcoindClient, never()).walletLock();
+		assertThat(unlocker.getOpenSessions(), equalTo(1));
+
+		second.close();
+		verify(bitcoindClient, times(1)).walletLock();
+		assertThat(unlocker.getOpenSessions(), equalTo(0));
+	}
+
+
+	@Test
+	public void testExpiringUnlockRenewed() throws Exception {
+		// Less than the minimum is left of any unlock window.
+		unlocker.setMinRemainingMillis(60000);
+		WalletUnlockSession session = unlocker.open();
+		Thread waiting = new Thread() {
+			@Override
+			public void run() {
+				unlocker.open().close();
+			}
+		};
+		waiting.start();
+		while (waiting.getState() != Thread.State.WAITING) {
+			Thread.sleep(1);
+		}
+		session.close();
+		waiting.join();
+		assertThat(unlocker.getUnlockCount(), equalTo(2L));
+		verify(bitcoindClient, times(2)).walletLock();
+	}
+
+
+	@Test
+	public void testUnlockedBySomeoneElse() throws Exception {
+		final BitcoindErrorResponse alreadyUnlocked = new ObjectMapper().readValue(
+				"{\"result\":null,\"error\":{\"code\":-17,\"message\":\"Error: Wallet is already unlocked.\"},\"id\":null}",
+				BitcoindErrorResponse.class);
+		when(bitcoindClient.walletPassPhrase("secret", 60)).thenAnswer(new Answer<VoidResponse>() {
+			private boolean unlocked = true;
+			@Override
+			public VoidResponse answer(InvocationOnMock invocation) throws Throwable {
+				if (unlocked) {
+					unlocked = false;
+					throw new BitcoinServerException(alreadyUnlocked);
+				}
+				return null;
+			}
+		});
+		unlocker.open().close();
+		verify(bitcoindClient, times(2)).walletPassPhrase("secret", 60);
+		verify(bitcoindClient, times(2)).walletLock();
+	}
+
+
+}